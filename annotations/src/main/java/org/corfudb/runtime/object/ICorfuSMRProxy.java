@@ -48,6 +48,14 @@ public interface ICorfuSMRProxy<T> {
      */
     void sync();
 
+    /**
+     * Update the proxy to a given version.
+     *
+     * @param timestamp             The version to update to, typically the tail of the
+     *                              stream obtained from the sequencer.
+     */
+    void sync(long timestamp);
+
     /** Get the ID of the stream this proxy is subscribed to.
      *
      * @return  The UUID of the stream this proxy is subscribed to.
@@ -41,6 +41,7 @@ public abstract class AbstractServer {
      */
     public void handleMessage(CorfuMsg msg, ChannelHandlerContext ctx, IServerRouter r) {
         if (isShutdown()) {
+            msg.release();
             return;
         }
         boolean isMetricsEnabled = MetricsUtils.isMetricsCollectionEnabled();
@@ -48,11 +49,13 @@ public abstract class AbstractServer {
         if (!this.isServerReadyToHandleMsg(msg)) {
             log.warn("Received message {} but Server not ready." , msg.getMsgType());
             r.sendResponse(ctx, msg, CorfuMsgType.NOT_READY.msg());
+            msg.release();
             return;
         }
 
         if (!getHandler().handle(msg, ctx, r, isMetricsEnabled)) {
             log.warn("Received unhandled message type {}" , msg.getMsgType());
+            msg.release();
         }
     }
 
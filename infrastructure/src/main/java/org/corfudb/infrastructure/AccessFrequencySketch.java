@@ -0,0 +1,126 @@
+package org.corfudb.infrastructure;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A compact, approximate record of which address ranges of the log are read the most.
+ *
+ * <p>The address space is divided into fixed size ranges of {@link #rangeSize} addresses, and
+ * a hit counter is kept per range. The number of tracked ranges is bounded; once the bound is
+ * reached, accesses to ranges that are not already tracked are dropped until the next
+ * {@link #decay()}, which halves every counter and forgets the ranges that went cold.
+ *
+ * <p>The hottest ranges are periodically persisted to the {@link IDataStore} so that a
+ * restarted log unit can prefetch them into its cache (see {@link LogUnitServer}).
+ */
+@Slf4j
+public class AccessFrequencySketch {
+
+    private static final String PREFIX_HOT_RANGES = "LOGUNIT_HOT_RANGES";
+    private static final String KEY_HOT_RANGES = "CURRENT";
+
+    /**
+     * The number of consecutive addresses that share a counter.
+     */
+    @Getter
+    private final int rangeSize;
+
+    /**
+     * The maximum number of ranges that are tracked at any point in time.
+     */
+    private final int maxTrackedRanges;
+
+    private final Map<Long, LongAdder> rangeHits = new ConcurrentHashMap<>();
+
+    private final IDataStore dataStore;
+
+    /**
+     * Returns a new AccessFrequencySketch.
+     *
+     * @param dataStore        data store used to persist the hottest ranges
+     * @param rangeSize        number of addresses per tracked range
+     * @param maxTrackedRanges maximum number of ranges to track
+     */
+    public AccessFrequencySketch(IDataStore dataStore, int rangeSize, int maxTrackedRanges) {
+        this.dataStore = dataStore;
+        this.rangeSize = rangeSize;
+        this.maxTrackedRanges = maxTrackedRanges;
+    }
+
+    /**
+     * Record a read of an address.
+     *
+     * @param address the address that was read
+     */
+    public void recordAccess(long address) {
+        if (address < 0) {
+            return;
+        }
+        final long range = address / rangeSize;
+        LongAdder hits = rangeHits.get(range);
+        if (hits == null) {
+            if (rangeHits.size() >= maxTrackedRanges) {
+                return;
+            }
+            hits = rangeHits.computeIfAbsent(range, r -> new LongAdder());
+        }
+        hits.increment();
+    }
+
+    /**
+     * Age all counters by halving them, and forget ranges that have no hits left.
+     */
+    public void decay() {
+        rangeHits.forEach((range, hits) -> {
+            long half = hits.sumThenReset() / 2;
+            if (half == 0) {
+                rangeHits.remove(range, hits);
+            } else {
+                hits.add(half);
+            }
+        });
+    }
+
+    /**
+     * Get the starting addresses of the hottest ranges, hottest first.
+     *
+     * @param maxRanges maximum number of ranges to return
+     * @return an array of range starting addresses
+     */
+    public long[] getHottestRanges(int maxRanges) {
+        return rangeHits.entrySet().stream()
+                .map(e -> new long[]{e.getKey(), e.getValue().sum()})
+                .sorted(Comparator.comparingLong((long[] e) -> e[1]).reversed())
+                .limit(maxRanges)
+                .mapToLong(e -> e[0] * rangeSize)
+                .toArray();
+    }
+
+    /**
+     * Persist the hottest ranges, and then age the counters.
+     *
+     * @param maxRanges maximum number of ranges to persist
+     */
+    public void persist(int maxRanges) {
+        long[] hottest = getHottestRanges(maxRanges);
+        dataStore.put(long[].class, PREFIX_HOT_RANGES, KEY_HOT_RANGES, hottest);
+        log.trace("persist: saved {} hot ranges", hottest.length);
+        decay();
+    }
+
+    /**
+     * Load the hottest ranges that were persisted by a previous incarnation of this server.
+     *
+     * @return an array of range starting addresses, hottest first, or an empty array
+     */
+    public long[] loadPersistedRanges() {
+        long[] ranges = dataStore.get(long[].class, PREFIX_HOT_RANGES, KEY_HOT_RANGES);
+        return ranges == null ? new long[0] : ranges;
+    }
+}
@@ -0,0 +1,89 @@
+package org.corfudb.infrastructure;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.RequiredArgsConstructor;
+
+import org.corfudb.protocols.wireprotocol.AddressLease;
+
+/**
+ * The blocks of global addresses leased by the sequencer of the first partition to the
+ * sequencers of the other partitions.
+ *
+ * <p>A partition hands out the addresses of its block after they were taken from the global
+ * tail, so an address below the global tail may still be handed out, and the global tail is
+ * not a safe snapshot for a transaction. The stable tail is the last address below which
+ * every address was either handed out or given up: the address before the first address of
+ * the oldest lease in use. A lease is in use until the partition requests a new one, or
+ * until its term is over. The partition counts the term from the time it sent its request,
+ * so it stops using a lease before the lease expires here.
+ */
+class AddressLeases {
+
+    @RequiredArgsConstructor
+    private static class Lease {
+        final long start;
+        final long expiryNanos;
+    }
+
+    /**
+     * The global tail of the sequencer, from which the blocks are taken.
+     */
+    private final AtomicLong globalLogTail;
+
+    private final long termMillis;
+
+    /**
+     * The lease in use of every partition. Only accessed while holding the monitor.
+     */
+    private final Map<Integer, Lease> leases = new HashMap<>();
+
+    /**
+     * Returns a new AddressLeases.
+     *
+     * @param globalLogTail the global tail of the sequencer
+     * @param termMillis    the term of the leases, in milliseconds
+     */
+    AddressLeases(AtomicLong globalLogTail, long termMillis) {
+        this.globalLogTail = globalLogTail;
+        this.termMillis = termMillis;
+    }
+
+    /**
+     * Lease a block of addresses to a partition, in place of its previous lease.
+     *
+     * @param partition the partition
+     * @param numTokens the number of addresses
+     * @return the lease
+     */
+    synchronized AddressLease grant(int partition, long numTokens) {
+        final long start = globalLogTail.getAndAdd(numTokens);
+        leases.put(partition, new Lease(start,
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(termMillis)));
+        return new AddressLease(start, numTokens, termMillis);
+    }
+
+    /**
+     * Get the stable tail, dropping the leases whose term is over.
+     *
+     * @return the last address below which no address can be handed out anymore
+     */
+    synchronized long getStableTail() {
+        final long now = System.nanoTime();
+        long stableTail = globalLogTail.get();
+        Iterator<Lease> it = leases.values().iterator();
+        while (it.hasNext()) {
+            Lease lease = it.next();
+            if (lease.expiryNanos - now <= 0) {
+                it.remove();
+            } else {
+                stableTail = Math.min(stableTail, lease.start);
+            }
+        }
+        return stableTail - 1;
+    }
+}
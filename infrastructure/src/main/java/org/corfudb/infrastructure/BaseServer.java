@@ -40,7 +40,8 @@ public class BaseServer extends AbstractServer {
      * @param ctx   The channel context
      * @param r     The server router.
      */
-    @ServerHandler(type = CorfuMsgType.PING, opTimer = metricsPrefix + "ping")
+    @ServerHandler(type = CorfuMsgType.PING, opTimer = metricsPrefix + "ping",
+            execution = HandlerExecution.INLINE)
     private static void ping(CorfuMsg msg, ChannelHandlerContext ctx,
                              IServerRouter r, boolean isMetricsEnabled) {
         r.sendResponse(ctx, msg, CorfuMsgType.PONG.msg());
@@ -52,7 +53,8 @@ public class BaseServer extends AbstractServer {
      * @param ctx   The channel context
      * @param r     The server router.
      */
-    @ServerHandler(type = CorfuMsgType.VERSION_REQUEST, opTimer = metricsPrefix + "version-request")
+    @ServerHandler(type = CorfuMsgType.VERSION_REQUEST, opTimer = metricsPrefix + "version-request",
+            execution = HandlerExecution.INLINE)
     private void getVersion(CorfuMsg msg, ChannelHandlerContext ctx,
                             IServerRouter r, boolean isMetricsEnabled) {
         VersionInfo vi = new VersionInfo(optionsMap);
@@ -67,7 +69,7 @@ public class BaseServer extends AbstractServer {
      * @param ctx   The channel context
      * @param r     The server router.
      */
-    @ServerHandler(type = CorfuMsgType.RESET)
+    @ServerHandler(type = CorfuMsgType.RESET, execution = HandlerExecution.MANAGEMENT)
     private static void doReset(CorfuMsg msg, ChannelHandlerContext ctx,
                                 IServerRouter r, boolean isMetricsEnabled) {
         log.warn("Remote reset requested from client " + msg.getClientID());
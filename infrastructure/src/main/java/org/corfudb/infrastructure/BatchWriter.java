@@ -4,8 +4,10 @@ import com.github.benmanes.caffeine.cache.CacheWriter;
 import com.github.benmanes.caffeine.cache.RemovalCause;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
@@ -66,6 +68,27 @@ public class BatchWriter<K, V> implements CacheWriter<K, V>, AutoCloseable {
         }
     }
 
+    /**
+     * Write several entries, each at its global address, as a unit: they are appended in
+     * order, and synced once, with the writes queued before and after them.
+     *
+     * @param entries  the entries to write
+     * @return the exception of each entry which failed, by address
+     */
+    public Map<Long, Exception> writeAll(@Nonnull List<LogData> entries) {
+        BatchWriterOperation op = new BatchWriterOperation(
+                BatchWriterOperation.Type.MULTIPLE_WRITE, null, null, new CompletableFuture());
+        op.setEntries(entries);
+        op.setEntryExceptions(new HashMap<>());
+        try {
+            operationsQueue.add(op);
+            op.getFuture().get();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        return op.getEntryExceptions();
+    }
+
     /**
      * Trim an address from the log.
      *
@@ -124,7 +147,7 @@ public class BatchWriter<K, V> implements CacheWriter<K, V>, AutoCloseable {
                 } else {
                     currOp = operationsQueue.poll();
 
-                    if (currOp == null || processed == BATCH_SIZE
+                    if (currOp == null || processed >= BATCH_SIZE
                             || currOp == BatchWriterOperation.SHUTDOWN) {
                         streamLog.sync(true);
                         log.trace("Sync'd {} writes", processed);
@@ -172,6 +195,17 @@ public class BatchWriter<K, V> implements CacheWriter<K, V>, AutoCloseable {
                         currOp.setException(e);
                         res.add(currOp);
                     }
+                } else if (currOp.getType() == BatchWriterOperation.Type.MULTIPLE_WRITE) {
+                    for (LogData entry : currOp.getEntries()) {
+                        try {
+                            streamLog.append(entry.getGlobalAddress(), entry);
+                        } catch (Exception e) {
+                            currOp.getEntryExceptions().put(entry.getGlobalAddress(), e);
+                        }
+                    }
+                    res.add(currOp);
+                    // The entries count against the batch, as single writes do.
+                    processed += currOp.getEntries().size() - 1;
                 } else {
                     log.warn("Unknown BatchWriterOperation {}", currOp);
                 }
@@ -1,5 +1,7 @@
 package org.corfudb.infrastructure;
 
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 import lombok.Data;
@@ -15,6 +17,7 @@ public class BatchWriterOperation {
     public enum Type {
         SHUTDOWN,
         WRITE,
+        MULTIPLE_WRITE,
         TRIM,
         PREFIX_TRIM
     }
@@ -25,6 +28,13 @@ public class BatchWriterOperation {
     private final CompletableFuture future;
     private Exception exception;
 
+    /**
+     * The entries of a {@link Type#MULTIPLE_WRITE}, and the exception of each entry which
+     * failed, by address.
+     */
+    private List<LogData> entries;
+    private Map<Long, Exception> entryExceptions;
+
     public static BatchWriterOperation SHUTDOWN = new BatchWriterOperation(Type.SHUTDOWN,
             null, null, null);
 }
\ No newline at end of file
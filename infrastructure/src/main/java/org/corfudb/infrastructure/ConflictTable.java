@@ -0,0 +1,429 @@
+package org.corfudb.infrastructure;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import lombok.Getter;
+
+import org.corfudb.runtime.view.Address;
+
+/**
+ * A table of the last global address at which each (stream, conflict parameter) pair was
+ * written, used by the sequencer for transaction conflict resolution.
+ *
+ * <p>Entries are keyed by 128 bits: a 64-bit fold of the stream ID and the 64-bit hash of the
+ * conflict parameter. They live in flat primitive arrays with linear probing, so lookups and
+ * updates do not allocate, except when an update opens a new address bucket. A collision
+ * between two keys can only make the sequencer see a newer address than the real one, which
+ * may cause a false abort but never a missed conflict.
+ *
+ * <p>Entries are also indexed by address: every entry is linked into the bucket of
+ * {@link #BUCKET_SPAN} consecutive addresses its address falls in. The buckets are ordered,
+ * so removing the entries below a trim mark, or evicting the oldest entry, only visits the
+ * entries that are removed.
+ *
+ * <p>The table has a fixed capacity derived from a memory budget. Once it is full, inserting
+ * a new key evicts an entry of the oldest bucket, and the evicted address is reported to an
+ * {@link EvictionListener} so the caller can raise its conflict wildcard.
+ *
+ * <p>This class is not thread-safe.
+ */
+public class ConflictTable {
+
+    /**
+     * The memory used per slot: the two halves of the key, the address, and the links of the
+     * bucket list.
+     */
+    public static final int BYTES_PER_SLOT = 3 * Long.BYTES + 2 * Integer.BYTES;
+
+    /**
+     * log2 of {@link #BUCKET_SPAN}.
+     */
+    private static final int BUCKET_SHIFT = 8;
+
+    /**
+     * The number of consecutive addresses that share a bucket.
+     */
+    public static final long BUCKET_SPAN = 1L << BUCKET_SHIFT;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private static final int NONE = -1;
+
+    /**
+     * Receives the entries evicted to make room for new ones.
+     */
+    @FunctionalInterface
+    public interface EvictionListener {
+        void onEviction(long streamKey, long conflictHash, long address);
+    }
+
+    /**
+     * The entries of a range of addresses, as a doubly linked list of slots.
+     */
+    private static final class Bucket {
+        int head = NONE;
+        int size;
+    }
+
+    private final long[] streamKeys;
+    private final long[] conflictHashes;
+    private final long[] addresses;
+    private final int[] nextInBucket;
+    private final int[] prevInBucket;
+    private final int mask;
+
+    /**
+     * The buckets which hold at least one entry, by address / {@link #BUCKET_SPAN}.
+     */
+    private final TreeMap<Long, Bucket> buckets = new TreeMap<>();
+
+    /**
+     * The last bucket looked up, which most updates go to.
+     */
+    private long cachedBucketKey = EMPTY;
+    private Bucket cachedBucket;
+
+    /**
+     * The maximum number of entries, which keeps the load factor at 3/4.
+     */
+    @Getter
+    private final int maxSize;
+
+    @Getter
+    private int size;
+
+    private final EvictionListener evictionListener;
+
+    /**
+     * Returns a new ConflictTable.
+     *
+     * @param memoryBudget     the maximum number of bytes used by the table
+     * @param evictionListener notified of every entry evicted to make room
+     */
+    public ConflictTable(long memoryBudget, EvictionListener evictionListener) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < (1 << 30) && (long) capacity * 2 * BYTES_PER_SLOT <= memoryBudget) {
+            capacity *= 2;
+        }
+        this.streamKeys = new long[capacity];
+        this.conflictHashes = new long[capacity];
+        this.addresses = new long[capacity];
+        this.nextInBucket = new int[capacity];
+        this.prevInBucket = new int[capacity];
+        Arrays.fill(addresses, EMPTY);
+        this.mask = capacity - 1;
+        this.maxSize = capacity / 4 * 3;
+        this.evictionListener = evictionListener;
+    }
+
+    /**
+     * Get the memory budget of a table which holds at least a number of entries.
+     *
+     * @param maxSize the number of entries
+     * @return the memory budget, in bytes
+     */
+    public static long getMemoryBudget(long maxSize) {
+        long capacity = MIN_CAPACITY;
+        while (capacity < (1 << 30) && capacity / 4 * 3 < maxSize) {
+            capacity *= 2;
+        }
+        return capacity * BYTES_PER_SLOT;
+    }
+
+    /**
+     * Fold a stream ID into the 64-bit stream half of a key.
+     *
+     * @param streamId the stream ID
+     * @return the stream key
+     */
+    public static long getStreamKey(UUID streamId) {
+        return mix(streamId.getMostSignificantBits()) ^ streamId.getLeastSignificantBits();
+    }
+
+    /**
+     * Get the last address at which a conflict parameter was written.
+     *
+     * @param streamKey    the stream key, see {@link #getStreamKey(UUID)}
+     * @param conflictHash the hash of the conflict parameter
+     * @return the address, or {@link Address#NOT_FOUND} if the parameter is not in the table
+     */
+    public long get(long streamKey, long conflictHash) {
+        int i = find(streamKey, conflictHash);
+        return addresses[i] == EMPTY ? Address.NOT_FOUND : addresses[i];
+    }
+
+    /**
+     * Record that a conflict parameter was written at an address.
+     *
+     * @param streamKey    the stream key, see {@link #getStreamKey(UUID)}
+     * @param conflictHash the hash of the conflict parameter
+     * @param address      the address of the write
+     */
+    public void put(long streamKey, long conflictHash, long address) {
+        int i = find(streamKey, conflictHash);
+        if (addresses[i] != EMPTY) {
+            if (address > addresses[i]) {
+                if (bucketKey(address) != bucketKey(addresses[i])) {
+                    unlink(i);
+                    addresses[i] = address;
+                    link(i);
+                } else {
+                    addresses[i] = address;
+                }
+            }
+            return;
+        }
+        if (size >= maxSize) {
+            evictOldest();
+            i = find(streamKey, conflictHash);
+        }
+        streamKeys[i] = streamKey;
+        conflictHashes[i] = conflictHash;
+        addresses[i] = address;
+        link(i);
+        size++;
+    }
+
+    /**
+     * Remove the entries written before an address, visiting only the buckets that hold
+     * such entries. Removed entries are not reported to the eviction listener.
+     *
+     * @param address    the address below which entries are removed
+     * @param maxRemoved the maximum number of entries to remove in this call
+     * @return the number of entries removed, which is below maxRemoved only if no entry
+     *         below the address is left
+     */
+    public int removeBelow(long address, int maxRemoved) {
+        int removed = 0;
+        while (removed < maxRemoved) {
+            Map.Entry<Long, Bucket> oldest = buckets.firstEntry();
+            if (oldest == null || oldest.getKey() << BUCKET_SHIFT >= address) {
+                break;
+            }
+            if ((oldest.getKey() + 1) << BUCKET_SHIFT <= address) {
+                // The whole bucket is below the address.
+                removeAt(oldest.getValue().head);
+                removed++;
+            } else {
+                // The bucket straddles the address, and is the last one to visit.
+                removed += removeBelowInBucket(oldest.getValue(), address,
+                        maxRemoved - removed);
+                break;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Remove every entry written before an address.
+     *
+     * @param address the address below which entries are removed
+     * @return the number of entries removed
+     */
+    public int removeBelow(long address) {
+        return removeBelow(address, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Remove every entry.
+     */
+    public void clear() {
+        Arrays.fill(addresses, EMPTY);
+        buckets.clear();
+        cachedBucketKey = EMPTY;
+        cachedBucket = null;
+        size = 0;
+    }
+
+    /**
+     * Get a copy of every entry, to replicate the table.
+     *
+     * @return the entries, as consecutive (stream key, conflict hash, address) triples
+     */
+    public long[] toEntries() {
+        long[] entries = new long[size * 3];
+        int e = 0;
+        for (int i = 0; i < addresses.length; i++) {
+            if (addresses[i] != EMPTY) {
+                entries[e++] = streamKeys[i];
+                entries[e++] = conflictHashes[i];
+                entries[e++] = addresses[i];
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Get the memory used by the table, in bytes.
+     */
+    public long getMemoryFootprint() {
+        return (long) addresses.length * BYTES_PER_SLOT;
+    }
+
+    private int find(long streamKey, long conflictHash) {
+        int i = slot(streamKey, conflictHash);
+        while (addresses[i] != EMPTY
+                && (streamKeys[i] != streamKey || conflictHashes[i] != conflictHash)) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private int slot(long streamKey, long conflictHash) {
+        return (int) mix(streamKey ^ mix(conflictHash)) & mask;
+    }
+
+    /**
+     * Evict an entry of the oldest bucket.
+     */
+    private void evictOldest() {
+        int victim = buckets.firstEntry().getValue().head;
+        evictionListener.onEviction(streamKeys[victim], conflictHashes[victim],
+                addresses[victim]);
+        removeAt(victim);
+    }
+
+    /**
+     * Remove the entries of a bucket which are below an address. Since removals move
+     * entries between slots, the keys of the victims are collected first.
+     */
+    private int removeBelowInBucket(Bucket bucket, long address, int maxRemoved) {
+        int count = 0;
+        long[] victimStreamKeys = new long[Math.min(bucket.size, maxRemoved)];
+        long[] victimHashes = new long[victimStreamKeys.length];
+        for (int i = bucket.head; i != NONE && count < victimStreamKeys.length;
+             i = nextInBucket[i]) {
+            if (addresses[i] < address) {
+                victimStreamKeys[count] = streamKeys[i];
+                victimHashes[count] = conflictHashes[i];
+                count++;
+            }
+        }
+        for (int v = 0; v < count; v++) {
+            removeAt(find(victimStreamKeys[v], victimHashes[v]));
+        }
+        return count;
+    }
+
+    /**
+     * Remove the entry in a slot, shifting back the entries of its probe sequence so that
+     * lookups never stop early on the hole.
+     */
+    private void removeAt(int hole) {
+        unlink(hole);
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            if (addresses[i] == EMPTY) {
+                break;
+            }
+            int home = slot(streamKeys[i], conflictHashes[i]);
+            boolean homeInRange = hole <= i
+                    ? home > hole && home <= i
+                    : home > hole || home <= i;
+            if (!homeInRange) {
+                move(i, hole);
+                hole = i;
+            }
+        }
+        addresses[hole] = EMPTY;
+        size--;
+    }
+
+    /**
+     * Move the entry of a slot to an empty slot, keeping its place in its bucket.
+     */
+    private void move(int from, int to) {
+        streamKeys[to] = streamKeys[from];
+        conflictHashes[to] = conflictHashes[from];
+        addresses[to] = addresses[from];
+        nextInBucket[to] = nextInBucket[from];
+        prevInBucket[to] = prevInBucket[from];
+        if (prevInBucket[from] == NONE) {
+            bucket(bucketKey(addresses[from])).head = to;
+        } else {
+            nextInBucket[prevInBucket[from]] = to;
+        }
+        if (nextInBucket[from] != NONE) {
+            prevInBucket[nextInBucket[from]] = to;
+        }
+    }
+
+    /**
+     * Link the entry of a slot at the head of the bucket of its address, creating the
+     * bucket if needed.
+     */
+    private void link(int i) {
+        long key = bucketKey(addresses[i]);
+        Bucket bucket = bucket(key);
+        if (bucket == null) {
+            bucket = new Bucket();
+            buckets.put(key, bucket);
+            cachedBucketKey = key;
+            cachedBucket = bucket;
+        }
+        prevInBucket[i] = NONE;
+        nextInBucket[i] = bucket.head;
+        if (bucket.head != NONE) {
+            prevInBucket[bucket.head] = i;
+        }
+        bucket.head = i;
+        bucket.size++;
+    }
+
+    /**
+     * Unlink the entry of a slot from its bucket, dropping the bucket once it is empty.
+     */
+    private void unlink(int i) {
+        long key = bucketKey(addresses[i]);
+        Bucket bucket = bucket(key);
+        if (prevInBucket[i] == NONE) {
+            bucket.head = nextInBucket[i];
+        } else {
+            nextInBucket[prevInBucket[i]] = nextInBucket[i];
+        }
+        if (nextInBucket[i] != NONE) {
+            prevInBucket[nextInBucket[i]] = prevInBucket[i];
+        }
+        if (--bucket.size == 0) {
+            buckets.remove(key);
+            if (cachedBucket == bucket) {
+                cachedBucketKey = EMPTY;
+                cachedBucket = null;
+            }
+        }
+    }
+
+    private Bucket bucket(long key) {
+        if (key != cachedBucketKey) {
+            Bucket bucket = buckets.get(key);
+            if (bucket == null) {
+                return null;
+            }
+            cachedBucketKey = key;
+            cachedBucket = bucket;
+        }
+        return cachedBucket;
+    }
+
+    private static long bucketKey(long address) {
+        return address >> BUCKET_SHIFT;
+    }
+
+    /**
+     * The finalizer of MurmurHash3, which spreads the bits of a 64-bit value.
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
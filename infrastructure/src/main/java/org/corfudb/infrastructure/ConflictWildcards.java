@@ -0,0 +1,119 @@
+package org.corfudb.infrastructure;
+
+import java.util.Arrays;
+
+import org.corfudb.runtime.view.Address;
+
+/**
+ * The conflict wildcards of the sequencer: for a conflict parameter which is no longer in
+ * the {@link ConflictTable}, an upper bound of the last address at which it was written.
+ *
+ * <p>Instead of a single wildcard raised by every eviction, the wildcards are kept per
+ * stream, and per group of conflict parameters within a stream. Streams are hashed into
+ * {@link #STREAM_GROUPS} groups of {@link #KEYS_PER_STREAM} wildcards each, and the
+ * parameters of a stream are hashed into the wildcards of its group. An eviction only
+ * raises the wildcard of its own stream and parameter group, so eviction pressure on a busy
+ * stream does not abort transactions on unrelated streams. Streams or parameters which
+ * share a wildcard can only cause false aborts, never missed conflicts.
+ *
+ * <p>This class is not thread-safe.
+ */
+public class ConflictWildcards {
+
+    /**
+     * The number of groups streams are hashed into.
+     */
+    public static final int STREAM_GROUPS = 1024;
+
+    /**
+     * The number of wildcards per group, which conflict parameters are hashed into.
+     */
+    public static final int KEYS_PER_STREAM = 16;
+
+    private final long[] wildcards = new long[STREAM_GROUPS * KEYS_PER_STREAM];
+
+    /**
+     * Returns a new ConflictWildcards, with every wildcard at {@link Address#NOT_FOUND}.
+     */
+    public ConflictWildcards() {
+        reset(Address.NOT_FOUND);
+    }
+
+    /**
+     * Get the wildcard of a conflict parameter.
+     *
+     * @param streamKey    the stream key, see {@link ConflictTable#getStreamKey}
+     * @param conflictHash the hash of the conflict parameter
+     * @return the wildcard
+     */
+    public long get(long streamKey, long conflictHash) {
+        return wildcards[index(streamKey, conflictHash)];
+    }
+
+    /**
+     * Raise the wildcard of a conflict parameter which was written at an address.
+     *
+     * @param streamKey    the stream key, see {@link ConflictTable#getStreamKey}
+     * @param conflictHash the hash of the conflict parameter
+     * @param address      the address of the write
+     */
+    public void raise(long streamKey, long conflictHash, long address) {
+        int i = index(streamKey, conflictHash);
+        wildcards[i] = Math.max(wildcards[i], address);
+    }
+
+    /**
+     * Raise every wildcard of a stream, for a stream which may have been written at an
+     * address without its conflict parameters being known.
+     *
+     * @param streamKey the stream key, see {@link ConflictTable#getStreamKey}
+     * @param address   the address of the write
+     */
+    public void raiseStream(long streamKey, long address) {
+        int first = group(streamKey) * KEYS_PER_STREAM;
+        for (int i = first; i < first + KEYS_PER_STREAM; i++) {
+            wildcards[i] = Math.max(wildcards[i], address);
+        }
+    }
+
+    /**
+     * Set every wildcard to the same address.
+     *
+     * @param address the new value of the wildcards
+     */
+    public void reset(long address) {
+        Arrays.fill(wildcards, address);
+    }
+
+    /**
+     * Get a copy of the wildcards, to replicate them.
+     */
+    public long[] toArray() {
+        return wildcards.clone();
+    }
+
+    /**
+     * Replace the wildcards with a copy obtained by {@link #toArray()}.
+     *
+     * @param values the new wildcards
+     */
+    public void load(long[] values) {
+        System.arraycopy(values, 0, wildcards, 0, wildcards.length);
+    }
+
+    /**
+     * Get the highest wildcard, for logging and debugging.
+     */
+    public long getMax() {
+        return Arrays.stream(wildcards).max().getAsLong();
+    }
+
+    private static int group(long streamKey) {
+        return (int) ((streamKey >>> 32 ^ streamKey) & (STREAM_GROUPS - 1));
+    }
+
+    private static int index(long streamKey, long conflictHash) {
+        int key = (int) ((conflictHash >>> 32 ^ conflictHash) & (KEYS_PER_STREAM - 1));
+        return group(streamKey) * KEYS_PER_STREAM + key;
+    }
+}
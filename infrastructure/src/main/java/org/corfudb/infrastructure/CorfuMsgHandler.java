@@ -39,6 +39,9 @@ public class CorfuMsgHandler {
     /** The handler map. */
     private Map<CorfuMsgType, Handler> handlerMap;
 
+    /** Where the handlers are run, if not {@link HandlerExecution#DEFAULT}. */
+    private Map<CorfuMsgType, HandlerExecution> executionMap;
+
     /** Get the types this handler will handle.
      *
      * @return  A set containing the types this handler will handle.
@@ -47,9 +50,19 @@ public class CorfuMsgHandler {
         return handlerMap.keySet();
     }
 
+    /** Get where the handler of a type is run.
+     *
+     * @param messageType   The type of CorfuMsg.
+     * @return              The execution of its handler.
+     */
+    public HandlerExecution getExecution(CorfuMsgType messageType) {
+        return executionMap.getOrDefault(messageType, HandlerExecution.DEFAULT);
+    }
+
     /** Construct a new instance of CorfuMsgHandler. */
     public CorfuMsgHandler() {
         handlerMap = new ConcurrentHashMap<>();
+        executionMap = new ConcurrentHashMap<>();
     }
 
     /** Add a handler to this message handler.
@@ -62,7 +75,22 @@ public class CorfuMsgHandler {
     @SuppressWarnings("unchecked")
     public <T extends CorfuMsg> CorfuMsgHandler addHandler(CorfuMsgType messageType,
                                                            Handler<T> handler) {
+        return addHandler(messageType, HandlerExecution.DEFAULT, handler);
+    }
+
+    /** Add a handler to this message handler, to be run in a particular way.
+     *
+     * @param messageType       The type of CorfuMsg this handler will handle.
+     * @param execution         Where the handler is run.
+     * @param handler           The handler itself.
+     * @param <T>               A CorfuMsg type.
+     * @return                  This handler, to support chaining.
+     */
+    public <T extends CorfuMsg> CorfuMsgHandler addHandler(CorfuMsgType messageType,
+                                                           HandlerExecution execution,
+                                                           Handler<T> handler) {
         handlerMap.put(messageType, handler);
+        executionMap.put(messageType, execution);
         return this;
     }
 
@@ -149,6 +177,7 @@ public class CorfuMsgHandler {
                         }
                         // Now create the lambda that wraps the lambda-like-thing that's
                         // stored in 'h' and insert it into the handlerMap.
+                        executionMap.put(a.type(), a.execution());
                         handlerMap.put(a.type(),
                                 (CorfuMsg msg, ChannelHandlerContext ctx, IServerRouter r,
                                  boolean isMetricsEnabled) -> {
@@ -11,9 +11,7 @@ import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.handler.codec.LengthFieldPrepender;
 import io.netty.handler.ssl.SslContext;
@@ -37,11 +35,15 @@ import javax.net.ssl.SSLEngine;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+import org.corfudb.protocols.wireprotocol.LayoutCodec;
 import org.corfudb.protocols.wireprotocol.NettyCorfuMessageDecoder;
 import org.corfudb.protocols.wireprotocol.NettyCorfuMessageEncoder;
+import org.corfudb.protocols.wireprotocol.ProtocolSession;
 import org.corfudb.security.sasl.plaintext.PlainTextSaslNettyServer;
 import org.corfudb.security.tls.TlsUtils;
+import org.corfudb.util.FlushCoalescingHandler;
 import org.corfudb.util.GitRepositoryState;
+import org.corfudb.util.NettyTransport;
 import org.corfudb.util.Version;
 import org.docopt.Docopt;
 import org.fusesource.jansi.AnsiConsole;
@@ -82,7 +84,12 @@ public class CorfuServer {
                     + "<ratio>] [-d <level>] [-p <seconds>] [-M <address>:<port>] [-e [-u "
                     + "<keystore> -f <keystore_password_file>] [-r <truststore> -w "
                     + "<truststore_password_file>] [-b] [-g -o <username_file> -j <password_file>] "
-                    + "[-k <seqcache>]"
+                    + "[-k <seqcache>] [--sequencer-cache-bytes=<bytes>] "
+                    + "[--sequencer-standby-interval=<interval>] "
+                    + "[--sequencer-lease-size=<size>] [--sequencer-lease-term=<term>] "
+                    + "[--transport=<transport>] [--tcp-quickack] [--busy-poll=<micros>] "
+                    + "[--queue-limit=<count>] [--layout-wire-format=<format>] "
+                    + "[--wire-protocol=<version>] "
                     + "[-x <ciphers>] [-z <tls-protocols>]] <port>\n"
                     + "\n"
                     + "Options:\n"
@@ -116,6 +123,58 @@ public class CorfuServer {
                     + "                                                                          "
                     + " -k <seqcache>, --sequencer-cache-size=<seqcache>                         "
                     + "               The size of the sequencer's cache. [default: 250000].\n    "
+                    + " --sequencer-cache-bytes=<bytes>                                          "
+                    + "               The memory budget in bytes of the sequencer's cache,\n"
+                    + "                                                                          "
+                    + "               which overrides its size if given.\n    "
+                    + " --sequencer-standby-interval=<interval>                                  "
+                    + "               The interval in milliseconds at which a primary sequencer\n"
+                    + "                                                                          "
+                    + "               sends its updates to the standby sequencer, which is the\n"
+                    + "                                                                          "
+                    + "               second sequencer of the layout. 0 disables the standby.\n"
+                    + "                                                                          "
+                    + "               [default: 0].\n"
+                    + " --sequencer-lease-size=<size>                                            "
+                    + "               The number of addresses a partition of the sequencer\n"
+                    + "                                                                          "
+                    + "               leases from the first partition at once. [default: 4096].\n"
+                    + " --sequencer-lease-term=<term>                                            "
+                    + "               The term in milliseconds of the addresses leased by a\n"
+                    + "                                                                          "
+                    + "               partition of the sequencer. [default: 100].\n"
+                    + " --transport=<transport>                                                  "
+                    + "               The Netty transport of the server: nio, epoll, or auto to\n"
+                    + "                                                                          "
+                    + "               use epoll where it is available. epoll falls back to nio\n"
+                    + "                                                                          "
+                    + "               where it is not. [default: nio].\n"
+                    + " --tcp-quickack                                                           "
+                    + "               Send TCP acknowledgements immediately, with epoll.\n"
+                    + " --busy-poll=<micros>                                                     "
+                    + "               How long to busy poll the sockets for data in microseconds,\n"
+                    + "                                                                          "
+                    + "               with epoll, or 0 not to. [default: 0].\n"
+                    + " --queue-limit=<count>                                                    "
+                    + "               The number of requests the server admits to each of its\n"
+                    + "                                                                          "
+                    + "               shared and storage pools before it answers that it is\n"
+                    + "                                                                          "
+                    + "               busy, or 0 for no limit. [default: 4096].\n"
+                    + " --layout-wire-format=<format>                                            "
+                    + "               The encoding of the layouts the server sends: negotiated,\n"
+                    + "                                                                          "
+                    + "               binary to the peers which advertise that they decode it\n"
+                    + "                                                                          "
+                    + "               and json to the others, or json. Both are decoded.\n"
+                    + "                                                                          "
+                    + "               [default: negotiated].\n"
+                    + " --wire-protocol=<version>                                                "
+                    + "               The highest version of the message protocol the server\n"
+                    + "                                                                          "
+                    + "               advertises and sends: 1, or 2 for compact headers on the\n"
+                    + "                                                                          "
+                    + "               connections of the clients which use them. [default: 2].\n"
                     + " -p <seconds>, --compact=<seconds>                                        "
                     + "              The rate the log unit should compact entries (find the,\n"
                     + "                                                                          "
@@ -251,6 +310,10 @@ public class CorfuServer {
 
         log.debug("Started with arguments: " + opts);
 
+        LayoutCodec.setWireFormat(LayoutCodec.WireFormat
+                .fromString((String) opts.get("--layout-wire-format")));
+        ProtocolSession.setMaxVersion(Integer.parseInt((String) opts.get("--wire-protocol")));
+
         // Create the service directory if it does not exist.
         if (!(Boolean) opts.get("--memory")) {
             File serviceDir = new File((String) opts.get("--log-path"));
@@ -330,12 +393,19 @@ public class CorfuServer {
 
         Boolean saslPlainTextAuth = (Boolean) opts.get("--enable-sasl-plain-text-auth");
 
+        // Select the transport, and its socket options.
+        NettyTransport transport =
+                NettyTransport.fromString((String) opts.get("--transport")).resolve();
+        boolean tcpQuickAck = (Boolean) opts.get("--tcp-quickack");
+        int busyPollMicros = Integer.parseInt((String) opts.get("--busy-poll"));
+        log.info("Using the {} transport", transport);
+
         // Create the event loops responsible for servicing inbound messages.
         EventLoopGroup bossGroup;
         EventLoopGroup workerGroup;
         EventExecutorGroup ee;
 
-        bossGroup = new NioEventLoopGroup(1, new ThreadFactory() {
+        bossGroup = transport.newEventLoopGroup(1, new ThreadFactory() {
             final AtomicInteger threadNum = new AtomicInteger(0);
 
             @Override
@@ -346,8 +416,8 @@ public class CorfuServer {
             }
         });
 
-        workerGroup = new NioEventLoopGroup(Runtime.getRuntime().availableProcessors() * 2, new
-                ThreadFactory() {
+        workerGroup = transport.newEventLoopGroup(Runtime.getRuntime().availableProcessors() * 2,
+                new ThreadFactory() {
                     final AtomicInteger threadNum = new AtomicInteger(0);
 
                     @Override
@@ -381,7 +451,7 @@ public class CorfuServer {
         try {
             ServerBootstrap b = new ServerBootstrap();
             b.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
+                    .channel(transport.getServerChannelClass())
                     .option(ChannelOption.SO_BACKLOG, 100)
                     .childOption(ChannelOption.SO_KEEPALIVE, true)
                     .childOption(ChannelOption.SO_REUSEADDR, true)
@@ -403,6 +473,7 @@ public class CorfuServer {
                             ch.pipeline().addLast(new LengthFieldPrepender(4));
                             ch.pipeline().addLast(new LengthFieldBasedFrameDecoder(Integer
                                     .MAX_VALUE, 0, 4, 0, 4));
+                            ch.pipeline().addLast(new FlushCoalescingHandler());
                             if (saslPlainTextAuth) {
                                 ch.pipeline().addLast("sasl/plain-text", new
                                         PlainTextSaslNettyServer());
@@ -412,6 +483,7 @@ public class CorfuServer {
                             ch.pipeline().addLast(ee, router);
                         }
                     });
+            transport.setServerOptions(b, tcpQuickAck, busyPollMicros);
             ChannelFuture f = b.bind(port).sync();
             while (true) {
                 try {
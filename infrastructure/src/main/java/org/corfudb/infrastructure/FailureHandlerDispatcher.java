@@ -1,14 +1,24 @@
 package org.corfudb.infrastructure;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import lombok.extern.slf4j.Slf4j;
 
-import org.corfudb.recovery.FastObjectLoader;
+import org.corfudb.protocols.wireprotocol.StreamTailsResponse;
 import org.corfudb.runtime.CorfuRuntime;
+import org.corfudb.runtime.clients.BaseClient;
 import org.corfudb.runtime.clients.LogUnitClient;
 import org.corfudb.runtime.exceptions.OutrankedException;
 import org.corfudb.runtime.exceptions.QuorumUnreachableException;
@@ -29,6 +39,21 @@ public class FailureHandlerDispatcher {
      */
     private volatile long prepareRank = 1;
 
+    /**
+     * The rebuilds of healed log units, by endpoint. A healed log unit is kept unresponsive in
+     * the layout until its rebuild completes.
+     */
+    private final Map<String, CompletableFuture<Void>> rebuilds = new ConcurrentHashMap<>();
+
+    /**
+     * Runs the rebuilds of healed log units, off the failure handling path.
+     */
+    private final ExecutorService rebuildService = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("LogUnitRebuild-%d")
+                    .build());
+
     /**
      * Recover cluster from layout.
      *
@@ -86,6 +111,8 @@ public class FailureHandlerDispatcher {
      * It first generates a new layout by removing the failed nodes from the existing layout.
      * It then seals the epoch to prevent any client from accessing the stale layout.
      * Finally we run paxos to update all servers with the new layout.
+     * A log unit which has healed is kept unresponsive, and is rebuilt in the background,
+     * until its rebuild has completed.
      *
      * @param currentLayout The current layout
      * @param corfuRuntime  Connected corfu runtime instance
@@ -96,9 +123,20 @@ public class FailureHandlerDispatcher {
 
         try {
 
+            // Healed log units stay unresponsive until they are rebuilt.
+            Set<String> rebuilding = rebuildHealedLogUnits(corfuRuntime, currentLayout,
+                    failedServers);
+            Set<String> unresponsiveServers = new HashSet<>(failedServers);
+            unresponsiveServers.addAll(rebuilding);
+            if (!rebuilding.isEmpty() && unresponsiveServers.equals(
+                    new HashSet<>(currentLayout.getUnresponsiveServers()))) {
+                log.debug("dispatchHandler: Log units {} are still being rebuilt", rebuilding);
+                return;
+            }
+
             // Generates a new layout by removing the failed nodes from the existing layout
             Layout newLayout = failureHandlerPolicy.generateLayout(currentLayout, corfuRuntime,
-                    failedServers);
+                    unresponsiveServers);
 
             // Seals and increments the epoch.
             currentLayout.setRuntime(corfuRuntime);
@@ -135,6 +173,13 @@ public class FailureHandlerDispatcher {
         }
     }
 
+    /**
+     * Stops the rebuilds of healed log units.
+     */
+    public void shutdown() {
+        rebuildService.shutdownNow();
+    }
+
     /**
      * Seals the epoch.
      * Set local epoch and then attempt to move all servers to new epoch
@@ -160,15 +205,99 @@ public class FailureHandlerDispatcher {
 
         // Reconfigure the primary Sequencer Server if changed.
         reconfigureSequencerServers(runtime, originalLayout, newLayout, forceReconfigure);
+    }
 
-        // TODO: Reconfigure log units if new log unit added.
+    /**
+     * Rebuilds the log units which are marked unresponsive in the layout but are no longer
+     * failed, by transferring the state of a responsive log unit of the same stripe. Each
+     * healed log unit is rebuilt once, in the background, and is reported as rebuilding until
+     * its rebuild has completed. A rebuild which failed is started again.
+     *
+     * <p>A log unit which was down when the layout was sealed comes back at an older epoch,
+     * and would refuse the transfer as coming from a newer one, so it is first sealed to the
+     * epoch of the layout.
+     *
+     * @param runtime       Runtime to rebuild the log units with.
+     * @param layout        Current layout.
+     * @param failedServers Servers which are failed.
+     * @return The healed log units which are still being rebuilt.
+     */
+    private Set<String> rebuildHealedLogUnits(CorfuRuntime runtime, Layout layout,
+                                              Set<String> failedServers) {
+        Set<String> rebuilding = new HashSet<>();
+        for (String healedServer : layout.getUnresponsiveServers()) {
+            if (failedServers.contains(healedServer) || layout.getSegments().stream()
+                    .flatMap(segment -> segment.getStripes().stream())
+                    .noneMatch(stripe -> stripe.getLogServers().contains(healedServer))) {
+                continue;
+            }
+            CompletableFuture<Void> rebuild = rebuilds.get(healedServer);
+            if (rebuild != null && rebuild.isDone()) {
+                rebuilds.remove(healedServer);
+                if (!rebuild.isCompletedExceptionally()) {
+                    // Rebuilt, the log unit can be marked responsive.
+                    continue;
+                }
+                rebuild = null;
+            }
+            if (rebuild == null) {
+                Optional<String> source = getRebuildSource(layout, healedServer, failedServers);
+                if (!source.isPresent()) {
+                    // Not replicated, or no replica left: it holds the only copy.
+                    log.warn("rebuildHealedLogUnits: No responsive log unit to rebuild {} from",
+                            healedServer);
+                    continue;
+                }
+                log.info("rebuildHealedLogUnits: Rebuilding log unit {} from {}", healedServer,
+                        source.get());
+                final long epoch = layout.getEpoch();
+                rebuilds.put(healedServer, CompletableFuture.runAsync(() -> {
+                    try {
+                        runtime.getRouter(healedServer).getClient(BaseClient.class)
+                                .setRemoteEpoch(epoch).get();
+                        new SegmentStateTransfer(runtime, source.get(), healedServer)
+                                .transfer();
+                        log.info("rebuildHealedLogUnits: Rebuilt log unit {}", healedServer);
+                    } catch (Exception e) {
+                        log.error("rebuildHealedLogUnits: Error rebuilding log unit {} : {}",
+                                healedServer, e);
+                        throw new RecoveryException("Failed to rebuild " + healedServer);
+                    }
+                }, rebuildService));
+            }
+            rebuilding.add(healedServer);
+        }
+        return rebuilding;
+    }
+
+    /**
+     * Get the log unit to rebuild a healed log unit from: a responsive replica of the stripe
+     * of the healed log unit in the latest segment. The whole log of the source is transferred,
+     * so a single source is used for all the segments.
+     */
+    private Optional<String> getRebuildSource(Layout layout, String healedServer,
+                                              Set<String> failedServers) {
+        for (int i = layout.getSegments().size() - 1; i >= 0; i--) {
+            for (Layout.LayoutStripe stripe : layout.getSegments().get(i).getStripes()) {
+                if (!stripe.getLogServers().contains(healedServer)) {
+                    continue;
+                }
+                return stripe.getLogServers().stream()
+                        .filter(s -> !s.equals(healedServer)
+                                && !failedServers.contains(s)
+                                && !layout.getUnresponsiveServers().contains(s))
+                        .findFirst();
+            }
+        }
+        return Optional.empty();
     }
 
     /**
      * Reconfigures the sequencer.
-     * If the primary sequencer has changed in the new layout,
-     * the global tail of the log units are queried and used to set
-     * the initial token of the new primary sequencer.
+     * If the primary sequencer, or the sequencer of a partition, has changed in the new layout,
+     * the global tail and the stream tails maintained by the log units are queried, merged,
+     * and used to bootstrap the new sequencers. This takes time proportional to the
+     * number of streams rather than to the length of the log.
      *
      * @param runtime          Runtime to reconfigure new servers.
      * @param originalLayout   Current layout to get the latest state of servers.
@@ -179,45 +308,38 @@ public class FailureHandlerDispatcher {
             newLayout, boolean forceReconfigure)
             throws ExecutionException {
 
-        // Reconfigure Primary Sequencer if required
+        // Reconfigure Primary Sequencer, or the sequencers of the partitions, if required
         if (forceReconfigure
-                || !originalLayout.getSequencers().get(0).equals(newLayout.getSequencers()
-                .get(0))) {
+                || !originalLayout.getSequencerPartitionEndpoints().equals(
+                newLayout.getSequencerPartitionEndpoints())) {
             long maxTokenRequested = 0;
+            Map<UUID, Long> streamTails = new HashMap<>();
             for (Layout.LayoutSegment segment : originalLayout.getSegments()) {
-                // Query the tail of every log unit in every stripe.
+                // Query the tails of every log unit in every stripe.
                 for (Layout.LayoutStripe stripe : segment.getStripes()) {
                     for (String logServer : stripe.getLogServers()) {
                         try {
-                            long tail = runtime.getRouter(logServer).getClient(LogUnitClient
-                                    .class).getTail().get();
-                            if (tail != 0) {
-                                maxTokenRequested = maxTokenRequested > tail ? maxTokenRequested
-                                        : tail;
+                            StreamTailsResponse tails = runtime.getRouter(logServer)
+                                    .getClient(LogUnitClient.class).getLogTails().get();
+                            if (tails.getGlobalTail() != 0) {
+                                maxTokenRequested = Math.max(maxTokenRequested,
+                                        tails.getGlobalTail());
                             }
+                            tails.getStreamTails().forEach((streamId, tail) ->
+                                    streamTails.merge(streamId, tail, Math::max));
                         } catch (Exception e) {
-                            log.error("Exception while fetching log unit tail : {}", e);
+                            log.error("Exception while fetching log unit tails : {}", e);
                         }
                     }
                 }
             }
 
             try {
-
-                FastObjectLoader fastObjectLoader = new FastObjectLoader(runtime);
-                fastObjectLoader.setRecoverSequencerMode(true);
-                fastObjectLoader.setLoadInCache(false);
-
-                // FastSMRLoader sets the logHead based on trim mark.
-                fastObjectLoader.setLogTail(maxTokenRequested);
-                fastObjectLoader.loadMaps();
-                Map<UUID, Long> streamTails = fastObjectLoader.getStreamTails();
                 verifyStreamTailsMap(streamTails);
 
                 // Configuring the new sequencer.
-                boolean sequencerBootstrapResult = newLayout.getSequencer(0)
-                        .bootstrap(maxTokenRequested + 1, streamTails,
-                                newLayout.getEpoch()).get();
+                boolean sequencerBootstrapResult = newLayout
+                        .bootstrapSequencers(maxTokenRequested + 1, streamTails).get();
                 if (sequencerBootstrapResult) {
                     log.info("Sequencer bootstrap successful.");
                 } else {
@@ -0,0 +1,24 @@
+package org.corfudb.infrastructure;
+
+/**
+ * Where the {@link NettyServerRouter} runs the handler of a message type, so that cheap
+ * requests never queue behind blocking ones.
+ */
+public enum HandlerExecution {
+    /**
+     * On the thread which read the message, for handlers which neither block nor take long.
+     */
+    INLINE,
+    /**
+     * On the shared pool of the router.
+     */
+    DEFAULT,
+    /**
+     * On a bounded pool dedicated to handlers which wait on the log.
+     */
+    STORAGE,
+    /**
+     * On a pool dedicated to the handlers of the layout and of the management of the cluster.
+     */
+    MANAGEMENT
+}
@@ -58,8 +58,6 @@ import org.corfudb.runtime.view.Layout.LayoutSegment;
 @Slf4j
 public class LayoutServer extends AbstractServer {
 
-    private static final String PREFIX_LAYOUT = "LAYOUT";
-    private static final String KEY_LAYOUT = "CURRENT";
     private static final String PREFIX_PHASE_1 = "PHASE_1";
     private static final String KEY_SUFFIX_PHASE_1 = "RANK";
     private static final String PREFIX_PHASE_2 = "PHASE_2";
@@ -136,7 +134,8 @@ public class LayoutServer extends AbstractServer {
      * @param r                server router
      * @param isMetricsEnabled True if metrics are enabled, False otherwise
      */
-    @ServerHandler(type = CorfuMsgType.LAYOUT_REQUEST, opTimer = metricsPrefix + "request")
+    @ServerHandler(type = CorfuMsgType.LAYOUT_REQUEST, opTimer = metricsPrefix + "request",
+            execution = HandlerExecution.MANAGEMENT)
     public synchronized void handleMessageLayoutRequest(CorfuPayloadMsg<Long> msg,
                                                         ChannelHandlerContext ctx, IServerRouter r,
                                                         boolean isMetricsEnabled) {
@@ -165,7 +164,8 @@ public class LayoutServer extends AbstractServer {
      * @param ctx netty ChannelHandlerContext
      * @param r   server router
      */
-    @ServerHandler(type = CorfuMsgType.LAYOUT_BOOTSTRAP, opTimer = metricsPrefix + "bootstrap")
+    @ServerHandler(type = CorfuMsgType.LAYOUT_BOOTSTRAP, opTimer = metricsPrefix + "bootstrap",
+            execution = HandlerExecution.MANAGEMENT)
     public synchronized void handleMessageLayoutBootstrap(CorfuPayloadMsg<LayoutBootstrapRequest>
                                                                       msg, ChannelHandlerContext
             ctx, IServerRouter r,
@@ -191,7 +191,8 @@ public class LayoutServer extends AbstractServer {
      * @param ctx The channel context
      * @param r   The server router.
      */
-    @ServerHandler(type = CorfuMsgType.SET_EPOCH, opTimer = metricsPrefix + "set-epoch")
+    @ServerHandler(type = CorfuMsgType.SET_EPOCH, opTimer = metricsPrefix + "set-epoch",
+            execution = HandlerExecution.MANAGEMENT)
     public synchronized void handleMessageSetEpoch(CorfuPayloadMsg<Long> msg,
                                                    ChannelHandlerContext ctx, IServerRouter r,
                                                    boolean isMetricsEnabled) {
@@ -219,7 +220,8 @@ public class LayoutServer extends AbstractServer {
      */
     // TODO this can work under a separate lock for this step as it does not change the global
     // components
-    @ServerHandler(type = CorfuMsgType.LAYOUT_PREPARE, opTimer = metricsPrefix + "prepare")
+    @ServerHandler(type = CorfuMsgType.LAYOUT_PREPARE, opTimer = metricsPrefix + "prepare",
+            execution = HandlerExecution.MANAGEMENT)
     public synchronized void handleMessageLayoutPrepare(CorfuPayloadMsg<LayoutPrepareRequest>
                                                                     msg, ChannelHandlerContext
             ctx, IServerRouter r,
@@ -263,7 +265,8 @@ public class LayoutServer extends AbstractServer {
      * @param ctx netty ChannelHandlerContext
      * @param r   server router
      */
-    @ServerHandler(type = CorfuMsgType.LAYOUT_PROPOSE, opTimer = metricsPrefix + "propose")
+    @ServerHandler(type = CorfuMsgType.LAYOUT_PROPOSE, opTimer = metricsPrefix + "propose",
+            execution = HandlerExecution.MANAGEMENT)
     public synchronized void handleMessageLayoutPropose(CorfuPayloadMsg<LayoutProposeRequest>
                                                                     msg, ChannelHandlerContext
             ctx, IServerRouter r,
@@ -329,7 +332,8 @@ public class LayoutServer extends AbstractServer {
     // TODO How do we handle holes in history if let in layout commit message. Maybe we have a
     // hole filling process
     // TODO how do reject the older epoch commits, should it be an explicit NACK.
-    @ServerHandler(type = CorfuMsgType.LAYOUT_COMMITTED, opTimer = metricsPrefix + "committed")
+    @ServerHandler(type = CorfuMsgType.LAYOUT_COMMITTED, opTimer = metricsPrefix + "committed",
+            execution = HandlerExecution.MANAGEMENT)
     public synchronized void handleMessageLayoutCommit(CorfuPayloadMsg<LayoutCommittedRequest>
                                                                    msg, ChannelHandlerContext
             ctx, IServerRouter r,
@@ -371,7 +375,7 @@ public class LayoutServer extends AbstractServer {
 
 
     public Layout getCurrentLayout() {
-        return serverContext.getDataStore().get(Layout.class, PREFIX_LAYOUT, KEY_LAYOUT);
+        return serverContext.getCurrentLayout();
     }
 
     /**
@@ -379,7 +383,7 @@ public class LayoutServer extends AbstractServer {
      * @param layout layout to set
      */
     public void setCurrentLayout(Layout layout) {
-        serverContext.getDataStore().put(Layout.class, PREFIX_LAYOUT, KEY_LAYOUT, layout);
+        serverContext.setCurrentLayout(layout);
         // set the layout in history as well
         setLayoutInHistory(layout);
     }
@@ -254,12 +254,16 @@ public class LayoutWorkflowManager {
      * @return new layout
      */
     public Layout build() {
-        return new Layout(
+        Layout newLayout = new Layout(
                 layout.getLayoutServers(),
                 layout.getSequencers(),
                 layout.getSegments(),
                 layout.getUnresponsiveServers(),
                 this.epoch);
+        // Removing sequencers may leave fewer sequencers than partitions.
+        newLayout.setSequencerPartitions(Math.min(layout.getSequencerPartitions(),
+                layout.getSequencers().size()));
+        return newLayout;
     }
 
 }
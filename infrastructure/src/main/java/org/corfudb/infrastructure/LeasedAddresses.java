@@ -0,0 +1,171 @@
+package org.corfudb.infrastructure;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.corfudb.protocols.wireprotocol.AddressLease;
+
+/**
+ * The block of global addresses from which the sequencer of a partition, other than the
+ * first, hands out addresses. See {@link AddressLeases}.
+ *
+ * <p>The block is replaced when it is used up, when its term is over, or when a stream of a
+ * request has a tail beyond the next address of the block, which happens once the stream was
+ * written by a request spanning several partitions. The addresses left in the previous block
+ * are given up, and are never written.
+ *
+ * <p>Allocations never wait for the first partition: the next block is leased in the
+ * background once half of the current block is used or half of its term is over, and the
+ * current block is replaced by that one. If no valid block is at hand, the allocation fails
+ * with {@link UnavailableException}, and the request is answered with an error which the
+ * client retries.
+ */
+@Slf4j
+class LeasedAddresses {
+
+    /**
+     * Thrown when no leased block can serve an allocation. A new block is being leased.
+     */
+    static class UnavailableException extends RuntimeException {
+        UnavailableException(int partition) {
+            super("No leased addresses available on partition " + partition);
+        }
+    }
+
+    private final int partition;
+
+    /**
+     * Leases a block of at least the given number of addresses from the first partition.
+     */
+    private final LongFunction<CompletableFuture<AddressLease>> leaser;
+
+    /**
+     * The number of addresses leased at once.
+     */
+    private final long leaseSize;
+
+    /**
+     * The next address to hand out, the end of the block, the time from which the next block
+     * is leased, and the time at which the lease is over. Only accessed while holding the
+     * monitor.
+     */
+    private long next = 0;
+
+    private long end = 0;
+
+    private long renewalNanos = System.nanoTime();
+
+    private long expiryNanos = System.nanoTime();
+
+    /**
+     * The block leased ahead, if any, the time it was requested, and whether a block is being
+     * leased. Only accessed while holding the monitor.
+     */
+    private AddressLease nextLease;
+
+    private long nextLeaseRequestNanos;
+
+    private boolean leasing = false;
+
+    /**
+     * Returns a new LeasedAddresses, which leases its first block on the first allocation.
+     *
+     * @param partitioning the partitioning of the sequencer
+     * @param leaseSize    the number of addresses leased at once
+     */
+    LeasedAddresses(SequencerPartitioning partitioning, long leaseSize) {
+        this(partitioning.getPartition(), numTokens -> partitioning.getClient(0)
+                .leaseAddresses(partitioning.getPartition(), numTokens), leaseSize);
+    }
+
+    /**
+     * Returns a new LeasedAddresses, which leases its first block on the first allocation.
+     *
+     * @param partition the partition of the sequencer
+     * @param leaser    leases a block of at least the given number of addresses
+     * @param leaseSize the number of addresses leased at once
+     */
+    LeasedAddresses(int partition, LongFunction<CompletableFuture<AddressLease>> leaser,
+                    long leaseSize) {
+        this.partition = partition;
+        this.leaser = leaser;
+        this.leaseSize = leaseSize;
+    }
+
+    /**
+     * Hand out consecutive addresses, from the block leased ahead if the current block cannot
+     * serve them. Never waits for a lease.
+     *
+     * @param numTokens the number of addresses
+     * @param floor     an address which the addresses handed out must be above
+     * @return the first address
+     * @throws UnavailableException if no leased block can serve the addresses
+     */
+    synchronized long allocate(long numTokens, long floor) {
+        final long now = System.nanoTime();
+        if (!canServe(next, end, expiryNanos, now, numTokens, floor)) {
+            final AddressLease lease = nextLease;
+            nextLease = null;
+            final long leaseExpiryNanos = lease == null ? now
+                    : nextLeaseRequestNanos + TimeUnit.MILLISECONDS.toNanos(lease.getTermMillis());
+            if (lease == null || !canServe(lease.getStart(),
+                    lease.getStart() + lease.getNumTokens(), leaseExpiryNanos, now, numTokens,
+                    floor)) {
+                lease(numTokens);
+                throw new UnavailableException(partition);
+            }
+            log.debug("allocate: Partition {} gives up [{}, {}), takes {}",
+                    partition, next, end, lease);
+            next = lease.getStart();
+            end = next + lease.getNumTokens();
+            expiryNanos = leaseExpiryNanos;
+            renewalNanos = nextLeaseRequestNanos
+                    + TimeUnit.MILLISECONDS.toNanos(lease.getTermMillis()) / 2;
+        }
+        final long address = next;
+        next += numTokens;
+        if (nextLease == null && (end - next < leaseSize / 2 || now - renewalNanos >= 0)) {
+            lease(leaseSize);
+        }
+        return address;
+    }
+
+    private static boolean canServe(long next, long end, long expiryNanos, long now,
+                                    long numTokens, long floor) {
+        return next + numTokens <= end && floor < next && now - expiryNanos < 0;
+    }
+
+    /**
+     * Lease the next block in the background, unless a block is being leased already.
+     *
+     * @param numTokens the minimum number of addresses of the block
+     */
+    private void lease(long numTokens) {
+        if (leasing) {
+            return;
+        }
+        leasing = true;
+        final long requestNanos = System.nanoTime();
+        try {
+            leaser.apply(Math.max(leaseSize, numTokens))
+                    .whenComplete((lease, ex) -> leased(lease, ex, requestNanos));
+        } catch (RuntimeException ex) {
+            leasing = false;
+            log.warn("lease: Partition {} failed to lease addresses", partition, ex);
+        }
+    }
+
+    private synchronized void leased(AddressLease lease, Throwable ex, long requestNanos) {
+        leasing = false;
+        if (ex != null) {
+            log.warn("lease: Partition {} failed to lease addresses", partition, ex);
+            return;
+        }
+        log.trace("lease: Partition {} leased {}", partition, lease);
+        nextLease = lease;
+        nextLeaseRequestNanos = requestNanos;
+    }
+}
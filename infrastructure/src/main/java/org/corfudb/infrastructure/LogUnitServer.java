@@ -5,12 +5,18 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.github.benmanes.caffeine.cache.RemovalCause;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.RateLimiter;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -28,8 +34,14 @@ import org.corfudb.protocols.wireprotocol.CorfuPayloadMsg;
 import org.corfudb.protocols.wireprotocol.ILogData;
 import org.corfudb.protocols.wireprotocol.LogData;
 import org.corfudb.protocols.wireprotocol.MultipleReadRequest;
+import org.corfudb.protocols.wireprotocol.MultipleWriteRequest;
+import org.corfudb.protocols.wireprotocol.MultipleWriteResponse;
 import org.corfudb.protocols.wireprotocol.ReadRequest;
 import org.corfudb.protocols.wireprotocol.ReadResponse;
+import org.corfudb.protocols.wireprotocol.SegmentChunk;
+import org.corfudb.protocols.wireprotocol.SegmentChunkRequest;
+import org.corfudb.protocols.wireprotocol.SegmentInstallRequest;
+import org.corfudb.protocols.wireprotocol.StreamTailsResponse;
 import org.corfudb.protocols.wireprotocol.TrimRequest;
 import org.corfudb.protocols.wireprotocol.WriteRequest;
 import org.corfudb.runtime.exceptions.DataCorruptionException;
@@ -68,7 +80,7 @@ public class LogUnitServer extends AbstractServer {
      */
     private final ScheduledExecutorService scheduler =
             Executors.newScheduledThreadPool(
-                    1,
+                    2,
                     new ThreadFactoryBuilder()
                             .setDaemon(true)
                             .setNameFormat("LogUnit-Maintenance-%d")
@@ -76,6 +88,41 @@ public class LogUnitServer extends AbstractServer {
 
     private ScheduledFuture<?> compactor;
 
+    private ScheduledFuture<?> hotRangePersister;
+
+    /**
+     * Tracks the most frequently read address ranges, so that the cache can be warmed after
+     * a restart. Only maintained when the log unit is persistent.
+     */
+    private final AccessFrequencySketch accessSketch;
+
+    /**
+     * The number of addresses per tracked range of the access sketch.
+     */
+    private static final int HOT_RANGE_SIZE = 256;
+
+    /**
+     * The maximum number of ranges tracked by the access sketch.
+     */
+    private static final int MAX_TRACKED_RANGES = 16_384;
+
+    /**
+     * The maximum number of hot ranges persisted, and prefetched on startup.
+     */
+    private static final int MAX_PERSISTED_RANGES = 1_024;
+
+    /**
+     * The maximum number of addresses per second read from disk while warming up the cache.
+     */
+    private static final double WARMUP_READS_PER_SECOND = 2_000.0;
+
+    /**
+     * The fraction of the cache that warm up is allowed to fill.
+     */
+    private static final double WARMUP_CACHE_RATIO = 0.5;
+
+    private volatile boolean shuttingDown = false;
+
     /**
      * The options map.
      */
@@ -127,8 +174,10 @@ public class LogUnitServer extends AbstractServer {
         batchWriter = new BatchWriter(streamLog);
 
         dataCache = Caffeine.<Long, ILogData>newBuilder()
-                .<Long, ILogData>weigher((k, v) -> ((LogData) v).getData() == null ? 1 : (
-                        (LogData) v).getData().length)
+                .<Long, ILogData>weigher((k, v) -> {
+                    ByteBuf data = ((LogData) v).getDataBuffer();
+                    return data == null ? 1 : data.readableBytes();
+                })
                 .maximumWeight(maxCacheSize)
                 .removalListener(this::handleEviction)
                 .writer(batchWriter)
@@ -139,35 +188,196 @@ public class LogUnitServer extends AbstractServer {
 
         Runnable task = () -> streamLog.compact();
         compactor = scheduler.scheduleAtFixedRate(task, 10, 45, TimeUnit.MINUTES);
+
+        if ((Boolean) opts.get("--memory")) {
+            accessSketch = null;
+        } else {
+            accessSketch = new AccessFrequencySketch(serverContext.getDataStore(),
+                    HOT_RANGE_SIZE, MAX_TRACKED_RANGES);
+            hotRangePersister = scheduler.scheduleAtFixedRate(this::persistHotRanges,
+                    1, 1, TimeUnit.MINUTES);
+            long[] hotRanges = accessSketch.loadPersistedRanges();
+            if (hotRanges.length > 0) {
+                scheduler.execute(() -> warmCache(hotRanges));
+            }
+        }
+    }
+
+    /**
+     * Persist the hottest address ranges read from this log unit.
+     */
+    private void persistHotRanges() {
+        try {
+            accessSketch.persist(MAX_PERSISTED_RANGES);
+        } catch (RuntimeException e) {
+            log.warn("persistHotRanges: failed to persist hot ranges", e);
+        }
+    }
+
+    /**
+     * Prefetch the given address ranges into the cache at a bounded rate. Warm up stops early
+     * if the server is shut down, or if the cache has been filled up to
+     * {@link #WARMUP_CACHE_RATIO} of its maximum size.
+     *
+     * @param hotRanges the starting addresses of the ranges to prefetch, hottest first
+     */
+    private void warmCache(long[] hotRanges) {
+        final RateLimiter rateLimiter = RateLimiter.create(WARMUP_READS_PER_SECOND);
+        final long maxWarmupWeight = (long) (maxCacheSize * WARMUP_CACHE_RATIO);
+        final long trimMark = streamLog.getTrimMark();
+        final long globalTail = streamLog.getGlobalTail();
+        long prefetched = 0;
+
+        log.info("warmCache: prefetching {} hot ranges", hotRanges.length);
+        try {
+            for (long rangeStart : hotRanges) {
+                long rangeEnd = Math.min(rangeStart + HOT_RANGE_SIZE - 1, globalTail);
+                for (long address = Math.max(rangeStart, trimMark); address <= rangeEnd;
+                     address++) {
+                    if (shuttingDown || dataCache.policy().eviction()
+                            .map(e -> e.weightedSize().orElse(0L) >= maxWarmupWeight)
+                            .orElse(false)) {
+                        log.info("warmCache: stopped after prefetching {} addresses",
+                                prefetched);
+                        return;
+                    }
+                    if (dataCache.getIfPresent(address) == null) {
+                        rateLimiter.acquire();
+                        dataCache.get(address);
+                        prefetched++;
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("warmCache: aborted after prefetching {} addresses", prefetched, e);
+            return;
+        }
+        log.info("warmCache: prefetched {} addresses", prefetched);
     }
 
     /**
      * Service an incoming request for maximum global address the log unit server has written.
      */
-    @ServerHandler(type = CorfuMsgType.TAIL_REQUEST, opTimer = metricsPrefix + "tailReq")
+    @ServerHandler(type = CorfuMsgType.TAIL_REQUEST, opTimer = metricsPrefix + "tailReq",
+            execution = HandlerExecution.STORAGE)
     public void handleTailRequest(CorfuMsg msg, ChannelHandlerContext ctx, IServerRouter r,
                                   boolean isMetricsEnabled) {
         r.sendResponse(ctx, msg, CorfuMsgType.TAIL_RESPONSE.payloadMsg(streamLog.getGlobalTail()));
     }
 
+    /**
+     * Service an incoming request for the highest address of every stream, and the global
+     * tail, of this log unit. The stream tails are read first, so the global tail is never
+     * below any of them.
+     */
+    @ServerHandler(type = CorfuMsgType.LOG_TAILS_REQUEST, opTimer = metricsPrefix + "logTailsReq",
+            execution = HandlerExecution.STORAGE)
+    public void handleLogTailsRequest(CorfuMsg msg, ChannelHandlerContext ctx, IServerRouter r,
+                                      boolean isMetricsEnabled) {
+        Map<UUID, Long> streamTails = streamLog.getStreamTails();
+        r.sendResponse(ctx, msg, CorfuMsgType.LOG_TAILS_RESPONSE.payloadMsg(
+                new StreamTailsResponse(streamLog.getGlobalTail(), streamTails)));
+    }
+
     /**
      * Service an incoming request to retrieve the starting address of this logging unit.
      */
-    @ServerHandler(type = CorfuMsgType.TRIM_MARK_REQUEST, opTimer = metricsPrefix + "headReq")
+    @ServerHandler(type = CorfuMsgType.TRIM_MARK_REQUEST, opTimer = metricsPrefix + "headReq",
+            execution = HandlerExecution.STORAGE)
     public void handleHeadRequest(CorfuMsg msg, ChannelHandlerContext ctx, IServerRouter r, boolean isMetricsEnabled) {
         r.sendResponse(ctx, msg, CorfuMsgType.TRIM_MARK_RESPONSE.payloadMsg(streamLog.getTrimMark()));
     }
 
+    /**
+     * Service an incoming request for the sealed segment files of this log unit.
+     */
+    @ServerHandler(type = CorfuMsgType.SEGMENT_LIST_REQUEST,
+            opTimer = metricsPrefix + "segmentList", execution = HandlerExecution.STORAGE)
+    public void handleSegmentListRequest(CorfuMsg msg, ChannelHandlerContext ctx, IServerRouter r,
+                                         boolean isMetricsEnabled) {
+        r.sendResponse(ctx, msg, CorfuMsgType.SEGMENT_LIST_RESPONSE
+                .payloadMsg(getSegmentLog().listSealedSegments()));
+    }
+
+    /**
+     * Service an incoming request to read a chunk of a sealed segment file.
+     */
+    @ServerHandler(type = CorfuMsgType.SEGMENT_READ_REQUEST,
+            opTimer = metricsPrefix + "segmentRead", execution = HandlerExecution.STORAGE)
+    public void handleSegmentReadRequest(CorfuPayloadMsg<SegmentChunkRequest> msg,
+                                         ChannelHandlerContext ctx, IServerRouter r,
+                                         boolean isMetricsEnabled) {
+        SegmentChunkRequest req = msg.getPayload();
+        ByteBuf data = getSegmentLog().readSegmentChunk(req.getFileName(), req.getOffset(),
+                req.getLength());
+        r.sendResponse(ctx, msg, CorfuMsgType.SEGMENT_READ_RESPONSE.payloadMsg(
+                new SegmentChunk(req.getFileName(), req.getOffset(),
+                        SegmentChunk.getChecksum(data), data)));
+    }
+
+    /**
+     * Service an incoming chunk of a segment file streamed from another log unit.
+     */
+    @ServerHandler(type = CorfuMsgType.SEGMENT_WRITE, opTimer = metricsPrefix + "segmentWrite",
+            execution = HandlerExecution.STORAGE)
+    public void handleSegmentWrite(CorfuPayloadMsg<SegmentChunk> msg, ChannelHandlerContext ctx,
+                                   IServerRouter r, boolean isMetricsEnabled) {
+        try {
+            getSegmentLog().writeSegmentChunk(msg.getPayload());
+            r.sendResponse(ctx, msg, CorfuMsgType.ACK.msg());
+        } catch (DataCorruptionException e) {
+            r.sendResponse(ctx, msg, CorfuMsgType.ERROR_DATA_CORRUPTION.msg());
+        } finally {
+            msg.getPayload().release();
+        }
+    }
+
+    /**
+     * Service an incoming request to install streamed segment files into the log.
+     */
+    @ServerHandler(type = CorfuMsgType.SEGMENT_INSTALL, opTimer = metricsPrefix + "segmentInstall",
+            execution = HandlerExecution.STORAGE)
+    public void handleSegmentInstall(CorfuPayloadMsg<SegmentInstallRequest> msg,
+                                     ChannelHandlerContext ctx, IServerRouter r,
+                                     boolean isMetricsEnabled) {
+        try {
+            Set<Long> segments = getSegmentLog().installSegments(msg.getPayload().getFiles());
+            // The cached entries of the replaced segments may be stale.
+            dataCache.asMap().keySet().removeIf(address ->
+                    segments.contains(address / StreamLogFiles.RECORDS_PER_LOG_FILE));
+            r.sendResponse(ctx, msg, CorfuMsgType.ACK.msg());
+        } catch (DataCorruptionException e) {
+            r.sendResponse(ctx, msg, CorfuMsgType.ERROR_DATA_CORRUPTION.msg());
+        } catch (IllegalStateException e) {
+            // A segment is in use, the install can be retried.
+            r.sendResponse(ctx, msg, CorfuMsgType.ERROR_SERVER_BUSY.msg());
+        }
+    }
+
+    /**
+     * Segment transfer is only supported by the file backed stream log.
+     */
+    private StreamLogFiles getSegmentLog() {
+        if (!(streamLog instanceof StreamLogFiles)) {
+            throw new UnsupportedOperationException("Segment transfer requires a persistent log");
+        }
+        return (StreamLogFiles) streamLog;
+    }
+
     /**
      * Service an incoming write request.
      */
-    @ServerHandler(type = CorfuMsgType.WRITE, opTimer = metricsPrefix + "write")
+    @ServerHandler(type = CorfuMsgType.WRITE, opTimer = metricsPrefix + "write",
+            execution = HandlerExecution.STORAGE)
     public void write(CorfuPayloadMsg<WriteRequest> msg, ChannelHandlerContext ctx, IServerRouter r,
                       boolean isMetricsEnabled) {
         log.debug("log write: global: {}, streams: {}, backpointers: {}", msg
                 .getPayload().getGlobalAddress(), msg.getPayload().getData().getBackpointerMap());
 
         try {
+            // The payload is copied once out of the message, so that the cache and the log
+            // do not hold on to the buffer of the message.
+            msg.getPayload().getData().detach();
             dataCache.put(msg.getPayload().getGlobalAddress(), msg.getPayload().getData());
             r.sendResponse(ctx, msg, CorfuMsgType.WRITE_OK.msg());
 
@@ -181,7 +391,52 @@ public class LogUnitServer extends AbstractServer {
         }
     }
 
-    @ServerHandler(type = CorfuMsgType.READ_REQUEST, opTimer = metricsPrefix + "read")
+    /**
+     * Service an incoming request to write several entries. The entries are handed to the
+     * batch writer as a unit, and synced once, rather than put in the cache one by one: they
+     * are read back from the log, and cached, when they are first read.
+     */
+    @ServerHandler(type = CorfuMsgType.MULTIPLE_WRITE, opTimer = metricsPrefix + "multiWrite",
+            execution = HandlerExecution.STORAGE)
+    private void multiWrite(CorfuPayloadMsg<MultipleWriteRequest> msg, ChannelHandlerContext ctx,
+                            IServerRouter r, boolean isMetricsEnabled) {
+        final List<ILogData> entries = msg.getPayload().getEntries();
+        log.debug("multiWrite: {} entries", entries.size());
+
+        final List<LogData> detached = new ArrayList<>(entries.size());
+        for (ILogData entry : entries) {
+            // As for a single write, the log does not hold on to the buffer of the message.
+            ((LogData) entry).detach();
+            detached.add((LogData) entry);
+        }
+        final Map<Long, Exception> failures = batchWriter.writeAll(detached);
+
+        MultipleWriteResponse response = new MultipleWriteResponse();
+        for (LogData entry : detached) {
+            final Exception e = failures.get(entry.getGlobalAddress());
+            if (e == null) {
+                response.put(entry.getGlobalAddress(), MultipleWriteResponse.Status.OK);
+            } else if (e instanceof OverwriteException) {
+                response.put(entry.getGlobalAddress(), MultipleWriteResponse.Status.OVERWRITE);
+            } else if (e instanceof DataOutrankedException) {
+                response.put(entry.getGlobalAddress(),
+                        MultipleWriteResponse.Status.DATA_OUTRANKED);
+            } else if (e instanceof ValueAdoptedException) {
+                response.put(entry.getGlobalAddress(),
+                        MultipleWriteResponse.Status.VALUE_ADOPTED);
+            } else if (e instanceof DataCorruptionException) {
+                response.put(entry.getGlobalAddress(),
+                        MultipleWriteResponse.Status.DATA_CORRUPTION);
+            } else {
+                log.error("multiWrite: failed to write {}", entry.getGlobalAddress(), e);
+                response.put(entry.getGlobalAddress(), MultipleWriteResponse.Status.ERROR);
+            }
+        }
+        r.sendResponse(ctx, msg, CorfuMsgType.MULTIPLE_WRITE_RESPONSE.payloadMsg(response));
+    }
+
+    @ServerHandler(type = CorfuMsgType.READ_REQUEST, opTimer = metricsPrefix + "read",
+            execution = HandlerExecution.STORAGE)
     private void read(CorfuPayloadMsg<ReadRequest> msg, ChannelHandlerContext ctx, IServerRouter r,
                       boolean isMetricsEnabled) {
         log.trace("read: {}", msg.getPayload().getRange());
@@ -189,6 +444,7 @@ public class LogUnitServer extends AbstractServer {
         try {
             for (Long l = msg.getPayload().getRange().lowerEndpoint();
                     l < msg.getPayload().getRange().upperEndpoint() + 1L; l++) {
+                recordAccess(l);
                 ILogData e = dataCache.get(l);
                 if (e == null) {
                     rr.put(l, LogData.EMPTY);
@@ -202,7 +458,8 @@ public class LogUnitServer extends AbstractServer {
         }
     }
 
-    @ServerHandler(type = CorfuMsgType.MULTIPLE_READ_REQUEST, opTimer = metricsPrefix + "multiRead")
+    @ServerHandler(type = CorfuMsgType.MULTIPLE_READ_REQUEST, opTimer = metricsPrefix + "multiRead",
+            execution = HandlerExecution.STORAGE)
     private void multiRead(CorfuPayloadMsg<MultipleReadRequest> msg, ChannelHandlerContext ctx, IServerRouter r,
                            boolean isMetricsEnabled) {
         log.trace("multiRead: {}", msg.getPayload().getAddresses());
@@ -210,6 +467,7 @@ public class LogUnitServer extends AbstractServer {
         ReadResponse rr = new ReadResponse();
         try {
             for (Long l : msg.getPayload().getAddresses()) {
+                recordAccess(l);
                 ILogData e = dataCache.get(l);
                 if (e == null) {
                     rr.put(l, LogData.EMPTY);
@@ -223,7 +481,8 @@ public class LogUnitServer extends AbstractServer {
         }
     }
 
-    @ServerHandler(type = CorfuMsgType.FILL_HOLE, opTimer = metricsPrefix + "fill-hole")
+    @ServerHandler(type = CorfuMsgType.FILL_HOLE, opTimer = metricsPrefix + "fill-hole",
+            execution = HandlerExecution.STORAGE)
     private void fillHole(CorfuPayloadMsg<TrimRequest> msg, ChannelHandlerContext ctx,
                           IServerRouter r,
                           boolean isMetricsEnabled) {
@@ -242,7 +501,8 @@ public class LogUnitServer extends AbstractServer {
         }
     }
 
-    @ServerHandler(type = CorfuMsgType.TRIM, opTimer = metricsPrefix + "fill-hole")
+    @ServerHandler(type = CorfuMsgType.TRIM, opTimer = metricsPrefix + "fill-hole",
+            execution = HandlerExecution.STORAGE)
     private void trim(CorfuPayloadMsg<TrimRequest> msg, ChannelHandlerContext ctx, IServerRouter r,
                       boolean isMetricsEnabled) {
         batchWriter.trim(msg.getPayload().getAddress());
@@ -250,7 +510,7 @@ public class LogUnitServer extends AbstractServer {
         r.sendResponse(ctx, msg, CorfuMsgType.ACK.msg());
     }
 
-    @ServerHandler(type = CorfuMsgType.PREFIX_TRIM)
+    @ServerHandler(type = CorfuMsgType.PREFIX_TRIM, execution = HandlerExecution.STORAGE)
     private void prefixTrim(CorfuPayloadMsg<TrimRequest> msg, ChannelHandlerContext ctx,
                             IServerRouter r,
                             boolean isMetricsEnabled) {
@@ -262,7 +522,8 @@ public class LogUnitServer extends AbstractServer {
         }
     }
 
-    @ServerHandler(type = CorfuMsgType.COMPACT_REQUEST, opTimer = metricsPrefix + "compact")
+    @ServerHandler(type = CorfuMsgType.COMPACT_REQUEST, opTimer = metricsPrefix + "compact",
+            execution = HandlerExecution.STORAGE)
     private void compact(CorfuMsg msg, ChannelHandlerContext ctx, IServerRouter r, boolean
             isMetricsEnabled) {
         try {
@@ -275,7 +536,8 @@ public class LogUnitServer extends AbstractServer {
         }
     }
 
-    @ServerHandler(type = CorfuMsgType.FLUSH_CACHE, opTimer = metricsPrefix + "flush-cache")
+    @ServerHandler(type = CorfuMsgType.FLUSH_CACHE, opTimer = metricsPrefix + "flush-cache",
+            execution = HandlerExecution.STORAGE)
     private void flushCache(CorfuMsg msg, ChannelHandlerContext ctx, IServerRouter r, boolean
             isMetricsEnabled) {
         try {
@@ -287,6 +549,12 @@ public class LogUnitServer extends AbstractServer {
     }
 
 
+    private void recordAccess(long address) {
+        if (accessSketch != null) {
+            accessSketch.recordAccess(address);
+        }
+    }
+
     /**
      * Retrieve the LogUnitEntry from disk, given an address.
      *
@@ -314,7 +582,12 @@ public class LogUnitServer extends AbstractServer {
      */
     @Override
     public void shutdown() {
+        shuttingDown = true;
         compactor.cancel(true);
+        if (accessSketch != null) {
+            hotRangePersister.cancel(true);
+            persistHotRanges();
+        }
         scheduler.shutdownNow();
         batchWriter.close();
     }
@@ -324,6 +597,11 @@ public class LogUnitServer extends AbstractServer {
         return dataCache;
     }
 
+    @VisibleForTesting
+    AccessFrequencySketch getAccessSketch() {
+        return accessSketch;
+    }
+
     @VisibleForTesting
     long getMaxCacheSize() {
         return maxCacheSize;
@@ -25,7 +25,6 @@ import org.corfudb.protocols.wireprotocol.CorfuPayloadMsg;
 import org.corfudb.protocols.wireprotocol.FailureDetectorMsg;
 import org.corfudb.runtime.CorfuRuntime;
 import org.corfudb.runtime.clients.ManagementClient;
-import org.corfudb.runtime.clients.SequencerClient;
 import org.corfudb.runtime.view.Layout;
 
 /**
@@ -164,10 +163,9 @@ public class ManagementServer extends AbstractServer {
 
     private void bootstrapPrimarySequencerServer() {
         try {
-            String primarySequencer = latestLayout.getSequencers().get(0);
-            boolean bootstrapResult = getCorfuRuntime().getRouter(primarySequencer)
-                    .getClient(SequencerClient.class)
-                    .bootstrap(0L, Collections.emptyMap(), latestLayout.getEpoch())
+            latestLayout.setRuntime(getCorfuRuntime());
+            boolean bootstrapResult = latestLayout
+                    .bootstrapSequencers(0L, Collections.emptyMap())
                     .get();
             sequencerBootstrappedFuture.complete(bootstrapResult);
             if (!bootstrapResult) {
@@ -257,7 +255,8 @@ public class ManagementServer extends AbstractServer {
      * @param r   server router
      */
     @ServerHandler(type = CorfuMsgType.MANAGEMENT_BOOTSTRAP_REQUEST, opTimer = metricsPrefix
-            + "bootstrap-request")
+            + "bootstrap-request",
+            execution = HandlerExecution.MANAGEMENT)
     public synchronized void handleManagementBootstrap(CorfuPayloadMsg<Layout> msg,
                                                        ChannelHandlerContext ctx, IServerRouter r,
                                                        boolean isMetricsEnabled) {
@@ -281,7 +280,8 @@ public class ManagementServer extends AbstractServer {
      * @param r   server router
      */
     @ServerHandler(type = CorfuMsgType.MANAGEMENT_START_FAILURE_HANDLER, opTimer = metricsPrefix
-            + "start-failure-handler")
+            + "start-failure-handler",
+            execution = HandlerExecution.MANAGEMENT)
     public synchronized void initiateFailureHandler(CorfuMsg msg, ChannelHandlerContext ctx,
                                                     IServerRouter r,
                                                     boolean isMetricsEnabled) {
@@ -313,7 +313,8 @@ public class ManagementServer extends AbstractServer {
      * @param r   server router
      */
     @ServerHandler(type = CorfuMsgType.MANAGEMENT_FAILURE_DETECTED, opTimer = metricsPrefix
-            + "failure-detected")
+            + "failure-detected",
+            execution = HandlerExecution.MANAGEMENT)
     public synchronized void handleFailureDetectedMsg(CorfuPayloadMsg<FailureDetectorMsg> msg,
                                                       ChannelHandlerContext ctx, IServerRouter r,
                                                       boolean isMetricsEnabled) {
@@ -348,7 +349,8 @@ public class ManagementServer extends AbstractServer {
      * @param r   server router
      */
     @ServerHandler(type = CorfuMsgType.HEARTBEAT_REQUEST, opTimer = metricsPrefix
-            + "heartbeat-request")
+            + "heartbeat-request",
+            execution = HandlerExecution.MANAGEMENT)
     public void handleHearbeatRequest(CorfuMsg msg, ChannelHandlerContext ctx, IServerRouter r,
                                       boolean isMetricsEnabled) {
         // Currently builds a default instance of the model.
@@ -533,6 +535,7 @@ public class ManagementServer extends AbstractServer {
         super.shutdown();
         // Shutting the fault detector.
         failureDetectorService.shutdownNow();
+        failureHandlerDispatcher.shutdown();
 
         // Shut down the Corfu Runtime.
         if (corfuRuntime != null) {
@@ -1,14 +1,29 @@
 package org.corfudb.infrastructure;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 
+import java.util.EnumMap;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nonnull;
@@ -20,12 +35,24 @@ import lombok.extern.slf4j.Slf4j;
 import org.corfudb.protocols.wireprotocol.CorfuMsg;
 import org.corfudb.protocols.wireprotocol.CorfuMsgType;
 import org.corfudb.protocols.wireprotocol.CorfuPayloadMsg;
+import org.corfudb.util.MetricsUtils;
 
 
 /**
  * The netty server router routes incoming messages to registered roles using
  * the
  * Created by mwei on 12/1/15.
+ *
+ * <p>Each handler is run as its {@link HandlerExecution} says: inline, on the shared pool,
+ * on the storage pool, or on the management pool. A handler is never run by the thread which
+ * read its message, unless it is inline: that thread serves other channels too.
+ *
+ * <p>The shared and storage pools admit a bounded number of handlers, which have not
+ * finished yet: a message beyond the limit of its pool is answered with
+ * {@link CorfuMsgType#ERROR_SERVER_BUSY} straight away, rather than queued, so that the
+ * latency of the admitted ones stays bounded under overload. The queue of the storage pool
+ * holds as many handlers as it admits, and a handler it still rejects is answered in the same
+ * way. The management pool, which reconfigures the cluster, admits every message.
  */
 @Slf4j
 @ChannelHandler.Sharable
@@ -70,6 +97,14 @@ public class NettyServerRouter extends ChannelInboundHandlerAdapter
         }
     }
 
+    private static ThreadFactory newThreadFactory(String nameFormat) {
+        return new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat(nameFormat)
+                .setUncaughtExceptionHandler(NettyServerRouter::handleUncaughtException)
+                .build();
+    }
+
     protected static void handleUncaughtException(Thread t, @Nonnull Throwable e) {
         log.error("handleUncaughtException[{}]: Uncaught {}:{}",
                 t.getName(),
@@ -78,18 +113,65 @@ public class NettyServerRouter extends ChannelInboundHandlerAdapter
                 e);
     }
 
+    /**
+     * The number of threads of the storage pool.
+     */
+    public static final int STORAGE_THREADS = Runtime.getRuntime().availableProcessors() * 2;
+
+    /**
+     * The number of threads of the management pool.
+     */
+    public static final int MANAGEMENT_THREADS = 4;
+
+    /**
+     * The default number of handlers each bounded pool admits.
+     */
+    public static final int DEFAULT_QUEUE_LIMIT = 4096;
+
+    private static final String metricsPrefix = "corfu.server.router.";
+
     protected final ExecutorService handlerWorkers =
             new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
                     new ServerThreadFactory(),
                     NettyServerRouter::handleUncaughtException, true);
 
+    /**
+     * The storage pool. Its queue holds every handler admitted, see {@link #queueLimit}.
+     */
+    protected final ExecutorService storageWorkers;
+
+    protected final ExecutorService managementWorkers =
+            Executors.newFixedThreadPool(MANAGEMENT_THREADS,
+                    newThreadFactory("ServerRouter-management-%d"));
+
     /**
      * This map stores the mapping from message type to netty server handler.
      */
     Map<CorfuMsgType, AbstractServer> handlerMap;
 
+    /**
+     * This map stores where the handler of each message type is run.
+     */
+    Map<CorfuMsgType, HandlerExecution> executionMap;
+
     BaseServer baseServer;
 
+    /**
+     * The number of handlers each bounded pool admits, or 0 for no limit.
+     */
+    @Getter
+    private final int queueLimit;
+
+    /**
+     * The handlers admitted to each bounded pool which have not finished.
+     */
+    private final Map<HandlerExecution, AtomicInteger> queueDepths =
+            new EnumMap<>(HandlerExecution.class);
+
+    private final Meter meterBusy;
+
+    private final Timer timerQueueDelay;
+
     /**
      * The epoch of this router. This is managed by the base server implementation.
      */
@@ -103,6 +185,30 @@ public class NettyServerRouter extends ChannelInboundHandlerAdapter
      */
     public NettyServerRouter(Map<String, Object> opts) {
         handlerMap = new ConcurrentHashMap<>();
+        executionMap = new ConcurrentHashMap<>();
+        queueLimit = opts.get("--queue-limit") != null
+                ? Integer.parseInt((String) opts.get("--queue-limit"))
+                : DEFAULT_QUEUE_LIMIT;
+        queueDepths.put(HandlerExecution.DEFAULT, new AtomicInteger());
+        queueDepths.put(HandlerExecution.STORAGE, new AtomicInteger());
+        final BlockingQueue<Runnable> storageQueue = queueLimit > 0
+                ? new ArrayBlockingQueue<>(queueLimit) : new LinkedBlockingQueue<>();
+        storageWorkers = new ThreadPoolExecutor(STORAGE_THREADS, STORAGE_THREADS, 0L,
+                TimeUnit.MILLISECONDS, storageQueue, newThreadFactory("ServerRouter-storage-%d"),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        MetricRegistry metrics = ServerContext.getMetrics();
+        meterBusy = metrics.meter(metricsPrefix + "busy");
+        timerQueueDelay = metrics.timer(metricsPrefix + "queue-delay");
+        try {
+            metrics.register(metricsPrefix + "queue-depth.default",
+                    (Gauge<Integer>) () -> getQueueDepth(HandlerExecution.DEFAULT));
+            metrics.register(metricsPrefix + "queue-depth.storage",
+                    (Gauge<Integer>) () -> getQueueDepth(HandlerExecution.STORAGE));
+        } catch (IllegalArgumentException e) {
+            // Re-registering metrics during test runs, not a problem
+        }
+
         baseServer = new BaseServer();
         addServer(baseServer);
     }
@@ -117,6 +223,7 @@ public class NettyServerRouter extends ChannelInboundHandlerAdapter
         server.getHandler().getHandledTypes()
                 .forEach(x -> {
                     handlerMap.put(x, server);
+                    executionMap.put(x, server.getHandler().getExecution(x));
                     log.trace("Registered {} to handle messages of type {}", server, x);
                 });
     }
@@ -129,7 +236,9 @@ public class NettyServerRouter extends ChannelInboundHandlerAdapter
         // Iterate through all types of CorfuMsgType, un-registering the handler
         server.getHandler().getHandledTypes()
                 .forEach(x -> {
-                    handlerMap.remove(x, server);
+                    if (handlerMap.remove(x, server)) {
+                        executionMap.remove(x);
+                    }
                     log.trace("Un-Registered {} to handle messages of type {}", server, x);
                 });
     }
@@ -185,15 +294,30 @@ public class NettyServerRouter extends ChannelInboundHandlerAdapter
             if (handler == null) {
                 // The message was unregistered, we are dropping it.
                 log.warn("Received unregistered message {}, dropping", m);
+                m.release();
             } else {
-                if (validateEpoch(m, ctx)) {
+                if (!validateEpoch(m, ctx)) {
+                    m.release();
+                } else {
+                    final HandlerExecution execution = executionMap.getOrDefault(m.getMsgType(),
+                            HandlerExecution.DEFAULT);
+                    if (!admit(execution)) {
+                        rejectBusy(ctx, m);
+                        return;
+                    }
                     // Route the message to the handler.
                     if (log.isTraceEnabled()) {
                         log.trace("Message routed to {}: {}", handler.getClass().getSimpleName(),
                                 msg);
                     }
-                    handlerWorkers.submit(() -> {
+                    final boolean bounded = queueDepths.containsKey(execution);
+                    final long admitted = bounded ? System.nanoTime() : 0L;
+                    Runnable task = () -> {
                         try {
+                            if (bounded && MetricsUtils.isMetricsCollectionEnabled()) {
+                                timerQueueDelay.update(System.nanoTime() - admitted,
+                                        TimeUnit.NANOSECONDS);
+                            }
                             handler.handleMessage(m, ctx, this);
                         } catch (Throwable t) {
                             log.error("channelRead: Handling {} failed due to {}:{}",
@@ -201,8 +325,36 @@ public class NettyServerRouter extends ChannelInboundHandlerAdapter
                                     t.getClass().getSimpleName(),
                                     t.getMessage(),
                                     t);
+                        } finally {
+                            release(execution);
                         }
-                    });
+                    };
+                    try {
+                        switch (execution) {
+                            case INLINE:
+                                task.run();
+                                break;
+                            case STORAGE:
+                                storageWorkers.execute(task);
+                                break;
+                            case MANAGEMENT:
+                                managementWorkers.execute(task);
+                                break;
+                            default:
+                                handlerWorkers.submit(task);
+                                break;
+                        }
+                    } catch (RejectedExecutionException e) {
+                        release(execution);
+                        if (execution == HandlerExecution.STORAGE
+                                && !storageWorkers.isShutdown()) {
+                            rejectBusy(ctx, m);
+                        } else {
+                            // The router is shutting down.
+                            log.warn("channelRead: Dropping {}, the pools are shut down", m);
+                            m.release();
+                        }
+                    }
                 }
             }
         } catch (Exception e) {
@@ -210,6 +362,58 @@ public class NettyServerRouter extends ChannelInboundHandlerAdapter
         }
     }
 
+    /**
+     * Answer a message which its pool has no room for with ERROR_SERVER_BUSY, which the
+     * client retries.
+     */
+    private void rejectBusy(ChannelHandlerContext ctx, CorfuMsg m) {
+        log.trace("channelRead: Server busy, rejecting {}", m);
+        MetricsUtils.markConditionalMeter(MetricsUtils.isMetricsCollectionEnabled(), meterBusy);
+        sendResponse(ctx, m, CorfuMsgType.ERROR_SERVER_BUSY.msg());
+        m.release();
+    }
+
+    /**
+     * Admit a handler to its pool, unless the pool is full.
+     *
+     * @param execution where the handler is run
+     * @return true if the handler is admitted, and must be released when it finishes
+     */
+    boolean admit(HandlerExecution execution) {
+        final AtomicInteger queueDepth = queueDepths.get(execution);
+        if (queueDepth == null) {
+            return true;
+        }
+        if (queueDepth.incrementAndGet() > queueLimit && queueLimit > 0) {
+            queueDepth.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Release an admitted handler which finished.
+     *
+     * @param execution where the handler was run
+     */
+    void release(HandlerExecution execution) {
+        final AtomicInteger queueDepth = queueDepths.get(execution);
+        if (queueDepth != null) {
+            queueDepth.decrementAndGet();
+        }
+    }
+
+    /**
+     * Get the number of handlers admitted to a pool which have not finished.
+     *
+     * @param execution the pool
+     * @return the number of handlers, or 0 if the pool is not bounded
+     */
+    public int getQueueDepth(HandlerExecution execution) {
+        final AtomicInteger queueDepth = queueDepths.get(execution);
+        return queueDepth == null ? 0 : queueDepth.get();
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         log.error("Error in handling inbound message, {}", cause);
@@ -0,0 +1,238 @@
+package org.corfudb.infrastructure;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.corfudb.protocols.wireprotocol.TokenRequest;
+import org.corfudb.protocols.wireprotocol.TokenResponse;
+import org.corfudb.protocols.wireprotocol.TokenType;
+import org.corfudb.protocols.wireprotocol.TxResolutionInfo;
+import org.corfudb.runtime.view.Address;
+
+/**
+ * Serves the token requests which span several partitions of the sequencer. Runs on the
+ * sequencer of the first partition, which owns the global tail.
+ *
+ * <p>A request is served in two phases:
+ *
+ * <p>1. The part of the request of every partition involved is prepared, one partition at
+ * a time, in partition order. A partition checks the conflicts of a transaction against its
+ * own streams, and holds the streams of the request: allocations on them wait, and
+ * transactions on them abort, until the request is committed or aborted. The backpointers
+ * of the streams are returned. Since the partitions are prepared in order, two requests
+ * never wait for each other.
+ *
+ * <p>2. If every partition prepared its part, an address is taken from the global tail. It
+ * is above every address leased to a partition so far, hence above the tail of every stream.
+ * The address is sent to every partition, which records it as the tail of its streams and
+ * releases them. Otherwise, the prepared partitions are told to release their streams, and
+ * the abort cause of the transaction is returned.
+ *
+ * <p>A prepare which fails, for instance because it timed out, may still run on its
+ * partition later: that partition is told to abort the request too, and refuses to prepare
+ * a request it was told to abort. A commit which fails is sent again, up to
+ * {@link #COMMIT_ATTEMPTS} times; partitions apply a commit once, whatever the number of
+ * times it is received.
+ *
+ * <p>If this sequencer fails between the two phases, or a partition cannot be reached to
+ * commit, the streams stay held until the sequencers are bootstrapped in the next epoch.
+ */
+@Slf4j
+class PartitionCoordinator {
+
+    /**
+     * The number of times a commit is sent to a partition before giving up.
+     */
+    static final int COMMIT_ATTEMPTS = 3;
+
+    private final SequencerServer sequencerServer;
+
+    private final SequencerPartitioning partitioning;
+
+    private final AtomicLong nextId = new AtomicLong();
+
+    PartitionCoordinator(SequencerServer sequencerServer, SequencerPartitioning partitioning) {
+        this.sequencerServer = sequencerServer;
+        this.partitioning = partitioning;
+    }
+
+    /**
+     * Whether a request spans several partitions.
+     */
+    boolean spansPartitions(TokenRequest req) {
+        return req.getReqType() != TokenRequest.TK_QUERY
+                && req.getSequencerPartition(partitioning.getPartitionCount())
+                == TokenRequest.CROSS_PARTITION;
+    }
+
+    /**
+     * Serve a request which spans several partitions.
+     *
+     * @param req         the request
+     * @param serverEpoch the epoch of the server
+     * @return a future which completes with the response to the request
+     */
+    CompletableFuture<TokenResponse> coordinate(TokenRequest req, long serverEpoch) {
+        final long id = nextId.incrementAndGet();
+        final SortedMap<Integer, TokenRequest> parts = split(req);
+        final Map<Integer, TokenResponse> prepared = new TreeMap<>();
+        final Set<Integer> attempted = ConcurrentHashMap.newKeySet();
+
+        CompletableFuture<TokenResponse> chain = CompletableFuture.completedFuture(null);
+        for (Map.Entry<Integer, TokenRequest> part : parts.entrySet()) {
+            chain = chain.thenCompose(abort -> {
+                if (abort != null) {
+                    return CompletableFuture.completedFuture(abort);
+                }
+                attempted.add(part.getKey());
+                return prepare(id, part.getKey(), part.getValue(), serverEpoch)
+                        .thenApply(response -> {
+                            if (response.getRespType() != TokenType.NORMAL) {
+                                return response;
+                            }
+                            prepared.put(part.getKey(), response);
+                            return null;
+                        });
+            });
+        }
+
+        return chain.handle((abort, ex) -> {
+            if (ex != null || abort != null) {
+                log.debug("coordinate[{}]: Aborting {} : {}", id, req,
+                        ex != null ? ex : abort.getRespType());
+                // A partition whose prepare failed may still prepare the request later.
+                (ex != null ? attempted : prepared.keySet()).forEach(partition ->
+                        commit(id, partition, Address.ABORTED));
+                if (ex != null) {
+                    CompletableFuture<TokenResponse> failed = new CompletableFuture<>();
+                    failed.completeExceptionally(ex);
+                    return failed;
+                }
+                return CompletableFuture.completedFuture(abort);
+            }
+
+            final long address = sequencerServer.takeGlobalAddresses(req.getNumTokens());
+            final Map<UUID, Long> backpointers = new HashMap<>();
+            prepared.values().forEach(response ->
+                    backpointers.putAll(response.getBackpointerMap()));
+            CompletableFuture<Boolean> committed = CompletableFuture.completedFuture(true);
+            for (Integer partition : prepared.keySet()) {
+                committed = committed.thenCombine(commit(id, partition, address),
+                        Boolean::logicalAnd);
+            }
+            return committed.thenApply(ok -> {
+                if (!ok) {
+                    throw new IllegalStateException("Request " + id + " was not prepared");
+                }
+                log.trace("coordinate[{}]: token {} backpointers {}", id, address,
+                        backpointers);
+                return new TokenResponse(address, serverEpoch, backpointers);
+            });
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * Split a request into the parts served by every partition involved, in partition order.
+     */
+    private SortedMap<Integer, TokenRequest> split(TokenRequest req) {
+        final Map<Integer, Set<UUID>> streams = new HashMap<>();
+        for (UUID streamId : req.getStreams()) {
+            streams.computeIfAbsent(partitioning.getPartition(streamId), p -> new HashSet<>())
+                    .add(streamId);
+        }
+
+        final SortedMap<Integer, TokenRequest> parts = new TreeMap<>();
+        if (req.getReqType() != TokenRequest.TK_TX) {
+            streams.forEach((partition, partitionStreams) ->
+                    parts.put(partition, new TokenRequest(req.getNumTokens(), partitionStreams)));
+            return parts;
+        }
+
+        final TxResolutionInfo txInfo = req.getTxnResolution();
+        final Map<Integer, Map<UUID, long[]>> conflictSets = split(txInfo.getConflictSet());
+        final Map<Integer, Map<UUID, long[]>> writeSets =
+                split(txInfo.getWriteConflictParams());
+        final Set<Integer> partitions = new HashSet<>(streams.keySet());
+        partitions.addAll(conflictSets.keySet());
+        partitions.addAll(writeSets.keySet());
+        for (Integer partition : partitions) {
+            parts.put(partition, new TokenRequest(req.getNumTokens(),
+                    streams.getOrDefault(partition, Collections.emptySet()),
+                    new TxResolutionInfo(txInfo.getTXid(), txInfo.getSnapshotTimestamp(),
+                            conflictSets.getOrDefault(partition, Collections.emptyMap()),
+                            writeSets.getOrDefault(partition, Collections.emptyMap()))));
+        }
+        return parts;
+    }
+
+    private Map<Integer, Map<UUID, long[]>> split(Map<UUID, long[]> conflictParams) {
+        final Map<Integer, Map<UUID, long[]>> result = new HashMap<>();
+        conflictParams.forEach((streamId, hashes) ->
+                result.computeIfAbsent(partitioning.getPartition(streamId), p -> new HashMap<>())
+                        .put(streamId, hashes));
+        return result;
+    }
+
+    private CompletableFuture<TokenResponse> prepare(long id, int partition,
+                                                     TokenRequest part, long serverEpoch) {
+        if (partition != partitioning.getPartition()) {
+            return partitioning.getClient(partition).prepare(id, part);
+        }
+        CompletableFuture<TokenResponse> response = new CompletableFuture<>();
+        prepareLocally(id, part, serverEpoch, response);
+        return response;
+    }
+
+    /**
+     * Prepare a part of a request on this partition, again once its streams are released if
+     * they are held by another request.
+     */
+    private void prepareLocally(long id, TokenRequest part, long serverEpoch,
+                                CompletableFuture<TokenResponse> response) {
+        TokenResponse prepared = sequencerServer.prepare(id, part, serverEpoch,
+                new SequencerServer.DeferredRequest(
+                        () -> prepareLocally(id, part, serverEpoch, response),
+                        () -> response.completeExceptionally(new IllegalStateException(
+                                "Request " + id + " dropped by a reset of the sequencer"))));
+        if (prepared != null) {
+            response.complete(prepared);
+        }
+    }
+
+    private CompletableFuture<Boolean> commit(long id, int partition, long address) {
+        if (partition == partitioning.getPartition()) {
+            return CompletableFuture.completedFuture(sequencerServer.commit(id, address));
+        }
+        return commit(id, partition, address, 1);
+    }
+
+    private CompletableFuture<Boolean> commit(long id, int partition, long address,
+                                              int attempt) {
+        return partitioning.getClient(partition).commit(id, address)
+                .handle((ok, ex) -> {
+                    if (ex == null) {
+                        return CompletableFuture.completedFuture(ok);
+                    }
+                    if (attempt < COMMIT_ATTEMPTS) {
+                        log.warn("commit[{}]: Partition {} failed to apply address {}, "
+                                + "retrying : {}", id, partition, address, ex.toString());
+                        return commit(id, partition, address, attempt + 1);
+                    }
+                    log.error("commit[{}]: Partition {} failed to apply address {} : {}",
+                            id, partition, address, ex);
+                    return CompletableFuture.completedFuture(false);
+                }).thenCompose(Function.identity());
+    }
+}
@@ -0,0 +1,157 @@
+package org.corfudb.infrastructure;
+
+import com.google.common.collect.Range;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.corfudb.protocols.wireprotocol.LogData;
+import org.corfudb.protocols.wireprotocol.SegmentChunk;
+import org.corfudb.protocols.wireprotocol.SegmentFileInfo;
+import org.corfudb.protocols.wireprotocol.SegmentListResponse;
+import org.corfudb.runtime.CorfuRuntime;
+import org.corfudb.runtime.clients.LogUnitClient;
+import org.corfudb.runtime.exceptions.OverwriteException;
+import org.corfudb.runtime.exceptions.TrimmedException;
+
+/**
+ * Rebuilds a log unit from a healthy replica of the same stripe.
+ *
+ * <p>The sealed segments of the source are streamed to the target file by file, in chunks
+ * which are checksummed on the wire, and are installed on the target only once every file
+ * has been received completely. The records of the open tail segment, which the source may
+ * still be appending to, are then copied one by one through the regular read and write path.
+ *
+ * <p>Driven by the {@link FailureHandlerDispatcher} when a log unit which was marked
+ * unresponsive heals.
+ */
+@Slf4j
+public class SegmentStateTransfer {
+
+    /**
+     * The number of bytes of a segment file transferred per message.
+     */
+    public static final int CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * The number of addresses of the tail segment read per message.
+     */
+    public static final int TAIL_BATCH_SIZE = 64;
+
+    private final LogUnitClient source;
+
+    private final LogUnitClient target;
+
+    /**
+     * Returns a new SegmentStateTransfer.
+     *
+     * @param runtime        Connected runtime.
+     * @param sourceEndpoint The healthy log unit to transfer from.
+     * @param targetEndpoint The log unit to rebuild.
+     */
+    public SegmentStateTransfer(CorfuRuntime runtime, String sourceEndpoint,
+                                String targetEndpoint) {
+        this.source = runtime.getRouter(sourceEndpoint).getClient(LogUnitClient.class);
+        this.target = runtime.getRouter(targetEndpoint).getClient(LogUnitClient.class);
+    }
+
+    /**
+     * Transfer the state of the source log unit to the target log unit.
+     *
+     * @throws ExecutionException   if the transfer failed, in which case it can be retried.
+     * @throws InterruptedException if interrupted while transferring.
+     */
+    public void transfer() throws ExecutionException, InterruptedException {
+        final long trimMark = source.getTrimMark().get();
+        SegmentListResponse segments = source.getSealedSegments().get();
+
+        long bytes = 0;
+        for (SegmentFileInfo file : segments.getFiles()) {
+            bytes += transferFile(file);
+        }
+        target.installSegments(segments.getFiles()).get();
+        log.info("transfer: installed {} segment files, {} bytes", segments.getFiles().size(),
+                bytes);
+
+        if (trimMark > 0) {
+            try {
+                target.prefixTrim(trimMark - 1).get();
+            } catch (ExecutionException e) {
+                // The target has already been trimmed at least as far as the source.
+                if (!(e.getCause() instanceof TrimmedException)) {
+                    throw e;
+                }
+            }
+        }
+
+        long copied = transferTail(Math.max(trimMark, segments.getTailSegmentStart()),
+                source.getTail().get());
+        log.info("transfer: copied {} records of the tail segment", copied);
+    }
+
+    /**
+     * Stream a single segment file from the source to the target.
+     *
+     * @param file The file to stream.
+     * @return The number of bytes streamed.
+     */
+    private long transferFile(SegmentFileInfo file)
+            throws ExecutionException, InterruptedException {
+        long offset = 0;
+        while (offset < file.getLength()) {
+            int length = (int) Math.min(CHUNK_SIZE, file.getLength() - offset);
+            SegmentChunk chunk = source.readSegmentChunk(file.getFileName(), offset, length)
+                    .get();
+            try {
+                if (chunk.getData().readableBytes() == 0) {
+                    throw new IllegalStateException("Segment file " + file.getFileName()
+                            + " was truncated during transfer");
+                }
+                target.writeSegmentChunk(chunk).get();
+                offset += chunk.getData().readableBytes();
+            } finally {
+                chunk.release();
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Copy the records in a range of addresses from the source to the target. Addresses
+     * which are already written on the target are skipped.
+     *
+     * @param start The first address to copy.
+     * @param tail  The last address to copy.
+     * @return The number of records copied.
+     */
+    private long transferTail(long start, long tail)
+            throws ExecutionException, InterruptedException {
+        long copied = 0;
+        for (long address = start; address <= tail; address += TAIL_BATCH_SIZE) {
+            Range<Long> range = Range.closed(address,
+                    Math.min(address + TAIL_BATCH_SIZE - 1, tail));
+            Map<Long, LogData> records = source.read(range).get().getAddresses();
+            for (Map.Entry<Long, LogData> record : records.entrySet()) {
+                LogData data = record.getValue();
+                if (data.isEmpty() || data.isTrimmed()) {
+                    continue;
+                }
+                try {
+                    if (data.isHole()) {
+                        target.fillHole(record.getKey()).get();
+                    } else {
+                        target.write(data).get();
+                    }
+                    copied++;
+                } catch (ExecutionException e) {
+                    if (!(e.getCause() instanceof OverwriteException)) {
+                        throw e;
+                    }
+                }
+            }
+        }
+        return copied;
+    }
+}
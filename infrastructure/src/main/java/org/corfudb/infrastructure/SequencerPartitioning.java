@@ -0,0 +1,77 @@
+package org.corfudb.infrastructure;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.Getter;
+
+import org.corfudb.runtime.clients.NettyClientRouter;
+import org.corfudb.runtime.clients.SequencerClient;
+import org.corfudb.runtime.view.Layout;
+
+/**
+ * The partitioning of the sequencer, as seen by the sequencer of one partition: the
+ * partition it serves, and the sequencers of the other partitions, which it connects to on
+ * demand.
+ */
+class SequencerPartitioning {
+
+    private final ServerContext serverContext;
+
+    /**
+     * The partition served by this sequencer.
+     */
+    @Getter
+    private final int partition;
+
+    /**
+     * The endpoints of the sequencers of every partition.
+     */
+    @Getter
+    private final List<String> endpoints;
+
+    private final Map<Integer, NettyClientRouter> routers = new ConcurrentHashMap<>();
+
+    SequencerPartitioning(ServerContext serverContext, int partition, List<String> endpoints) {
+        this.serverContext = serverContext;
+        this.partition = partition;
+        this.endpoints = endpoints;
+    }
+
+    /**
+     * Get the partition which serves a stream.
+     */
+    int getPartition(UUID streamId) {
+        return Layout.getSequencerPartition(streamId, endpoints.size());
+    }
+
+    int getPartitionCount() {
+        return endpoints.size();
+    }
+
+    /**
+     * Get a client to the sequencer of a partition, at the epoch of this server.
+     *
+     * @param index the partition
+     * @return the client
+     */
+    SequencerClient getClient(int index) {
+        NettyClientRouter router = routers.computeIfAbsent(index, i -> {
+            NettyClientRouter newRouter = serverContext.createClientRouter(endpoints.get(i));
+            newRouter.addClient(new SequencerClient());
+            return newRouter;
+        });
+        router.setEpoch(serverContext.getServerEpoch());
+        return router.getClient(SequencerClient.class);
+    }
+
+    /**
+     * Disconnect from the sequencers of the other partitions.
+     */
+    void shutdown() {
+        routers.values().forEach(NettyClientRouter::stop);
+        routers.clear();
+    }
+}
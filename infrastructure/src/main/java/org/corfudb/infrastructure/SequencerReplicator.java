@@ -0,0 +1,166 @@
+package org.corfudb.infrastructure;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.corfudb.protocols.wireprotocol.SequencerStateSync;
+import org.corfudb.runtime.clients.NettyClientRouter;
+import org.corfudb.runtime.clients.SequencerClient;
+import org.corfudb.runtime.view.Layout;
+
+/**
+ * Sends the updates of a primary sequencer to the standby sequencer, which is the second
+ * sequencer of the layout.
+ *
+ * <p>Every interval, if this node is the primary sequencer of the current layout and the
+ * layout has a standby, the updates recorded by the {@link SequencerServer} since the
+ * previous interval are sent to the standby in a single message. The first message to a
+ * standby, and the first one after a failure, carries the full state of the sequencer.
+ * Since the standby holds the conflict table of the primary, it can be promoted by a single
+ * layout change without aborting the transactions in flight.
+ */
+@Slf4j
+class SequencerReplicator {
+
+    private final ServerContext serverContext;
+
+    private final SequencerServer sequencerServer;
+
+    private final Map<String, Object> opts;
+
+    private final ScheduledExecutorService replicationService;
+
+    /**
+     * The standby the updates are sent to, or null if there is none.
+     */
+    private String standby;
+
+    private NettyClientRouter router;
+
+    /**
+     * The number of the last update sent to the standby.
+     */
+    private long sequence;
+
+    private boolean fullUpdateNeeded = true;
+
+    /**
+     * Returns a new SequencerReplicator, which starts sending updates after an interval.
+     *
+     * @param serverContext   the context of the sequencer server
+     * @param sequencerServer the sequencer server which records the updates
+     * @param intervalMillis  the interval between two updates, in milliseconds
+     */
+    SequencerReplicator(ServerContext serverContext, SequencerServer sequencerServer,
+                        long intervalMillis) {
+        this.serverContext = serverContext;
+        this.sequencerServer = sequencerServer;
+        this.opts = serverContext.getServerConfig();
+        this.replicationService = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("SequencerReplicator-%d")
+                        .build());
+        replicationService.scheduleWithFixedDelay(this::replicate, intervalMillis,
+                intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop sending updates.
+     */
+    void shutdown() {
+        replicationService.shutdownNow();
+        disconnect();
+    }
+
+    /**
+     * Send the updates recorded since the previous interval to the standby, if this node is
+     * the primary sequencer and the layout has a standby.
+     */
+    private void replicate() {
+        try {
+            final String newStandby = getStandby(serverContext.getCurrentLayout());
+            if (newStandby == null) {
+                if (standby != null) {
+                    log.info("replicate: No longer sending updates to standby {}", standby);
+                    sequencerServer.setRecordingUpdates(false);
+                    disconnect();
+                }
+                return;
+            }
+            if (!newStandby.equals(standby)) {
+                log.info("replicate: Sending updates to standby {}", newStandby);
+                disconnect();
+                router = connect(newStandby);
+                standby = newStandby;
+                fullUpdateNeeded = true;
+            }
+
+            if (fullUpdateNeeded) {
+                // Updates are recorded before the full state is read, so that none is missed.
+                sequencerServer.setRecordingUpdates(true);
+                sequence = 0;
+            } else {
+                sequence++;
+            }
+            SequencerStateSync update = sequencerServer.getStateUpdate(fullUpdateNeeded,
+                    sequence);
+            router.setEpoch(serverContext.getServerEpoch());
+            boolean applied = router.getClient(SequencerClient.class).syncState(update).get();
+            if (!applied) {
+                log.info("replicate: Standby {} missed updates, sending a full update next",
+                        standby);
+            }
+            fullUpdateNeeded = !applied;
+        } catch (Exception e) {
+            log.warn("replicate: Error sending updates to standby {} : {}", standby, e);
+            fullUpdateNeeded = true;
+        }
+    }
+
+    /**
+     * Get the standby sequencer of a layout, if this node is its primary sequencer.
+     * There is no standby if the sequencer is partitioned.
+     *
+     * @param layout the current layout
+     * @return the endpoint of the standby, or null if there is no standby to send updates to
+     */
+    private String getStandby(Layout layout) {
+        if (layout == null
+                || layout.getSequencerPartitionCount() > 1
+                || layout.getEpoch() != serverContext.getServerEpoch()
+                || sequencerServer.getReadyStateEpoch() != serverContext.getServerEpoch()) {
+            return null;
+        }
+        List<String> sequencers = layout.getSequencers();
+        if (sequencers.size() < 2 || !sequencers.get(0).equals(getLocalEndpoint())) {
+            return null;
+        }
+        return sequencers.get(1);
+    }
+
+    private NettyClientRouter connect(String endpoint) {
+        NettyClientRouter newRouter = serverContext.createClientRouter(endpoint);
+        newRouter.addClient(new SequencerClient());
+        return newRouter;
+    }
+
+    private void disconnect() {
+        if (router != null) {
+            router.stop();
+            router = null;
+        }
+        standby = null;
+    }
+
+    private String getLocalEndpoint() {
+        return opts.get("--address") + ":" + opts.get("<port>");
+    }
+}
@@ -1,33 +1,52 @@
 package org.corfudb.infrastructure;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
-import com.github.benmanes.caffeine.cache.RemovalCause;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.ImmutableMap;
 
 import io.netty.channel.ChannelHandlerContext;
 
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 
 import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
+import org.corfudb.protocols.wireprotocol.AddressLeaseRequest;
 import org.corfudb.protocols.wireprotocol.CorfuMsg;
 import org.corfudb.protocols.wireprotocol.CorfuMsgType;
 import org.corfudb.protocols.wireprotocol.CorfuPayloadMsg;
+import org.corfudb.protocols.wireprotocol.PartitionCommitRequest;
+import org.corfudb.protocols.wireprotocol.PartitionPrepareRequest;
+import org.corfudb.protocols.wireprotocol.SequencerStateSync;
 import org.corfudb.protocols.wireprotocol.SequencerTailsRecoveryMsg;
+import org.corfudb.protocols.wireprotocol.StreamTailsRequest;
+import org.corfudb.protocols.wireprotocol.StreamTailsResponse;
 import org.corfudb.protocols.wireprotocol.Token;
+import org.corfudb.protocols.wireprotocol.TokenBatchRequest;
+import org.corfudb.protocols.wireprotocol.TokenBatchResponse;
 import org.corfudb.protocols.wireprotocol.TokenRequest;
 import org.corfudb.protocols.wireprotocol.TokenResponse;
 import org.corfudb.protocols.wireprotocol.TokenType;
@@ -45,6 +64,17 @@ import static org.corfudb.protocols.wireprotocol.TokenType.TX_ABORT_SEQ_OVERFLOW
  *
  * <p>TOKEN_REQ - Request the next address.
  *
+ * <p>TOKEN_BATCH_REQ - A batch of token requests coalesced by a client, which are
+ * served in order and answered with a single message.
+ *
+ * <p>STREAM_TAILS_REQ - Query the tails of several streams and of the global log.
+ *
+ * <p>SEQUENCER_STATE_SYNC - Updates sent by the primary sequencer to the standby
+ * sequencer, see {@link SequencerReplicator}.
+ *
+ * <p>SEQUENCER_LEASE_REQ, SEQUENCER_PREPARE_REQ, SEQUENCER_COMMIT_REQ - Sent among the
+ * sequencers of a partitioned sequencer, see below.
+ *
  * <p>The sequencer server maintains the current tail of the log, the current
  * tail of every stream, and a cache of timestamps of updates on recent
  * conflict-parameters.
@@ -74,6 +104,23 @@ import static org.corfudb.protocols.wireprotocol.TokenType.TX_ABORT_SEQ_OVERFLOW
  * commits, the sequencer updates the tails of all the streams and the cache
  * of conflict parameters.
  *
+ * <p>Token requests are not serialized on a single monitor. Queries only read
+ * the global tail and the stream tails. Raw tokens are a single atomic bump of
+ * the global tail. Stream allocations bump the global tail while holding the
+ * locks of the {@link StreamTailTable} segments of the streams they write
+ * (acquired in a fixed order), so that the tail of every stream only moves
+ * forward and backpointers are exact. Only
+ * TK_TX requests are serialized among themselves, for the duration of the
+ * conflict check and the allocation.
+ *
+ * <p>The sequencer can be partitioned across several servers, each of which serves the
+ * streams hashed into its partition, see {@link Layout#getSequencerPartition}. The first
+ * partition owns the global tail: it hands out raw tokens and answers queries of the global
+ * tail, and leases blocks of addresses to the other partitions, which hand out the addresses
+ * of their streams from these blocks, see {@link AddressLeases}. Requests which span several
+ * partitions are sent to the first partition, which serves them with the other partitions,
+ * see {@link PartitionCoordinator}.
+ *
  * <p>Created by mwei on 12/8/15.
  */
 @Slf4j
@@ -104,23 +151,160 @@ public class SequencerServer extends AbstractServer {
      * per streams map to last issued global-log position. used for
      * backpointers.
      */
-    private final ConcurrentHashMap<UUID, Long> streamTailToGlobalTailMap = new
-            ConcurrentHashMap<>();
+    private final StreamTailTable streamTailToGlobalTailMap;
 
     /**
      * TX conflict-resolution information:
      *
      * {@link SequencerServer::conflictToGlobalTailCache}:
-     * a cache of recent conflict keys and their latest global-log
+     * a table of recent conflict keys and their latest global-log
      * position.
      *
-     * {@link SequencerServer::maxConflictWildcard} :
-     * a "wildcard" representing the maximal update timestamp of
-     * all the confict keys which were evicted from the cache
+     * {@link SequencerServer::conflictWildcards} :
+     * "wildcards" representing the maximal update timestamp of
+     * the confict keys which were evicted from the table, per stream
+     * and group of keys
+     *
+     * <p>Both are only accessed while holding the server monitor.
+     */
+    private final ConflictWildcards conflictWildcards = new ConflictWildcards();
+
+    private final ConflictTable conflictToGlobalTailCache;
+
+    /**
+     * The default number of entries of the conflict table.
+     */
+    private static final long DEFAULT_CONFLICT_TABLE_SIZE = 250000;
+
+    /**
+     * The maximum number of conflict entries removed by a trim while holding the monitor.
+     */
+    private static final int TRIM_BATCH_SIZE = 4096;
+
+    /**
+     * The memory initially allocated for stream tails, in bytes.
+     */
+    private static final long INITIAL_STREAM_TABLE_BYTES = 64L * 1024;
+
+    /**
+     * The initial capacity of the buffer of conflict parameters to replicate.
+     */
+    private static final int INITIAL_CONFLICT_UPDATES = 3 * 1024;
+
+    /**
+     * Replication to the standby sequencer, when this server is the primary:
+     *
+     * {@link SequencerServer::updatedStreams}:
+     * the streams written since the last update sent to the standby.
+     *
+     * {@link SequencerServer::conflictUpdates}:
+     * the conflict parameters written since the last update sent to the standby, as
+     * (stream key, conflict hash, address) triples. Only accessed while holding the server
+     * monitor.
      */
-    private long maxConflictWildcard = Address.NOT_FOUND;
+    private volatile boolean recordingUpdates = false;
 
-    private final Cache<String, Long> conflictToGlobalTailCache;
+    private final Set<UUID> updatedStreams = ConcurrentHashMap.newKeySet();
+
+    private long[] conflictUpdates = new long[INITIAL_CONFLICT_UPDATES];
+
+    private int conflictUpdatesSize = 0;
+
+    /**
+     * The replicator of this server, or null if the standby sequencer is disabled.
+     */
+    private final SequencerReplicator replicator;
+
+    /**
+     * When this server is a standby, the epoch of the primary whose updates were applied,
+     * or -1 if none were. Only accessed while holding the server monitor.
+     */
+    private long standbyEpoch = -1;
+
+    /**
+     * The number of the last update applied from the primary.
+     */
+    private long standbySequence;
+
+    /**
+     * The default number of addresses leased at once by a partition.
+     */
+    private static final long DEFAULT_LEASE_SIZE = 4096;
+
+    /**
+     * The default term of a lease of addresses, in milliseconds.
+     */
+    private static final long DEFAULT_LEASE_TERM_MILLIS = 100;
+
+    private final long leaseSize;
+
+    private final long leaseTermMillis;
+
+    /**
+     * Partitioning, set at bootstrap:
+     *
+     * {@link SequencerServer::partitioning}:
+     * the partitioning of the sequencer, or null if it is not partitioned.
+     *
+     * {@link SequencerServer::addressLeases} and {@link SequencerServer::coordinator}:
+     * the leases granted to the other partitions, and the coordinator of the requests which
+     * span several partitions, if this server serves the first partition.
+     *
+     * {@link SequencerServer::leasedAddresses}:
+     * the addresses leased from the first partition, if this server serves another one.
+     */
+    private volatile SequencerPartitioning partitioning;
+
+    private volatile AddressLeases addressLeases;
+
+    private volatile PartitionCoordinator coordinator;
+
+    private volatile LeasedAddresses leasedAddresses;
+
+    /**
+     * A part of a request spanning several partitions, prepared by this server.
+     */
+    @RequiredArgsConstructor
+    private static class PreparedRequest {
+        final TokenRequest request;
+        final Set<UUID> streams;
+    }
+
+    /**
+     * The prepared requests, by id, and the streams they hold, with the id of the request.
+     */
+    private final Map<Long, PreparedRequest> preparedRequests = new ConcurrentHashMap<>();
+
+    private final Map<UUID, Long> heldStreams = new ConcurrentHashMap<>();
+
+    /**
+     * The number of ids of completed requests remembered.
+     */
+    private static final int COMPLETED_REQUESTS = 10_000;
+
+    /**
+     * The requests committed or aborted lately, by id, with their address. A commit received
+     * again is applied once, and a request aborted before it was prepared, because its
+     * prepare timed out, is never prepared.
+     */
+    private final Cache<Long, Long> completedRequests = Caffeine.newBuilder()
+            .maximumSize(COMPLETED_REQUESTS)
+            .build();
+
+    /**
+     * A request on held streams, served again once a prepared request is committed or
+     * aborted, or answered if it is dropped when the sequencer is reset.
+     */
+    @RequiredArgsConstructor
+    static class DeferredRequest {
+        final Runnable retry;
+        final Runnable drop;
+    }
+
+    /**
+     * Requests on held streams, run again once a prepared request is committed or aborted.
+     */
+    private final Queue<DeferredRequest> deferredRequests = new ConcurrentLinkedQueue<>();
 
     /**
      * Handler for this server.
@@ -132,6 +316,24 @@ public class SequencerServer extends AbstractServer {
     private static final String metricsPrefix = "corfu.server.sequencer.";
     private static Counter counterTokenSum;
     private static Counter counterToken0;
+    private final MetricRegistry metrics;
+
+    /**
+     * The number of streams whose aborts are reported.
+     */
+    private static final int TOP_ABORT_STREAMS = 32;
+
+    /**
+     * The aborted transactions, by cause.
+     */
+    private final Map<TokenType, Counter> abortCounters = new EnumMap<>(TokenType.class);
+
+    /**
+     * The aborted transactions, by the stream which caused the abort, for the streams with
+     * the most aborts.
+     */
+    @Getter
+    private final TopStreamCounts abortStreams = new TopStreamCounts(TOP_ABORT_STREAMS);
 
     @Getter
     @Setter
@@ -140,7 +342,8 @@ public class SequencerServer extends AbstractServer {
     @Override
     public boolean isServerReadyToHandleMsg(CorfuMsg msg) {
         if ((readyStateEpoch != serverContext.getServerEpoch())
-                && (!msg.getMsgType().equals(CorfuMsgType.BOOTSTRAP_SEQUENCER))) {
+                && (!msg.getMsgType().equals(CorfuMsgType.BOOTSTRAP_SEQUENCER))
+                && (!msg.getMsgType().equals(CorfuMsgType.SEQUENCER_STATE_SYNC))) {
             log.warn("Rejecting msg at sequencer : sequencerStateEpoch:{}, serverEpoch:{}, "
                     + "msg:{}", readyStateEpoch, serverContext.getServerEpoch(), msg);
             return false;
@@ -163,39 +366,67 @@ public class SequencerServer extends AbstractServer {
             globalLogTail.set(initialToken);
         }
 
-        MetricRegistry metrics = serverContext.getMetrics();
+        metrics = serverContext.getMetrics();
         counterTokenSum = metrics.counter(metricsPrefix + "token-sum");
         counterToken0 = metrics.counter(metricsPrefix + "token-query");
+        for (TokenType type : TokenType.values()) {
+            if (type != TokenType.NORMAL && type != TokenType.QUERY) {
+                abortCounters.put(type, metrics.counter(metricsPrefix + "tx-abort." + type));
+            }
+        }
 
-        long cacheSize = 250_000;
-        if (opts.get("--sequencer-cache-size") != null) {
-            cacheSize = Long.parseLong((String) opts.get("--sequencer-cache-size"));
+        // The memory budget of the conflict table, if given, overrides its number of entries.
+        long conflictTableBytes = ConflictTable.getMemoryBudget(DEFAULT_CONFLICT_TABLE_SIZE);
+        if (opts.get("--sequencer-cache-bytes") != null) {
+            conflictTableBytes = Long.parseLong((String) opts.get("--sequencer-cache-bytes"));
+        } else if (opts.get("--sequencer-cache-size") != null) {
+            conflictTableBytes = ConflictTable.getMemoryBudget(
+                    Long.parseLong((String) opts.get("--sequencer-cache-size")));
+        }
 
+        conflictToGlobalTailCache = new ConflictTable(conflictTableBytes,
+                (streamKey, conflictHash, address) -> {
+                    log.trace("Updating conflict wildcard. Old value = '{}', new value='{}'",
+                            conflictWildcards.get(streamKey, conflictHash), address);
+                    conflictWildcards.raise(streamKey, conflictHash, address);
+                });
+        streamTailToGlobalTailMap = new StreamTailTable(INITIAL_STREAM_TABLE_BYTES);
+
+        try {
+            metrics.register(metricsPrefix + "conflict-table-bytes",
+                    (Gauge<Long>) conflictToGlobalTailCache::getMemoryFootprint);
+            metrics.register(metricsPrefix + "stream-table-bytes",
+                    (Gauge<Long>) streamTailToGlobalTailMap::getMemoryFootprint);
+            metrics.register(metricsPrefix + "tx-abort.top-streams",
+                    (Gauge<Map<UUID, Long>>) abortStreams::getTop);
+        } catch (IllegalArgumentException e) {
+            // Re-registering metrics during test runs, not a problem
         }
 
-        conflictToGlobalTailCache = Caffeine.newBuilder()
-                .maximumSize(cacheSize)
-                .removalListener((String k, Long v, RemovalCause cause) -> {
-                    if (!RemovalCause.REPLACED.equals(cause)) {
-                        log.trace("Updating maxConflictWildcard. Old value = '{}', new value='{}'"
-                                        + " conflictParam = '{}'. Removal cause = '{}'",
-                                maxConflictWildcard, v, k, cause);
-                        maxConflictWildcard = Math.max(v, maxConflictWildcard);
-                    }
-                })
-                .recordStats()
-                .build();
+        long standbyInterval = 0;
+        if (opts.get("--sequencer-standby-interval") != null) {
+            standbyInterval = Long.parseLong((String) opts.get("--sequencer-standby-interval"));
+        }
+        replicator = standbyInterval > 0
+                ? new SequencerReplicator(serverContext, this, standbyInterval) : null;
+
+        leaseSize = opts.get("--sequencer-lease-size") != null
+                ? Long.parseLong((String) opts.get("--sequencer-lease-size"))
+                : DEFAULT_LEASE_SIZE;
+        leaseTermMillis = opts.get("--sequencer-lease-term") != null
+                ? Long.parseLong((String) opts.get("--sequencer-lease-term"))
+                : DEFAULT_LEASE_TERM_MILLIS;
     }
 
-    /**
-    * Get the conflict hash code for a stream ID and conflict param.
-    *
-    * @param streamId      The stream ID.
-    * @param conflictParam The conflict parameter.
-    * @return A conflict hash code.
-    */
-    public String getConflictHashCode(UUID streamId, byte[] conflictParam) {
-        return streamId.toString() + Utils.bytesToHex(conflictParam);
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        if (replicator != null) {
+            replicator.shutdown();
+        }
+        if (partitioning != null) {
+            partitioning.shutdown();
+        }
     }
 
     /**
@@ -209,11 +440,14 @@ public class SequencerServer extends AbstractServer {
      *                    timestamp than the snapshot, abort
      * @param conflictKey is a return parameter that signals to the consumer which key was
      *                    responsible for unsuccessful allocation af a token.
+     * @param conflictStream is a return parameter that signals to the consumer which stream
+     *                    was responsible for unsuccessful allocation af a token.
      * @return Returns the type of token reponse based on whether the txn commits, or the abort
      *     cause.
      */
     public TokenType txnCanCommit(TxResolutionInfo txInfo, /** Input. */
-                                  AtomicReference<byte[]> conflictKey /** Output. */) {
+                                  AtomicReference<byte[]> conflictKey, /** Output. */
+                                  AtomicReference<UUID> conflictStream /** Output. */) {
         log.trace("Commit-req[{}]", txInfo);
         final long txSnapshotTimestamp = txInfo.getSnapshotTimestamp();
 
@@ -223,58 +457,49 @@ public class SequencerServer extends AbstractServer {
             return TokenType.TX_ABORT_SEQ_TRIM;
         }
 
-        AtomicReference<TokenType> response = new AtomicReference<>(TokenType.NORMAL);
-
-        for (Map.Entry<UUID, Set<byte[]>> entry : txInfo.getConflictSet().entrySet()) {
-            if (response.get() != TokenType.NORMAL) {
-                break;
-            }
+        for (Map.Entry<UUID, long[]> entry : txInfo.getConflictSet().entrySet()) {
 
             // if conflict-parameters are present, check for conflict based on conflict-parameter
             // updates
-            Set<byte[]> conflictParamSet = entry.getValue();
-            if (conflictParamSet != null && conflictParamSet.size() > 0) {
+            long[] conflictHashes = entry.getValue();
+            if (conflictHashes.length > 0) {
+                final long streamKey = ConflictTable.getStreamKey(entry.getKey());
                 // for each key pair, check for conflict;
                 // if not present, check against the wildcard
-                for (byte[] conflictParam : conflictParamSet) {
+                for (long conflictHash : conflictHashes) {
 
-                    String conflictKeyHash = getConflictHashCode(entry.getKey(),
-                            conflictParam);
-                    Long v = conflictToGlobalTailCache.getIfPresent(conflictKeyHash);
+                    long v = conflictToGlobalTailCache.get(streamKey, conflictHash);
 
-                    log.trace("Commit-ck[{}] conflict-key[{}](ts={})", txInfo, conflictParam, v);
+                    log.trace("Commit-ck[{}] conflict-key[{}](ts={})", txInfo, conflictHash, v);
 
-                    if (v != null && v > txSnapshotTimestamp) {
-                        log.debug("ABORT[{}] conflict-key[{}](ts={})", txInfo, conflictParam, v);
-                        conflictKey.set(conflictParam);
-                        response.set(TokenType.TX_ABORT_CONFLICT);
-                        break;
+                    if (v > txSnapshotTimestamp) {
+                        log.debug("ABORT[{}] conflict-key[{}](ts={})", txInfo, conflictHash, v);
+                        conflictKey.set(Utils.longToBigEndianByteArray(conflictHash));
+                        conflictStream.set(entry.getKey());
+                        return TokenType.TX_ABORT_CONFLICT;
                     }
 
-                    if (txSnapshotTimestamp < maxConflictWildcard) {
+                    long wildcard = conflictWildcards.get(streamKey, conflictHash);
+                    if (txSnapshotTimestamp < wildcard) {
                         log.debug("ABORT[{}] snapshot-ts[{}] WILDCARD ts=[{}]",
-                                txInfo, txSnapshotTimestamp, maxConflictWildcard);
-                        response.set(TX_ABORT_SEQ_OVERFLOW);
-                        break;
+                                txInfo, txSnapshotTimestamp, wildcard);
+                        conflictStream.set(entry.getKey());
+                        return TX_ABORT_SEQ_OVERFLOW;
                     }
                 }
             } else { // otherwise, check for conflict based on streams updates
                 UUID streamId = entry.getKey();
-                streamTailToGlobalTailMap.compute(streamId, (k, v) -> {
-                    if (v == null) {
-                        return null;
-                    }
-                    if (v > txSnapshotTimestamp) {
-                        log.debug("ABORT[{}] conflict-stream[{}](ts={})",
-                                txInfo, Utils.toReadableId(streamId), v);
-                        response.set(TokenType.TX_ABORT_CONFLICT);
-                    }
-                    return v;
-                });
+                long streamTail = streamTailToGlobalTailMap.get(streamId);
+                if (streamTail > txSnapshotTimestamp) {
+                    log.debug("ABORT[{}] conflict-stream[{}](ts={})",
+                            txInfo, Utils.toReadableId(streamId), streamTail);
+                    conflictStream.set(streamId);
+                    return TokenType.TX_ABORT_CONFLICT;
+                }
             }
         }
 
-        return response.get();
+        return TokenType.NORMAL;
     }
 
     /**
@@ -283,15 +508,13 @@ public class SequencerServer extends AbstractServer {
      * <p>This returns information about the tail of the
      * log and/or streams without changing/allocating anything.
      *
-     * @param msg corfu message containing token query
-     * @param ctx netty ChannelHandlerContext
-     * @param r   server router
+     * @param req         the token query
+     * @param serverEpoch the epoch of the server
+     * @return the token response
      */
-    public void handleTokenQuery(CorfuPayloadMsg<TokenRequest> msg,
-                                 ChannelHandlerContext ctx, IServerRouter r) {
-        TokenRequest req = msg.getPayload();
+    private TokenResponse handleTokenQuery(TokenRequest req, long serverEpoch) {
 
-        // sanity backward-compatibility assertion; TODO: remove
+        // sanity backward-compatibility assertion; multi-stream queries use STREAM_TAILS_REQ
         if (req.getStreams().size() > 1) {
             log.error("TOKEN-QUERY[{}]", req.getStreams());
         }
@@ -302,37 +525,66 @@ public class SequencerServer extends AbstractServer {
         if (req.getStreams().size() == 1) {
             UUID streamId = req.getStreams().iterator().next();
 
-            if (streamTailToGlobalTailMap.get(streamId) != null) {
-                maxStreamGlobalTail = streamTailToGlobalTailMap.get(streamId);
-            }
+            maxStreamGlobalTail = streamTailToGlobalTailMap.get(streamId);
         }
 
         // If no streams are specified in the request, this value returns the last global token
         // issued.
-        long responseGlobalTail = (req.getStreams().size() == 0) ? globalLogTail.get() - 1 :
+        long responseGlobalTail = (req.getStreams().size() == 0) ? getGlobalTail() :
                 maxStreamGlobalTail;
-        Token token = new Token(responseGlobalTail, r.getServerEpoch());
-        r.sendResponse(ctx, msg, CorfuMsgType.TOKEN_RES.payloadMsg(new TokenResponse(
-                TokenType.NORMAL, TokenResponse.NO_CONFLICT_KEY, token, Collections.emptyMap())));
+        Token token = new Token(responseGlobalTail, serverEpoch);
+        return new TokenResponse(TokenType.NORMAL, TokenResponse.NO_CONFLICT_KEY, token,
+                Collections.emptyMap());
     }
 
-    @ServerHandler(type = CorfuMsgType.SEQUENCER_TRIM_REQ, opTimer = metricsPrefix + "trimCache")
-    public synchronized void trimCache(CorfuPayloadMsg<Long> msg,
-                                       ChannelHandlerContext ctx, IServerRouter r,
-                                       boolean isMetricsEnabled) {
-        log.info("trimCache: Starting cache eviction");
-        if (trimMark < msg.getPayload()) {
-            // Advance the trim mark, if the new trim request has a higher trim mark.
-            trimMark = msg.getPayload();
+    /**
+     * Service a query of the tails of several streams.
+     *
+     * <p>The stream tails are read before the global tail, so that the global tail
+     * returned is never below any of them.
+     */
+    @ServerHandler(type = CorfuMsgType.STREAM_TAILS_REQ,
+            opTimer = metricsPrefix + "stream-tails-req")
+    public void streamTailsRequest(CorfuPayloadMsg<StreamTailsRequest> msg,
+                                   ChannelHandlerContext ctx, IServerRouter r,
+                                   boolean isMetricsEnabled) {
+        MetricsUtils.incConditionalCounter(isMetricsEnabled, counterToken0, 1);
+
+        Set<UUID> streams = msg.getPayload().getStreams();
+        Map<UUID, Long> streamTails = new HashMap<>(streams.size());
+        for (UUID streamId : streams) {
+            streamTails.put(streamId, streamTailToGlobalTailMap.get(streamId));
         }
+        long globalTail = getGlobalTail();
 
+        r.sendResponse(ctx, msg, CorfuMsgType.STREAM_TAILS_RES.payloadMsg(
+                new StreamTailsResponse(globalTail, streamTails)));
+    }
+
+    /**
+     * Service a request to trim the conflict table.
+     *
+     * <p>The entries below the trim mark are removed in batches of
+     * {@link #TRIM_BATCH_SIZE}, releasing the server monitor in between, so that
+     * transactions are not held up for the whole trim.
+     */
+    @ServerHandler(type = CorfuMsgType.SEQUENCER_TRIM_REQ, opTimer = metricsPrefix + "trimCache")
+    public void trimCache(CorfuPayloadMsg<Long> msg,
+                          ChannelHandlerContext ctx, IServerRouter r,
+                          boolean isMetricsEnabled) {
+        log.info("trimCache: Starting cache eviction");
         long entries = 0;
-        for (Map.Entry<String, Long> entry : conflictToGlobalTailCache.asMap().entrySet()) {
-            if (entry.getValue() < trimMark) {
-                conflictToGlobalTailCache.invalidate(entry.getKey());
-                entries++;
+        int removed;
+        do {
+            synchronized (this) {
+                if (trimMark < msg.getPayload()) {
+                    // Advance the trim mark, if the new trim request has a higher trim mark.
+                    trimMark = msg.getPayload();
+                }
+                removed = conflictToGlobalTailCache.removeBelow(trimMark, TRIM_BATCH_SIZE);
             }
-        }
+            entries += removed;
+        } while (removed == TRIM_BATCH_SIZE);
         log.info("trimCache: Evicted {} entries", entries);
         r.sendResponse(ctx, msg, CorfuMsgType.ACK.msg());
     }
@@ -369,34 +621,414 @@ public class SequencerServer extends AbstractServer {
         // Note, this is correct, but conservative (may lead to false abort).
         // It is necessary because we reset the sequencer.
         //
-        if (initialToken > globalLogTail.get()) {
+        final boolean repartitioned = setPartitioning(msg.getPayload().getPartition(),
+                msg.getPayload().getPartitionEndpoints());
+        if (standbyEpoch != -1 && !repartitioned) {
+            // This server was a standby, and holds the state of the primary as of its last
+            // update: it is promoted without resetting the conflict parameters.
+            promoteStandby(initialToken, streamTails);
+        } else if (repartitioned || initialToken > globalLogTail.get()) {
+            initialToken = Math.max(initialToken, globalLogTail.get());
+            standbyEpoch = -1;
             globalLogTail.set(initialToken);
-            maxConflictWildcard = initialToken - 1;
-            conflictToGlobalTailCache.invalidateAll();
+            conflictWildcards.reset(initialToken - 1);
+            conflictToGlobalTailCache.clear();
 
             // Clear the existing map as it could have been populated by an earlier reset.
-            streamTailToGlobalTailMap.clear();
-            streamTailToGlobalTailMap.putAll(streamTails);
+            streamTailToGlobalTailMap.reset(streamTails);
         }
 
         // Mark the sequencer as ready after the tails have been populated.
         readyStateEpoch = readyEpoch;
 
-        log.info("Sequencer reset with token = {}, streamTailToGlobalTailMap = {},"
-                        + " readyStateEpoch = {}",
-                initialToken, streamTailToGlobalTailMap, readyStateEpoch);
+        log.info("Sequencer reset with token = {}, streamTails = {},"
+                        + " readyStateEpoch = {}, partition = {} of {}",
+                initialToken, streamTails, readyStateEpoch, msg.getPayload().getPartition(),
+                msg.getPayload().getPartitionEndpoints());
+        r.sendResponse(ctx, msg, CorfuMsgType.ACK.msg());
+    }
+
+    /**
+     * Set the partition served by this server. The requests prepared under the previous
+     * partitioning are dropped, which releases their streams, and the requests deferred on
+     * them are answered with {@link CorfuMsgType#ERROR_SERVER_BUSY}, which clients retry.
+     *
+     * @param partition the partition served by this server
+     * @param endpoints the sequencers of every partition, or an empty list if the sequencer
+     *                  is not partitioned
+     * @return whether the partitioning changed
+     */
+    private boolean setPartitioning(int partition, List<String> endpoints) {
+        final SequencerPartitioning previous = partitioning;
+        preparedRequests.clear();
+        heldStreams.clear();
+        completedRequests.invalidateAll();
+        if (!deferredRequests.isEmpty()) {
+            log.warn("setPartitioning: Dropping {} requests on held streams",
+                    deferredRequests.size());
+            DeferredRequest dropped;
+            while ((dropped = deferredRequests.poll()) != null) {
+                dropped.drop.run();
+            }
+        }
+
+        final boolean partitioned = endpoints.size() > 1;
+        if (previous != null && previous.getPartition() == partition
+                && previous.getEndpoints().equals(endpoints)) {
+            return false;
+        }
+        if (previous == null && !partitioned) {
+            return false;
+        }
+        if (previous != null) {
+            previous.shutdown();
+        }
+
+        if (!partitioned) {
+            partitioning = null;
+            addressLeases = null;
+            coordinator = null;
+            leasedAddresses = null;
+            return true;
+        }
+        final SequencerPartitioning newPartitioning =
+                new SequencerPartitioning(serverContext, partition, endpoints);
+        if (partition == 0) {
+            addressLeases = new AddressLeases(globalLogTail, leaseTermMillis);
+            coordinator = new PartitionCoordinator(this, newPartitioning);
+            leasedAddresses = null;
+        } else {
+            addressLeases = null;
+            coordinator = null;
+            leasedAddresses = new LeasedAddresses(newPartitioning, leaseSize);
+        }
+        partitioning = newPartitioning;
+        return true;
+    }
+
+    /**
+     * Promote a standby to primary. The state replicated from the previous primary is kept,
+     * and merged with the tails recovered from the log.
+     *
+     * <p>A stream whose recovered tail is beyond its replicated tail was written after the
+     * last update from the previous primary, so the conflict parameters of these writes are
+     * unknown: the wildcards of the stream are raised to its tail. Transactions on the other
+     * streams are resolved exactly as the previous primary would have.
+     *
+     * @param initialToken the first available position recovered from the log
+     * @param streamTails  the stream tails recovered from the log
+     */
+    private void promoteStandby(long initialToken, Map<UUID, Long> streamTails) {
+        globalLogTail.accumulateAndGet(initialToken, Math::max);
+        int unreplicated = 0;
+        for (Map.Entry<UUID, Long> entry : streamTails.entrySet()) {
+            ReentrantLock lock = streamTailToGlobalTailMap.lock(entry.getKey());
+            try {
+                if (entry.getValue() > streamTailToGlobalTailMap.get(entry.getKey())) {
+                    streamTailToGlobalTailMap.getAndSet(entry.getKey(), entry.getValue());
+                    conflictWildcards.raiseStream(ConflictTable.getStreamKey(entry.getKey()),
+                            entry.getValue());
+                    unreplicated++;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        log.info("promoteStandby: Promoted standby with updates of epoch {}, sequence {}; "
+                + "{} streams written after the last update", standbyEpoch, standbySequence,
+                unreplicated);
+        standbyEpoch = -1;
+    }
+
+    /**
+     * Service updates sent by the primary sequencer to this standby.
+     *
+     * <p>A full update replaces the state of this server. An incremental update is only
+     * applied if it follows the last update applied from the same primary; otherwise it is
+     * rejected, and the primary sends a full update.
+     */
+    @ServerHandler(type = CorfuMsgType.SEQUENCER_STATE_SYNC,
+            opTimer = metricsPrefix + "state-sync")
+    public synchronized void stateSync(CorfuPayloadMsg<SequencerStateSync> msg,
+                                       ChannelHandlerContext ctx, IServerRouter r,
+                                       boolean isMetricsEnabled) {
+        final SequencerStateSync update = msg.getPayload();
+
+        if (readyStateEpoch == serverContext.getServerEpoch()) {
+            log.warn("stateSync: Primary sequencer at epoch {} cannot apply updates of "
+                    + "epoch {}", readyStateEpoch, update.getPrimaryEpoch());
+            r.sendResponse(ctx, msg, CorfuMsgType.NACK.msg());
+            return;
+        }
+        if (!update.isFull() && (update.getPrimaryEpoch() != standbyEpoch
+                || update.getSequence() != standbySequence + 1)) {
+            log.info("stateSync: Missed updates, last applied epoch {} sequence {}, "
+                    + "received epoch {} sequence {}", standbyEpoch, standbySequence,
+                    update.getPrimaryEpoch(), update.getSequence());
+            r.sendResponse(ctx, msg, CorfuMsgType.NACK.msg());
+            return;
+        }
+
+        if (update.isFull()) {
+            globalLogTail.set(update.getGlobalTail());
+            trimMark = update.getTrimMark();
+            conflictToGlobalTailCache.clear();
+            conflictWildcards.load(update.getConflictWildcards());
+            streamTailToGlobalTailMap.reset(update.getStreamTails());
+        } else {
+            globalLogTail.accumulateAndGet(update.getGlobalTail(), Math::max);
+            update.getStreamTails().forEach((streamId, tail) -> {
+                ReentrantLock lock = streamTailToGlobalTailMap.lock(streamId);
+                try {
+                    streamTailToGlobalTailMap.getAndSet(streamId, tail);
+                } finally {
+                    lock.unlock();
+                }
+            });
+        }
+
+        final long[] entries = update.getConflictEntries();
+        for (int i = 0; i + 2 < entries.length; i += 3) {
+            conflictToGlobalTailCache.put(entries[i], entries[i + 1], entries[i + 2]);
+        }
+        if (update.getTrimMark() > trimMark) {
+            trimMark = update.getTrimMark();
+        }
+        conflictToGlobalTailCache.removeBelow(trimMark);
+
+        standbyEpoch = update.getPrimaryEpoch();
+        standbySequence = update.getSequence();
         r.sendResponse(ctx, msg, CorfuMsgType.ACK.msg());
     }
 
     /**
-     * Service an incoming token request.
+     * Start or stop recording the updates to send to the standby.
+     *
+     * @param recording whether to record updates
+     */
+    void setRecordingUpdates(boolean recording) {
+        synchronized (this) {
+            recordingUpdates = recording;
+            conflictUpdatesSize = 0;
+        }
+        updatedStreams.clear();
+    }
+
+    /**
+     * Get the updates to send to the standby, and start recording the next ones.
+     *
+     * <p>The stream tails are read before the conflict parameters, and the conflict
+     * parameters of a transaction are recorded in the same critical section as its stream
+     * tails, so the standby never learns the tail of a stream before the conflict parameters
+     * written up to that tail. This is what allows {@link #promoteStandby} to tell which
+     * streams have unknown writes.
+     *
+     * @param full     whether to send the full state rather than the recorded updates
+     * @param sequence the number of the update
+     * @return the update
+     */
+    SequencerStateSync getStateUpdate(boolean full, long sequence) {
+        final Map<UUID, Long> streamTails;
+        if (full) {
+            updatedStreams.clear();
+            streamTails = streamTailToGlobalTailMap.toMap();
+        } else {
+            streamTails = new HashMap<>();
+            Iterator<UUID> it = updatedStreams.iterator();
+            while (it.hasNext()) {
+                UUID streamId = it.next();
+                it.remove();
+                streamTails.put(streamId, streamTailToGlobalTailMap.get(streamId));
+            }
+        }
+
+        synchronized (this) {
+            final long[] conflictEntries = full ? conflictToGlobalTailCache.toEntries()
+                    : Arrays.copyOf(conflictUpdates, conflictUpdatesSize);
+            final long[] wildcards = full ? conflictWildcards.toArray() : new long[0];
+            conflictUpdatesSize = 0;
+            return new SequencerStateSync(readyStateEpoch, sequence, full, globalLogTail.get(),
+                    trimMark, streamTails, conflictEntries, wildcards);
+        }
+    }
+
+    /**
+     * Record that a stream was written, if a standby is to be updated.
+     * Must be called after the tail of the stream is updated.
+     */
+    private void recordStreamUpdate(UUID streamId) {
+        if (recordingUpdates) {
+            updatedStreams.add(streamId);
+        }
+    }
+
+    /**
+     * Service an incoming token request. It is not served inline: transactions are serialized
+     * on the monitor of this server, which trimming the cache and resetting the state hold
+     * for as long as they take. The lease of a partition is renewed in the background, see
+     * {@link LeasedAddresses}, and a request which cannot be served for now is answered with
+     * {@link CorfuMsgType#ERROR_SERVER_BUSY}, which clients retry. A request for the streams
+     * of another partition is answered with {@link CorfuMsgType#WRONG_EPOCH}, see
+     * {@link #isServedHere}.
      */
     @ServerHandler(type = CorfuMsgType.TOKEN_REQ, opTimer = metricsPrefix + "token-req")
-    public synchronized void tokenRequest(CorfuPayloadMsg<TokenRequest> msg,
+    public void tokenRequest(CorfuPayloadMsg<TokenRequest> msg,
                                           ChannelHandlerContext ctx, IServerRouter r,
                                           boolean isMetricsEnabled) {
-        TokenRequest req = msg.getPayload();
+        if (!isServedHere(msg.getPayload())) {
+            r.sendResponse(ctx, msg, new CorfuPayloadMsg<>(CorfuMsgType.WRONG_EPOCH,
+                    r.getServerEpoch()));
+            return;
+        }
+        final PartitionCoordinator partitionCoordinator = coordinator;
+        if (partitionCoordinator != null && partitionCoordinator.spansPartitions(
+                msg.getPayload())) {
+            partitionCoordinator.coordinate(msg.getPayload(), r.getServerEpoch())
+                    .whenComplete((response, ex) -> {
+                        if (ex != null) {
+                            log.error("tokenRequest: Failed to serve {} : {}",
+                                    msg.getPayload(), ex);
+                            r.sendResponse(ctx, msg, CorfuMsgType.ERROR_SERVER_BUSY.msg());
+                            return;
+                        }
+                        r.sendResponse(ctx, msg, CorfuMsgType.TOKEN_RES.payloadMsg(response));
+                    });
+            return;
+        }
 
+        final TokenResponse response;
+        try {
+            response = serveTokenRequest(msg.getPayload(), r.getServerEpoch(),
+                    isMetricsEnabled, deferred(msg, ctx, r,
+                            () -> tokenRequest(msg, ctx, r, isMetricsEnabled)));
+        } catch (LeasedAddresses.UnavailableException e) {
+            log.debug("tokenRequest: {}", e.getMessage());
+            r.sendResponse(ctx, msg, CorfuMsgType.ERROR_SERVER_BUSY.msg());
+            return;
+        }
+        if (response != null) {
+            r.sendResponse(ctx, msg, CorfuMsgType.TOKEN_RES.payloadMsg(response));
+        }
+    }
+
+    /**
+     * Service a batch of token requests, in order, and answer them with a single message.
+     */
+    @ServerHandler(type = CorfuMsgType.TOKEN_BATCH_REQ,
+            opTimer = metricsPrefix + "token-batch-req")
+    public void tokenBatchRequest(CorfuPayloadMsg<TokenBatchRequest> msg,
+                                  ChannelHandlerContext ctx, IServerRouter r,
+                                  boolean isMetricsEnabled) {
+        serveTokenBatch(msg, ctx, r, isMetricsEnabled,
+                new ArrayList<>(msg.getPayload().getRequests().size()));
+    }
+
+    /**
+     * Serve the requests of a batch from the first one without a response, and send the
+     * responses once they are all served. If a request is deferred, the batch is served
+     * again from that request once its streams are released, and a request spanning several
+     * partitions carries on with the batch once it is coordinated.
+     *
+     * <p>If a request cannot be served for now, the whole batch is answered with
+     * {@link CorfuMsgType#ERROR_SERVER_BUSY}: the requests served before it still hold their
+     * tokens, which are never written, as if the client had failed after acquiring them.
+     */
+    private void serveTokenBatch(CorfuPayloadMsg<TokenBatchRequest> msg,
+                                 ChannelHandlerContext ctx, IServerRouter r,
+                                 boolean isMetricsEnabled, List<TokenResponse> responses) {
+        final long serverEpoch = r.getServerEpoch();
+        final PartitionCoordinator partitionCoordinator = coordinator;
+        final List<TokenRequest> requests = msg.getPayload().getRequests();
+        while (responses.size() < requests.size()) {
+            final TokenRequest req = requests.get(responses.size());
+            if (!isServedHere(req)) {
+                r.sendResponse(ctx, msg, new CorfuPayloadMsg<>(CorfuMsgType.WRONG_EPOCH,
+                        serverEpoch));
+                return;
+            }
+            if (partitionCoordinator != null && partitionCoordinator.spansPartitions(req)) {
+                partitionCoordinator.coordinate(req, serverEpoch)
+                        .whenComplete((response, ex) -> {
+                            if (ex != null) {
+                                log.error("tokenBatchRequest: Failed to serve {} : {}",
+                                        req, ex);
+                                r.sendResponse(ctx, msg,
+                                        CorfuMsgType.ERROR_SERVER_BUSY.msg());
+                                return;
+                            }
+                            responses.add(response);
+                            serveTokenBatch(msg, ctx, r, isMetricsEnabled, responses);
+                        });
+                return;
+            }
+            final TokenResponse response;
+            try {
+                response = serveTokenRequest(req, serverEpoch, isMetricsEnabled,
+                        deferred(msg, ctx, r,
+                                () -> serveTokenBatch(msg, ctx, r, isMetricsEnabled, responses)));
+            } catch (LeasedAddresses.UnavailableException e) {
+                log.debug("tokenBatchRequest: {}", e.getMessage());
+                r.sendResponse(ctx, msg, CorfuMsgType.ERROR_SERVER_BUSY.msg());
+                return;
+            }
+            if (response == null) {
+                return;
+            }
+            responses.add(response);
+        }
+        r.sendResponse(ctx, msg, CorfuMsgType.TOKEN_BATCH_RES.payloadMsg(
+                new TokenBatchResponse(responses)));
+    }
+
+    /**
+     * Whether a token request is served by this partition: the streams of the request belong
+     * to it, or, on the first partition, to several partitions. A request sent to another
+     * partition comes from a client with another partitioning than this server, which
+     * fetches the layout again on WRONG_EPOCH. Serving it would update the tails and
+     * conflict parameters of streams this partition does not own.
+     *
+     * @param req the token request
+     * @return true if the request is served by this partition
+     */
+    private boolean isServedHere(TokenRequest req) {
+        final SequencerPartitioning current = partitioning;
+        if (current == null) {
+            return true;
+        }
+        final int partition = req.getSequencerPartition(current.getPartitionCount());
+        if (partition == current.getPartition()
+                || (partition == TokenRequest.CROSS_PARTITION && current.getPartition() == 0)) {
+            return true;
+        }
+        log.warn("isServedHere: Partition {} rejects {} of partition {}",
+                current.getPartition(), req, partition);
+        return false;
+    }
+
+    /**
+     * Defer a request received in a message, which is answered with
+     * {@link CorfuMsgType#ERROR_SERVER_BUSY} if it is dropped.
+     */
+    private static DeferredRequest deferred(CorfuMsg msg, ChannelHandlerContext ctx,
+                                            IServerRouter r, Runnable retry) {
+        return new DeferredRequest(retry,
+                () -> r.sendResponse(ctx, msg, CorfuMsgType.ERROR_SERVER_BUSY.msg()));
+    }
+
+    /**
+     * Serve a single token request.
+     *
+     * @param req              the token request
+     * @param serverEpoch      the epoch of the server
+     * @param isMetricsEnabled whether to collect metrics
+     * @param retry            serves the request again, if it is deferred
+     * @return the response to the request, or null if the request is deferred until the
+     *     streams it writes are released, see {@link #prepare}
+     * @throws LeasedAddresses.UnavailableException if this partition has no leased addresses
+     *     at hand, in which case nothing is allocated
+     */
+    private TokenResponse serveTokenRequest(TokenRequest req, long serverEpoch,
+                                            boolean isMetricsEnabled, DeferredRequest retry) {
         // metrics collection
         if (req.getReqType() == TokenRequest.TK_QUERY) {
             MetricsUtils.incConditionalCounter(isMetricsEnabled, counterToken0, 1);
@@ -408,20 +1040,16 @@ public class SequencerServer extends AbstractServer {
         // dispatch request handler according to request type
         switch (req.getReqType()) {
             case TokenRequest.TK_QUERY:
-                handleTokenQuery(msg, ctx, r);
-                return;
+                return handleTokenQuery(req, serverEpoch);
 
             case TokenRequest.TK_RAW:
-                handleRawToken(msg, ctx, r);
-                return;
+                return handleRawToken(req, serverEpoch);
 
             case TokenRequest.TK_TX:
-                handleTxToken(msg, ctx, r);
-                return;
+                return handleTxToken(req, serverEpoch, isMetricsEnabled);
 
             default:
-                handleAllocation(msg, ctx, r);
-                return;
+                return handleAllocation(req, serverEpoch, retry);
         }
     }
 
@@ -429,19 +1057,15 @@ public class SequencerServer extends AbstractServer {
      * this method serves log-tokens for a raw log implementation.
      * it simply extends the global log tail and returns the global-log token
      *
-     * @param msg corfu message containing raw token
-     * @param ctx netty ChannelHandlerContext
-     * @param r   server router
+     * @param req         the raw token request
+     * @param serverEpoch the epoch of the server
+     * @return the token response
      */
-    private void handleRawToken(CorfuPayloadMsg<TokenRequest> msg,
-                                ChannelHandlerContext ctx, IServerRouter r) {
-        final long serverEpoch = r.getServerEpoch();
-        final TokenRequest req = msg.getPayload();
-
-        Token token = new Token(globalLogTail.getAndAdd(req.getNumTokens()), serverEpoch);
-        r.sendResponse(ctx, msg, CorfuMsgType.TOKEN_RES.payloadMsg(new TokenResponse(
-                TokenType.NORMAL, TokenResponse.NO_CONFLICT_KEY, token, Collections.emptyMap())));
-
+    private TokenResponse handleRawToken(TokenRequest req, long serverEpoch) {
+        Token token = new Token(nextAddresses(req.getNumTokens(), Collections.emptySet()),
+                serverEpoch);
+        return new TokenResponse(TokenType.NORMAL, TokenResponse.NO_CONFLICT_KEY, token,
+                Collections.emptyMap());
     }
 
     /**
@@ -453,105 +1077,495 @@ public class SequencerServer extends AbstractServer {
      * - if the transaction may commit,
      * then a normal allocation of log position(s) is pursued.
      *
-     * @param msg corfu message containing transaction token
-     * @param ctx netty ChannelHandlerContext
-     * @param r   server router
+     * <p>Transactions are serialized among themselves, since they read and update the cache
+     * of conflict parameters. The streams that are checked or written are locked as well, so
+     * that no concurrent allocation can move their tails between the check and the
+     * allocation.
+     *
+     * @param req              the transaction token request
+     * @param serverEpoch      the epoch of the server
+     * @param isMetricsEnabled whether to count aborts
+     * @return the token response
      */
-    private void handleTxToken(CorfuPayloadMsg<TokenRequest> msg,
-                               ChannelHandlerContext ctx, IServerRouter r) {
-        final long serverEpoch = r.getServerEpoch();
-        final TokenRequest req = msg.getPayload();
+    private TokenResponse handleTxToken(TokenRequest req, long serverEpoch,
+                                        boolean isMetricsEnabled) {
+        final TxResolutionInfo txInfo = req.getTxnResolution();
 
         // Since Java does not allow an easy way for a function to return multiple values, this
         // variable is passed to the consumer that will use it to indicate to us if/what key was
         // responsible for an aborted transaction.
         AtomicReference<byte[]> conflictKey = new AtomicReference(TokenResponse.NO_CONFLICT_KEY);
+        AtomicReference<UUID> conflictStream = new AtomicReference<>();
+
+        Set<UUID> lockedStreams = getLockedStreams(req);
+
+        TokenType tokenType;
+        final Map<UUID, Long> backPointerMap = new HashMap<>(req.getStreams().size());
+        long currentTail = Address.ABORTED;
+
+        synchronized (this) {
+            int[] lockedSegments = streamTailToGlobalTailMap.lock(lockedStreams);
+            try {
+                // in the TK_TX request type, the sequencer is utilized for transaction
+                // conflict-resolution. Token allocation is conditioned on commit.
+                // First, we check if the transaction can commit.
+                tokenType = checkHeld(getTxStreams(req), conflictStream);
+                if (tokenType == TokenType.NORMAL) {
+                    tokenType = txnCanCommit(txInfo, conflictKey, conflictStream);
+                }
+                if (tokenType == TokenType.NORMAL) {
+                    currentTail = allocate(req, backPointerMap);
+                    updateConflictParams(txInfo, currentTail + req.getNumTokens() - 1);
+                }
+            } finally {
+                streamTailToGlobalTailMap.unlock(lockedSegments);
+            }
+        }
 
-        // in the TK_TX request type, the sequencer is utilized for transaction conflict-resolution.
-        // Token allocation is conditioned on commit.
-        // First, we check if the transaction can commit.
-        TokenType tokenType = txnCanCommit(req.getTxnResolution(), conflictKey);
         if (tokenType != TokenType.NORMAL) {
             // If the txn aborts, then DO NOT hand out a token.
-            Token token = new Token(Address.ABORTED, serverEpoch);
-            r.sendResponse(ctx, msg, CorfuMsgType.TOKEN_RES.payloadMsg(new TokenResponse(tokenType,
-                    conflictKey.get(), token, Collections.emptyMap())));
-            return;
+            countAbort(tokenType, conflictStream.get(), isMetricsEnabled);
+            return new TokenResponse(tokenType, conflictKey.get(),
+                    new Token(Address.ABORTED, serverEpoch), Collections.emptyMap());
         }
 
-        // if we get here, this means the transaction can commit.
-        // handleAllocation() does the actual allocation of log position(s)
-        // and returns the reponse
-        handleAllocation(msg, ctx, r);
+        log.trace("token {} backpointers {}", currentTail, backPointerMap);
+        return new TokenResponse(currentTail, serverEpoch, backPointerMap);
+    }
+
+    /**
+     * Count an aborted transaction, by cause, and by the stream which caused the abort for the
+     * streams with the most aborts.
+     *
+     * @param cause            the abort cause
+     * @param streamId         the stream which caused the abort, or null if the abort is not
+     *                         due to a particular stream
+     * @param isMetricsEnabled whether to count aborts
+     */
+    private void countAbort(TokenType cause, UUID streamId, boolean isMetricsEnabled) {
+        if (!isMetricsEnabled) {
+            return;
+        }
+        abortCounters.get(cause).inc();
+        if (streamId != null) {
+            abortStreams.increment(streamId);
+        }
     }
 
     /**
      * this method does the actual allocation of log addresses,
-     * it also maintains stream-tails, returns a map of stream-tails for backpointers,
-     * and maintains a conflict-parameters map.
+     * it also maintains stream-tails and returns a map of stream-tails for backpointers.
      *
-     * @param msg corfu message containing allocation
-     * @param ctx netty ChannelHandlerContext
-     * @param r   server router
+     * <p>A request on a single stream, which is the common case, only takes the lock of
+     * the segment of that stream; a request on several streams takes the locks of their
+     * segments in a fixed order.
+     *
+     * @param req         the allocation request
+     * @param serverEpoch the epoch of the server
+     * @param retry       serves the request again, if it is deferred
+     * @return the token response, or null if the request is deferred
      */
-    private void handleAllocation(CorfuPayloadMsg<TokenRequest> msg,
-                                  ChannelHandlerContext ctx, IServerRouter r) {
-        final long serverEpoch = r.getServerEpoch();
-        final TokenRequest req = msg.getPayload();
+    private TokenResponse handleAllocation(TokenRequest req, long serverEpoch,
+                                           DeferredRequest retry) {
+        final long currentTail;
+        final Map<UUID, Long> backPointerMap;
 
-        // extend the tail of the global log by the requested # of tokens
-        // currentTail is the first available position in the global log
-        long currentTail = globalLogTail.getAndAdd(req.getNumTokens());
-        long newTail = currentTail + req.getNumTokens();
-
-        // for each streams:
-        //   1. obtain the last back-pointer for this streams, if exists; -1L otherwise.
-        //   2. record the new global tail as back-pointer for this streams.
-        //   3. extend the tail by the requested # tokens.
-        ImmutableMap.Builder<UUID, Long> backPointerMap = ImmutableMap.builder();
-        for (UUID id : req.getStreams()) {
-
-            // step 1. and 2. (comment above)
-            streamTailToGlobalTailMap.compute(id, (k, v) -> {
-                if (v == null) {
-                    backPointerMap.put(k, Address.NON_EXIST);
-                    return newTail - 1;
-                } else {
-                    backPointerMap.put(k, v);
-                    return newTail - 1;
+        if (req.getStreams().size() == 1) {
+            final UUID streamId = req.getStreams().iterator().next();
+            final long backPointer;
+
+            ReentrantLock lock = streamTailToGlobalTailMap.lock(streamId);
+            try {
+                if (isHeld(req.getStreams())) {
+                    deferredRequests.add(retry);
+                    return null;
                 }
-            });
+                currentTail = nextAddresses(req.getNumTokens(), req.getStreams());
+                backPointer = streamTailToGlobalTailMap.getAndSet(streamId,
+                        currentTail + req.getNumTokens() - 1);
+            } finally {
+                lock.unlock();
+            }
+            recordStreamUpdate(streamId);
+            backPointerMap = Collections.singletonMap(streamId, backPointer);
+        } else {
+            backPointerMap = new HashMap<>(req.getStreams().size());
+            int[] lockedSegments = streamTailToGlobalTailMap.lock(req.getStreams());
+            try {
+                if (isHeld(req.getStreams())) {
+                    deferredRequests.add(retry);
+                    return null;
+                }
+                currentTail = allocate(req, backPointerMap);
+            } finally {
+                streamTailToGlobalTailMap.unlock(lockedSegments);
+            }
         }
 
-        // update the cache of conflict parameters
-        if (req.getTxnResolution() != null) {
-            req.getTxnResolution().getWriteConflictParams().entrySet()
-                    .stream()
-                    // for each entry
-                    .forEach(txEntry ->
-                            // and for each conflict param
-                            txEntry.getValue().stream().forEach(conflictParam ->
-                                    // insert an entry with the new timestamp
-                                    // using the hash code based on the param
-                                    // and the stream id.
-                                    conflictToGlobalTailCache.put(
-                                            getConflictHashCode(txEntry
-                                                    .getKey(), conflictParam),
-                                            newTail - 1)));
-        }
-
-        log.trace("token {} backpointers {}",
-                currentTail, backPointerMap.build());
+        log.trace("token {} backpointers {}", currentTail, backPointerMap);
         // return the token response with the new global tail
         // and the streams backpointers
-        Token token = new Token(currentTail, serverEpoch);
-        r.sendResponse(ctx, msg, CorfuMsgType.TOKEN_RES.payloadMsg(new TokenResponse(
-                TokenType.NORMAL, TokenResponse.NO_CONFLICT_KEY, token,
-                backPointerMap.build())));
+        return new TokenResponse(currentTail, serverEpoch, backPointerMap);
+    }
+
+    /**
+     * Extend the tail of the global log by the requested # of tokens, and record the new
+     * tail as the tail of every stream the request writes to. The caller must hold the
+     * locks of those streams.
+     *
+     * @param req            the token request
+     * @param backPointerMap filled with the previous tail of every stream of the request
+     * @return the first allocated position in the global log
+     */
+    private long allocate(TokenRequest req, Map<UUID, Long> backPointerMap) {
+        // currentTail is the first available position in the global log
+        final long currentTail = nextAddresses(req.getNumTokens(), req.getStreams());
+        final long newStreamTail = currentTail + req.getNumTokens() - 1;
+
+        for (UUID streamId : req.getStreams()) {
+            backPointerMap.put(streamId,
+                    streamTailToGlobalTailMap.getAndSet(streamId, newStreamTail));
+            recordStreamUpdate(streamId);
+        }
+        return currentTail;
+    }
+
+    /**
+     * Take consecutive addresses from the global tail, or from the block leased by this
+     * partition if it is not the first one. The caller must hold the locks of the streams.
+     *
+     * @param numTokens the number of addresses
+     * @param streams   the streams the addresses are handed out for
+     * @return the first address
+     * @throws LeasedAddresses.UnavailableException if no leased block can serve the addresses
+     */
+    private long nextAddresses(long numTokens, Collection<UUID> streams) {
+        final LeasedAddresses leased = leasedAddresses;
+        if (leased == null) {
+            return globalLogTail.getAndAdd(numTokens);
+        }
+        long floor = Address.NON_ADDRESS;
+        for (UUID streamId : streams) {
+            floor = Math.max(floor, streamTailToGlobalTailMap.get(streamId));
+        }
+        return leased.allocate(numTokens, floor);
+    }
+
+    /**
+     * Take consecutive addresses from the global tail, for a request spanning several
+     * partitions, see {@link PartitionCoordinator}.
+     *
+     * @param numTokens the number of addresses
+     * @return the first address
+     */
+    long takeGlobalAddresses(long numTokens) {
+        return globalLogTail.getAndAdd(numTokens);
+    }
+
+    /**
+     * Get the last address of the global log which may be read as a snapshot: the stable
+     * tail if addresses are leased to other partitions, see {@link AddressLeases}.
+     */
+    private long getGlobalTail() {
+        final AddressLeases leases = addressLeases;
+        return leases != null ? leases.getStableTail() : globalLogTail.get() - 1;
+    }
+
+    /**
+     * Whether any of the streams is held by a prepared request.
+     * The caller must hold the locks of the streams.
+     */
+    private boolean isHeld(Collection<UUID> streams) {
+        if (heldStreams.isEmpty()) {
+            return false;
+        }
+        for (UUID streamId : streams) {
+            if (heldStreams.containsKey(streamId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Abort a transaction which reads or writes a stream held by a prepared request.
+     *
+     * @param streams        the streams the transaction reads or writes
+     * @param conflictStream set to the held stream, if any
+     * @return TX_ABORT_CONFLICT if a stream is held, NORMAL otherwise
+     */
+    private TokenType checkHeld(Set<UUID> streams, AtomicReference<UUID> conflictStream) {
+        if (heldStreams.isEmpty()) {
+            return TokenType.NORMAL;
+        }
+        for (UUID streamId : streams) {
+            if (heldStreams.containsKey(streamId)) {
+                log.debug("ABORT[{}] held-stream[{}]", streams, Utils.toReadableId(streamId));
+                conflictStream.set(streamId);
+                return TokenType.TX_ABORT_CONFLICT;
+            }
+        }
+        return TokenType.NORMAL;
+    }
+
+    /**
+     * Get the streams whose tails a transaction reads or writes, which are locked while it
+     * is served.
+     */
+    private static Set<UUID> getLockedStreams(TokenRequest req) {
+        Set<UUID> lockedStreams = new HashSet<>(req.getStreams());
+        req.getTxnResolution().getConflictSet().forEach((streamId, conflictHashes) -> {
+            if (conflictHashes.length == 0) {
+                lockedStreams.add(streamId);
+            }
+        });
+        return lockedStreams;
+    }
+
+    /**
+     * Get every stream a transaction reads or writes.
+     */
+    private static Set<UUID> getTxStreams(TokenRequest req) {
+        Set<UUID> streams = new HashSet<>(req.getStreams());
+        streams.addAll(req.getTxnResolution().getConflictSet().keySet());
+        streams.addAll(req.getTxnResolution().getWriteConflictParams().keySet());
+        return streams;
+    }
+
+    /**
+     * Prepare the part of a request spanning several partitions which is served by this
+     * partition, see {@link PartitionCoordinator}.
+     *
+     * <p>The conflicts of a transaction are checked, and the backpointers of the streams
+     * of the request are read. The streams are then held until the request is committed:
+     * allocations on them are deferred, and transactions on them abort.
+     *
+     * @param id          the id of the request
+     * @param req         the part of the request
+     * @param serverEpoch the epoch of the server
+     * @param retry       prepares the request again, if it is deferred
+     * @return the backpointers of the streams, or the abort cause of the transaction, or
+     *     null if the request is deferred until its streams are released
+     */
+    TokenResponse prepare(long id, TokenRequest req, long serverEpoch,
+                          DeferredRequest retry) {
+        if (completedRequests.getIfPresent(id) != null) {
+            return refuse(id, serverEpoch);
+        }
+        if (req.getReqType() != TokenRequest.TK_TX) {
+            int[] lockedSegments = streamTailToGlobalTailMap.lock(req.getStreams());
+            try {
+                if (isHeld(req.getStreams())) {
+                    deferredRequests.add(retry);
+                    return null;
+                }
+                return hold(id, req, req.getStreams(), serverEpoch);
+            } finally {
+                streamTailToGlobalTailMap.unlock(lockedSegments);
+            }
+        }
+
+        AtomicReference<byte[]> conflictKey = new AtomicReference(TokenResponse.NO_CONFLICT_KEY);
+        AtomicReference<UUID> conflictStream = new AtomicReference<>();
+        final Set<UUID> txStreams = getTxStreams(req);
+        TokenType tokenType;
+        synchronized (this) {
+            int[] lockedSegments = streamTailToGlobalTailMap.lock(txStreams);
+            try {
+                tokenType = checkHeld(txStreams, conflictStream);
+                if (tokenType == TokenType.NORMAL) {
+                    tokenType = txnCanCommit(req.getTxnResolution(), conflictKey,
+                            conflictStream);
+                }
+                if (tokenType == TokenType.NORMAL) {
+                    return hold(id, req, txStreams, serverEpoch);
+                }
+            } finally {
+                streamTailToGlobalTailMap.unlock(lockedSegments);
+            }
+        }
+        return new TokenResponse(tokenType, conflictKey.get(),
+                new Token(Address.ABORTED, serverEpoch), Collections.emptyMap());
+    }
+
+    /**
+     * Hold the streams of a prepared request, and read the backpointers of the streams it
+     * writes. The caller must hold the locks of the streams.
+     */
+    private TokenResponse hold(long id, TokenRequest req, Set<UUID> streams, long serverEpoch) {
+        final Map<UUID, Long> backPointerMap = new HashMap<>(req.getStreams().size());
+        for (UUID streamId : req.getStreams()) {
+            backPointerMap.put(streamId, streamTailToGlobalTailMap.get(streamId));
+        }
+        final PreparedRequest prepared = new PreparedRequest(req, streams);
+        preparedRequests.put(id, prepared);
+        streams.forEach(streamId -> heldStreams.put(streamId, id));
+
+        // An abort received meanwhile found no prepared request: release the streams.
+        if (completedRequests.getIfPresent(id) != null
+                && preparedRequests.remove(id, prepared)) {
+            streams.forEach(streamId -> heldStreams.remove(streamId, id));
+            return refuse(id, serverEpoch);
+        }
+        return new TokenResponse(TokenType.NORMAL, TokenResponse.NO_CONFLICT_KEY,
+                new Token(Address.NON_ADDRESS, serverEpoch), backPointerMap);
+    }
+
+    /**
+     * Refuse to prepare a request which was already aborted. The coordinator gave up on the
+     * request, so the response only tells it apart from a prepared one.
+     */
+    private TokenResponse refuse(long id, long serverEpoch) {
+        log.debug("prepare[{}]: Request already aborted", id);
+        return new TokenResponse(TokenType.TX_ABORT_CONFLICT, TokenResponse.NO_CONFLICT_KEY,
+                new Token(Address.ABORTED, serverEpoch), Collections.emptyMap());
+    }
+
+    /**
+     * Commit a prepared request at an address, or abort it, and release its streams.
+     *
+     * <p>A commit received again is not applied again. An abort of a request which was not
+     * prepared yet keeps the request from being prepared later.
+     *
+     * @param id      the id of the request
+     * @param address the first address of the request, or {@link Address#ABORTED}
+     * @return false if no request was prepared with this id
+     */
+    boolean commit(long id, long address) {
+        final Long completed = completedRequests.asMap().putIfAbsent(id, address);
+        if (completed != null) {
+            log.debug("commit[{}]: Already completed at {}", id, completed);
+            return completed == address;
+        }
+        final PreparedRequest prepared = preparedRequests.remove(id);
+        if (prepared == null) {
+            log.warn("commit[{}]: No prepared request", id);
+            if (address != Address.ABORTED) {
+                // Nothing was applied: only an abort is remembered.
+                completedRequests.asMap().remove(id, address);
+            }
+            return false;
+        }
+        if (prepared.request.getReqType() == TokenRequest.TK_TX) {
+            synchronized (this) {
+                apply(id, prepared, address);
+            }
+        } else {
+            apply(id, prepared, address);
+        }
+
+        // Serve the requests deferred so far; those deferred again wait for another commit.
+        for (int i = deferredRequests.size(); i > 0; i--) {
+            DeferredRequest deferred = deferredRequests.poll();
+            if (deferred == null) {
+                break;
+            }
+            deferred.retry.run();
+        }
+        return true;
+    }
+
+    private void apply(long id, PreparedRequest prepared, long address) {
+        final TokenRequest req = prepared.request;
+        int[] lockedSegments = streamTailToGlobalTailMap.lock(prepared.streams);
+        try {
+            if (address != Address.ABORTED) {
+                final long newStreamTail = address + req.getNumTokens() - 1;
+                for (UUID streamId : req.getStreams()) {
+                    streamTailToGlobalTailMap.getAndSet(streamId, newStreamTail);
+                    recordStreamUpdate(streamId);
+                }
+                if (req.getReqType() == TokenRequest.TK_TX) {
+                    updateConflictParams(req.getTxnResolution(), newStreamTail);
+                }
+            }
+            prepared.streams.forEach(streamId -> heldStreams.remove(streamId, id));
+        } finally {
+            streamTailToGlobalTailMap.unlock(lockedSegments);
+        }
+    }
+
+    /**
+     * Service a request for a block of addresses from the sequencer of another partition.
+     */
+    @ServerHandler(type = CorfuMsgType.SEQUENCER_LEASE_REQ,
+            opTimer = metricsPrefix + "lease-req")
+    public void leaseRequest(CorfuPayloadMsg<AddressLeaseRequest> msg,
+                             ChannelHandlerContext ctx, IServerRouter r,
+                             boolean isMetricsEnabled) {
+        final AddressLeases leases = addressLeases;
+        if (leases == null) {
+            log.warn("leaseRequest: Not the first partition of the sequencer, rejecting {}",
+                    msg.getPayload());
+            r.sendResponse(ctx, msg, CorfuMsgType.NACK.msg());
+            return;
+        }
+        r.sendResponse(ctx, msg, CorfuMsgType.SEQUENCER_LEASE_RES.payloadMsg(
+                leases.grant(msg.getPayload().getPartition(),
+                        msg.getPayload().getNumTokens())));
+    }
+
+    /**
+     * Service a request to prepare the part of a request spanning several partitions.
+     */
+    @ServerHandler(type = CorfuMsgType.SEQUENCER_PREPARE_REQ,
+            opTimer = metricsPrefix + "prepare-req")
+    public void prepareRequest(CorfuPayloadMsg<PartitionPrepareRequest> msg,
+                               ChannelHandlerContext ctx, IServerRouter r,
+                               boolean isMetricsEnabled) {
+        TokenResponse response = prepare(msg.getPayload().getId(),
+                msg.getPayload().getRequest(), r.getServerEpoch(),
+                deferred(msg, ctx, r, () -> prepareRequest(msg, ctx, r, isMetricsEnabled)));
+        if (response != null) {
+            r.sendResponse(ctx, msg, CorfuMsgType.TOKEN_RES.payloadMsg(response));
+        }
+    }
+
+    /**
+     * Service a request to commit or abort a prepared request.
+     */
+    @ServerHandler(type = CorfuMsgType.SEQUENCER_COMMIT_REQ,
+            opTimer = metricsPrefix + "commit-req")
+    public void commitRequest(CorfuPayloadMsg<PartitionCommitRequest> msg,
+                              ChannelHandlerContext ctx, IServerRouter r,
+                              boolean isMetricsEnabled) {
+        boolean committed = commit(msg.getPayload().getId(), msg.getPayload().getAddress());
+        r.sendResponse(ctx, msg, committed ? CorfuMsgType.ACK.msg() : CorfuMsgType.NACK.msg());
+    }
+
+    /**
+     * Record the new timestamp of every conflict parameter written by a transaction.
+     *
+     * @param txInfo    the resolution info of the transaction
+     * @param timestamp the last position allocated to the transaction
+     */
+    private void updateConflictParams(TxResolutionInfo txInfo, long timestamp) {
+        for (Map.Entry<UUID, long[]> txEntry : txInfo.getWriteConflictParams().entrySet()) {
+            final long streamKey = ConflictTable.getStreamKey(txEntry.getKey());
+            for (long conflictHash : txEntry.getValue()) {
+                conflictToGlobalTailCache.put(streamKey, conflictHash, timestamp);
+                if (recordingUpdates) {
+                    recordConflictUpdate(streamKey, conflictHash, timestamp);
+                }
+            }
+        }
+    }
+
+    /**
+     * Append a conflict parameter to the updates to send to the standby.
+     * Must be called while holding the server monitor.
+     */
+    private void recordConflictUpdate(long streamKey, long conflictHash, long address) {
+        if (conflictUpdatesSize + 3 > conflictUpdates.length) {
+            conflictUpdates = Arrays.copyOf(conflictUpdates, conflictUpdates.length * 2);
+        }
+        conflictUpdates[conflictUpdatesSize++] = streamKey;
+        conflictUpdates[conflictUpdatesSize++] = conflictHash;
+        conflictUpdates[conflictUpdatesSize++] = address;
     }
 
     @VisibleForTesting
-    public Cache<String, Long> getConflictToGlobalTailCache() {
+    public ConflictTable getConflictToGlobalTailCache() {
         return conflictToGlobalTailCache;
     }
 }
@@ -8,6 +8,9 @@ import java.util.Map;
 import lombok.Getter;
 import lombok.Setter;
 
+import org.corfudb.infrastructure.log.StreamTailsCheckpoint;
+import org.corfudb.runtime.clients.NettyClientRouter;
+import org.corfudb.runtime.view.Layout;
 import org.corfudb.util.MetricsUtils;
 
 import static org.corfudb.util.MetricsUtils.addJvmMetrics;
@@ -34,6 +37,12 @@ public class ServerContext {
     private static final String KEY_TAIL_SEGMENT = "CURRENT";
     private static final String PREFIX_STARTING_ADDRESS = "STARTING_ADDRESS";
     private static final String KEY_STARTING_ADDRESS = "CURRENT";
+    private static final String PREFIX_STREAM_TAILS = "STREAM_TAILS";
+    private static final String KEY_STREAM_TAILS = "CURRENT";
+    private static final String PREFIX_STREAM_TAILS_SEGMENTS = "STREAM_TAILS_SEGMENTS";
+    private static final String KEY_STREAM_TAILS_SEGMENTS = "CURRENT";
+    private static final String PREFIX_LAYOUT = "LAYOUT";
+    private static final String KEY_LAYOUT = "CURRENT";
 
     /**
      * various duration constants.
@@ -126,4 +135,63 @@ public class ServerContext {
     public void setStartingAddress(long startingAddress) {
         dataStore.put(Long.class, PREFIX_STARTING_ADDRESS, KEY_STARTING_ADDRESS, startingAddress);
     }
+
+    /**
+     * Returns the last checkpoint of the stream tails of the log unit, or null if there is
+     * none.
+     * @return the checkpoint
+     */
+    public StreamTailsCheckpoint getStreamTailsCheckpoint() {
+        return dataStore.get(StreamTailsCheckpoint.class, PREFIX_STREAM_TAILS, KEY_STREAM_TAILS);
+    }
+
+    public void setStreamTailsCheckpoint(StreamTailsCheckpoint checkpoint) {
+        dataStore.put(StreamTailsCheckpoint.class, PREFIX_STREAM_TAILS, KEY_STREAM_TAILS,
+                checkpoint);
+    }
+
+    /**
+     * Returns the log segments written since the last checkpoint of the stream tails.
+     * @return the segments
+     */
+    public long[] getStreamTailsSegments() {
+        long[] segments = dataStore.get(long[].class, PREFIX_STREAM_TAILS_SEGMENTS,
+                KEY_STREAM_TAILS_SEGMENTS);
+        return segments == null ? new long[0] : segments;
+    }
+
+    public void setStreamTailsSegments(long[] segments) {
+        dataStore.put(long[].class, PREFIX_STREAM_TAILS_SEGMENTS, KEY_STREAM_TAILS_SEGMENTS,
+                segments);
+    }
+
+    /**
+     * Returns the layout last committed on this node, or null if there is none.
+     * @return the current layout
+     */
+    public Layout getCurrentLayout() {
+        return dataStore.get(Layout.class, PREFIX_LAYOUT, KEY_LAYOUT);
+    }
+
+    public void setCurrentLayout(Layout layout) {
+        dataStore.put(Layout.class, PREFIX_LAYOUT, KEY_LAYOUT, layout);
+    }
+
+    /**
+     * Returns a new router to another server, with the TLS and SASL options of this server.
+     * @param endpoint the endpoint of the other server
+     * @return the router, to which clients still have to be added
+     */
+    public NettyClientRouter createClientRouter(String endpoint) {
+        return new NettyClientRouter(endpoint.split(":")[0],
+                Integer.parseInt(endpoint.split(":")[1]),
+                Boolean.TRUE.equals(serverConfig.get("--enable-tls")),
+                (String) serverConfig.get("--keystore"),
+                (String) serverConfig.get("--keystore-password-file"),
+                (String) serverConfig.get("--truststore"),
+                (String) serverConfig.get("--truststore-password-file"),
+                Boolean.TRUE.equals(serverConfig.get("--enable-sasl-plain-text-auth")),
+                (String) serverConfig.get("--sasl-plain-text-username-file"),
+                (String) serverConfig.get("--sasl-plain-text-password-file"));
+    }
 }
@@ -26,4 +26,10 @@ public @interface ServerHandler {
      * @return the timer name
      */
     String opTimer() default ""; //
+
+    /**
+     * Returns where the handler is run.
+     * @return the execution of the handler
+     */
+    HandlerExecution execution() default HandlerExecution.DEFAULT;
 }
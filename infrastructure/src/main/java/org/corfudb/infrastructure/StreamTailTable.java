@@ -0,0 +1,271 @@
+package org.corfudb.infrastructure;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.corfudb.runtime.view.Address;
+
+/**
+ * The last global address issued to each stream, used by the sequencer for backpointers
+ * and stream-level conflict resolution.
+ *
+ * <p>The table is split into segments, each an open-addressing table of primitive arrays
+ * keyed by the 128 bits of the stream ID. Every segment is guarded by its own lock, which
+ * also orders the token allocations on the streams of that segment: a caller must hold the
+ * lock of a stream's segment (see {@link #lock(Collection)}) to update its tail. Lookups
+ * take no lock.
+ *
+ * <p>Stream tails cannot be evicted without losing backpointers, so a segment doubles in
+ * size when it fills up rather than dropping entries.
+ */
+public class StreamTailTable {
+
+    /**
+     * The memory used per slot: the two halves of the stream ID and the tail.
+     */
+    public static final int BYTES_PER_SLOT = 3 * Long.BYTES;
+
+    private static final int NUM_SEGMENTS = 64;
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    /**
+     * The slots of a segment. Keys are written before the tail is published through the
+     * volatile write to {@link #tails}, and are never changed afterwards.
+     */
+    private static final class Slots {
+        final long[] msb;
+        final long[] lsb;
+        final AtomicLongArray tails;
+        final int mask;
+
+        Slots(int capacity) {
+            msb = new long[capacity];
+            lsb = new long[capacity];
+            long[] empty = new long[capacity];
+            Arrays.fill(empty, EMPTY);
+            tails = new AtomicLongArray(empty);
+            mask = capacity - 1;
+        }
+
+        int find(long streamMsb, long streamLsb) {
+            int i = (int) mix(streamMsb ^ mix(streamLsb)) & mask;
+            while (tails.get(i) != EMPTY && (msb[i] != streamMsb || lsb[i] != streamLsb)) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+    }
+
+    private static final class Segment {
+        final ReentrantLock lock = new ReentrantLock();
+        volatile Slots slots;
+        int size;
+
+        Segment(int capacity) {
+            slots = new Slots(capacity);
+        }
+    }
+
+    private final Segment[] segments = new Segment[NUM_SEGMENTS];
+
+    private final int initialSegmentCapacity;
+
+    /**
+     * Returns a new StreamTailTable.
+     *
+     * @param initialMemory the number of bytes initially allocated for the table
+     */
+    public StreamTailTable(long initialMemory) {
+        int capacity = 2;
+        while (capacity < (1 << 30)
+                && (long) capacity * 2 * BYTES_PER_SLOT * NUM_SEGMENTS <= initialMemory) {
+            capacity *= 2;
+        }
+        initialSegmentCapacity = capacity;
+        for (int i = 0; i < NUM_SEGMENTS; i++) {
+            segments[i] = new Segment(capacity);
+        }
+    }
+
+    /**
+     * Get the last address issued to a stream.
+     *
+     * @param streamId the stream ID
+     * @return the tail of the stream, or {@link Address#NON_EXIST} if it has none
+     */
+    public long get(UUID streamId) {
+        Slots slots = segmentFor(streamId).slots;
+        long tail = slots.tails.get(slots.find(streamId.getMostSignificantBits(),
+                streamId.getLeastSignificantBits()));
+        return tail == EMPTY ? Address.NON_EXIST : tail;
+    }
+
+    /**
+     * Set the tail of a stream. The caller must hold the lock of the stream's segment.
+     *
+     * @param streamId the stream ID
+     * @param tail     the new tail
+     * @return the previous tail of the stream, or {@link Address#NON_EXIST} if it had none
+     */
+    public long getAndSet(UUID streamId, long tail) {
+        final Segment segment = segmentFor(streamId);
+        final long streamMsb = streamId.getMostSignificantBits();
+        final long streamLsb = streamId.getLeastSignificantBits();
+        Slots slots = segment.slots;
+        int i = slots.find(streamMsb, streamLsb);
+        long previous = slots.tails.get(i);
+        if (previous != EMPTY) {
+            slots.tails.set(i, tail);
+            return previous;
+        }
+
+        if ((segment.size + 1) * 4 > (slots.mask + 1) * 3) {
+            slots = grow(segment);
+            i = slots.find(streamMsb, streamLsb);
+        }
+        slots.msb[i] = streamMsb;
+        slots.lsb[i] = streamLsb;
+        slots.tails.set(i, tail);
+        segment.size++;
+        return Address.NON_EXIST;
+    }
+
+    /**
+     * Lock the segments of a set of streams, in a fixed order so that requests on several
+     * streams cannot deadlock.
+     *
+     * @param streams the streams to lock
+     * @return the locked segments, to be passed to {@link #unlock(int[])}
+     */
+    public int[] lock(Collection<UUID> streams) {
+        int[] locked = streams.stream()
+                .mapToInt(StreamTailTable::segmentIndex)
+                .distinct()
+                .sorted()
+                .toArray();
+        for (int segment : locked) {
+            segments[segment].lock.lock();
+        }
+        return locked;
+    }
+
+    /**
+     * Lock the segment of a single stream.
+     *
+     * @param streamId the stream to lock
+     * @return the lock, which the caller must release
+     */
+    public ReentrantLock lock(UUID streamId) {
+        ReentrantLock lock = segmentFor(streamId).lock;
+        lock.lock();
+        return lock;
+    }
+
+    /**
+     * Unlock segments locked by {@link #lock(Collection)}.
+     *
+     * @param locked the locked segments
+     */
+    public void unlock(int[] locked) {
+        for (int segment : locked) {
+            segments[segment].lock.unlock();
+        }
+    }
+
+    /**
+     * Replace the content of the table. Takes the locks of all segments.
+     *
+     * @param streamTails the new tails
+     */
+    public void reset(Map<UUID, Long> streamTails) {
+        for (Segment segment : segments) {
+            segment.lock.lock();
+        }
+        try {
+            for (Segment segment : segments) {
+                segment.slots = new Slots(initialSegmentCapacity);
+                segment.size = 0;
+            }
+            streamTails.forEach(this::getAndSet);
+        } finally {
+            for (Segment segment : segments) {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Get a copy of the table, for logging and debugging.
+     */
+    public Map<UUID, Long> toMap() {
+        Map<UUID, Long> map = new HashMap<>();
+        for (Segment segment : segments) {
+            Slots slots = segment.slots;
+            for (int i = 0; i <= slots.mask; i++) {
+                long tail = slots.tails.get(i);
+                if (tail != EMPTY) {
+                    map.put(new UUID(slots.msb[i], slots.lsb[i]), tail);
+                }
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Get the memory used by the table, in bytes.
+     */
+    public long getMemoryFootprint() {
+        long slots = 0;
+        for (Segment segment : segments) {
+            slots += segment.slots.mask + 1;
+        }
+        return slots * BYTES_PER_SLOT;
+    }
+
+    /**
+     * Double the capacity of a segment. Concurrent lookups keep reading the old slots,
+     * which are no longer modified, until they observe the new ones.
+     */
+    private Slots grow(Segment segment) {
+        Slots old = segment.slots;
+        Slots grown = new Slots((old.mask + 1) * 2);
+        for (int i = 0; i <= old.mask; i++) {
+            long tail = old.tails.get(i);
+            if (tail != EMPTY) {
+                int j = grown.find(old.msb[i], old.lsb[i]);
+                grown.msb[j] = old.msb[i];
+                grown.lsb[j] = old.lsb[i];
+                grown.tails.set(j, tail);
+            }
+        }
+        segment.slots = grown;
+        return grown;
+    }
+
+    private Segment segmentFor(UUID streamId) {
+        return segments[segmentIndex(streamId)];
+    }
+
+    private static int segmentIndex(UUID streamId) {
+        return (int) (mix(streamId.getLeastSignificantBits() ^ streamId.getMostSignificantBits())
+                >>> (Long.SIZE - Integer.numberOfTrailingZeros(NUM_SEGMENTS)));
+    }
+
+    /**
+     * The finalizer of MurmurHash3, which spreads the bits of a 64-bit value.
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,78 @@
+package org.corfudb.infrastructure;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Counts events by stream, such as transaction aborts, for the streams with the most events
+ * only, in bounded memory.
+ *
+ * <p>The counts follow the space saving algorithm: at most {@link #capacity} streams are
+ * counted, and a stream which is not counted when the table is full replaces the stream with
+ * the lowest count, and takes over that count plus one. The count of a stream is thus never
+ * below its real count, and is above it by at most the count of the stream it replaced. A
+ * stream with more events than the total divided by the capacity is always counted.
+ */
+public class TopStreamCounts {
+
+    private final int capacity;
+
+    private final Map<UUID, long[]> counts;
+
+    /**
+     * Returns a new TopStreamCounts.
+     *
+     * @param capacity the maximum number of streams counted
+     */
+    public TopStreamCounts(int capacity) {
+        this.capacity = capacity;
+        this.counts = new HashMap<>(capacity * 2);
+    }
+
+    /**
+     * Count an event on a stream.
+     *
+     * @param streamId the stream
+     */
+    public synchronized void increment(UUID streamId) {
+        long[] count = counts.get(streamId);
+        if (count != null) {
+            count[0]++;
+            return;
+        }
+        long min = 0;
+        if (counts.size() >= capacity) {
+            UUID minStream = null;
+            for (Map.Entry<UUID, long[]> entry : counts.entrySet()) {
+                if (minStream == null || entry.getValue()[0] < min) {
+                    minStream = entry.getKey();
+                    min = entry.getValue()[0];
+                }
+            }
+            counts.remove(minStream);
+        }
+        counts.put(streamId, new long[] {min + 1});
+    }
+
+    /**
+     * Get the counted streams, from the highest count to the lowest.
+     *
+     * @return the count of each counted stream
+     */
+    public synchronized Map<UUID, Long> getTop() {
+        Map<UUID, Long> top = new LinkedHashMap<>();
+        counts.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]))
+                .forEach(entry -> top.put(entry.getKey(), entry.getValue()[0]));
+        return top;
+    }
+
+    /**
+     * Forget all the counts.
+     */
+    public synchronized void clear() {
+        counts.clear();
+    }
+}
@@ -3,6 +3,7 @@ package org.corfudb.infrastructure.log;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -21,6 +22,7 @@ import lombok.extern.slf4j.Slf4j;
 public class InMemoryStreamLog implements StreamLog, StreamLogWithRankedAddressSpace {
 
     private final AtomicLong globalTail = new AtomicLong(0L);
+    private final StreamTailIndex streamTails = new StreamTailIndex();
     private Map<Long, LogData> logCache;
     private Set<Long> trimmed;
     private volatile long startingAddress;
@@ -44,6 +46,7 @@ public class InMemoryStreamLog implements StreamLog, StreamLogWithRankedAddressS
             throwLogUnitExceptionsIfNecessary(address, entry);
         }
         logCache.put(address, entry);
+        streamTails.update(address, entry);
 
 
         globalTail.getAndUpdate(maxTail -> entry.getGlobalAddress() > maxTail
@@ -71,6 +74,11 @@ public class InMemoryStreamLog implements StreamLog, StreamLogWithRankedAddressS
         return globalTail.get();
     }
 
+    @Override
+    public Map<UUID, Long> getStreamTails() {
+        return streamTails.toMap();
+    }
+
     @Override
     public long getTrimMark() {
         return startingAddress;
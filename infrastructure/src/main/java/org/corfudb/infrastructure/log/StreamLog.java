@@ -1,6 +1,8 @@
 package org.corfudb.infrastructure.log;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
 
 import org.corfudb.protocols.wireprotocol.LogData;
 
@@ -48,6 +50,11 @@ public interface StreamLog {
      */
     long getGlobalTail();
 
+    /**
+     * Get the highest address written to every stream.
+     */
+    Map<UUID, Long> getStreamTails();
+
     /**
      * Get the first untrimmed address in the address space.
      */
@@ -6,6 +6,7 @@ import com.google.common.hash.Hashing;
 import com.google.protobuf.AbstractMessage;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.UnsafeByteOperations;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
@@ -25,6 +26,7 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -32,12 +34,17 @@ import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
 
 import javax.annotation.Nullable;
 
@@ -55,6 +62,9 @@ import org.corfudb.infrastructure.ServerContext;
 import org.corfudb.protocols.logprotocol.CheckpointEntry;
 import org.corfudb.protocols.wireprotocol.IMetadata;
 import org.corfudb.protocols.wireprotocol.LogData;
+import org.corfudb.protocols.wireprotocol.SegmentChunk;
+import org.corfudb.protocols.wireprotocol.SegmentFileInfo;
+import org.corfudb.protocols.wireprotocol.SegmentListResponse;
 import org.corfudb.runtime.exceptions.DataCorruptionException;
 import org.corfudb.runtime.exceptions.OverwriteException;
 
@@ -79,6 +89,12 @@ public class StreamLogFiles implements StreamLog, StreamLogWithRankedAddressSpac
     public static int VERSION = 1;
     public static int RECORDS_PER_LOG_FILE = 10000;
     public static int TRIM_THRESHOLD = (int) (.25 * RECORDS_PER_LOG_FILE);
+    private static final Pattern SEGMENT_FILE_NAME =
+            Pattern.compile("[0-9]+\\.log(\\.trimmed|\\.pending)?");
+    /**
+     * How long to wait for the readers of a segment to release it before it is replaced.
+     */
+    public static final long INSTALL_WAIT_MILLIS = 1000;
     public final String logDir;
     private final boolean noVerify;
     private final ServerContext serverContext;
@@ -89,6 +105,22 @@ public class StreamLogFiles implements StreamLog, StreamLogWithRankedAddressSpac
     private long lastSegment;
     private volatile long startingAddress;
 
+    /**
+     * The highest address of every stream. It is checkpointed in the data store every time
+     * the tail moves to a new segment, and the segments written since the last checkpoint
+     * are recorded in the data store before they are written to, so that on a restart only
+     * those segments are scanned to rebuild the stream tails.
+     */
+    private final StreamTailIndex streamTails = new StreamTailIndex();
+    private final Set<Long> streamTailsSegments = ConcurrentHashMap.newKeySet();
+    private volatile boolean streamTailsCheckpointNeeded = false;
+
+    /**
+     * Held for reading by appends, and for writing by checkpoints of the stream tails, so
+     * that an entry is either in the checkpoint or in a recorded segment.
+     */
+    private final ReadWriteLock streamTailsLock = new ReentrantReadWriteLock();
+
     /**
      * Returns a file-based stream log object.
      * @param serverContext  Context object that provides server state such as epoch,
@@ -111,6 +143,7 @@ public class StreamLogFiles implements StreamLog, StreamLogWithRankedAddressSpac
         // initializing the tail segment (i.e. initializeMaxGlobalAddress)
         initializeStartingAddress();
         initializeMaxGlobalAddress();
+        initializeStreamTails();
 
         // This can happen if a prefix trim happens on
         // addresses that haven't been written
@@ -208,9 +241,96 @@ public class StreamLogFiles implements StreamLog, StreamLogWithRankedAddressSpac
         if (lastSegment < segment) {
             serverContext.setTailSegment(segment);
             lastSegment = segment;
+            streamTailsCheckpointNeeded = true;
         }
     }
 
+    @Override
+    public Map<UUID, Long> getStreamTails() {
+        return streamTails.toMap();
+    }
+
+    /**
+     * Rebuild the stream tails from their last checkpoint and the segments written since.
+     * Without a checkpoint, as for a log written before stream tails were maintained, every
+     * segment is scanned once.
+     */
+    private void initializeStreamTails() {
+        StreamTailsCheckpoint checkpoint = serverContext.getStreamTailsCheckpoint();
+        Set<Long> segments = new TreeSet<>();
+        if (checkpoint == null) {
+            for (long segment = startingAddress / RECORDS_PER_LOG_FILE; segment <= lastSegment;
+                 segment++) {
+                segments.add(segment);
+            }
+        } else {
+            streamTails.updateAll(checkpoint.getStreamTails());
+            for (long segment : serverContext.getStreamTailsSegments()) {
+                segments.add(segment);
+            }
+            segments.add(lastSegment);
+        }
+
+        segments.forEach(this::indexSegment);
+        checkpointStreamTails();
+        log.info("initializeStreamTails: Scanned {} segments", segments.size());
+    }
+
+    /**
+     * Add the entries of a segment file to the stream tails.
+     */
+    private void indexSegment(long segment) {
+        String segmentPath = logDir + File.separator + segment + ".log";
+        if (!new File(segmentPath).exists()) {
+            return;
+        }
+        try {
+            for (LogEntry entry : getCompactedEntries(segmentPath, new HashSet<>())
+                    .getEntries()) {
+                streamTails.update(entry.getGlobalAddress(), getLogData(entry));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Persist the stream tails, and start recording the segments written from now on.
+     */
+    private void checkpointStreamTails() {
+        streamTailsLock.writeLock().lock();
+        try {
+            streamTailsCheckpointNeeded = false;
+            synchronized (streamTailsSegments) {
+                serverContext.setStreamTailsCheckpoint(
+                        new StreamTailsCheckpoint(streamTails.toMap()));
+                streamTailsSegments.clear();
+                persistStreamTailsSegments();
+            }
+        } finally {
+            streamTailsLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Record that a segment is about to be written, if it was not recorded since the last
+     * checkpoint of the stream tails. Must be called while holding the read lock.
+     */
+    private void recordStreamTailsSegment(long segment) {
+        if (!streamTailsSegments.contains(segment)) {
+            synchronized (streamTailsSegments) {
+                if (streamTailsSegments.add(segment)) {
+                    persistStreamTailsSegments();
+                }
+            }
+        }
+    }
+
+    private void persistStreamTailsSegments() {
+        serverContext.setStreamTailsSegments(streamTailsSegments.stream()
+                .mapToLong(Long::longValue).toArray());
+    }
+
     @Override
     public void prefixTrim(long address) {
         if (address < startingAddress) {
@@ -564,8 +684,8 @@ public class StreamLogFiles implements StreamLog, StreamLogWithRankedAddressSpac
     }
 
     private LogData getLogData(LogEntry entry) {
-        ByteBuf data = Unpooled.wrappedBuffer(entry.getData().toByteArray());
-        LogData logData = new LogData(org.corfudb.protocols.wireprotocol
+        ByteBuf data = Unpooled.wrappedBuffer(entry.getData().asReadOnlyByteBuffer());
+        LogData logData = LogData.wrap(org.corfudb.protocols.wireprotocol
                 .DataType.typeMap.get((byte) entry.getDataType().getNumber()), data);
 
         logData.setBackpointerMap(getUUIDLongMap(entry.getBackpointersMap()));
@@ -853,15 +973,17 @@ public class StreamLogFiles implements StreamLog, StreamLogWithRankedAddressSpac
     }
 
     LogEntry getLogEntry(long address, LogData entry) {
-        byte[] data = new byte[0];
-
-        if (entry.getData() != null) {
-            data = entry.getData();
+        // The payload is not copied, as the entry is written out before the LogData is
+        // released.
+        ByteString data = ByteString.EMPTY;
+        ByteBuf dataBuffer = entry.getDataBuffer();
+        if (dataBuffer != null) {
+            data = UnsafeByteOperations.unsafeWrap(dataBuffer.nioBuffer());
         }
 
         LogEntry.Builder logEntryBuilder = LogEntry.newBuilder()
                 .setDataType(Types.DataType.forNumber(entry.getType().ordinal()))
-                .setData(ByteString.copyFrom(data))
+                .setData(data)
                 .setGlobalAddress(address)
                 .addAllStreams(getStrUUID(entry.getStreams()))
                 .putAllBackpointers(getStrLongMap(entry.getBackpointerMap()));
@@ -954,7 +1076,9 @@ public class StreamLogFiles implements StreamLog, StreamLogWithRankedAddressSpac
 
         SegmentHandle fh = getSegmentHandleForAddress(address);
 
+        streamTailsLock.readLock().lock();
         try {
+            recordStreamTailsSegment(fh.getSegment());
             // make sure the entry doesn't currently exist...
             // (probably need a faster way to do this - high watermark?)
             if (fh.getKnownAddresses().containsKey(address)
@@ -971,13 +1095,19 @@ public class StreamLogFiles implements StreamLog, StreamLogWithRankedAddressSpac
                 AddressMetaData addressMetaData = writeRecord(fh, address, entry);
                 fh.getKnownAddresses().put(address, addressMetaData);
             }
+            streamTails.update(address, entry);
             log.trace("Disk_write[{}]: Written to disk.", address);
         } catch (IOException e) {
             log.error("Disk_write[{}]: Exception", address, e);
             throw new RuntimeException(e);
         } finally {
+            streamTailsLock.readLock().unlock();
             fh.release();
         }
+
+        if (streamTailsCheckpointNeeded) {
+            checkpointStreamTails();
+        }
     }
 
     @Override
@@ -999,6 +1129,193 @@ public class StreamLogFiles implements StreamLog, StreamLogWithRankedAddressSpac
         }
     }
 
+    /**
+     * List the files of all sealed segments, i.e. the segments that are not trimmed and that
+     * precede the segment holding the global tail. Sealed segments are no longer appended to
+     * in the common case, so they can be transferred to another log unit file by file.
+     *
+     * @return The sealed segment files, and the first address of the open tail segment.
+     */
+    public SegmentListResponse listSealedSegments() {
+        final long tail = getGlobalTail();
+        final long tailSegment = tail / RECORDS_PER_LOG_FILE;
+        List<SegmentFileInfo> files = new ArrayList<>();
+
+        for (long segment = startingAddress / RECORDS_PER_LOG_FILE; segment < tailSegment;
+             segment++) {
+            String segmentPath = logDir + File.separator + segment + ".log";
+            for (String path : Arrays.asList(segmentPath, getTrimmedFilePath(segmentPath),
+                    getPendingTrimsFilePath(segmentPath))) {
+                File file = new File(path);
+                if (file.exists()) {
+                    files.add(new SegmentFileInfo(file.getName(), file.length()));
+                }
+            }
+        }
+
+        return new SegmentListResponse(tailSegment * RECORDS_PER_LOG_FILE, tail, files);
+    }
+
+    /**
+     * Read a chunk of a segment file. The bytes are transferred directly from the file
+     * channel into the returned buffer.
+     *
+     * @param fileName The name of the segment file.
+     * @param offset   The offset in the file to read from.
+     * @param length   The maximum number of bytes to read.
+     * @return A buffer holding the chunk, which is empty if the offset is past the end of file.
+     */
+    public ByteBuf readSegmentChunk(String fileName, long offset, int length) {
+        try (FileChannel fc = getChannel(getSegmentFilePath(logDir, fileName), true)) {
+            int toRead = (int) Math.max(0, Math.min(length, fc.size() - offset));
+            ByteBuf buf = Unpooled.buffer(toRead);
+            while (buf.writableBytes() > 0) {
+                if (buf.writeBytes(fc, offset + buf.writerIndex(), buf.writableBytes()) < 0) {
+                    break;
+                }
+            }
+            return buf;
+        } catch (IOException e) {
+            log.error("readSegmentChunk: Error reading {}", fileName, e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Write a chunk of a segment file received from another log unit to the transfer
+     * directory, where it is staged until {@link #installSegments(List)} is called.
+     * A chunk at offset zero truncates any previously staged copy of the file.
+     *
+     * @param chunk The chunk to write.
+     * @throws DataCorruptionException if the chunk does not match its checksum.
+     */
+    public void writeSegmentChunk(SegmentChunk chunk) {
+        if (!chunk.isValid()) {
+            log.error("writeSegmentChunk: checksum mismatch for {} at offset {}",
+                    chunk.getFileName(), chunk.getOffset());
+            throw new DataCorruptionException();
+        }
+
+        File transferDir = new File(getTransferDir());
+        if (!transferDir.exists()) {
+            transferDir.mkdirs();
+        }
+
+        EnumSet<StandardOpenOption> options = EnumSet.of(StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE);
+        if (chunk.getOffset() == 0) {
+            options.add(StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        ByteBuf data = chunk.getData();
+        try (FileChannel fc = FileChannel.open(FileSystems.getDefault()
+                .getPath(getSegmentFilePath(getTransferDir(), chunk.getFileName())), options)) {
+            int written = 0;
+            while (written < data.readableBytes()) {
+                written += data.getBytes(data.readerIndex() + written, fc,
+                        chunk.getOffset() + written, data.readableBytes() - written);
+            }
+        } catch (IOException e) {
+            log.error("writeSegmentChunk: Error writing {}", chunk.getFileName(), e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Install segment files which have been staged by {@link #writeSegmentChunk(SegmentChunk)}
+     * into the log, replacing the local copies of those segments. Every installed segment
+     * is reopened, which verifies the checksums of all its records, and the global tail is
+     * moved forward to the last installed address.
+     *
+     * <p>A segment which is replaced must not be in use: the install waits up to
+     * {@link #INSTALL_WAIT_MILLIS} for its readers to release it, and is refused otherwise,
+     * before any file is replaced.
+     *
+     * @param files The staged files, with their expected lengths.
+     * @return The installed segments.
+     * @throws DataCorruptionException if a staged file is incomplete or a record is corrupt.
+     * @throws IllegalStateException   if a segment to replace is still in use.
+     */
+    public synchronized Set<Long> installSegments(List<SegmentFileInfo> files) {
+        for (SegmentFileInfo file : files) {
+            File staged = new File(getSegmentFilePath(getTransferDir(), file.getFileName()));
+            if (!staged.exists() || staged.length() != file.getLength()) {
+                log.error("installSegments: staged file {} is incomplete, expected {} bytes",
+                        file.getFileName(), file.getLength());
+                throw new DataCorruptionException();
+            }
+        }
+
+        // New readers wait on this monitor, so the handles are idle once they are released.
+        final long deadline = System.currentTimeMillis() + INSTALL_WAIT_MILLIS;
+        for (SegmentFileInfo file : files) {
+            SegmentHandle sh = writeChannels.get(getSegmentPath(file));
+            if (sh != null && !sh.awaitRelease(deadline)) {
+                log.warn("installSegments: Segment {} is in use, refCount is {}",
+                        sh.getSegment(), sh.getRefCount());
+                throw new IllegalStateException("Segment " + sh.getSegment() + " is in use");
+            }
+        }
+
+        Set<Long> segments = new HashSet<>();
+        for (SegmentFileInfo file : files) {
+            SegmentHandle sh = writeChannels.remove(getSegmentPath(file));
+            if (sh != null) {
+                sh.close();
+            }
+            try {
+                Files.move(Paths.get(getSegmentFilePath(getTransferDir(), file.getFileName())),
+                        Paths.get(getSegmentFilePath(logDir, file.getFileName())),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                log.error("installSegments: Error installing {}", file.getFileName(), e);
+                throw new RuntimeException(e);
+            }
+            segments.add(Long.parseLong(file.getFileName().split("\\.")[0]));
+        }
+
+        for (long segment : segments) {
+            streamTailsLock.readLock().lock();
+            try {
+                recordStreamTailsSegment(segment);
+                indexSegment(segment);
+            } finally {
+                streamTailsLock.readLock().unlock();
+            }
+            SegmentHandle sh = getSegmentHandleForAddress(segment * RECORDS_PER_LOG_FILE);
+            try {
+                sh.getKnownAddresses().keySet().stream()
+                        .max(Long::compare)
+                        .ifPresent(this::syncTailSegment);
+            } finally {
+                sh.release();
+            }
+        }
+
+        log.info("installSegments: installed {} files of {} segments", files.size(),
+                segments.size());
+        return segments;
+    }
+
+    private String getSegmentPath(SegmentFileInfo file) {
+        return logDir + File.separator + file.getFileName().split("\\.")[0] + ".log";
+    }
+
+    private String getTransferDir() {
+        return serverContext.getServerConfig().get("--log-path") + File.separator + "transfer";
+    }
+
+    /**
+     * Resolve the name of a segment file within a directory, rejecting names which are not
+     * segment files so that a transfer cannot reach outside of the directory.
+     */
+    private static String getSegmentFilePath(String dir, String fileName) {
+        if (!SEGMENT_FILE_NAME.matcher(fileName).matches()) {
+            throw new IllegalArgumentException("Not a segment file: " + fileName);
+        }
+        return dir + File.separator + fileName;
+    }
+
     @Override
     public void close() {
         for (SegmentHandle fh : writeChannels.values()) {
@@ -1072,6 +1389,29 @@ public class StreamLogFiles implements StreamLog, StreamLogWithRankedAddressSpac
                 throw new IllegalStateException("refCount cannot be less than 0, segment " + segment);
             }
             refCount--;
+            if (refCount == 0) {
+                notifyAll();
+            }
+        }
+
+        /**
+         * Wait until this segment is released by all its readers.
+         *
+         * @param deadline The time to wait until, in milliseconds.
+         * @return Whether the segment was released before the deadline.
+         */
+        public synchronized boolean awaitRelease(long deadline) {
+            long remaining = deadline - System.currentTimeMillis();
+            while (refCount != 0 && remaining > 0) {
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                remaining = deadline - System.currentTimeMillis();
+            }
+            return refCount == 0;
         }
 
         public void close() {
@@ -0,0 +1,67 @@
+package org.corfudb.infrastructure.log;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.corfudb.protocols.logprotocol.CheckpointEntry;
+import org.corfudb.protocols.wireprotocol.IMetadata;
+import org.corfudb.runtime.view.Address;
+
+/**
+ * The highest address held by a log unit for every stream, maintained as entries are
+ * appended, so that a new sequencer can be bootstrapped without scanning the log.
+ *
+ * <p>As in the sequencer recovery of the FastObjectLoader, the end of a checkpoint also
+ * counts as a write to the checkpointed stream, at the address the checkpoint starts from.
+ * Tails are never lowered, so trimming the log does not move them back.
+ */
+public class StreamTailIndex {
+
+    private final Map<UUID, Long> tails = new ConcurrentHashMap<>();
+
+    /**
+     * Record an entry written at an address.
+     *
+     * @param address the address of the entry
+     * @param entry   the metadata of the entry
+     */
+    public void update(long address, IMetadata entry) {
+        for (UUID streamId : entry.getStreams()) {
+            update(streamId, address);
+        }
+        if (entry.hasCheckpointMetadata()
+                && entry.getCheckpointType() == CheckpointEntry.CheckpointEntryType.END
+                && Address.isAddress(entry.getCheckpointedStreamStartLogAddress())) {
+            update(entry.getCheckpointedStreamId(),
+                    entry.getCheckpointedStreamStartLogAddress());
+        }
+    }
+
+    /**
+     * Record that a stream was written at an address.
+     *
+     * @param streamId the stream
+     * @param address  the address
+     */
+    public void update(UUID streamId, long address) {
+        tails.merge(streamId, address, Math::max);
+    }
+
+    /**
+     * Record the tails of several streams.
+     *
+     * @param streamTails the tails to merge into the index
+     */
+    public void updateAll(Map<UUID, Long> streamTails) {
+        streamTails.forEach(this::update);
+    }
+
+    /**
+     * Get a copy of the tails.
+     */
+    public Map<UUID, Long> toMap() {
+        return new HashMap<>(tails);
+    }
+}
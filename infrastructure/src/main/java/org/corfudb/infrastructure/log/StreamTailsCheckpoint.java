@@ -0,0 +1,20 @@
+package org.corfudb.infrastructure.log;
+
+import java.util.Map;
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * The stream tails of a log unit as of a point in time, persisted in the data store.
+ * The segments written after that point are persisted separately, see
+ * {@link StreamLogFiles}.
+ */
+@Data
+@AllArgsConstructor
+public class StreamTailsCheckpoint {
+
+    /** The highest address of every stream. */
+    private Map<UUID, Long> streamTails;
+}
@@ -0,0 +1,45 @@
+package org.corfudb.protocols.wireprotocol;
+
+import io.netty.buffer.ByteBuf;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A block of consecutive global addresses leased to the sequencer of a partition.
+ *
+ * <p>The partition may hand out the addresses of the block for the duration of the lease
+ * term only, counted from the time it sent its request. Once the term is over, the addresses
+ * it did not hand out are given up.</p>
+ */
+@Data
+@AllArgsConstructor
+public class AddressLease implements ICorfuPayload<AddressLease> {
+
+    /** The first address of the block. */
+    final long start;
+
+    /** The number of addresses in the block. */
+    final long numTokens;
+
+    /** The term of the lease, in milliseconds. */
+    final long termMillis;
+
+    /**
+     * Deserialization Constructor from ByteBuf to AddressLease.
+     *
+     * @param buf The buffer to deserialize
+     */
+    public AddressLease(ByteBuf buf) {
+        start = buf.readLong();
+        numTokens = buf.readLong();
+        termMillis = buf.readLong();
+    }
+
+    @Override
+    public void doSerialize(ByteBuf buf) {
+        buf.writeLong(start);
+        buf.writeLong(numTokens);
+        buf.writeLong(termMillis);
+    }
+}
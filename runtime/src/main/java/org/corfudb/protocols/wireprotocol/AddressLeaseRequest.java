@@ -0,0 +1,40 @@
+package org.corfudb.protocols.wireprotocol;
+
+import io.netty.buffer.ByteBuf;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A request from the sequencer of a partition for a block of global addresses, sent to the
+ * sequencer of the first partition.
+ *
+ * <p>A new lease replaces the previous lease of the partition, whose unused addresses are
+ * given up.</p>
+ */
+@Data
+@AllArgsConstructor
+public class AddressLeaseRequest implements ICorfuPayload<AddressLeaseRequest> {
+
+    /** The partition which requests the lease. */
+    final int partition;
+
+    /** The number of addresses to lease. */
+    final long numTokens;
+
+    /**
+     * Deserialization Constructor from ByteBuf to AddressLeaseRequest.
+     *
+     * @param buf The buffer to deserialize
+     */
+    public AddressLeaseRequest(ByteBuf buf) {
+        partition = buf.readInt();
+        numTokens = buf.readLong();
+    }
+
+    @Override
+    public void doSerialize(ByteBuf buf) {
+        buf.writeInt(partition);
+        buf.writeLong(numTokens);
+    }
+}
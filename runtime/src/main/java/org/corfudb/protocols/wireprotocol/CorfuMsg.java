@@ -67,6 +67,7 @@ public class CorfuMsg {
 
     // The wire format of the NettyCorfuMessage message is below:
     //    markerField(1) | client ID(8) | request ID(8) |  epoch(8)   |  type(1)  |
+    // A connection may use a compact header instead, see ProtocolSession.
 
     /**
      * Take the given bytebuffer and deserialize it into a message.
@@ -84,6 +85,21 @@ public class CorfuMsg {
         long requestId = buffer.readLong();
         long epoch = buffer.readLong();
         CorfuMsgType message = typeMap.get(buffer.readByte());
+        return deserialize(buffer, message, clientId, requestId, epoch);
+    }
+
+    /**
+     * Deserialize the rest of a message, once its header is decoded.
+     *
+     * @param buffer    The buffer to deserialize, positioned after the header.
+     * @param message   The type of the message.
+     * @param clientId  The client ID of the message.
+     * @param requestId The request ID of the message.
+     * @param epoch     The epoch of the message.
+     * @return The corresponding message.
+     */
+    static CorfuMsg deserialize(ByteBuf buffer, CorfuMsgType message, UUID clientId,
+                                long requestId, long epoch) {
         CorfuMsg msg = message.getConstructor().construct();
 
         msg.clientID = clientId;
@@ -132,11 +148,11 @@ public class CorfuMsg {
     }
 
     /**
-     * Release the underlying buffer, if present.
+     * Release what a decoded message holds on to, when it is dropped without being handled.
+     * The buffer it was decoded from belongs to the decoder, which releases it; only a payload
+     * may still hold a slice of it, see {@link ICorfuPayload#release()}.
      */
     public void release() {
-        if (buf != null) {
-            buf.release();
-        }
+        // A message without a payload holds nothing.
     }
 }
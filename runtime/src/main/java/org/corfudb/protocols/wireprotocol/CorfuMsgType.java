@@ -49,12 +49,20 @@ public enum CorfuMsgType {
     TOKEN_RES(21, new TypeToken<CorfuPayloadMsg<TokenResponse>>(){}),
     BOOTSTRAP_SEQUENCER(22, new TypeToken<CorfuPayloadMsg<SequencerTailsRecoveryMsg>>(){}),
     SEQUENCER_TRIM_REQ(23, new TypeToken<CorfuPayloadMsg<Long>>() {}),
+    TOKEN_BATCH_REQ(24, new TypeToken<CorfuPayloadMsg<TokenBatchRequest>>(){}),
+    TOKEN_BATCH_RES(25, new TypeToken<CorfuPayloadMsg<TokenBatchResponse>>(){}),
+    STREAM_TAILS_REQ(26, new TypeToken<CorfuPayloadMsg<StreamTailsRequest>>(){}),
+    STREAM_TAILS_RES(27, new TypeToken<CorfuPayloadMsg<StreamTailsResponse>>(){}),
+    SEQUENCER_STATE_SYNC(28, new TypeToken<CorfuPayloadMsg<SequencerStateSync>>(){}),
+    SEQUENCER_LEASE_REQ(29, new TypeToken<CorfuPayloadMsg<AddressLeaseRequest>>(){}),
 
     // Logging Unit Messages
     WRITE(30, new TypeToken<CorfuPayloadMsg<WriteRequest>>() {}),
     READ_REQUEST(31, new TypeToken<CorfuPayloadMsg<ReadRequest>>() {}),
     READ_RESPONSE(32, new TypeToken<CorfuPayloadMsg<ReadResponse>>() {}),
     MULTIPLE_READ_REQUEST(35, new TypeToken<CorfuPayloadMsg<MultipleReadRequest>>() {}),
+    MULTIPLE_WRITE(65, new TypeToken<CorfuPayloadMsg<MultipleWriteRequest>>() {}),
+    MULTIPLE_WRITE_RESPONSE(66, new TypeToken<CorfuPayloadMsg<MultipleWriteResponse>>() {}),
     TRIM(33, new TypeToken<CorfuPayloadMsg<TrimRequest>>() {}),
     FILL_HOLE(34, new TypeToken<CorfuPayloadMsg<TrimRequest>>() {}),
     PREFIX_TRIM(38, new TypeToken<CorfuPayloadMsg<TrimRequest>>() {}),
@@ -64,6 +72,14 @@ public enum CorfuMsgType {
     FLUSH_CACHE(44, TypeToken.of(CorfuMsg.class), true),
     TRIM_MARK_REQUEST(45, TypeToken.of(CorfuMsg.class), true),
     TRIM_MARK_RESPONSE(46, new TypeToken<CorfuPayloadMsg<Long>>(){}, true),
+    SEGMENT_LIST_REQUEST(36, TypeToken.of(CorfuMsg.class)),
+    SEGMENT_LIST_RESPONSE(37, new TypeToken<CorfuPayloadMsg<SegmentListResponse>>() {}),
+    SEGMENT_READ_REQUEST(39, new TypeToken<CorfuPayloadMsg<SegmentChunkRequest>>() {}),
+    SEGMENT_READ_RESPONSE(40, new TypeToken<CorfuPayloadMsg<SegmentChunk>>() {}),
+    SEGMENT_WRITE(47, new TypeToken<CorfuPayloadMsg<SegmentChunk>>() {}),
+    SEGMENT_INSTALL(48, new TypeToken<CorfuPayloadMsg<SegmentInstallRequest>>() {}),
+    LOG_TAILS_REQUEST(49, TypeToken.of(CorfuMsg.class), true),
+    LOG_TAILS_RESPONSE(56, new TypeToken<CorfuPayloadMsg<StreamTailsResponse>>(){}, true),
 
     WRITE_OK(50, TypeToken.of(CorfuMsg.class)),
     ERROR_TRIMMED(51, TypeToken.of(CorfuMsg.class)),
@@ -79,6 +95,9 @@ public enum CorfuMsgType {
     // EXTRA CODES
     LAYOUT_ALREADY_BOOTSTRAP(60, TypeToken.of(CorfuMsg.class), true),
     LAYOUT_PREPARE_ACK(61, new TypeToken<CorfuPayloadMsg<LayoutPrepareResponse>>(){}, true),
+    SEQUENCER_LEASE_RES(62, new TypeToken<CorfuPayloadMsg<AddressLease>>(){}),
+    SEQUENCER_PREPARE_REQ(63, new TypeToken<CorfuPayloadMsg<PartitionPrepareRequest>>(){}),
+    SEQUENCER_COMMIT_REQ(64, new TypeToken<CorfuPayloadMsg<PartitionCommitRequest>>(){}),
 
     // Management Messages
     MANAGEMENT_BOOTSTRAP_REQUEST(70, new TypeToken<CorfuPayloadMsg<Layout>>(){}, true),
@@ -89,7 +108,8 @@ public enum CorfuMsgType {
     HEARTBEAT_REQUEST(75, TypeToken.of(CorfuMsg.class), true),
     HEARTBEAT_RESPONSE(76, new TypeToken<CorfuPayloadMsg<byte[]>>(){}, true),
 
-    ERROR_SERVER_EXCEPTION(200, new TypeToken<CorfuPayloadMsg<ExceptionMsg>>() {}, true)
+    ERROR_SERVER_EXCEPTION(200, new TypeToken<CorfuPayloadMsg<ExceptionMsg>>() {}, true),
+    ERROR_SERVER_BUSY(201, TypeToken.of(CorfuMsg.class), true)
     ;
 
 
@@ -46,6 +46,17 @@ public class CorfuPayloadMsg<T> extends CorfuMsg {
         ICorfuPayload.serialize(buffer, payload);
     }
 
+    /**
+     * Release the buffers held by the payload, when the message is dropped without being
+     * handled.
+     */
+    @Override
+    public void release() {
+        if (payload instanceof ICorfuPayload) {
+            ((ICorfuPayload<?>) payload).release();
+        }
+    }
+
     /**
      * Parse the rest of the message from the buffer. Classes that extend CorfuMsg
      * should parse their fields in this method.
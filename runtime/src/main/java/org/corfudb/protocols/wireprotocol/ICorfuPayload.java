@@ -16,7 +16,6 @@ import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
-import java.nio.charset.StandardCharsets;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
@@ -26,7 +25,6 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import org.corfudb.protocols.logprotocol.CheckpointEntry;
 import org.corfudb.runtime.view.Layout;
-import org.corfudb.util.JsonUtils;
 
 /**
  * Created by mwei on 8/1/16.
@@ -53,14 +51,7 @@ public interface ICorfuPayload<T> {
                     x.readBytes(bytes);
                     return new String(bytes);
                 })
-                .put(Layout.class, x -> {
-                    int length = x.readInt();
-                    byte[] byteArray = new byte[length];
-                    x.readBytes(byteArray, 0, length);
-                    String str = new String(byteArray, StandardCharsets.UTF_8);
-                    Layout layout = JsonUtils.parser.fromJson(str, Layout.class);
-                    return layout;
-                })
+                .put(Layout.class, LayoutCodec::deserialize)
                 .put(IMetadata.DataRank.class, x ->
                         new IMetadata.DataRank(x.readLong(), new UUID(x.readLong(), x.readLong())))
                 .put(CheckpointEntry.CheckpointEntryType.class, x ->
@@ -344,9 +335,7 @@ public interface ICorfuPayload<T> {
                 serialize(buffer, x);
             });
         } else if (payload instanceof Layout) {
-            byte[] b = JsonUtils.parser.toJson(payload).getBytes();
-            buffer.writeInt(b.length);
-            buffer.writeBytes(b);
+            LayoutCodec.serialize(buffer, (Layout) payload);
         } else if (payload instanceof ByteBuf) {
             ByteBuf b = ((ByteBuf) payload).slice();
             b.resetReaderIndex();
@@ -367,4 +356,11 @@ public interface ICorfuPayload<T> {
     }
 
     void doSerialize(ByteBuf buf);
+
+    /**
+     * Release the buffers this payload holds on to once decoded, when the message carrying it
+     * is dropped without being handled. Most payloads hold none.
+     */
+    default void release() {
+    }
 }
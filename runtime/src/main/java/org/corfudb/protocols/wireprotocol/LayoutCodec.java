@@ -0,0 +1,220 @@
+package org.corfudb.protocols.wireprotocol;
+
+import io.netty.buffer.ByteBuf;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import org.corfudb.runtime.view.Layout;
+import org.corfudb.runtime.view.Layout.LayoutSegment;
+import org.corfudb.runtime.view.Layout.LayoutStripe;
+import org.corfudb.runtime.view.Layout.ReplicationMode;
+import org.corfudb.util.JsonUtils;
+
+/**
+ * Encodes and decodes the layouts carried by messages.
+ *
+ * <p>A layout was encoded as a JSON string, prefixed with its length. It is now encoded in
+ * binary, prefixed with {@link #BINARY_MARKER}, which no length can be mistaken for, and a
+ * format version. The endpoints of the layout are written once, in a table, and referred to
+ * by their index, so the size of a layout hardly grows with its number of segments.
+ *
+ * <p>Both encodings are always decoded. A layout is only sent in binary on a connection whose
+ * peer advertised that it decodes it, which every peer speaking version 2 of the message
+ * protocol does, see {@link ProtocolSession#isPeerV2()}. It is sent in JSON to any other
+ * peer, and outside of a connection. JSON remains the encoding of the layouts on disk.
+ */
+public final class LayoutCodec {
+
+    /**
+     * The encodings of the layouts this JVM sends.
+     */
+    public enum WireFormat {
+        /**
+         * Always JSON, which every version decodes.
+         */
+        JSON,
+        /**
+         * Binary to the peers which advertised that they decode it, JSON to the others.
+         */
+        NEGOTIATED;
+
+        /**
+         * Get a format by name, ignoring the case.
+         *
+         * @throws IllegalArgumentException if there is no such format
+         */
+        public static WireFormat fromString(String name) {
+            return valueOf(name.toUpperCase());
+        }
+    }
+
+    /**
+     * Prefixes a binary layout, in place of the length of a JSON layout.
+     */
+    static final int BINARY_MARKER = 0xC0FB1A70;
+
+    /**
+     * The version of the binary format.
+     */
+    static final byte BINARY_VERSION = 1;
+
+    /**
+     * The encoding of the layouts sent by this JVM.
+     */
+    @Getter
+    @Setter
+    private static volatile WireFormat wireFormat = WireFormat.NEGOTIATED;
+
+    private LayoutCodec() {
+        // prevent instantiation of this class
+    }
+
+    /**
+     * Encode a layout into a buffer, in binary if it is sent to a peer which decodes it.
+     *
+     * @param buffer the buffer to encode to
+     * @param layout the layout
+     */
+    public static void serialize(ByteBuf buffer, Layout layout) {
+        final ProtocolSession session = ProtocolSession.encoding();
+        serialize(buffer, layout, wireFormat == WireFormat.NEGOTIATED && session != null
+                && session.isPeerV2());
+    }
+
+    /**
+     * Encode a layout into a buffer.
+     *
+     * @param buffer the buffer to encode to
+     * @param layout the layout
+     * @param binary whether to encode the layout in binary rather than in JSON
+     */
+    static void serialize(ByteBuf buffer, Layout layout, boolean binary) {
+        if (!binary) {
+            byte[] b = JsonUtils.parser.toJson(layout).getBytes(StandardCharsets.UTF_8);
+            buffer.writeInt(b.length);
+            buffer.writeBytes(b);
+            return;
+        }
+        buffer.writeInt(BINARY_MARKER);
+        buffer.writeByte(BINARY_VERSION);
+        buffer.writeLong(layout.getEpoch());
+        buffer.writeInt(layout.getSequencerPartitions());
+
+        // Write the endpoints once, in the order they are first met.
+        final Map<String, Integer> endpoints = new HashMap<>();
+        final List<String> table = new ArrayList<>();
+        indexEndpoints(layout.getLayoutServers(), endpoints, table);
+        indexEndpoints(layout.getSequencers(), endpoints, table);
+        indexEndpoints(layout.getUnresponsiveServers(), endpoints, table);
+        for (LayoutSegment segment : layout.getSegments()) {
+            for (LayoutStripe stripe : segment.getStripes()) {
+                indexEndpoints(stripe.getLogServers(), endpoints, table);
+            }
+        }
+        buffer.writeShort(table.size());
+        for (String endpoint : table) {
+            byte[] b = endpoint.getBytes(StandardCharsets.UTF_8);
+            buffer.writeShort(b.length);
+            buffer.writeBytes(b);
+        }
+
+        writeEndpoints(buffer, layout.getLayoutServers(), endpoints);
+        writeEndpoints(buffer, layout.getSequencers(), endpoints);
+        writeEndpoints(buffer, layout.getUnresponsiveServers(), endpoints);
+        buffer.writeInt(layout.getSegments().size());
+        for (LayoutSegment segment : layout.getSegments()) {
+            buffer.writeByte(segment.getReplicationMode().ordinal());
+            buffer.writeLong(segment.getStart());
+            buffer.writeLong(segment.getEnd());
+            buffer.writeShort(segment.getStripes().size());
+            for (LayoutStripe stripe : segment.getStripes()) {
+                writeEndpoints(buffer, stripe.getLogServers(), endpoints);
+            }
+        }
+    }
+
+    /**
+     * Decode a layout from a buffer, in either encoding.
+     *
+     * @param buffer the buffer to decode from
+     * @return the layout
+     */
+    public static Layout deserialize(ByteBuf buffer) {
+        final int length = buffer.readInt();
+        if (length != BINARY_MARKER) {
+            byte[] byteArray = new byte[length];
+            buffer.readBytes(byteArray, 0, length);
+            return JsonUtils.parser.fromJson(new String(byteArray, StandardCharsets.UTF_8),
+                    Layout.class);
+        }
+        final byte version = buffer.readByte();
+        if (version != BINARY_VERSION) {
+            throw new IllegalArgumentException("Unknown binary layout version " + version);
+        }
+        final long epoch = buffer.readLong();
+        final int sequencerPartitions = buffer.readInt();
+
+        final String[] table = new String[buffer.readUnsignedShort()];
+        for (int i = 0; i < table.length; i++) {
+            byte[] b = new byte[buffer.readUnsignedShort()];
+            buffer.readBytes(b);
+            table[i] = new String(b, StandardCharsets.UTF_8);
+        }
+
+        final List<String> layoutServers = readEndpoints(buffer, table);
+        final List<String> sequencers = readEndpoints(buffer, table);
+        final List<String> unresponsiveServers = readEndpoints(buffer, table);
+        final int segmentCount = buffer.readInt();
+        final List<LayoutSegment> segments = new ArrayList<>(segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            final ReplicationMode mode = ReplicationMode.values()[buffer.readByte()];
+            final long start = buffer.readLong();
+            final long end = buffer.readLong();
+            final int stripeCount = buffer.readUnsignedShort();
+            final List<LayoutStripe> stripes = new ArrayList<>(stripeCount);
+            for (int j = 0; j < stripeCount; j++) {
+                stripes.add(new LayoutStripe(readEndpoints(buffer, table)));
+            }
+            segments.add(new LayoutSegment(mode, start, end, stripes));
+        }
+
+        // The constructor validates the layout, as it does for JSON.
+        final Layout layout = new Layout(layoutServers, sequencers, segments,
+                unresponsiveServers, epoch);
+        layout.setSequencerPartitions(sequencerPartitions);
+        return layout;
+    }
+
+    private static void indexEndpoints(List<String> list, Map<String, Integer> endpoints,
+                                       List<String> table) {
+        for (String endpoint : list) {
+            if (endpoints.putIfAbsent(endpoint, table.size()) == null) {
+                table.add(endpoint);
+            }
+        }
+    }
+
+    private static void writeEndpoints(ByteBuf buffer, List<String> list,
+                                       Map<String, Integer> endpoints) {
+        buffer.writeShort(list.size());
+        for (String endpoint : list) {
+            buffer.writeShort(endpoints.get(endpoint));
+        }
+    }
+
+    private static List<String> readEndpoints(ByteBuf buffer, String[] table) {
+        final int count = buffer.readUnsignedShort();
+        final List<String> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            list.add(table[buffer.readUnsignedShort()]);
+        }
+        return list;
+    }
+}
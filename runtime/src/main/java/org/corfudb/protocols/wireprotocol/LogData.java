@@ -16,6 +16,12 @@ import org.corfudb.util.serializer.Serializers;
 
 /**
  * Created by mwei on 8/15/16.
+ *
+ * <p>The serialized payload of a LogData is held in a buffer. A LogData decoded from a
+ * message holds a retained slice of the buffer of the message, which may be a pooled direct
+ * buffer, so the payload is not copied when it is decoded. Such a LogData must either be
+ * {@link #detach()}ed before it is kept, or have its payload deserialized or
+ * {@link #releaseData()}ed once it is no longer used.
  */
 @Slf4j
 public class LogData implements ICorfuPayload<LogData>, IMetadata, ILogData {
@@ -28,8 +34,16 @@ public class LogData implements ICorfuPayload<LogData>, IMetadata, ILogData {
     @Getter
     final DataType type;
 
-    @Getter
-    byte[] data;
+    /**
+     * The serialized payload, or null if there is none or it was deserialized.
+     */
+    private ByteBuf data;
+
+    /**
+     * Whether the payload is a slice of a buffer it shares with the message it was decoded
+     * from.
+     */
+    private boolean dataShared;
 
     private ByteBuf serializedCache = null;
 
@@ -49,7 +63,7 @@ public class LogData implements ICorfuPayload<LogData>, IMetadata, ILogData {
                     if (data == null) {
                         this.payload.set(null);
                     } else {
-                        ByteBuf copyBuf = Unpooled.wrappedBuffer(data);
+                        ByteBuf copyBuf = data.duplicate();
                         final Object actualValue =
                                 Serializers.CORFU.deserialize(copyBuf, runtime);
                         // TODO: Remove circular dependency on logentry.
@@ -59,8 +73,8 @@ public class LogData implements ICorfuPayload<LogData>, IMetadata, ILogData {
                         }
                         value = actualValue == null ? this.payload : actualValue;
                         this.payload.set(value);
-                        copyBuf.release();
-                        lastKnownSize = data.length;
+                        lastKnownSize = data.readableBytes();
+                        data.release();
                         data = null;
                     }
                 }
@@ -70,6 +84,69 @@ public class LogData implements ICorfuPayload<LogData>, IMetadata, ILogData {
         return value;
     }
 
+    /**
+     * Get a copy of the serialized payload.
+     *
+     * @return the serialized payload, or null if there is none or it was deserialized
+     */
+    public byte[] getData() {
+        ByteBuf tempData = data;
+        if (tempData == null) {
+            return null;
+        }
+        if (tempData.hasArray() && tempData.arrayOffset() == 0
+                && tempData.readableBytes() == tempData.array().length) {
+            return tempData.array();
+        }
+        return byteArrayFromBuf(tempData);
+    }
+
+    /**
+     * Get a view of the serialized payload, without copying it. The view is only valid
+     * until the payload is deserialized or released.
+     *
+     * @return the serialized payload, or null if there is none or it was deserialized
+     */
+    public ByteBuf getDataBuffer() {
+        ByteBuf tempData = data;
+        return tempData == null ? null : tempData.duplicate();
+    }
+
+    /**
+     * Copy the serialized payload out of the buffer of the message it was decoded from, and
+     * release that buffer, so that this LogData can be kept without holding on to it. A
+     * LogData which does not share its payload is left as is.
+     */
+    public void detach() {
+        synchronized (this.payload) {
+            if (dataShared) {
+                ByteBuf shared = data;
+                data = Unpooled.wrappedBuffer(byteArrayFromBuf(shared));
+                dataShared = false;
+                shared.release();
+            }
+        }
+    }
+
+    /**
+     * Release the serialized payload, once this LogData is no longer used.
+     */
+    public void releaseData() {
+        synchronized (this.payload) {
+            if (data != null) {
+                lastKnownSize = data.readableBytes();
+                data.release();
+                data = null;
+                dataShared = false;
+            }
+        }
+    }
+
+    @Override
+    public void release() {
+        releaseData();
+    }
+
     @Override
     public synchronized void releaseBuffer() {
         if (serializedCache != null) {
@@ -93,9 +170,9 @@ public class LogData implements ICorfuPayload<LogData>, IMetadata, ILogData {
 
     @Override
     public int getSizeEstimate() {
-        byte[] tempData = data;
+        ByteBuf tempData = data;
         if (tempData != null) {
-            return tempData.length;
+            return tempData.readableBytes();
         } else if (lastKnownSize != NOT_KNOWN) {
             return lastKnownSize;
         }
@@ -113,7 +190,8 @@ public class LogData implements ICorfuPayload<LogData>, IMetadata, ILogData {
     public LogData(ByteBuf buf) {
         type = ICorfuPayload.fromBuffer(buf, DataType.class);
         if (type == DataType.DATA) {
-            data = ICorfuPayload.fromBuffer(buf, byte[].class);
+            data = ICorfuPayload.fromBuffer(buf, ByteBuf.class);
+            dataShared = true;
         } else {
             data = null;
         }
@@ -146,7 +224,7 @@ public class LogData implements ICorfuPayload<LogData>, IMetadata, ILogData {
     public LogData(DataType type, final Object object) {
         if (object instanceof ByteBuf) {
             this.type = type;
-            this.data = byteArrayFromBuf((ByteBuf) object);
+            this.data = Unpooled.wrappedBuffer(byteArrayFromBuf((ByteBuf) object));
             this.metadataMap = new EnumMap<>(IMetadata.LogUnitMetadataType.class);
         } else {
             this.type = type;
@@ -168,6 +246,19 @@ public class LogData implements ICorfuPayload<LogData>, IMetadata, ILogData {
         }
     }
 
+    /**
+     * Returns a LogData which holds a serialized payload, without copying it. The LogData
+     * takes over the reference of the caller to the buffer.
+     *
+     * @param type The type of log data to instantiate.
+     * @param data The serialized payload.
+     */
+    public static LogData wrap(DataType type, ByteBuf data) {
+        LogData logData = new LogData(type);
+        logData.data = data;
+        return logData;
+    }
+
     /**
      * Return a byte array from buffer.
      *
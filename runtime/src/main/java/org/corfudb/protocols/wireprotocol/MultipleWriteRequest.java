@@ -0,0 +1,45 @@
+package org.corfudb.protocols.wireprotocol;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.Collections;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A request to write several entries, each at its global address, which the log unit
+ * writes and syncs as a unit. Each address is acknowledged on its own in a
+ * {@link MultipleWriteResponse}.
+ */
+@Data
+@AllArgsConstructor
+public class MultipleWriteRequest implements ICorfuPayload<MultipleWriteRequest> {
+
+    /** The entries to write, with their global addresses set. */
+    final List<ILogData> entries;
+
+    /**
+     * Deserialization Constructor from ByteBuf to MultipleWriteRequest.
+     *
+     * @param buf The buffer to deserialize
+     */
+    public MultipleWriteRequest(ByteBuf buf) {
+        entries = Collections.unmodifiableList(ICorfuPayload.listFromBuffer(buf, LogData.class));
+    }
+
+    @Override
+    public void doSerialize(ByteBuf buf) {
+        ICorfuPayload.serialize(buf, entries);
+    }
+
+    @Override
+    public void release() {
+        for (ILogData entry : entries) {
+            if (entry instanceof LogData) {
+                ((LogData) entry).release();
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.corfudb.protocols.wireprotocol;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The result of a {@link MultipleWriteRequest}, for each of its addresses.
+ */
+@Data
+@AllArgsConstructor
+public class MultipleWriteResponse implements ICorfuPayload<MultipleWriteResponse> {
+
+    /**
+     * The result of a write at one address, which matches the response to a single write.
+     */
+    @RequiredArgsConstructor
+    public enum Status implements ICorfuPayload<Status> {
+        /** The entry was written, as by {@link CorfuMsgType#WRITE_OK}. */
+        OK((byte) 0),
+        /** The address was already written, as by {@link CorfuMsgType#ERROR_OVERWRITE}. */
+        OVERWRITE((byte) 1),
+        /** The write was outranked, as by {@link CorfuMsgType#ERROR_DATA_OUTRANKED}. */
+        DATA_OUTRANKED((byte) 2),
+        /**
+         * A value was adopted, as by {@link CorfuMsgType#ERROR_VALUE_ADOPTED}. The value is not
+         * returned: it is read back with a single write of the address.
+         */
+        VALUE_ADOPTED((byte) 3),
+        /** The log was corrupted, as by {@link CorfuMsgType#ERROR_DATA_CORRUPTION}. */
+        DATA_CORRUPTION((byte) 4),
+        /** The write failed for another reason, which the log unit logged. */
+        ERROR((byte) 5);
+
+        final int val;
+
+        byte asByte() {
+            return (byte) val;
+        }
+
+        @Override
+        public void doSerialize(ByteBuf buf) {
+            buf.writeByte(asByte());
+        }
+
+        static Map<Byte, Status> typeMap =
+                Arrays.stream(Status.values())
+                        .collect(Collectors.toMap(Status::asByte, Function.identity()));
+    }
+
+    /** The result of the write at each address. */
+    final Map<Long, Status> results;
+
+    public MultipleWriteResponse() {
+        results = new HashMap<>();
+    }
+
+    /**
+     * Deserialization Constructor from ByteBuf to MultipleWriteResponse.
+     *
+     * @param buf The buffer to deserialize
+     */
+    public MultipleWriteResponse(ByteBuf buf) {
+        results = ICorfuPayload.mapFromBuffer(buf, Long.class, Status.class);
+    }
+
+    public void put(long address, Status status) {
+        results.put(address, status);
+    }
+
+    @Override
+    public void doSerialize(ByteBuf buf) {
+        ICorfuPayload.serialize(buf, results);
+    }
+}
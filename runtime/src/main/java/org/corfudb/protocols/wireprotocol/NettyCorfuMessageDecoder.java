@@ -16,10 +16,18 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class NettyCorfuMessageDecoder extends ByteToMessageDecoder {
 
+    /**
+     * The protocol session of the channel, shared with its encoder, once known.
+     */
+    private ProtocolSession session;
+
     @Override
     protected void decode(ChannelHandlerContext channelHandlerContext, ByteBuf byteBuf,
                           List<Object> list) throws Exception {
-        list.add(CorfuMsg.deserialize(byteBuf));
+        if (session == null) {
+            session = ProtocolSession.of(channelHandlerContext.channel());
+        }
+        list.add(session.decode(byteBuf));
     }
 
     @Override
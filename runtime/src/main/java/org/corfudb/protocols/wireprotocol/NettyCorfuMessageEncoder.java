@@ -12,12 +12,20 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class NettyCorfuMessageEncoder extends MessageToByteEncoder<CorfuMsg> {
 
+    /**
+     * The protocol session of the channel, shared with its decoder, once known.
+     */
+    private ProtocolSession session;
+
     @Override
     protected void encode(ChannelHandlerContext channelHandlerContext,
                           CorfuMsg corfuMsg,
                           ByteBuf byteBuf) throws Exception {
         try {
-            corfuMsg.serialize(byteBuf);
+            if (session == null) {
+                session = ProtocolSession.of(channelHandlerContext.channel());
+            }
+            session.encode(corfuMsg, byteBuf);
         } catch (Exception e) {
             log.error("Error during serialization!", e);
         }
@@ -0,0 +1,38 @@
+package org.corfudb.protocols.wireprotocol;
+
+import io.netty.buffer.ByteBuf;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * The second phase of a token request which spans several partitions of the sequencer: the
+ * address allocated to a prepared request, or {@link org.corfudb.runtime.view.Address#ABORTED}
+ * if the request is aborted.
+ */
+@Data
+@AllArgsConstructor
+public class PartitionCommitRequest implements ICorfuPayload<PartitionCommitRequest> {
+
+    /** The id of the prepared request. */
+    final long id;
+
+    /** The first address allocated to the request, or aborted. */
+    final long address;
+
+    /**
+     * Deserialization Constructor from ByteBuf to PartitionCommitRequest.
+     *
+     * @param buf The buffer to deserialize
+     */
+    public PartitionCommitRequest(ByteBuf buf) {
+        id = buf.readLong();
+        address = buf.readLong();
+    }
+
+    @Override
+    public void doSerialize(ByteBuf buf) {
+        buf.writeLong(id);
+        buf.writeLong(address);
+    }
+}
@@ -0,0 +1,41 @@
+package org.corfudb.protocols.wireprotocol;
+
+import io.netty.buffer.ByteBuf;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * The first phase of a token request which spans several partitions of the sequencer, sent
+ * by the sequencer of the first partition to every partition involved.
+ *
+ * <p>The request only carries the streams and the conflict parameters of the partition it
+ * is sent to. The partition checks the transaction, if any, and holds the streams of the
+ * request until it receives the {@link PartitionCommitRequest} with the same id.</p>
+ */
+@Data
+@AllArgsConstructor
+public class PartitionPrepareRequest implements ICorfuPayload<PartitionPrepareRequest> {
+
+    /** The id of the request, unique for the sequencer of the first partition. */
+    final long id;
+
+    /** The part of the token request served by the partition. */
+    final TokenRequest request;
+
+    /**
+     * Deserialization Constructor from ByteBuf to PartitionPrepareRequest.
+     *
+     * @param buf The buffer to deserialize
+     */
+    public PartitionPrepareRequest(ByteBuf buf) {
+        id = buf.readLong();
+        request = new TokenRequest(buf);
+    }
+
+    @Override
+    public void doSerialize(ByteBuf buf) {
+        buf.writeLong(id);
+        request.doSerialize(buf);
+    }
+}
@@ -0,0 +1,239 @@
+package org.corfudb.protocols.wireprotocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+
+import java.util.UUID;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * The state of the message protocol on one connection, which its encoder and decoder share.
+ *
+ * <p>Version 1 of the protocol prefixes every message with a 37 byte header: a marker, the
+ * client ID, the request ID, the epoch and the type. Version 2 binds the client ID to the
+ * connection, and encodes the request ID and the epoch as zigzag varints of their difference
+ * with those of the previous version 2 message in the same direction, so that the header of
+ * a request or a response usually takes 4 bytes:
+ * <pre>
+ *     marker(1) | type(1) | request ID delta(1-10) | epoch delta(1-10)
+ * </pre>
+ *
+ * <p>Every decoder decodes both versions, told apart by their first byte. A connection starts
+ * with version 1. The client switches its side of the connection to version 2 once the server
+ * has answered a version request with a {@link VersionInfo#getWireProtocolVersion()} of 2 or
+ * more, and the server switches its side once it has received a version 2 message. A peer
+ * which only knows version 1 never advertises nor sends version 2, and is only sent
+ * version 1.
+ *
+ * <p>The client ID bound to each direction of a connection is the one of the first message
+ * sent in that direction, which is always a version 1 message. A message with another client
+ * ID is sent with version 1.
+ *
+ * <p>Once the peer is known to speak version 2, the payloads which have a more compact
+ * encoding since, such as layouts, see {@link LayoutCodec}, are sent in it, even if this JVM
+ * sends version 1 headers. The session of the connection a message is encoded for is
+ * available to the payload codecs through {@link #encoding()}.
+ */
+public class ProtocolSession {
+
+    public static final int V1 = 1;
+
+    public static final int V2 = 2;
+
+    /**
+     * The first byte of a version 2 message. The first byte of a version 1 message is the
+     * first byte of {@link CorfuMsg#markerField}.
+     */
+    static final byte V2_MARKER = (byte) 0xC2;
+
+    /**
+     * The size of the header of a version 1 message.
+     */
+    static final int V1_HEADER_SIZE = 37;
+
+    /**
+     * The maximum size of the header of a version 2 message.
+     */
+    static final int V2_MAX_HEADER_SIZE = 22;
+
+    /**
+     * The client ID of the messages without one, as they are decoded in version 1.
+     */
+    private static final UUID NO_CLIENT_ID = new UUID(0L, 0L);
+
+    private static final AttributeKey<ProtocolSession> KEY =
+            AttributeKey.valueOf(ProtocolSession.class.getName());
+
+    /**
+     * The session whose message is being encoded by this thread, if any.
+     */
+    private static final ThreadLocal<ProtocolSession> ENCODING = new ThreadLocal<>();
+
+    /**
+     * The highest version of the protocol this JVM advertises and sends.
+     */
+    @Getter
+    @Setter
+    private static volatile int maxVersion = V2;
+
+    /**
+     * Whether the peer of this connection is known to decode version 2.
+     */
+    @Getter
+    private volatile boolean peerV2;
+
+    /**
+     * Whether version 2 messages are sent on this connection.
+     */
+    @Getter
+    private volatile boolean sendingV2;
+
+    // Only accessed by the encoder.
+    private UUID sentClientId;
+    private long sentRequestId;
+    private long sentEpoch;
+    private final byte[] header = new byte[V2_MAX_HEADER_SIZE];
+
+    // Only accessed by the decoder.
+    private UUID receivedClientId;
+    private long receivedRequestId;
+    private long receivedEpoch;
+
+    /**
+     * Get the session of a channel, which is created with it.
+     *
+     * @param channel the channel of a connection
+     * @return the session of the connection
+     */
+    public static ProtocolSession of(Channel channel) {
+        ProtocolSession session = channel.attr(KEY).get();
+        if (session == null) {
+            session = new ProtocolSession();
+            final ProtocolSession previous = channel.attr(KEY).setIfAbsent(session);
+            if (previous != null) {
+                session = previous;
+            }
+        }
+        return session;
+    }
+
+    /**
+     * Get the session of the connection whose message this thread is encoding.
+     *
+     * @return the session, or null if no message is being encoded for a connection
+     */
+    public static ProtocolSession encoding() {
+        return ENCODING.get();
+    }
+
+    /**
+     * Record that the peer of this connection decodes version 2, and send version 2
+     * messages on it, unless this JVM does not send version 2.
+     */
+    public void enableV2() {
+        peerV2 = true;
+        if (maxVersion >= V2) {
+            sendingV2 = true;
+        }
+    }
+
+    /**
+     * Encode a message.
+     *
+     * @param msg    the message
+     * @param buffer the buffer to encode to, which holds no other data
+     */
+    void encode(CorfuMsg msg, ByteBuf buffer) {
+        final int start = buffer.writerIndex();
+        ENCODING.set(this);
+        try {
+            msg.serialize(buffer);
+        } finally {
+            ENCODING.remove();
+        }
+        final UUID clientId = msg.getClientID() == null ? NO_CLIENT_ID : msg.getClientID();
+        if (sentClientId == null) {
+            sentClientId = clientId;
+            return;
+        }
+        if (!sendingV2 || !sentClientId.equals(clientId) || buffer.readerIndex() != start
+                || buffer.writerIndex() - start < V1_HEADER_SIZE) {
+            return;
+        }
+
+        // Write the version 2 header at the end of the version 1 header, and skip what is
+        // left of the latter, rather than move the payload.
+        int length = 0;
+        header[length++] = V2_MARKER;
+        header[length++] = msg.getMsgType().asByte();
+        length = writeVarLong(header, length, zigzag(msg.getRequestID() - sentRequestId));
+        length = writeVarLong(header, length, zigzag(msg.getEpoch() - sentEpoch));
+        sentRequestId = msg.getRequestID();
+        sentEpoch = msg.getEpoch();
+        final int headerStart = start + V1_HEADER_SIZE - length;
+        buffer.setBytes(headerStart, header, 0, length);
+        buffer.readerIndex(headerStart);
+    }
+
+    /**
+     * Decode a message, of either version.
+     *
+     * @param buffer the buffer to decode from
+     * @return the message
+     */
+    CorfuMsg decode(ByteBuf buffer) {
+        if (buffer.getByte(buffer.readerIndex()) != V2_MARKER) {
+            final CorfuMsg msg = CorfuMsg.deserialize(buffer);
+            if (receivedClientId == null) {
+                receivedClientId = msg.getClientID();
+            }
+            return msg;
+        }
+        if (receivedClientId == null) {
+            throw new IllegalStateException("Received a version 2 message before the client ID "
+                    + "of the connection is known");
+        }
+        // The peer sends version 2, so it decodes it.
+        if (!peerV2) {
+            enableV2();
+        }
+        buffer.skipBytes(1);
+        final CorfuMsgType type = CorfuMsg.typeMap.get(buffer.readByte());
+        receivedRequestId += unzigzag(readVarLong(buffer));
+        receivedEpoch += unzigzag(readVarLong(buffer));
+        return CorfuMsg.deserialize(buffer, type, receivedClientId, receivedRequestId,
+                receivedEpoch);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> (Long.SIZE - 1));
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int writeVarLong(byte[] bytes, int offset, long value) {
+        while ((value & ~0x7FL) != 0) {
+            bytes[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[offset++] = (byte) value;
+        return offset;
+    }
+
+    private static long readVarLong(ByteBuf buffer) {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            final byte b = buffer.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint in message header");
+    }
+}
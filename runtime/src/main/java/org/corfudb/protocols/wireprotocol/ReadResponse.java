@@ -35,4 +35,9 @@ public class ReadResponse implements ICorfuPayload<ReadResponse> {
     public void doSerialize(ByteBuf buf) {
         ICorfuPayload.serialize(buf, addresses);
     }
+
+    @Override
+    public void release() {
+        addresses.values().forEach(LogData::release);
+    }
 }
@@ -0,0 +1,92 @@
+package org.corfudb.protocols.wireprotocol;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import io.netty.buffer.ByteBuf;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A chunk of a sealed segment file, protected by a CRC32C checksum which is verified by
+ * the receiving log unit before the chunk is written to disk.
+ *
+ * <p>The data is a retained slice of the buffer the message was decoded from, so the chunk
+ * is written to the file without being copied into an intermediate array. The receiver is
+ * responsible for calling {@link #release()} once the chunk has been handled.
+ */
+@Data
+@AllArgsConstructor
+public class SegmentChunk implements ICorfuPayload<SegmentChunk> {
+
+    private static final int CHECKSUM_BLOCK_SIZE = 64 * 1024;
+
+    /** The name of the file, relative to the log directory. */
+    final String fileName;
+
+    /** The offset of this chunk in the file. */
+    final long offset;
+
+    /** The CRC32C checksum of the data. */
+    final int checksum;
+
+    /** The chunk data. */
+    final ByteBuf data;
+
+    /**
+     * Deserialization Constructor from ByteBuf to SegmentChunk.
+     *
+     * @param buf The buffer to deserialize
+     */
+    public SegmentChunk(ByteBuf buf) {
+        fileName = ICorfuPayload.fromBuffer(buf, String.class);
+        offset = ICorfuPayload.fromBuffer(buf, Long.class);
+        checksum = ICorfuPayload.fromBuffer(buf, Integer.class);
+        data = ICorfuPayload.fromBuffer(buf, ByteBuf.class);
+    }
+
+    /**
+     * Compute the CRC32C checksum of the readable bytes of a buffer.
+     *
+     * @param data The buffer to compute the checksum of.
+     * @return The checksum.
+     */
+    public static int getChecksum(ByteBuf data) {
+        if (data.hasArray()) {
+            return Hashing.crc32c().hashBytes(data.array(),
+                    data.arrayOffset() + data.readerIndex(), data.readableBytes()).asInt();
+        }
+        Hasher hasher = Hashing.crc32c().newHasher();
+        byte[] block = new byte[Math.min(data.readableBytes(), CHECKSUM_BLOCK_SIZE)];
+        for (int i = data.readerIndex(); i < data.writerIndex(); i += block.length) {
+            int len = Math.min(block.length, data.writerIndex() - i);
+            data.getBytes(i, block, 0, len);
+            hasher.putBytes(block, 0, len);
+        }
+        return hasher.hash().asInt();
+    }
+
+    /**
+     * Whether the data of this chunk matches its checksum.
+     */
+    public boolean isValid() {
+        return getChecksum(data) == checksum;
+    }
+
+    /**
+     * Release the data of this chunk.
+     */
+    @Override
+    public void release() {
+        data.release();
+    }
+
+    @Override
+    public void doSerialize(ByteBuf buf) {
+        ICorfuPayload.serialize(buf, fileName);
+        ICorfuPayload.serialize(buf, offset);
+        ICorfuPayload.serialize(buf, checksum);
+        ICorfuPayload.serialize(buf, data);
+    }
+}
@@ -0,0 +1,41 @@
+package org.corfudb.protocols.wireprotocol;
+
+import io.netty.buffer.ByteBuf;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A request to read a chunk of a sealed segment file.
+ */
+@Data
+@AllArgsConstructor
+public class SegmentChunkRequest implements ICorfuPayload<SegmentChunkRequest> {
+
+    /** The name of the file, relative to the log directory. */
+    final String fileName;
+
+    /** The offset in the file to read from. */
+    final long offset;
+
+    /** The maximum number of bytes to read. */
+    final int length;
+
+    /**
+     * Deserialization Constructor from ByteBuf to SegmentChunkRequest.
+     *
+     * @param buf The buffer to deserialize
+     */
+    public SegmentChunkRequest(ByteBuf buf) {
+        fileName = ICorfuPayload.fromBuffer(buf, String.class);
+        offset = ICorfuPayload.fromBuffer(buf, Long.class);
+        length = ICorfuPayload.fromBuffer(buf, Integer.class);
+    }
+
+    @Override
+    public void doSerialize(ByteBuf buf) {
+        ICorfuPayload.serialize(buf, fileName);
+        ICorfuPayload.serialize(buf, offset);
+        ICorfuPayload.serialize(buf, length);
+    }
+}
@@ -0,0 +1,37 @@
+package org.corfudb.protocols.wireprotocol;
+
+import io.netty.buffer.ByteBuf;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Describes a single file of a sealed log segment (the segment itself, or one of its trim
+ * sidecars) that is offered for bulk transfer to another log unit.
+ */
+@Data
+@AllArgsConstructor
+public class SegmentFileInfo implements ICorfuPayload<SegmentFileInfo> {
+
+    /** The name of the file, relative to the log directory. */
+    final String fileName;
+
+    /** The length of the file, in bytes, at the time it was listed. */
+    final long length;
+
+    /**
+     * Deserialization Constructor from ByteBuf to SegmentFileInfo.
+     *
+     * @param buf The buffer to deserialize
+     */
+    public SegmentFileInfo(ByteBuf buf) {
+        fileName = ICorfuPayload.fromBuffer(buf, String.class);
+        length = ICorfuPayload.fromBuffer(buf, Long.class);
+    }
+
+    @Override
+    public void doSerialize(ByteBuf buf) {
+        ICorfuPayload.serialize(buf, fileName);
+        ICorfuPayload.serialize(buf, length);
+    }
+}
@@ -0,0 +1,34 @@
+package org.corfudb.protocols.wireprotocol;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A request to install segment files which have been staged through
+ * {@link CorfuMsgType#SEGMENT_WRITE} into the log of the receiving log unit.
+ */
+@Data
+@AllArgsConstructor
+public class SegmentInstallRequest implements ICorfuPayload<SegmentInstallRequest> {
+
+    /** The staged files, with their expected lengths. */
+    final List<SegmentFileInfo> files;
+
+    /**
+     * Deserialization Constructor from ByteBuf to SegmentInstallRequest.
+     *
+     * @param buf The buffer to deserialize
+     */
+    public SegmentInstallRequest(ByteBuf buf) {
+        files = ICorfuPayload.listFromBuffer(buf, SegmentFileInfo.class);
+    }
+
+    @Override
+    public void doSerialize(ByteBuf buf) {
+        ICorfuPayload.serialize(buf, files);
+    }
+}
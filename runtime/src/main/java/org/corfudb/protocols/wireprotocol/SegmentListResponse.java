@@ -0,0 +1,44 @@
+package org.corfudb.protocols.wireprotocol;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * The files of the sealed segments of a log unit, along with the first address of the
+ * open tail segment, which has to be transferred record by record.
+ */
+@Data
+@AllArgsConstructor
+public class SegmentListResponse implements ICorfuPayload<SegmentListResponse> {
+
+    /** The first address of the open tail segment. */
+    final long tailSegmentStart;
+
+    /** The global tail of the log unit at the time the segments were listed. */
+    final long globalTail;
+
+    /** The files of all sealed segments that are not trimmed. */
+    final List<SegmentFileInfo> files;
+
+    /**
+     * Deserialization Constructor from ByteBuf to SegmentListResponse.
+     *
+     * @param buf The buffer to deserialize
+     */
+    public SegmentListResponse(ByteBuf buf) {
+        tailSegmentStart = ICorfuPayload.fromBuffer(buf, Long.class);
+        globalTail = ICorfuPayload.fromBuffer(buf, Long.class);
+        files = ICorfuPayload.listFromBuffer(buf, SegmentFileInfo.class);
+    }
+
+    @Override
+    public void doSerialize(ByteBuf buf) {
+        ICorfuPayload.serialize(buf, tailSegmentStart);
+        ICorfuPayload.serialize(buf, globalTail);
+        ICorfuPayload.serialize(buf, files);
+    }
+}
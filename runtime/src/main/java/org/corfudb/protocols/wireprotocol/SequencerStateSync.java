@@ -0,0 +1,92 @@
+package org.corfudb.protocols.wireprotocol;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.Map;
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A batch of updates sent by the primary sequencer to the standby sequencer.
+ *
+ * <p>The stream of updates of a primary starts with a full update, which replaces the whole
+ * state of the standby, followed by incremental updates which only carry the stream tails
+ * and conflict parameters written since the previous update. Updates are numbered, so that
+ * the standby can detect a gap and ask for a new full update.</p>
+ */
+@Data
+@AllArgsConstructor
+public class SequencerStateSync implements ICorfuPayload<SequencerStateSync> {
+
+    /** The epoch at which the primary was bootstrapped. */
+    final long primaryEpoch;
+
+    /** The number of this update in the stream of updates of the primary. */
+    final long sequence;
+
+    /** Whether this update replaces the whole state of the standby. */
+    final boolean full;
+
+    /** The first available position in the global log. */
+    final long globalTail;
+
+    /** The trim mark of the conflict table. */
+    final long trimMark;
+
+    /** The tails of the streams written since the previous update, or of all streams. */
+    final Map<UUID, Long> streamTails;
+
+    /**
+     * The conflict parameters written since the previous update, or all of them, as
+     * consecutive (stream key, conflict hash, address) triples.
+     */
+    final long[] conflictEntries;
+
+    /** The conflict wildcards, only sent with a full update. */
+    final long[] conflictWildcards;
+
+    /**
+     * Deserialization Constructor from ByteBuf to SequencerStateSync.
+     *
+     * @param buf The buffer to deserialize
+     */
+    public SequencerStateSync(ByteBuf buf) {
+        primaryEpoch = buf.readLong();
+        sequence = buf.readLong();
+        full = buf.readBoolean();
+        globalTail = buf.readLong();
+        trimMark = buf.readLong();
+        streamTails = ICorfuPayload.mapFromBuffer(buf, UUID.class, Long.class);
+        conflictEntries = longArrayFromBuffer(buf);
+        conflictWildcards = longArrayFromBuffer(buf);
+    }
+
+    @Override
+    public void doSerialize(ByteBuf buf) {
+        buf.writeLong(primaryEpoch);
+        buf.writeLong(sequence);
+        buf.writeBoolean(full);
+        buf.writeLong(globalTail);
+        buf.writeLong(trimMark);
+        ICorfuPayload.serialize(buf, streamTails);
+        longArrayToBuffer(buf, conflictEntries);
+        longArrayToBuffer(buf, conflictWildcards);
+    }
+
+    private static long[] longArrayFromBuffer(ByteBuf buf) {
+        long[] array = new long[buf.readInt()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = buf.readLong();
+        }
+        return array;
+    }
+
+    private static void longArrayToBuffer(ByteBuf buf, long[] array) {
+        buf.writeInt(array.length);
+        for (long value : array) {
+            buf.writeLong(value);
+        }
+    }
+}
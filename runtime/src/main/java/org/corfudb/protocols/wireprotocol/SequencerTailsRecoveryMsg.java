@@ -4,6 +4,8 @@ import io.netty.buffer.ByteBuf;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -18,10 +20,23 @@ public class SequencerTailsRecoveryMsg implements ICorfuPayload<SequencerTailsRe
     private Map<UUID, Long> streamTails;
     private Long readyStateEpoch;
 
+    /** The partition served by the sequencer, 0 if the sequencer is not partitioned. */
+    private Integer partition;
+
+    /** The endpoints of the sequencers of every partition, empty if not partitioned. */
+    private List<String> partitionEndpoints;
+
+    public SequencerTailsRecoveryMsg(Long globalTail, Map<UUID, Long> streamTails,
+                                     Long readyStateEpoch) {
+        this(globalTail, streamTails, readyStateEpoch, 0, Collections.emptyList());
+    }
+
     public SequencerTailsRecoveryMsg(ByteBuf buf) {
         globalTail = ICorfuPayload.fromBuffer(buf, Long.class);
         streamTails = ICorfuPayload.mapFromBuffer(buf, UUID.class, Long.class);
         readyStateEpoch = ICorfuPayload.fromBuffer(buf, Long.class);
+        partition = ICorfuPayload.fromBuffer(buf, Integer.class);
+        partitionEndpoints = ICorfuPayload.listFromBuffer(buf, String.class);
     }
 
     @Override
@@ -30,6 +45,7 @@ public class SequencerTailsRecoveryMsg implements ICorfuPayload<SequencerTailsRe
         ICorfuPayload.serialize(buf, globalTail);
         ICorfuPayload.serialize(buf, streamTails);
         ICorfuPayload.serialize(buf, readyStateEpoch);
+        ICorfuPayload.serialize(buf, partition);
+        ICorfuPayload.serialize(buf, partitionEndpoints);
     }
 }
-
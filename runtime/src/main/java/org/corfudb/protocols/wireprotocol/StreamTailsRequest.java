@@ -0,0 +1,34 @@
+package org.corfudb.protocols.wireprotocol;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.Set;
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A request for the tails of several streams, along with the tail of the global log.
+ */
+@Data
+@AllArgsConstructor
+public class StreamTailsRequest implements ICorfuPayload<StreamTailsRequest> {
+
+    /** The streams to query. */
+    final Set<UUID> streams;
+
+    /**
+     * Deserialization Constructor from ByteBuf to StreamTailsRequest.
+     *
+     * @param buf The buffer to deserialize
+     */
+    public StreamTailsRequest(ByteBuf buf) {
+        streams = ICorfuPayload.setFromBuffer(buf, UUID.class);
+    }
+
+    @Override
+    public void doSerialize(ByteBuf buf) {
+        ICorfuPayload.serialize(buf, streams);
+    }
+}
@@ -0,0 +1,46 @@
+package org.corfudb.protocols.wireprotocol;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.Map;
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * The tails of the streams named by a {@link StreamTailsRequest}.
+ *
+ * <p>The global tail is read after the stream tails, so it is never below any of them, unless
+ * the sequencer is partitioned: the global tail is then the last address every partition is
+ * done with, which may be below the tails of streams.</p>
+ */
+@Data
+@AllArgsConstructor
+public class StreamTailsResponse implements ICorfuPayload<StreamTailsResponse> {
+
+    /** The last address issued in the global log. */
+    final long globalTail;
+
+    /**
+     * The last address issued to each requested stream, or
+     * {@link org.corfudb.runtime.view.Address#NON_EXIST} for streams with no entries.
+     */
+    final Map<UUID, Long> streamTails;
+
+    /**
+     * Deserialization Constructor from ByteBuf to StreamTailsResponse.
+     *
+     * @param buf The buffer to deserialize
+     */
+    public StreamTailsResponse(ByteBuf buf) {
+        globalTail = ICorfuPayload.fromBuffer(buf, Long.class);
+        streamTails = ICorfuPayload.mapFromBuffer(buf, UUID.class, Long.class);
+    }
+
+    @Override
+    public void doSerialize(ByteBuf buf) {
+        ICorfuPayload.serialize(buf, globalTail);
+        ICorfuPayload.serialize(buf, streamTails);
+    }
+}
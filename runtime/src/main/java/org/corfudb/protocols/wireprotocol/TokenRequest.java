@@ -8,6 +8,8 @@ import java.util.UUID;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
+import org.corfudb.runtime.view.Layout;
+
 /**
  * A token request is at the heart of the Corfu log protocol.
  *
@@ -32,6 +34,11 @@ public class TokenRequest implements ICorfuPayload<TokenRequest> {
     public static final byte TK_MULTI_STREAM = 3;
     public static final byte TK_TX = 4;
 
+    /** The partition of a request whose streams belong to several partitions. */
+    public static final int CROSS_PARTITION = -1;
+
+    private static final int NO_PARTITION = -2;
+
     /** The type of request, one of the above. */
     final byte reqType;
 
@@ -78,6 +85,53 @@ public class TokenRequest implements ICorfuPayload<TokenRequest> {
         txnResolution = null;
     }
 
+    /**
+     * Get the partition of the sequencer which serves this request: the partition of its
+     * streams, including the streams read or written by a transaction, or the first partition
+     * if the request has no streams.
+     *
+     * @param partitions the number of partitions of the sequencer
+     * @return the partition, or {@link #CROSS_PARTITION} if the streams of the request belong
+     *     to several partitions
+     */
+    public int getSequencerPartition(int partitions) {
+        if (partitions <= 1) {
+            return 0;
+        }
+        int partition = NO_PARTITION;
+        if (streams != null) {
+            partition = getPartition(streams, partitions, partition);
+        }
+        if (txnResolution != null) {
+            partition = getPartition(txnResolution.getConflictSet().keySet(), partitions,
+                    partition);
+            partition = getPartition(txnResolution.getWriteConflictParams().keySet(),
+                    partitions, partition);
+        }
+        return partition == NO_PARTITION ? 0 : partition;
+    }
+
+    /**
+     * Get the partition shared by a set of streams and the streams seen so far.
+     *
+     * @param streamIds  the streams
+     * @param partitions the number of partitions
+     * @param partition  the partition of the streams seen so far
+     * @return the partition, or {@link #CROSS_PARTITION} if the streams belong to several
+     *     partitions
+     */
+    private static int getPartition(Set<UUID> streamIds, int partitions, int partition) {
+        for (UUID streamId : streamIds) {
+            int streamPartition = Layout.getSequencerPartition(streamId, partitions);
+            if (partition == NO_PARTITION) {
+                partition = streamPartition;
+            } else if (partition != streamPartition) {
+                return CROSS_PARTITION;
+            }
+        }
+        return partition;
+    }
+
     /**
      * Deserialization Constructor from Bytebuf to TokenRequest.
      *
@@ -4,14 +4,16 @@ import com.google.common.collect.ImmutableMap;
 
 import io.netty.buffer.ByteBuf;
 
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.Map;
-import java.util.Set;
 import java.util.UUID;
 
 import lombok.Getter;
 import lombok.Setter;
 
+import net.openhft.hashing.LongHashFunction;
+
 import org.corfudb.util.Utils;
 
 /**
@@ -19,6 +21,18 @@ import org.corfudb.util.Utils;
  */
 public class TxResolutionInfo implements ICorfuPayload<TxResolutionInfo> {
 
+    /**
+     * Prefixes a TxResolutionInfo with hashed conflict parameters. The legacy format starts
+     * with the transaction ID instead, and the UUID version bits of the marker are 0, which
+     * no random or name based UUID has.
+     */
+    static final long HASHED_MARKER = 0xC0F1C75E7AB10000L;
+
+    /**
+     * The version of the hashed format.
+     */
+    static final byte HASHED_VERSION = 2;
+
     @Getter
     @Setter
     @SuppressWarnings({"checkstyle:abbreviationaswordinname", "checkstyle:membername"})
@@ -29,13 +43,14 @@ public class TxResolutionInfo implements ICorfuPayload<TxResolutionInfo> {
     @Setter
     Long snapshotTimestamp;
 
-    /** A set of poisoned streams, which have a conflict against all updates. */
-
+    /** The 64-bit hashes of the conflict parameters read by the txn, arranged by stream IDs.
+     * A stream with no hashes is poisoned, and conflicts against all updates. */
     @Getter
-    final Map<UUID, Set<byte[]>> conflictSet;
+    final Map<UUID, long[]> conflictSet;
 
+    /** The 64-bit hashes of the conflict parameters written by the txn, arranged by stream IDs. */
     @Getter
-    final Map<UUID, Set<byte[]>>  writeConflictParams;
+    final Map<UUID, long[]> writeConflictParams;
 
     /**
      * Constructor for TxResolutionInfo.
@@ -55,11 +70,11 @@ public class TxResolutionInfo implements ICorfuPayload<TxResolutionInfo> {
      *
      * @param txId transaction identifier
      * @param snapshotTimestamp transaction snapshot timestamp
-     * @param conflictMap map of conflict parameters, arranged by stream IDs
-     * @param writeConflictParams map of write conflict parameters, arranged by stream IDs
+     * @param conflictMap map of conflict parameter hashes, arranged by stream IDs
+     * @param writeConflictParams map of write conflict parameter hashes, arranged by stream IDs
      */
-    public TxResolutionInfo(UUID txId, long snapshotTimestamp, Map<UUID, Set<byte[]>>
-            conflictMap, Map<UUID, Set<byte[]>> writeConflictParams) {
+    public TxResolutionInfo(UUID txId, long snapshotTimestamp, Map<UUID, long[]>
+            conflictMap, Map<UUID, long[]> writeConflictParams) {
         this.TXid = txId;
         this.snapshotTimestamp = snapshotTimestamp;
         this.conflictSet = conflictMap;
@@ -69,37 +84,84 @@ public class TxResolutionInfo implements ICorfuPayload<TxResolutionInfo> {
     /**
      * fast, specialized deserialization constructor, from a ByteBuf to this object
      *
-     * <p>The first entry is a long, the snapshot timestamp.
-     * The second is an int, the size of the map.
-     * Next, entries are serialized one by one, first the key, then each value,
-     * itself a set of objects.</p>
+     * <p>The first entries are {@link #HASHED_MARKER} and {@link #HASHED_VERSION}.
+     * Next come the transaction ID and a long, the snapshot timestamp.
+     * Then each map, as an int, the size of the map, and its entries one by one,
+     * first the key, then the number of hashes, then each hash as a long.</p>
+     *
+     * <p>The legacy format, without marker, with each value a set of byte arrays, is also
+     * decoded: the byte arrays are folded into 64-bit hashes as the clients fold them, see
+     * {@link #foldHash(byte[])}. A sequencer which decodes both formats must therefore be
+     * deployed before the clients which send the hashed one.</p>
      *
      * @param buf        The buffer to deserialize.
      */
     public TxResolutionInfo(ByteBuf buf) {
+        final boolean hashed = buf.getLong(buf.readerIndex()) == HASHED_MARKER;
+        if (hashed) {
+            buf.skipBytes(Long.BYTES);
+            final byte version = buf.readByte();
+            if (version != HASHED_VERSION) {
+                throw new IllegalArgumentException("Unknown TxResolutionInfo version "
+                        + version);
+            }
+        }
         TXid = ICorfuPayload.fromBuffer(buf, UUID.class);
         snapshotTimestamp = buf.readLong();
+        conflictSet = hashed ? hashMapFromBuffer(buf) : legacyMapFromBuffer(buf);
+        writeConflictParams = hashed ? hashMapFromBuffer(buf) : legacyMapFromBuffer(buf);
+    }
+
+    /**
+     * Fold the hash of a conflict parameter into 64 bits. Hashes which are already 64 bits
+     * wide are used as they are, anything else is folded with xxHash.
+     *
+     * @param hash the hash of a conflict parameter, as computed by its serializer
+     * @return the 64-bit hash
+     */
+    public static long foldHash(byte[] hash) {
+        if (hash.length == Long.BYTES) {
+            return ByteBuffer.wrap(hash).getLong();
+        }
+        return LongHashFunction.xx().hashBytes(hash);
+    }
 
-        // conflictSet
+    private static Map<UUID, long[]> legacyMapFromBuffer(ByteBuf buf) {
         int numEntries = buf.readInt();
-        ImmutableMap.Builder<UUID, Set<byte[]>> conflictMapBuilder = new ImmutableMap.Builder<>();
+        ImmutableMap.Builder<UUID, long[]> mapBuilder = new ImmutableMap.Builder<>();
         for (int i = 0; i < numEntries; i++) {
             UUID k = ICorfuPayload.fromBuffer(buf, UUID.class);
-            Set<byte[]> v = ICorfuPayload.setFromBuffer(buf, byte[].class);
-            conflictMapBuilder.put(k, v);
+            mapBuilder.put(k, ICorfuPayload.setFromBuffer(buf, byte[].class).stream()
+                    .mapToLong(TxResolutionInfo::foldHash)
+                    .distinct()
+                    .toArray());
         }
-        conflictSet = conflictMapBuilder.build();
+        return mapBuilder.build();
+    }
 
-        // writeConflictParams
-        numEntries = buf.readInt();
-        ImmutableMap.Builder<UUID, Set<byte[]>> writeMapBuilder = new ImmutableMap.Builder<>();
+    private static Map<UUID, long[]> hashMapFromBuffer(ByteBuf buf) {
+        int numEntries = buf.readInt();
+        ImmutableMap.Builder<UUID, long[]> mapBuilder = new ImmutableMap.Builder<>();
         for (int i = 0; i < numEntries; i++) {
             UUID k = ICorfuPayload.fromBuffer(buf, UUID.class);
-            Set<byte[]> v = ICorfuPayload.setFromBuffer(buf, byte[].class);
-            writeMapBuilder.put(k, v);
+            long[] v = new long[buf.readInt()];
+            for (int j = 0; j < v.length; j++) {
+                v[j] = buf.readLong();
+            }
+            mapBuilder.put(k, v);
         }
+        return mapBuilder.build();
+    }
 
-        writeConflictParams = writeMapBuilder.build();
+    private static void hashMapToBuffer(ByteBuf buf, Map<UUID, long[]> map) {
+        buf.writeInt(map.size());
+        for (Map.Entry<UUID, long[]> x : map.entrySet()) {
+            ICorfuPayload.serialize(buf, x.getKey());
+            buf.writeInt(x.getValue().length);
+            for (long hash : x.getValue()) {
+                buf.writeLong(hash);
+            }
+        }
     }
 
     /**
@@ -109,22 +171,12 @@ public class TxResolutionInfo implements ICorfuPayload<TxResolutionInfo> {
      */
     @Override
     public void doSerialize(ByteBuf buf) {
+        buf.writeLong(HASHED_MARKER);
+        buf.writeByte(HASHED_VERSION);
         ICorfuPayload.serialize(buf, TXid);
         buf.writeLong(snapshotTimestamp);
-
-        // conflictSet
-        buf.writeInt(conflictSet.size());
-        conflictSet.entrySet().stream().forEach(x -> {
-            ICorfuPayload.serialize(buf, x.getKey());
-            ICorfuPayload.serialize(buf, x.getValue());
-        });
-
-        // writeConflictParams
-        buf.writeInt(writeConflictParams.size());
-        writeConflictParams.entrySet().stream().forEach(x -> {
-            ICorfuPayload.serialize(buf, x.getKey());
-            ICorfuPayload.serialize(buf, x.getValue());
-        });
+        hashMapToBuffer(buf, conflictSet);
+        hashMapToBuffer(buf, writeConflictParams);
     }
 
     @Override
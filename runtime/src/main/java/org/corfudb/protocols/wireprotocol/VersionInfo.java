@@ -26,6 +26,13 @@ public class VersionInfo {
     @Getter
     String version;
 
+    /**
+     * The highest version of the message protocol the server decodes and sends, see
+     * {@link ProtocolSession}. It is 0 from a server which predates the field.
+     */
+    @Getter
+    int wireProtocolVersion = ProtocolSession.getMaxVersion();
+
     public VersionInfo(Map<String,Object> optionsMap) {
         this.optionsMap = optionsMap;
         this.version = CorfuRuntime.getVersionString();
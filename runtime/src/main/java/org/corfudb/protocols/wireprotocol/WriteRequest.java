@@ -50,6 +50,13 @@ public class WriteRequest implements ICorfuPayload<WriteRequest>, IMetadata {
         ICorfuPayload.serialize(buf, data);
     }
 
+    @Override
+    public void release() {
+        if (data instanceof LogData) {
+            ((LogData) data).release();
+        }
+    }
+
     @Override
     public EnumMap<LogUnitMetadataType, Object> getMetadataMap() {
         return data.getMetadataMap();
@@ -28,6 +28,7 @@ import org.corfudb.protocols.logprotocol.MultiObjectSMREntry;
 import org.corfudb.protocols.logprotocol.SMREntry;
 import org.corfudb.protocols.wireprotocol.DataType;
 import org.corfudb.protocols.wireprotocol.ILogData;
+import org.corfudb.protocols.wireprotocol.StreamTailsResponse;
 import org.corfudb.runtime.CorfuRuntime;
 import org.corfudb.runtime.collections.SMRMap;
 import org.corfudb.runtime.object.CorfuCompileProxy;
@@ -237,7 +238,20 @@ public class FastObjectLoader {
     }
 
     private void findAndSetLogTail() {
-        logTail = runtime.getSequencerView().nextToken(Collections.emptySet(), 0).getTokenValue();
+        if (!whiteList || recoverSequencerMode) {
+            logTail = runtime.getSequencerView().nextToken(Collections.emptySet(), 0)
+                    .getTokenValue();
+            return;
+        }
+
+        // In whiteList mode, nothing needs to be read past the last entry of the streams
+        // to load (and of their checkpoints), whose tails come in a single request.
+        StreamTailsResponse tails = runtime.getSequencerView()
+                .getStreamTails(new HashSet<>(streamsToLoad));
+        logTail = Math.min(tails.getGlobalTail(), tails.getStreamTails().values().stream()
+                .mapToLong(Long::longValue)
+                .max()
+                .orElse(Address.NON_EXIST));
     }
 
     private void resetAddressProcessed() {
@@ -21,9 +21,11 @@ import lombok.Setter;
 import lombok.experimental.Accessors;
 import lombok.extern.slf4j.Slf4j;
 
+import org.corfudb.protocols.wireprotocol.LayoutCodec;
 import org.corfudb.protocols.wireprotocol.VersionInfo;
 import org.corfudb.recovery.FastObjectLoader;
 import org.corfudb.runtime.clients.BaseClient;
+import org.corfudb.runtime.clients.ClientEventLoops;
 import org.corfudb.runtime.clients.IClientRouter;
 import org.corfudb.runtime.clients.LayoutClient;
 import org.corfudb.runtime.clients.LogUnitClient;
@@ -39,6 +41,7 @@ import org.corfudb.runtime.view.SequencerView;
 import org.corfudb.runtime.view.StreamsView;
 import org.corfudb.util.GitRepositoryState;
 import org.corfudb.util.MetricsUtils;
+import org.corfudb.util.NettyTransport;
 import org.corfudb.util.Version;
 
 /**
@@ -118,12 +121,44 @@ public class CorfuRuntime {
     @Getter
     public boolean cacheDisabled = false;
     /**
-     * The maximum size of the cache, in bytes.
+     * The maximum number of entries in the cache.
+     *
+     * @deprecated the cache is bounded by the size of its entries, see {@link #maxCacheBytes}
      */
+    @Deprecated
     @Getter
-    @Setter
     public long numCacheEntries = 5000;
 
+    /**
+     * The maximum size of the cache, in bytes, as estimated from the size of its entries, or 0
+     * to bound it to {@link #cacheHeapRatio} of the maximum heap size.
+     */
+    @Getter
+    public long maxCacheBytes = 0;
+
+    /**
+     * The ratio of the maximum heap size the cache may take, if {@link #maxCacheBytes} is 0.
+     */
+    @Getter
+    public double cacheHeapRatio = 0.1;
+
+    /**
+     * The maximum size of an entry which is cached, in bytes, or 0 to only cache the entries up
+     * to a sixteenth of the size of the cache. Larger entries are read or written without
+     * being cached, rather than evict many smaller ones.
+     */
+    @Getter
+    @Setter
+    public long maxCacheEntryBytes = 0;
+
+    /**
+     * Whether to cache the entries read by a scan, which reads more than
+     * {@link #bulkReadSize} addresses missing from the cache at once.
+     */
+    @Getter
+    @Setter
+    public boolean cacheScans = true;
+
     /**
      * The number of times to retry on a retriable TrimException within during a transaction
      */
@@ -158,6 +193,124 @@ public class CorfuRuntime {
     @Setter
     public boolean holeFillingDisabled = false;
 
+    /**
+     * If coalescing of concurrent sequencer requests into batches is disabled.
+     */
+    @Getter
+    @Setter
+    public boolean sequencerBatchingDisabled = false;
+
+    /**
+     * How long, in microseconds, a batch of sequencer requests waits for more requests
+     * before it is sent. With 0, a batch is sent as soon as the previous one completes.
+     */
+    @Getter
+    @Setter
+    public long sequencerBatchIntervalMicros = 0;
+
+    /**
+     * The number of raw tokens leased from the sequencer at once, and handed out locally by
+     * {@link SequencerView#nextRawToken()}. With 0 or 1, every raw token is requested from the
+     * sequencer.
+     */
+    @Getter
+    @Setter
+    public int rawTokenLeaseSize = 0;
+
+    /**
+     * How long, in milliseconds, a block of raw tokens is handed out before the tokens left
+     * are hole filled and a new block is leased.
+     */
+    @Getter
+    @Setter
+    public long rawTokenLeaseMillis = 1000;
+
+    /**
+     * How the Netty threads of the routers of this runtime are shared: by default every
+     * router has its own threads. See {@link ClientEventLoops}.
+     */
+    public enum EventLoopSharing {
+        /** Every router has its own threads. */
+        NONE,
+        /** The routers of this runtime share the same threads. */
+        RUNTIME,
+        /** The routers of all the runtimes of the JVM set to JVM share the same threads. */
+        JVM
+    }
+
+    @Getter
+    @Setter
+    public EventLoopSharing eventLoopSharing = EventLoopSharing.NONE;
+
+    /**
+     * The number of threads doing the socket I/O, and running the pipeline handlers, of
+     * shared Netty threads, or 0 for twice the number of processors. With
+     * {@link EventLoopSharing#JVM}, only the first runtime to connect sets them.
+     */
+    @Getter
+    @Setter
+    public int nettyWorkerThreads = 0;
+
+    @Getter
+    @Setter
+    public int nettyHandlerThreads = 0;
+
+    /**
+     * The Netty transport of the routers: NIO by default. {@link NettyTransport#AUTO} selects
+     * the native epoll transport where it is available.
+     */
+    @Getter
+    @Setter
+    public NettyTransport nettyTransport = NettyTransport.NIO;
+
+    /**
+     * Whether the routers send TCP acknowledgements immediately (TCP_QUICKACK), with epoll.
+     */
+    @Getter
+    @Setter
+    public boolean tcpQuickAck = false;
+
+    /**
+     * How long the routers busy poll their sockets for data, in microseconds (SO_BUSY_POLL),
+     * with epoll, or 0 not to.
+     */
+    @Getter
+    @Setter
+    public int busyPollMicros = 0;
+
+    /**
+     * The number of connections of each router to its endpoint. With more than one, the
+     * requests for log data do not delay the other requests, see
+     * {@link NettyClientRouter#BULK_REQUESTS}.
+     */
+    @Getter
+    @Setter
+    public int connectionsPerEndpoint = 1;
+
+    /**
+     * The number of bulk requests, and of other requests, which each router has in flight,
+     * or 0 for no limit. The requests beyond the limit wait for a permit before they are
+     * sent, see {@link NettyClientRouter#BULK_REQUESTS}.
+     */
+    @Getter
+    @Setter
+    public int maxInFlightBulkRequests = 0;
+
+    @Getter
+    @Setter
+    public int maxInFlightControlRequests = 0;
+
+    /**
+     * The threads shared by the routers of this runtime, created on first use.
+     */
+    private ClientEventLoops runtimeEventLoops;
+
+    /**
+     * The threads of the routers which have their own, when they are not on the default
+     * transport, shut down with the runtime.
+     */
+    private final List<ClientEventLoops> routerEventLoops = new ArrayList<>();
+
     /**
      * Notifies that the runtime is no longer used
      * and async retries to fetch the layout can be stopped.
@@ -255,7 +408,10 @@ public class CorfuRuntime {
                 // Generate a new router, start it and add it to the table.
                 NettyClientRouter router = new NettyClientRouter(host, port,
                         tlsEnabled, keyStore, ksPasswordFile, trustStore, tsPasswordFile,
-                        saslPlainTextEnabled, usernameFile, passwordFile);
+                        saslPlainTextEnabled, usernameFile, passwordFile, null,
+                        getEventLoops(), connectionsPerEndpoint);
+                router.getBulkLimiter().setLimit(maxInFlightBulkRequests);
+                router.getControlLimiter().setLimit(maxInFlightControlRequests);
                 log.debug("Connecting to new router {}:{}", host, port);
                 try {
                     router.addClient(new LayoutClient())
@@ -330,6 +486,15 @@ public class CorfuRuntime {
      */
     public void shutdown() {
 
+        // Hole fill the raw tokens which will not be used.
+        if (layout != null) {
+            try {
+                sequencerView.releaseRawTokens();
+            } catch (Exception e) {
+                log.error("Runtime shutting down. Exception in releasing raw tokens: {}", e);
+            }
+        }
+
         // Stopping async task from fetching layout.
         isShutdown = true;
         if (layout != null) {
@@ -340,6 +505,44 @@ public class CorfuRuntime {
             }
         }
         stop(true);
+
+        synchronized (this) {
+            if (runtimeEventLoops != null) {
+                runtimeEventLoops.shutdown();
+                runtimeEventLoops = null;
+            }
+            routerEventLoops.forEach(ClientEventLoops::shutdown);
+            routerEventLoops.clear();
+        }
+    }
+
+    /**
+     * Get the threads of a new router of this runtime.
+     *
+     * @return the threads of the router, or null if it creates its own NIO threads
+     */
+    private synchronized ClientEventLoops getEventLoops() {
+        switch (eventLoopSharing) {
+            case RUNTIME:
+                if (runtimeEventLoops == null) {
+                    runtimeEventLoops = new ClientEventLoops("corfu-runtime", nettyTransport,
+                            nettyWorkerThreads, nettyHandlerThreads, tcpQuickAck,
+                            busyPollMicros);
+                }
+                return runtimeEventLoops;
+            case JVM:
+                return ClientEventLoops.getShared(nettyTransport, nettyWorkerThreads,
+                        nettyHandlerThreads, tcpQuickAck, busyPollMicros);
+            default:
+                if (nettyTransport.resolve() == NettyTransport.NIO) {
+                    return null;
+                }
+                ClientEventLoops eventLoops = new ClientEventLoops("corfu-client",
+                        nettyTransport, nettyWorkerThreads, nettyHandlerThreads, tcpQuickAck,
+                        busyPollMicros);
+                routerEventLoops.add(eventLoops);
+                return eventLoops;
+        }
     }
 
     /**
@@ -394,6 +597,19 @@ public class CorfuRuntime {
         return Version.getVersionString();
     }
 
+    /**
+     * Set the encoding of the layouts sent by this JVM. The setting is shared by every runtime
+     * and server of the JVM.
+     *
+     * @param wireFormat JSON to only send layouts in JSON, NEGOTIATED to send them in binary
+     *                   to the servers which advertise that they decode it.
+     * @return A CorfuRuntime to support chaining.
+     */
+    public CorfuRuntime setLayoutWireFormat(LayoutCodec.WireFormat wireFormat) {
+        LayoutCodec.setWireFormat(wireFormat);
+        return this;
+    }
+
     /**
      * Whether or not to disable backpointers
      *
@@ -416,6 +632,48 @@ public class CorfuRuntime {
         return this;
     }
 
+    /**
+     * Set the maximum number of entries in the cache. The cache is bounded by the size of its
+     * entries instead, so the setting is ignored, with a warning.
+     *
+     * @param numCacheEntries The maximum number of entries in the cache.
+     * @return A CorfuRuntime to support chaining.
+     * @deprecated use {@link #setMaxCacheBytes(long)}
+     */
+    @Deprecated
+    public CorfuRuntime setNumCacheEntries(long numCacheEntries) {
+        log.warn("setNumCacheEntries: The cache is bounded in bytes, ignoring {} entries, "
+                + "set maxCacheBytes instead", numCacheEntries);
+        this.numCacheEntries = numCacheEntries;
+        return this;
+    }
+
+    /**
+     * Set the maximum size of the cache, evicting entries if it shrinks.
+     *
+     * @param maxCacheBytes The maximum size of the cache, in bytes, or 0 to bound it to
+     *                      {@link #cacheHeapRatio} of the maximum heap size.
+     * @return A CorfuRuntime to support chaining.
+     */
+    public CorfuRuntime setMaxCacheBytes(long maxCacheBytes) {
+        this.maxCacheBytes = maxCacheBytes;
+        getAddressSpaceView().resizeCache();
+        return this;
+    }
+
+    /**
+     * Set the ratio of the maximum heap size the cache may take, if no maximum size in bytes
+     * is set, evicting entries if it shrinks.
+     *
+     * @param cacheHeapRatio The ratio of the maximum heap size, between 0 and 1.
+     * @return A CorfuRuntime to support chaining.
+     */
+    public CorfuRuntime setCacheHeapRatio(double cacheHeapRatio) {
+        this.cacheHeapRatio = cacheHeapRatio;
+        getAddressSpaceView().resizeCache();
+        return this;
+    }
+
     /**
      * If enabled, successful transactions will be written to a special transaction stream
      * (i.e. TRANSACTION_STREAM_ID)
@@ -15,6 +15,7 @@ import org.corfudb.protocols.wireprotocol.CorfuPayloadMsg;
 import org.corfudb.protocols.wireprotocol.ExceptionMsg;
 import org.corfudb.protocols.wireprotocol.JSONPayloadMsg;
 import org.corfudb.protocols.wireprotocol.VersionInfo;
+import org.corfudb.runtime.exceptions.ServerBusyException;
 import org.corfudb.runtime.exceptions.ServerNotReadyException;
 import org.corfudb.runtime.exceptions.WrongEpochException;
 
@@ -183,6 +184,13 @@ public class BaseClient implements IClient {
         throw new ServerNotReadyException();
     }
 
+    /** Handle a request which the server is too busy to admit. */
+    @ClientHandler(type = CorfuMsgType.ERROR_SERVER_BUSY)
+    private static Object handleServerBusy(CorfuMsg msg, ChannelHandlerContext ctx,
+                                           IClientRouter r) {
+        throw new ServerBusyException(r.getHost() + ":" + r.getPort());
+    }
+
     /** Generic handler for a server exception. */
     @ClientHandler(type = CorfuMsgType.ERROR_SERVER_EXCEPTION)
     private static Object handleServerException(CorfuPayloadMsg<ExceptionMsg> msg,
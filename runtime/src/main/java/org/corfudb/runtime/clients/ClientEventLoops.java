@@ -0,0 +1,168 @@
+package org.corfudb.runtime.clients;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutorGroup;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import org.corfudb.util.NettyTransport;
+
+/**
+ * The threads of the Netty client: an event loop group, which does the socket I/O, and an
+ * event executor group, which runs the pipeline handlers of the channels. The event loop
+ * group belongs to a {@link NettyTransport}, along with the socket options of the channels.
+ *
+ * <p>By default, every {@link NettyClientRouter} creates its own, each with twice as many
+ * threads as there are processors. A ClientEventLoops can instead be shared by several
+ * routers, such as every router of a runtime, or every router of the JVM, see
+ * {@link #getShared()}. A router never shuts down the threads it shares with others.
+ */
+@Slf4j
+public class ClientEventLoops {
+
+    /**
+     * The default number of threads of each group.
+     */
+    public static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors() * 2;
+
+    /**
+     * The instance shared by every router of the JVM, created on first use.
+     */
+    private static ClientEventLoops shared;
+
+    /**
+     * The event loop group, which does the socket I/O.
+     */
+    @Getter
+    private final EventLoopGroup workerGroup;
+
+    /**
+     * The event executor group, which runs the pipeline handlers.
+     */
+    @Getter
+    private final EventExecutorGroup handlerGroup;
+
+    /**
+     * The transport of the event loop group, resolved to NIO or epoll.
+     */
+    @Getter
+    private final NettyTransport transport;
+
+    /**
+     * Whether to set TCP_QUICKACK on the channels.
+     */
+    private final boolean tcpQuickAck;
+
+    /**
+     * The SO_BUSY_POLL of the channels, in microseconds, or 0.
+     */
+    private final int busyPollMicros;
+
+    /**
+     * Returns a new ClientEventLoops, on the NIO transport.
+     *
+     * @param name           a prefix of the names of the threads
+     * @param workerThreads  the number of threads of the event loop group, or 0 for the
+     *                       default
+     * @param handlerThreads the number of threads of the event executor group, or 0 for the
+     *                       default
+     */
+    public ClientEventLoops(String name, int workerThreads, int handlerThreads) {
+        this(name, NettyTransport.NIO, workerThreads, handlerThreads, false, 0);
+    }
+
+    /**
+     * Returns a new ClientEventLoops.
+     *
+     * @param name           a prefix of the names of the threads
+     * @param transport      the transport of the channels
+     * @param workerThreads  the number of threads of the event loop group, or 0 for the
+     *                       default
+     * @param handlerThreads the number of threads of the event executor group, or 0 for the
+     *                       default
+     * @param tcpQuickAck    whether to set TCP_QUICKACK on the channels, with epoll
+     * @param busyPollMicros the SO_BUSY_POLL of the channels with epoll, or 0
+     */
+    public ClientEventLoops(String name, NettyTransport transport, int workerThreads,
+                            int handlerThreads, boolean tcpQuickAck, int busyPollMicros) {
+        this.transport = transport.resolve();
+        this.tcpQuickAck = tcpQuickAck;
+        this.busyPollMicros = busyPollMicros;
+        workerGroup = this.transport.newEventLoopGroup(
+                workerThreads > 0 ? workerThreads : DEFAULT_THREADS,
+                new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat(name + "-worker-%d")
+                        .build());
+        handlerGroup = new DefaultEventExecutorGroup(
+                handlerThreads > 0 ? handlerThreads : DEFAULT_THREADS,
+                new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat(name + "-event-%d")
+                        .build());
+    }
+
+    /**
+     * Get the instance shared by every router of the JVM. It is created with the transport
+     * and thread counts of the first call, and never shut down.
+     *
+     * @param transport      the transport of the channels
+     * @param workerThreads  the number of threads of the event loop group, or 0 for the
+     *                       default
+     * @param handlerThreads the number of threads of the event executor group, or 0 for the
+     *                       default
+     * @param tcpQuickAck    whether to set TCP_QUICKACK on the channels, with epoll
+     * @param busyPollMicros the SO_BUSY_POLL of the channels with epoll, or 0
+     * @return the shared instance
+     */
+    public static synchronized ClientEventLoops getShared(NettyTransport transport,
+                                                          int workerThreads,
+                                                          int handlerThreads,
+                                                          boolean tcpQuickAck,
+                                                          int busyPollMicros) {
+        if (shared == null) {
+            log.info("getShared: Creating the client event loops of the JVM, on {} with {} "
+                    + "worker and {} handler threads", transport, workerThreads,
+                    handlerThreads);
+            shared = new ClientEventLoops("corfu-client", transport, workerThreads,
+                    handlerThreads, tcpQuickAck, busyPollMicros);
+        }
+        return shared;
+    }
+
+    /**
+     * Get the instance shared by every router of the JVM, on NIO with the default thread
+     * counts if it is created by this call.
+     */
+    public static ClientEventLoops getShared() {
+        return getShared(NettyTransport.NIO, 0, 0, false, 0);
+    }
+
+    /**
+     * Set the event loop group, the channel class and the socket options of a bootstrap.
+     *
+     * @param b the bootstrap of a client channel
+     */
+    public void configure(Bootstrap b) {
+        b.group(workerGroup);
+        b.channel(transport.getChannelClass());
+        transport.setClientOptions(b, tcpQuickAck, busyPollMicros);
+    }
+
+    /**
+     * Shut down the threads, once no router uses them anymore.
+     */
+    public void shutdown() {
+        try {
+            handlerGroup.shutdownGracefully().sync();
+            workerGroup.shutdownGracefully().sync();
+        } catch (InterruptedException e) {
+            log.error("Interrupted exception in shutting event pool : {}", e);
+        }
+    }
+}
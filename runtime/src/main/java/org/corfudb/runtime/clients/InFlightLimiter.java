@@ -0,0 +1,96 @@
+package org.corfudb.runtime.clients;
+
+import java.util.ArrayDeque;
+import java.util.function.BooleanSupplier;
+
+import lombok.Getter;
+
+/**
+ * Limits the number of requests of a class which a router has in flight. A request beyond
+ * the limit is not sent, nor is its caller blocked: it waits in a queue, and is sent when a
+ * request in flight completes and hands its permit over.
+ *
+ * <p>A request is given as a function which sends it, and returns whether it is in flight,
+ * and holds the permit until it completes, or failed to be sent, and does not.
+ */
+public class InFlightLimiter {
+
+    /**
+     * The maximum number of requests in flight, or 0 for no limit.
+     */
+    @Getter
+    private volatile int limit;
+
+    private int inFlight;
+
+    private final ArrayDeque<BooleanSupplier> waiting = new ArrayDeque<>();
+
+    /**
+     * Set the maximum number of requests in flight, or 0 for no limit. The requests which
+     * are already waiting keep waiting for a permit.
+     */
+    public synchronized void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Whether the requests of this class are limited. When they are not, they are sent
+     * directly, without a permit.
+     */
+    public boolean isLimited() {
+        return limit > 0;
+    }
+
+    /**
+     * Send a request once it gets a permit, now if one is free.
+     *
+     * @param send sends the request, and returns whether it holds the permit until it
+     *             completes, when {@link #release()} must be called
+     */
+    public void acquire(BooleanSupplier send) {
+        synchronized (this) {
+            if (inFlight >= limit && limit > 0) {
+                waiting.add(send);
+                return;
+            }
+            inFlight++;
+        }
+        if (!send.getAsBoolean()) {
+            release();
+        }
+    }
+
+    /**
+     * Release the permit of a request which completed, to the first waiting request which is
+     * sent, if any.
+     */
+    public void release() {
+        while (true) {
+            final BooleanSupplier next;
+            synchronized (this) {
+                next = inFlight <= limit || limit == 0 ? waiting.poll() : null;
+                if (next == null) {
+                    inFlight--;
+                    return;
+                }
+            }
+            if (next.getAsBoolean()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get the number of requests in flight with a permit.
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Get the number of requests waiting for a permit.
+     */
+    public synchronized int getWaiting() {
+        return waiting.size();
+    }
+}
@@ -26,9 +26,18 @@ import org.corfudb.protocols.wireprotocol.DataType;
 import org.corfudb.protocols.wireprotocol.FillHoleRequest;
 import org.corfudb.protocols.wireprotocol.ILogData;
 import org.corfudb.protocols.wireprotocol.IMetadata;
+import org.corfudb.protocols.wireprotocol.LogData;
 import org.corfudb.protocols.wireprotocol.MultipleReadRequest;
+import org.corfudb.protocols.wireprotocol.MultipleWriteRequest;
+import org.corfudb.protocols.wireprotocol.MultipleWriteResponse;
 import org.corfudb.protocols.wireprotocol.ReadRequest;
 import org.corfudb.protocols.wireprotocol.ReadResponse;
+import org.corfudb.protocols.wireprotocol.SegmentChunk;
+import org.corfudb.protocols.wireprotocol.SegmentChunkRequest;
+import org.corfudb.protocols.wireprotocol.SegmentFileInfo;
+import org.corfudb.protocols.wireprotocol.SegmentInstallRequest;
+import org.corfudb.protocols.wireprotocol.SegmentListResponse;
+import org.corfudb.protocols.wireprotocol.StreamTailsResponse;
 import org.corfudb.protocols.wireprotocol.TrimRequest;
 import org.corfudb.protocols.wireprotocol.WriteMode;
 import org.corfudb.protocols.wireprotocol.WriteRequest;
@@ -144,6 +153,7 @@ public class LogUnitClient implements IClient {
     @ClientHandler(type = CorfuMsgType.ERROR_VALUE_ADOPTED)
     private static Object handleValueAdoptedResponse(CorfuPayloadMsg<ReadResponse> msg,
                                                      ChannelHandlerContext ctx, IClientRouter r) {
+        msg.getPayload().getAddresses().values().forEach(LogData::detach);
         throw new ValueAdoptedException(msg.getPayload());
     }
 
@@ -199,6 +209,21 @@ public class LogUnitClient implements IClient {
     @ClientHandler(type = CorfuMsgType.READ_RESPONSE)
     private static Object handleReadResponse(CorfuPayloadMsg<ReadResponse> msg,
                                              ChannelHandlerContext ctx, IClientRouter r) {
+        msg.getPayload().getAddresses().values().forEach(LogData::detach);
+        return msg.getPayload();
+    }
+
+    /**
+     * Handle a MULTIPLE_WRITE_RESPONSE message.
+     *
+     * @param msg Incoming Message
+     * @param ctx Context
+     * @param r   Router
+     */
+    @ClientHandler(type = CorfuMsgType.MULTIPLE_WRITE_RESPONSE)
+    private static Object handleMultipleWriteResponse(CorfuPayloadMsg<MultipleWriteResponse> msg,
+                                                      ChannelHandlerContext ctx,
+                                                      IClientRouter r) {
         return msg.getPayload();
     }
 
@@ -228,6 +253,19 @@ public class LogUnitClient implements IClient {
         return msg.getPayload();
     }
 
+    /**
+     * Handle a LOG_TAILS_RESPONSE message.
+     *
+     * @param msg Incoming Message
+     * @param ctx Context
+     * @param r   Router
+     */
+    @ClientHandler(type = CorfuMsgType.LOG_TAILS_RESPONSE)
+    private static Object handleLogTailsResponse(CorfuPayloadMsg<StreamTailsResponse> msg,
+                                                 ChannelHandlerContext ctx, IClientRouter r) {
+        return msg.getPayload();
+    }
+
     /**
      * Handle a HEAD_RESPONSE message
      * @param msg   Incoming Message
@@ -240,6 +278,32 @@ public class LogUnitClient implements IClient {
         return msg.getPayload();
     }
 
+    /**
+     * Handle a SEGMENT_LIST_RESPONSE message.
+     *
+     * @param msg Incoming Message
+     * @param ctx Context
+     * @param r   Router
+     */
+    @ClientHandler(type = CorfuMsgType.SEGMENT_LIST_RESPONSE)
+    private static Object handleSegmentListResponse(CorfuPayloadMsg<SegmentListResponse> msg,
+                                                    ChannelHandlerContext ctx, IClientRouter r) {
+        return msg.getPayload();
+    }
+
+    /**
+     * Handle a SEGMENT_READ_RESPONSE message.
+     *
+     * @param msg Incoming Message
+     * @param ctx Context
+     * @param r   Router
+     */
+    @ClientHandler(type = CorfuMsgType.SEGMENT_READ_RESPONSE)
+    private static Object handleSegmentReadResponse(CorfuPayloadMsg<SegmentChunk> msg,
+                                                    ChannelHandlerContext ctx, IClientRouter r) {
+        return msg.getPayload();
+    }
+
     /**
      * Asynchronously write to the logging unit.
      *
@@ -282,6 +346,24 @@ public class LogUnitClient implements IClient {
                 .payloadMsg(new WriteRequest(payload)));
     }
 
+    /**
+     * Asynchronously write several entries to the logging unit, in one request. The logging
+     * unit writes and syncs them as a unit, and answers for each address.
+     *
+     * @param entries The log data to write, with their global addresses set.
+     * @return A CompletableFuture which will complete with the result of each write once
+     *     the writes complete.
+     */
+    public CompletableFuture<MultipleWriteResponse> write(List<ILogData> entries) {
+        Timer.Context context = getTimerContext("writeList");
+        CompletableFuture<MultipleWriteResponse> cf = router.sendMessageAndGetCompletable(
+                CorfuMsgType.MULTIPLE_WRITE.payloadMsg(new MultipleWriteRequest(entries)));
+        return cf.thenApply(x -> {
+            context.stop();
+            return x;
+        });
+    }
+
     /**
      * Asynchronously write an empty payload to the logging unit with ranked address space.
      * Used from the quorum replication when filling holes or during the first phase of the
@@ -369,6 +451,15 @@ public class LogUnitClient implements IClient {
         return router.sendMessageAndGetCompletable(CorfuMsgType.TAIL_REQUEST.msg());
     }
 
+    /**
+     * Get the highest address of every stream, and the global tail, of a logging unit.
+     *
+     * @return A CompletableFuture for the stream tails and the global tail.
+     */
+    public CompletableFuture<StreamTailsResponse> getLogTails() {
+        return router.sendMessageAndGetCompletable(CorfuMsgType.LOG_TAILS_REQUEST.msg());
+    }
+
     /**
      * Get the starting address of a loggining unit.
      * @return A CompletableFuture for the starting address
@@ -410,6 +501,50 @@ public class LogUnitClient implements IClient {
         return router.sendMessageAndGetCompletable(CorfuMsgType.FLUSH_CACHE.msg());
     }
 
+    /**
+     * Get the sealed segment files of the logging unit, for a bulk transfer.
+     *
+     * @return A CompletableFuture for the sealed segment files.
+     */
+    public CompletableFuture<SegmentListResponse> getSealedSegments() {
+        return router.sendMessageAndGetCompletable(CorfuMsgType.SEGMENT_LIST_REQUEST.msg());
+    }
+
+    /**
+     * Read a chunk of a sealed segment file. The caller must release the returned chunk.
+     *
+     * @param fileName The name of the segment file.
+     * @param offset   The offset in the file to read from.
+     * @param length   The maximum number of bytes to read.
+     * @return A CompletableFuture for the chunk, which is empty past the end of the file.
+     */
+    public CompletableFuture<SegmentChunk> readSegmentChunk(String fileName, long offset,
+                                                            int length) {
+        return router.sendMessageAndGetCompletable(CorfuMsgType.SEGMENT_READ_REQUEST
+                .payloadMsg(new SegmentChunkRequest(fileName, offset, length)));
+    }
+
+    /**
+     * Stage a chunk of a segment file on the logging unit.
+     *
+     * @param chunk The chunk to write.
+     * @return A CompletableFuture which completes with true once the chunk is written.
+     */
+    public CompletableFuture<Boolean> writeSegmentChunk(SegmentChunk chunk) {
+        return router.sendMessageAndGetCompletable(CorfuMsgType.SEGMENT_WRITE.payloadMsg(chunk));
+    }
+
+    /**
+     * Install staged segment files into the log of the logging unit.
+     *
+     * @param files The staged files, with their expected lengths.
+     * @return A CompletableFuture which completes with true once the segments are installed.
+     */
+    public CompletableFuture<Boolean> installSegments(List<SegmentFileInfo> files) {
+        return router.sendMessageAndGetCompletable(CorfuMsgType.SEGMENT_INSTALL
+                .payloadMsg(new SegmentInstallRequest(files)));
+    }
+
     /**
      * Fill a hole at a given address.
      *
@@ -2,8 +2,10 @@ package org.corfudb.runtime.clients;
 
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
+import com.google.common.annotations.VisibleForTesting;
 
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
@@ -23,14 +25,16 @@ import io.netty.handler.ssl.SslContext;
 import io.netty.util.concurrent.DefaultEventExecutorGroup;
 import io.netty.util.concurrent.EventExecutorGroup;
 
-import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -41,15 +45,18 @@ import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.corfudb.protocols.wireprotocol.CorfuMsg;
 import org.corfudb.protocols.wireprotocol.CorfuMsgType;
+import org.corfudb.protocols.wireprotocol.LayoutCodec;
 import org.corfudb.protocols.wireprotocol.NettyCorfuMessageDecoder;
 import org.corfudb.protocols.wireprotocol.NettyCorfuMessageEncoder;
+import org.corfudb.protocols.wireprotocol.ProtocolSession;
+import org.corfudb.protocols.wireprotocol.VersionInfo;
 import org.corfudb.runtime.CorfuRuntime;
 import org.corfudb.runtime.exceptions.NetworkException;
 import org.corfudb.runtime.exceptions.WrongEpochException;
 import org.corfudb.security.sasl.SaslUtils;
 import org.corfudb.security.sasl.plaintext.PlainTextSaslNettyClient;
 import org.corfudb.security.tls.TlsUtils;
-import org.corfudb.util.CFUtils;
+import org.corfudb.util.FlushCoalescingHandler;
 import org.corfudb.util.MetricsUtils;
 
 
@@ -67,17 +74,32 @@ public class NettyClientRouter extends SimpleChannelInboundHandler<CorfuMsg>
      * Metrics: meter (counter), histogram.
      */
     private Gauge<Integer> gaugeConnected;
+    private Gauge<Integer> gaugeInFlight;
     private Timer timerConnect;
     private Timer timerSyncOp;
     private Counter counterConnectFailed;
     private Counter counterSendDisconnected;
-    private Counter counterSendTimeout;
+    private Meter meterTimeouts;
     private Counter counterAsyncOpSent;
+    private Timer timerBulkPermitWait;
+    private Timer timerControlPermitWait;
 
     /**
      * A random instance.
      */
     public static final Random random = new Random();
+    /**
+     * The requests which carry, or are answered with, log data. When the router has more
+     * than one connection, they are sent round robin over all connections but the first,
+     * so that they do not delay the other requests, which are sent on the first.
+     */
+    public static final EnumSet<CorfuMsgType> BULK_REQUESTS = EnumSet.of(
+            CorfuMsgType.WRITE,
+            CorfuMsgType.READ_REQUEST,
+            CorfuMsgType.MULTIPLE_READ_REQUEST,
+            CorfuMsgType.MULTIPLE_WRITE,
+            CorfuMsgType.SEGMENT_READ_REQUEST,
+            CorfuMsgType.SEGMENT_WRITE);
     /**
      * The epoch this router is in.
      */
@@ -140,15 +162,29 @@ public class NettyClientRouter extends SimpleChannelInboundHandler<CorfuMsg>
      */
     public List<IClient> clientList;
     /**
-     * The outstanding requests on this router.
+     * The connections of this router to its endpoint.
+     */
+    private final Connection[] connections;
+    /**
+     * The number of bulk requests sent, to pick their connection.
      */
-    public Map<Long, CompletableFuture> outstandingRequests;
+    private final AtomicLong bulkRequests = new AtomicLong();
     /**
-     * The currently registered channel context.
+     * Limits the bulk requests in flight, see {@link #BULK_REQUESTS}.
+     */
+    @Getter
+    private final InFlightLimiter bulkLimiter = new InFlightLimiter();
+    /**
+     * Limits the other requests in flight.
+     */
+    @Getter
+    private final InFlightLimiter controlLimiter = new InFlightLimiter();
+    /**
+     * The most recently registered channel context.
      */
     public ChannelHandlerContext context;
     /**
-     * The currently registered channel.
+     * The channel of the first connection.
      */
     public Channel channel = null;
     /**
@@ -159,6 +195,10 @@ public class NettyClientRouter extends SimpleChannelInboundHandler<CorfuMsg>
      * The event executor group for this router.
      */
     public EventExecutorGroup ee;
+    /**
+     * The threads shared with other routers, or null if this router has its own.
+     */
+    private final ClientEventLoops sharedEventLoops;
     /**
      * Whether or not this router is shutdown.
      */
@@ -174,7 +214,7 @@ public class NettyClientRouter extends SimpleChannelInboundHandler<CorfuMsg>
     @Getter
     Integer port;
     /**
-     * Flag, if we are connected.
+     * Flag, if any connection of this router is connected.
      */
     @Getter
     volatile Boolean connected;
@@ -236,8 +276,71 @@ public class NettyClientRouter extends SimpleChannelInboundHandler<CorfuMsg>
                              String keyStore, String ksPasswordFile, String trustStore,
                              String tsPasswordFile, Boolean saslPlainText, String usernameFile,
                              String passwordFile, MetricRegistry metricRegistry) {
+        this(host, port, tls, keyStore, ksPasswordFile, trustStore, tsPasswordFile,
+                saslPlainText, usernameFile, passwordFile, metricRegistry, null);
+    }
+
+    /**
+     * Creates a new NettyClientRouter connected to the specified host and port with the
+     * specified tls and sasl options, which runs on threads shared with other routers.
+     *
+     * @param host             Host to connect to.
+     * @param port             Port to conect to.
+     * @param tls              TLS enable flag.
+     * @param keyStore         Key store to be used.
+     * @param ksPasswordFile   Key store password file path.
+     * @param trustStore       Trust store to be used.
+     * @param tsPasswordFile   Trust store password file path.
+     * @param saslPlainText    Sasl to be used.
+     * @param usernameFile     username file path
+     * @param passwordFile     password file path
+     * @param metricRegistry   the registry of the metrics of the router, or null for the
+     *                         default registry
+     * @param sharedEventLoops the threads to run on, which are not shut down when the router
+     *                         is, or null to create threads for this router only
+     */
+    public NettyClientRouter(String host, Integer port, Boolean tls,
+                             String keyStore, String ksPasswordFile, String trustStore,
+                             String tsPasswordFile, Boolean saslPlainText, String usernameFile,
+                             String passwordFile, MetricRegistry metricRegistry,
+                             ClientEventLoops sharedEventLoops) {
+        this(host, port, tls, keyStore, ksPasswordFile, trustStore, tsPasswordFile,
+                saslPlainText, usernameFile, passwordFile, metricRegistry, sharedEventLoops, 1);
+    }
+
+    /**
+     * Creates a new NettyClientRouter connected to the specified host and port with the
+     * specified tls and sasl options, over several connections.
+     *
+     * @param host             Host to connect to.
+     * @param port             Port to conect to.
+     * @param tls              TLS enable flag.
+     * @param keyStore         Key store to be used.
+     * @param ksPasswordFile   Key store password file path.
+     * @param trustStore       Trust store to be used.
+     * @param tsPasswordFile   Trust store password file path.
+     * @param saslPlainText    Sasl to be used.
+     * @param usernameFile     username file path
+     * @param passwordFile     password file path
+     * @param metricRegistry   the registry of the metrics of the router, or null for the
+     *                         default registry
+     * @param sharedEventLoops the threads to run on, which are not shut down when the router
+     *                         is, or null to create threads for this router only
+     * @param connections      the number of connections to the endpoint, see
+     *                         {@link #BULK_REQUESTS}
+     */
+    public NettyClientRouter(String host, Integer port, Boolean tls,
+                             String keyStore, String ksPasswordFile, String trustStore,
+                             String tsPasswordFile, Boolean saslPlainText, String usernameFile,
+                             String passwordFile, MetricRegistry metricRegistry,
+                             ClientEventLoops sharedEventLoops, int connections) {
+        if (connections < 1) {
+            throw new IllegalArgumentException("A router needs at least one connection, not "
+                    + connections);
+        }
         this.host = host;
         this.port = port;
+        this.sharedEventLoops = sharedEventLoops;
 
         clientID = UUID.randomUUID();
         connected = false;
@@ -248,7 +351,10 @@ public class NettyClientRouter extends SimpleChannelInboundHandler<CorfuMsg>
         handlerMap = new ConcurrentHashMap<>();
         clientList = new ArrayList<>();
         requestID = new AtomicLong();
-        outstandingRequests = new ConcurrentHashMap<>();
+        this.connections = new Connection[connections];
+        for (int i = 0; i < connections; i++) {
+            this.connections[i] = new Connection(i);
+        }
         shutdown = true;
 
         MetricRegistry metrics = CorfuRuntime.getDefaultMetrics();
@@ -261,13 +367,19 @@ public class NettyClientRouter extends SimpleChannelInboundHandler<CorfuMsg>
             if (!metrics.getNames().contains(pfx + "connected")) {
                 gaugeConnected = metrics.register(pfx + "connected", () -> connected ? 1 : 0);
             }
+            if (!metrics.getNames().contains(pfx + "in-flight")) {
+                gaugeInFlight = metrics.register(pfx + "in-flight",
+                        this::getOutstandingRequestCount);
+            }
         }
         timerConnect = metrics.timer(pfx + "connect");
         timerSyncOp = metrics.timer(pfx + "sync-op");
         counterConnectFailed = metrics.counter(pfx + "connect-failed");
         counterSendDisconnected = metrics.counter(pfx + "send-disconnected");
-        counterSendTimeout = metrics.counter(pfx + "send-timeout");
+        meterTimeouts = metrics.meter(pfx + "timeouts");
         counterAsyncOpSent = metrics.counter(pfx + "async-op-sent");
+        timerBulkPermitWait = metrics.timer(pfx + "permit-wait.bulk");
+        timerControlPermitWait = metrics.timer(pfx + "permit-wait.control");
 
         if (tls) {
             sslContext =
@@ -351,38 +463,21 @@ public class NettyClientRouter extends SimpleChannelInboundHandler<CorfuMsg>
         shutdown = false;
         if (workerGroup == null
                 || workerGroup.isShutdown()
-                || !channel.isOpen()) {
-            workerGroup = new NioEventLoopGroup(Runtime.getRuntime()
-                    .availableProcessors() * 2, new ThreadFactory() {
-                        final AtomicInteger threadNum = new AtomicInteger(0);
-
-                        @Override
-                        public Thread newThread(Runnable r) {
-                            Thread t = new Thread(r);
-                            t.setName("worker-" + threadNum.getAndIncrement());
-                            t.setDaemon(true);
-                            return t;
-                        }
-                    });
-
-            ee = new DefaultEventExecutorGroup(Runtime.getRuntime()
-                    .availableProcessors() * 2, new ThreadFactory() {
-
-                        final AtomicInteger threadNum = new AtomicInteger(0);
-
-                        @Override
-                        public Thread newThread(Runnable r) {
-                            Thread t = new Thread(r);
-                            t.setName(this.getClass().getName() + "event-"
-                                    + threadNum.getAndIncrement());
-                            t.setDaemon(true);
-                            return t;
-                        }
-                    });
+                || Arrays.stream(connections).anyMatch(Connection::isClosed)) {
+            if (sharedEventLoops != null) {
+                workerGroup = sharedEventLoops.getWorkerGroup();
+                ee = sharedEventLoops.getHandlerGroup();
+            } else if (workerGroup == null || workerGroup.isShutdown()) {
+                createEventLoops();
+            }
 
             Bootstrap b = new Bootstrap();
-            b.group(workerGroup);
-            b.channel(NioSocketChannel.class);
+            if (sharedEventLoops != null) {
+                sharedEventLoops.configure(b);
+            } else {
+                b.group(workerGroup);
+                b.channel(NioSocketChannel.class);
+            }
             b.option(ChannelOption.SO_KEEPALIVE, true);
             b.option(ChannelOption.SO_REUSEADDR, true);
             b.option(ChannelOption.TCP_NODELAY, true);
@@ -397,6 +492,7 @@ public class NettyClientRouter extends SimpleChannelInboundHandler<CorfuMsg>
                     ch.pipeline().addLast(new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE,
                             0, 4, 0,
                             4));
+                    ch.pipeline().addLast(new FlushCoalescingHandler());
                     if (saslPlainTextEnabled) {
                         PlainTextSaslNettyClient saslNettyClient =
                                 SaslUtils.enableSaslPlainText(saslPlainTextUsernameFile,
@@ -410,14 +506,20 @@ public class NettyClientRouter extends SimpleChannelInboundHandler<CorfuMsg>
             });
 
             try {
-                connectChannel(b, c);
+                for (Connection connection : connections) {
+                    if (connection.isClosed()) {
+                        connectChannel(b, c, connection);
+                    }
+                }
             } catch (Exception e) {
 
-                try {
-                    // shutdown EventLoopGroup
-                    workerGroup.shutdownGracefully().sync();
-                } catch (InterruptedException ie) {
-                    log.warn("workerGroup shutdown interrupted : {}", ie);
+                if (sharedEventLoops == null) {
+                    try {
+                        // shutdown EventLoopGroup
+                        workerGroup.shutdownGracefully().sync();
+                    } catch (InterruptedException ie) {
+                        log.warn("workerGroup shutdown interrupted : {}", ie);
+                    }
                 }
                 throw new NetworkException(e.getClass().getSimpleName()
                         + " connecting to endpoint failed", host + ":" + port, e);
@@ -425,8 +527,51 @@ public class NettyClientRouter extends SimpleChannelInboundHandler<CorfuMsg>
         }
     }
 
-    synchronized void connectChannel(Bootstrap b, long c) {
+    /**
+     * Create the threads of this router, when it does not share them with other routers.
+     */
+    private void createEventLoops() {
+        workerGroup = new NioEventLoopGroup(Runtime.getRuntime()
+                .availableProcessors() * 2, new ThreadFactory() {
+                    final AtomicInteger threadNum = new AtomicInteger(0);
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r);
+                        t.setName("worker-" + threadNum.getAndIncrement());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+
+        ee = new DefaultEventExecutorGroup(Runtime.getRuntime()
+                .availableProcessors() * 2, new ThreadFactory() {
+
+                    final AtomicInteger threadNum = new AtomicInteger(0);
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r);
+                        t.setName(this.getClass().getName() + "event-"
+                                + threadNum.getAndIncrement());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+    }
+
+    /**
+     * Connect, or reconnect, one connection of this router. When the connection is closed,
+     * its outstanding requests fail, and it is reconnected, unless the router is shut down.
+     * The other connections are not affected.
+     *
+     * @param b          the bootstrap of the channels
+     * @param c          server startup code
+     * @param connection the connection to connect
+     */
+    synchronized void connectChannel(Bootstrap b, long c, Connection connection) {
         boolean isEnabled = MetricsUtils.isMetricsCollectionEnabled();
+        final Channel newChannel;
         try (Timer.Context context = MetricsUtils.getConditionalContext(isEnabled, timerConnect)) {
             ChannelFuture cf = b.connect(host, port);
             cf.syncUninterruptibly();
@@ -436,21 +581,22 @@ public class NettyClientRouter extends SimpleChannelInboundHandler<CorfuMsg>
                 throw new NetworkException(c + " Timeout connecting to endpoint",
                         host + ":" + port);
             }
-            channel = cf.channel();
-        }
-        channel.closeFuture().addListener((r) -> {
-            connected = false;
-            outstandingRequests.forEach((reqId, reqCompletableFuture) -> {
-//                MetricsUtils.incConditionalCounter(isEnabled, counterSendDisconnected, 1);
-                reqCompletableFuture.completeExceptionally(new NetworkException("Disconnected",
-                        host + ":" + port));
-                outstandingRequests.remove(reqId);
-            });
+            newChannel = cf.channel();
+        }
+        connection.channel = newChannel;
+        if (connection.index == 0) {
+            channel = newChannel;
+        }
+        negotiateProtocol(connection);
+        newChannel.closeFuture().addListener((r) -> {
+            updateConnected();
+            connection.outstandingRequests.failAll(() -> new NetworkException("Disconnected",
+                    host + ":" + port));
             if (!shutdown) {
-                log.trace("Disconnected, reconnecting...");
+                log.trace("Connection {} disconnected, reconnecting...", connection.index);
                 while (!shutdown) {
                     try {
-                        connectChannel(b, c);
+                        connectChannel(b, c, connection);
                         return;
                     } catch (Exception ex) {
 //                        MetricsUtils.incConditionalCounter(isEnabled,
@@ -464,6 +610,44 @@ public class NettyClientRouter extends SimpleChannelInboundHandler<CorfuMsg>
         connected = true;
     }
 
+    /**
+     * Ask the server for its version on a new connection, and switch the connection to the
+     * compact message protocol and layout encoding if the server decodes them, see
+     * {@link ProtocolSession}. The requests sent until the server answers use the first
+     * protocol and JSON layouts.
+     *
+     * @param connection the connection, which was just connected
+     */
+    private void negotiateProtocol(Connection connection) {
+        if (ProtocolSession.getMaxVersion() < ProtocolSession.V2
+                && LayoutCodec.getWireFormat() == LayoutCodec.WireFormat.JSON) {
+            return;
+        }
+        final Channel negotiated = connection.channel;
+        final CorfuMsg message = new CorfuMsg(CorfuMsgType.VERSION_REQUEST);
+        final long thisRequest = requestID.getAndIncrement();
+        message.setClientID(clientID);
+        message.setRequestID(thisRequest);
+        message.setEpoch(epoch);
+        final CompletableFuture<VersionInfo> cf = new CompletableFuture<>();
+        cf.thenAccept(versionInfo -> {
+            if (versionInfo.getWireProtocolVersion() >= ProtocolSession.V2) {
+                log.debug("Connection {} switches to protocol version {}", connection.index,
+                        ProtocolSession.V2);
+                ProtocolSession.of(negotiated).enableV2();
+            }
+        });
+        connection.outstandingRequests.add(thisRequest, cf, timeoutResponse);
+        negotiated.writeAndFlush(message);
+    }
+
+    /**
+     * Set whether any connection of this router is connected.
+     */
+    private void updateConnected() {
+        connected = Arrays.stream(connections).anyMatch(Connection::isActive);
+    }
+
     /**
      * Stops routing requests.
      */
@@ -480,28 +664,103 @@ public class NettyClientRouter extends SimpleChannelInboundHandler<CorfuMsg>
         connected = false;
 
         if (shutdown) {
-            try {
-                ChannelFuture cf = channel.close();
-                cf.syncUninterruptibly();
-                cf.awaitUninterruptibly(1000);
-            } catch (Exception e) {
-                log.error("Error in closing channel");
+            for (Connection connection : connections) {
+                if (connection.channel == null) {
+                    continue;
+                }
+                try {
+                    ChannelFuture cf = connection.channel.close();
+                    cf.syncUninterruptibly();
+                    cf.awaitUninterruptibly(1000);
+                } catch (Exception e) {
+                    log.error("Error in closing channel");
+                }
             }
-            try {
-                ee.shutdownGracefully().sync();
-                workerGroup.shutdownGracefully().sync();
-            } catch (InterruptedException e) {
-                log.error("Interrupted exception in shutting event pool : {}", e);
+            if (sharedEventLoops == null) {
+                try {
+                    ee.shutdownGracefully().sync();
+                    workerGroup.shutdownGracefully().sync();
+                } catch (InterruptedException e) {
+                    log.error("Interrupted exception in shutting event pool : {}", e);
+                }
             }
         } else {
-            ChannelFuture cf = channel.disconnect();
-            cf.syncUninterruptibly();
-            boolean b1 = cf.awaitUninterruptibly(1000);
+            for (Connection connection : connections) {
+                if (connection.channel != null) {
+                    ChannelFuture cf = connection.channel.disconnect();
+                    cf.syncUninterruptibly();
+                    cf.awaitUninterruptibly(1000);
+                }
+            }
+        }
+    }
+
+    /**
+     * Pick the connection to send a message on: the first connection, unless the message
+     * is a bulk request and there are others. A connection which is not active is skipped
+     * for another one, if any.
+     *
+     * @param message the message to send
+     * @return the connection to send the message on, or null if none is active
+     */
+    private Connection pickConnection(CorfuMsg message) {
+        int index = 0;
+        if (connections.length > 1 && BULK_REQUESTS.contains(message.getMsgType())) {
+            index = 1 + (int) (bulkRequests.getAndIncrement() % (connections.length - 1));
+        }
+        for (int i = 0; i < connections.length; i++) {
+            final Connection connection = connections[(index + i) % connections.length];
+            if (connection.isActive()) {
+                return connection;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the number of outstanding requests, over all connections.
+     */
+    public int getOutstandingRequestCount() {
+        int count = 0;
+        for (Connection connection : connections) {
+            count += connection.outstandingRequests.size();
+        }
+        return count;
+    }
+
+    /**
+     * Get the channels of the connections of this router, in order.
+     */
+    @VisibleForTesting
+    List<Channel> getChannels() {
+        final List<Channel> channels = new ArrayList<>();
+        for (Connection connection : connections) {
+            channels.add(connection.channel);
+        }
+        return channels;
+    }
+
+    /**
+     * Remove an outstanding request, from the table of the connection it was sent on.
+     *
+     * @param requestID the request to remove
+     * @return the future of the request, or null if it is not outstanding
+     */
+    @SuppressWarnings("checkstyle:abbreviation")
+    private CompletableFuture<?> removeRequest(long requestID) {
+        for (Connection connection : connections) {
+            final CompletableFuture<?> cf = connection.outstandingRequests.remove(requestID);
+            if (cf != null) {
+                return cf;
+            }
         }
+        return null;
     }
 
     /**
-     * Send a message and get a completable future to be fulfilled by the reply.
+     * Send a message and get a completable future to be fulfilled by the reply. When the
+     * requests of its class are limited, the message is sent once it gets a permit, see
+     * {@link #getBulkLimiter()} and {@link #getControlLimiter()}.
      *
      * @param ctx     The channel handler context to send the message under.
      * @param message The message to send.
@@ -511,8 +770,57 @@ public class NettyClientRouter extends SimpleChannelInboundHandler<CorfuMsg>
      */
     public <T> CompletableFuture<T> sendMessageAndGetCompletable(ChannelHandlerContext ctx,
                                                                  CorfuMsg message) {
-        boolean isEnabled = MetricsUtils.isMetricsCollectionEnabled();
+        final boolean bulk = BULK_REQUESTS.contains(message.getMsgType());
+        final InFlightLimiter limiter = bulk ? bulkLimiter : controlLimiter;
+        if (!limiter.isLimited()) {
+            return send(ctx, message);
+        }
         if (!connected) {
+            MetricsUtils.incConditionalCounter(MetricsUtils.isMetricsCollectionEnabled(),
+                    counterSendDisconnected, 1);
+            throw new NetworkException("Disconnected endpoint", host + ":" + port);
+        }
+        // The request is sent once it gets a permit, which may be right away. Until then, the
+        // caller holds a future of a request which is not sent yet.
+        final Timer.Context permitContext = MetricsUtils.getConditionalContext(
+                bulk ? timerBulkPermitWait : timerControlPermitWait);
+        final CompletableFuture<T> cf = new CompletableFuture<>();
+        limiter.acquire(() -> {
+            MetricsUtils.stopConditionalContext(permitContext);
+            final CompletableFuture<T> sent;
+            try {
+                sent = send(ctx, message);
+            } catch (Exception e) {
+                cf.completeExceptionally(e);
+                return false;
+            }
+            sent.whenComplete((r, e) -> {
+                limiter.release();
+                if (e == null) {
+                    cf.complete(r);
+                } else {
+                    cf.completeExceptionally(e instanceof CompletionException
+                            && e.getCause() != null ? e.getCause() : e);
+                }
+            });
+            return true;
+        });
+        return cf;
+    }
+
+    /**
+     * Send a message now, and get a completable future to be fulfilled by the reply.
+     *
+     * @param ctx     The channel handler context to send the message under.
+     * @param message The message to send.
+     * @param <T>     The type of completable to return.
+     * @return A completable future which will be fulfilled by the reply,
+     *     or a timeout in the case there is no response.
+     */
+    private <T> CompletableFuture<T> send(ChannelHandlerContext ctx, CorfuMsg message) {
+        boolean isEnabled = MetricsUtils.isMetricsCollectionEnabled();
+        final Connection connection = ctx == null ? pickConnection(message) : null;
+        if (!connected || (ctx == null && connection == null)) {
             log.trace("Disconnected endpoint " + host + ":" + port);
             MetricsUtils.incConditionalCounter(isEnabled, counterSendDisconnected, 1);
             throw new NetworkException("Disconnected endpoint", host + ":" + port);
@@ -526,31 +834,25 @@ public class NettyClientRouter extends SimpleChannelInboundHandler<CorfuMsg>
             message.setRequestID(thisRequest);
             message.setEpoch(epoch);
 
-            // Generate a future and put it in the completion table.
+            // Generate a future and put it in the completion table, which completes it
+            // exceptionally if there is no response within the timeout.
             final CompletableFuture<T> cf = new CompletableFuture<>();
-            outstandingRequests.put(thisRequest, cf);
             // Write the message out to the channel.
             if (ctx == null) {
-                channel.writeAndFlush(message);
+                connection.outstandingRequests.add(thisRequest, cf, timeoutResponse);
+                connection.channel.writeAndFlush(message);
             } else {
+                connectionOf(ctx).outstandingRequests.add(thisRequest, cf, timeoutResponse);
                 ctx.writeAndFlush(message);
             }
             log.trace("Sent message: {}", message);
-            final CompletableFuture<T> cfElapsed = cf.thenApply(x -> {
+            if (context == null) {
+                return cf;
+            }
+            return cf.thenApply(x -> {
                 MetricsUtils.stopConditionalContext(context);
                 return x;
             });
-            // Generate a timeout future, which will complete exceptionally
-            // if the main future is not completed.
-            final CompletableFuture<T> cfTimeout =
-                    CFUtils.within(cfElapsed, Duration.ofMillis(timeoutResponse));
-            cfTimeout.exceptionally(e -> {
-//                MetricsUtils.incConditionalCounter(isEnabled, counterSendTimeout, 1);
-                outstandingRequests.remove(thisRequest);
-                log.debug("Remove request {} due to timeout!", thisRequest);
-                return null;
-            });
-            return cfTimeout;
         }
     }
 
@@ -561,14 +863,11 @@ public class NettyClientRouter extends SimpleChannelInboundHandler<CorfuMsg>
      * @param message The message to send.
      */
     public void sendMessage(ChannelHandlerContext ctx, CorfuMsg message) {
-        ChannelHandlerContext outContext = context;
-        if (ctx == null) {
-            if (context == null) {
-                // if the router's context is not set, return a failure
-                log.warn("Attempting to send on a channel that is not ready.");
-                return;
-            }
-            outContext = context;
+        final Connection connection = ctx == null ? pickConnection(message) : null;
+        if (ctx == null && connection == null) {
+            // if no connection of the router is ready, return a failure
+            log.warn("Attempting to send on a channel that is not ready.");
+            return;
         }
         // Get the next request ID.
         final long thisRequest = requestID.getAndIncrement();
@@ -577,7 +876,11 @@ public class NettyClientRouter extends SimpleChannelInboundHandler<CorfuMsg>
         message.setRequestID(thisRequest);
         message.setEpoch(epoch);
         // Write this message out on the channel.
-        outContext.writeAndFlush(message);
+        if (ctx == null) {
+            connection.channel.writeAndFlush(message);
+        } else {
+            ctx.writeAndFlush(message);
+        }
 //        MetricsUtils.incConditionalCounter(MetricsUtils
 //                .isMetricsCollectionEnabled(), counterAsyncOpSent, 1);
         log.trace("Sent one-way message: {}", message);
@@ -609,9 +912,8 @@ public class NettyClientRouter extends SimpleChannelInboundHandler<CorfuMsg>
     @SuppressWarnings("checkstyle:abbreviation") // Due to deprecation
     public <T> void completeRequest(long requestID, T completion) {
         CompletableFuture<T> cf;
-        if ((cf = (CompletableFuture<T>) outstandingRequests.get(requestID)) != null) {
+        if ((cf = (CompletableFuture<T>) removeRequest(requestID)) != null) {
             cf.complete(completion);
-            outstandingRequests.remove(requestID);
         } else {
             log.warn("Attempted to complete request {}, but request not outstanding!", requestID);
         }
@@ -625,9 +927,8 @@ public class NettyClientRouter extends SimpleChannelInboundHandler<CorfuMsg>
      */
     public void completeExceptionally(long requestID, Throwable cause) {
         CompletableFuture cf;
-        if ((cf = outstandingRequests.get(requestID)) != null) {
+        if ((cf = removeRequest(requestID)) != null) {
             cf.completeExceptionally(cause);
-            outstandingRequests.remove(requestID);
         } else {
             log.warn("Attempted to exceptionally complete request {}, but request not outstanding!",
                     requestID);
@@ -671,6 +972,7 @@ public class NettyClientRouter extends SimpleChannelInboundHandler<CorfuMsg>
             if (handler == null) {
                 // The message was unregistered, we are dropping it.
                 log.warn("Received unregistered message {}, dropping", m);
+                m.release();
             } else {
                 if (validateEpochAndClientID(m, ctx)) {
                     // Route the message to the handler.
@@ -679,6 +981,8 @@ public class NettyClientRouter extends SimpleChannelInboundHandler<CorfuMsg>
                                 handler.getClass().getSimpleName(), m);
                     }
                     handler.handleMessage(m, ctx);
+                } else {
+                    m.release();
                 }
             }
         } catch (Exception e) {
@@ -701,7 +1005,48 @@ public class NettyClientRouter extends SimpleChannelInboundHandler<CorfuMsg>
     @Override
     public void channelUnregistered(ChannelHandlerContext ctx) throws Exception {
         super.channelUnregistered(ctx);
-        context = null;
+        if (context == ctx) {
+            context = null;
+        }
         log.debug("Unregistered channel {}", ctx);
     }
+
+    /**
+     * Get the connection of a channel context, or the first connection if it is not the
+     * context of any.
+     */
+    private Connection connectionOf(ChannelHandlerContext ctx) {
+        for (Connection connection : connections) {
+            if (connection.channel == ctx.channel()) {
+                return connection;
+            }
+        }
+        return connections[0];
+    }
+
+    /**
+     * A connection of this router to its endpoint, and the requests sent on it which are
+     * waiting for a response.
+     */
+    private class Connection {
+
+        final int index;
+
+        final PendingRequests outstandingRequests = new PendingRequests(() -> MetricsUtils
+                .markConditionalMeter(MetricsUtils.isMetricsCollectionEnabled(), meterTimeouts));
+
+        volatile Channel channel;
+
+        Connection(int index) {
+            this.index = index;
+        }
+
+        boolean isActive() {
+            return channel != null && channel.isActive();
+        }
+
+        boolean isClosed() {
+            return channel == null || !channel.isOpen();
+        }
+    }
 }
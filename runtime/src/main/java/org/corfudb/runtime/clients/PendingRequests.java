@@ -0,0 +1,278 @@
+package org.corfudb.runtime.clients;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.netty.util.collection.LongObjectHashMap;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The requests of a router which are waiting for a response, keyed by request ID, and timed
+ * out by a hashed wheel.
+ *
+ * <p>The table is striped by request ID into primitive long keyed maps, so that neither
+ * adding nor completing a request boxes its ID or allocates a timeout task. Each request is
+ * also added to the slot of the wheel for the tick it times out at. A single timer thread,
+ * shared by every table of the JVM, advances the wheels every {@link #TICK_MILLIS}, and times
+ * out the requests of the slots it passes which are still pending. A completed request is
+ * only removed from the table: its ID is skipped when its slot is swept.
+ */
+@Slf4j
+public class PendingRequests {
+
+    /**
+     * The interval between two sweeps of the wheel, which is the precision of the timeouts.
+     */
+    public static final long TICK_MILLIS = 10;
+
+    /**
+     * The number of slots of the wheel. A request which times out more than a turn of the
+     * wheel away stays in its slot until its turn.
+     */
+    static final int WHEEL_SIZE = 512;
+
+    private static final int STRIPES = 16;
+
+    private static final int INITIAL_SLOT_SIZE = 16;
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+
+    /**
+     * The thread which sweeps the wheels of every table.
+     */
+    private static final ScheduledExecutorService timer =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("PendingRequests-timer")
+                    .build());
+
+    private final LongObjectHashMap<CompletableFuture<?>>[] stripes;
+
+    private final Slot[] wheel;
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * Called when a request times out.
+     */
+    private final Runnable timeoutListener;
+
+    /**
+     * The last tick swept, and the IDs and timeouts of the requests found expired by a
+     * sweep. They are only used by the timer thread.
+     */
+    private long sweptTick;
+
+    private long[] expiredIds = new long[INITIAL_SLOT_SIZE];
+
+    private long[] expiredTimeouts = new long[INITIAL_SLOT_SIZE];
+
+    /**
+     * Returns a new table, whose wheel is swept until it is garbage collected.
+     *
+     * @param timeoutListener called when a request times out
+     */
+    @SuppressWarnings("unchecked")
+    public PendingRequests(Runnable timeoutListener) {
+        this.timeoutListener = timeoutListener;
+        stripes = new LongObjectHashMap[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new LongObjectHashMap<>();
+        }
+        wheel = new Slot[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new Slot();
+        }
+        new Sweeper(this);
+    }
+
+    /**
+     * Add a pending request.
+     *
+     * @param requestId     the ID of the request
+     * @param future        the future completed by the response
+     * @param timeoutMillis how long to wait for the response, in milliseconds
+     */
+    public void add(long requestId, CompletableFuture<?> future, long timeoutMillis) {
+        final LongObjectHashMap<CompletableFuture<?>> stripe = stripe(requestId);
+        synchronized (stripe) {
+            stripe.put(requestId, future);
+        }
+        size.incrementAndGet();
+        final long deadline = currentTick() + Math.max(1,
+                (timeoutMillis + TICK_MILLIS - 1) / TICK_MILLIS);
+        wheel[(int) (deadline & (WHEEL_SIZE - 1))].add(requestId, deadline, timeoutMillis);
+    }
+
+    /**
+     * Remove a pending request, to complete it.
+     *
+     * @param requestId the ID of the request
+     * @return the future of the request, or null if it is not pending
+     */
+    public CompletableFuture<?> remove(long requestId) {
+        final LongObjectHashMap<CompletableFuture<?>> stripe = stripe(requestId);
+        final CompletableFuture<?> future;
+        synchronized (stripe) {
+            future = stripe.remove(requestId);
+        }
+        if (future != null) {
+            size.decrementAndGet();
+        }
+        return future;
+    }
+
+    /**
+     * Get the number of pending requests.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Complete every pending request exceptionally.
+     *
+     * @param cause supplies the cause of the failure of each request
+     */
+    public void failAll(Supplier<Throwable> cause) {
+        for (LongObjectHashMap<CompletableFuture<?>> stripe : stripes) {
+            final List<CompletableFuture<?>> futures;
+            synchronized (stripe) {
+                futures = new ArrayList<>(stripe.values());
+                stripe.clear();
+            }
+            size.addAndGet(-futures.size());
+            futures.forEach(f -> f.completeExceptionally(cause.get()));
+        }
+    }
+
+    private LongObjectHashMap<CompletableFuture<?>> stripe(long requestId) {
+        return stripes[(int) (requestId & (STRIPES - 1))];
+    }
+
+    private long currentTick() {
+        return (System.nanoTime() - startNanos) / TICK_NANOS;
+    }
+
+    /**
+     * Time out the requests of the slots passed since the last sweep.
+     */
+    private void sweep() {
+        final long now = currentTick();
+        while (sweptTick < now) {
+            sweptTick++;
+            final int count = wheel[(int) (sweptTick & (WHEEL_SIZE - 1))].drain(sweptTick, this);
+            for (int i = 0; i < count; i++) {
+                final CompletableFuture<?> future = remove(expiredIds[i]);
+                if (future != null) {
+                    log.debug("Remove request {} due to timeout!", expiredIds[i]);
+                    future.completeExceptionally(
+                            new TimeoutException("Timeout after " + expiredTimeouts[i] + " ms"));
+                    timeoutListener.run();
+                }
+            }
+        }
+    }
+
+    /**
+     * The requests which time out at the ticks of a slot of the wheel.
+     */
+    private static class Slot {
+
+        private long[] requestIds = new long[INITIAL_SLOT_SIZE];
+
+        private long[] deadlines = new long[INITIAL_SLOT_SIZE];
+
+        private long[] timeouts = new long[INITIAL_SLOT_SIZE];
+
+        private int count;
+
+        synchronized void add(long requestId, long deadline, long timeoutMillis) {
+            if (count == requestIds.length) {
+                requestIds = Arrays.copyOf(requestIds, count * 2);
+                deadlines = Arrays.copyOf(deadlines, count * 2);
+                timeouts = Arrays.copyOf(timeouts, count * 2);
+            }
+            requestIds[count] = requestId;
+            deadlines[count] = deadline;
+            timeouts[count] = timeoutMillis;
+            count++;
+        }
+
+        /**
+         * Move the requests which time out at or before a tick to the expired requests of a table,
+         * and keep the others for a later turn of the wheel.
+         *
+         * @return the number of expired requests
+         */
+        synchronized int drain(long tick, PendingRequests table) {
+            int expiredCount = 0;
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                if (deadlines[i] <= tick) {
+                    if (expiredCount == table.expiredIds.length) {
+                        table.expiredIds = Arrays.copyOf(table.expiredIds, expiredCount * 2);
+                        table.expiredTimeouts =
+                                Arrays.copyOf(table.expiredTimeouts, expiredCount * 2);
+                    }
+                    table.expiredIds[expiredCount] = requestIds[i];
+                    table.expiredTimeouts[expiredCount] = timeouts[i];
+                    expiredCount++;
+                } else {
+                    requestIds[kept] = requestIds[i];
+                    deadlines[kept] = deadlines[i];
+                    timeouts[kept] = timeouts[i];
+                    kept++;
+                }
+            }
+            count = kept;
+            return expiredCount;
+        }
+    }
+
+    /**
+     * Sweeps the wheel of a table every tick, and cancels itself once the table is garbage
+     * collected.
+     */
+    private static class Sweeper implements Runnable {
+
+        private final WeakReference<PendingRequests> table;
+
+        private final ScheduledFuture<?> future;
+
+        Sweeper(PendingRequests table) {
+            this.table = new WeakReference<>(table);
+            this.future = timer.scheduleAtFixedRate(this, TICK_MILLIS, TICK_MILLIS,
+                    TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void run() {
+            final PendingRequests pendingRequests = table.get();
+            if (pendingRequests == null) {
+                future.cancel(false);
+                return;
+            }
+            try {
+                pendingRequests.sweep();
+            } catch (Exception e) {
+                log.error("run: Error timing out requests", e);
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package org.corfudb.runtime.clients;
 import io.netty.channel.ChannelHandlerContext;
 
 import java.lang.invoke.MethodHandles;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -11,10 +12,19 @@ import java.util.concurrent.CompletableFuture;
 import lombok.Getter;
 import lombok.Setter;
 
+import org.corfudb.protocols.wireprotocol.AddressLease;
+import org.corfudb.protocols.wireprotocol.AddressLeaseRequest;
 import org.corfudb.protocols.wireprotocol.CorfuMsg;
 import org.corfudb.protocols.wireprotocol.CorfuMsgType;
 import org.corfudb.protocols.wireprotocol.CorfuPayloadMsg;
+import org.corfudb.protocols.wireprotocol.PartitionCommitRequest;
+import org.corfudb.protocols.wireprotocol.PartitionPrepareRequest;
+import org.corfudb.protocols.wireprotocol.SequencerStateSync;
 import org.corfudb.protocols.wireprotocol.SequencerTailsRecoveryMsg;
+import org.corfudb.protocols.wireprotocol.StreamTailsRequest;
+import org.corfudb.protocols.wireprotocol.StreamTailsResponse;
+import org.corfudb.protocols.wireprotocol.TokenBatchRequest;
+import org.corfudb.protocols.wireprotocol.TokenBatchResponse;
 import org.corfudb.protocols.wireprotocol.TokenRequest;
 import org.corfudb.protocols.wireprotocol.TokenResponse;
 import org.corfudb.protocols.wireprotocol.TxResolutionInfo;
@@ -47,6 +57,24 @@ public class SequencerClient implements IClient {
         return msg.getPayload();
     }
 
+    @ClientHandler(type = CorfuMsgType.STREAM_TAILS_RES)
+    private static Object handleStreamTailsResponse(CorfuPayloadMsg<StreamTailsResponse> msg,
+                                                    ChannelHandlerContext ctx, IClientRouter r) {
+        return msg.getPayload();
+    }
+
+    @ClientHandler(type = CorfuMsgType.TOKEN_BATCH_RES)
+    private static Object handleTokenBatchResponse(CorfuPayloadMsg<TokenBatchResponse> msg,
+                                                   ChannelHandlerContext ctx, IClientRouter r) {
+        return msg.getPayload().getResponses();
+    }
+
+    @ClientHandler(type = CorfuMsgType.SEQUENCER_LEASE_RES)
+    private static Object handleLeaseResponse(CorfuPayloadMsg<AddressLease> msg,
+                                              ChannelHandlerContext ctx, IClientRouter r) {
+        return msg.getPayload();
+    }
+
     public CompletableFuture<TokenResponse> nextToken(Set<UUID> streamIDs, long numTokens) {
         return router.sendMessageAndGetCompletable(
                 CorfuMsgType.TOKEN_REQ.payloadMsg(new TokenRequest(numTokens, streamIDs)));
@@ -67,6 +95,28 @@ public class SequencerClient implements IClient {
                         .payloadMsg(new TokenRequest(numTokens, streamIDs, conflictInfo)));
     }
 
+    /**
+     * Sends a batch of token requests to the sequencer in a single message.
+     *
+     * @param requests The token requests, which are served in order.
+     * @return A completable future with one token response per request, in order.
+     */
+    public CompletableFuture<List<TokenResponse>> nextTokens(List<TokenRequest> requests) {
+        return router.sendMessageAndGetCompletable(
+                CorfuMsgType.TOKEN_BATCH_REQ.payloadMsg(new TokenBatchRequest(requests)));
+    }
+
+    /**
+     * Fetches the tails of several streams, and of the global log, in a single message.
+     *
+     * @param streamIDs The streams to query.
+     * @return A completable future with the tail of every stream and the global tail.
+     */
+    public CompletableFuture<StreamTailsResponse> getStreamTails(Set<UUID> streamIDs) {
+        return router.sendMessageAndGetCompletable(
+                CorfuMsgType.STREAM_TAILS_REQ.payloadMsg(new StreamTailsRequest(streamIDs)));
+    }
+
     public CompletableFuture<Void> trimCache(Long address) {
         return router.sendMessageAndGetCompletable(CorfuMsgType.SEQUENCER_TRIM_REQ
                 .payloadMsg(address));
@@ -84,4 +134,73 @@ public class SequencerClient implements IClient {
                 .payloadMsg(new SequencerTailsRecoveryMsg(initialToken, sequencerTails,
                         readyStateEpoch)));
     }
+
+    /**
+     * Resets the sequencer of a partition with the specified initialToken.
+     *
+     * @param initialToken       Token Number which the first partition starts distributing.
+     * @param sequencerTails     The tails of the streams of the partition.
+     * @param readyStateEpoch    The epoch at which the sequencer is bootstrapped.
+     * @param partition          The partition served by the sequencer.
+     * @param partitionEndpoints The endpoints of the sequencers of every partition.
+     * @return A CompletableFuture which completes once the sequencer is reset.
+     */
+    public CompletableFuture<Boolean> bootstrap(Long initialToken, Map<UUID, Long> sequencerTails,
+                                                Long readyStateEpoch, int partition,
+                                                List<String> partitionEndpoints) {
+        return router.sendMessageAndGetCompletable(CorfuMsgType.BOOTSTRAP_SEQUENCER
+                .payloadMsg(new SequencerTailsRecoveryMsg(initialToken, sequencerTails,
+                        readyStateEpoch, partition, partitionEndpoints)));
+    }
+
+    /**
+     * Leases a block of global addresses from the sequencer of the first partition.
+     *
+     * @param partition The partition which requests the lease.
+     * @param numTokens The number of addresses to lease.
+     * @return A CompletableFuture which completes with the lease.
+     */
+    public CompletableFuture<AddressLease> leaseAddresses(int partition, long numTokens) {
+        return router.sendMessageAndGetCompletable(CorfuMsgType.SEQUENCER_LEASE_REQ
+                .payloadMsg(new AddressLeaseRequest(partition, numTokens)));
+    }
+
+    /**
+     * Prepares the part of a token request which spans several partitions served by the
+     * sequencer of a partition.
+     *
+     * @param id      The id of the request.
+     * @param request The part of the request served by the partition.
+     * @return A CompletableFuture which completes with the backpointers of the streams of the
+     *     partition, or with the abort cause of a transaction.
+     */
+    public CompletableFuture<TokenResponse> prepare(long id, TokenRequest request) {
+        return router.sendMessageAndGetCompletable(CorfuMsgType.SEQUENCER_PREPARE_REQ
+                .payloadMsg(new PartitionPrepareRequest(id, request)));
+    }
+
+    /**
+     * Commits or aborts a prepared request on the sequencer of a partition.
+     *
+     * @param id      The id of the request.
+     * @param address The first address allocated to the request, or aborted.
+     * @return A CompletableFuture which completes with true once the partition has applied
+     *     the request, or with false if the request was not prepared.
+     */
+    public CompletableFuture<Boolean> commit(long id, long address) {
+        return router.sendMessageAndGetCompletable(CorfuMsgType.SEQUENCER_COMMIT_REQ
+                .payloadMsg(new PartitionCommitRequest(id, address)));
+    }
+
+    /**
+     * Sends a batch of updates of the primary sequencer to a standby sequencer.
+     *
+     * @param update The updates.
+     * @return A CompletableFuture which completes with true once the standby has applied the
+     *     updates, or with false if it needs a full update first.
+     */
+    public CompletableFuture<Boolean> syncState(SequencerStateSync update) {
+        return router.sendMessageAndGetCompletable(CorfuMsgType.SEQUENCER_STATE_SYNC
+                .payloadMsg(update));
+    }
 }
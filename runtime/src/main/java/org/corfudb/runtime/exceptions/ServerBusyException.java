@@ -0,0 +1,18 @@
+package org.corfudb.runtime.exceptions;
+
+import lombok.Getter;
+
+/**
+ * Thrown when a server is too busy to admit a request. The request was not run, and can be
+ * retried after a backoff.
+ */
+public class ServerBusyException extends RuntimeException {
+
+    @Getter
+    String endpoint;
+
+    public ServerBusyException(String endpoint) {
+        super("Server busy [endpoint=" + endpoint + "]");
+        this.endpoint = endpoint;
+    }
+}
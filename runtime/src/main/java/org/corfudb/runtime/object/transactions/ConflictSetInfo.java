@@ -6,8 +6,9 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
+import org.corfudb.protocols.wireprotocol.TxResolutionInfo;
 import org.corfudb.runtime.object.ICorfuSMRProxyInternal;
 
 import lombok.Getter;
@@ -23,30 +24,33 @@ public class ConflictSetInfo {
     /** Set of objects this conflict set conflicts with. */
     protected Map<ICorfuSMRProxyInternal, Set<Object>> conflicts = new HashMap<>();
 
-    /** Get a hash for the object, given a proxy. */
-    public static byte[] generateHashFromObject(ICorfuSMRProxyInternal p, Object o) {
-        return p.getSerializer().hash(o);
+    /** Get a 64-bit hash for the object, given a proxy.
+     *
+     * <p>The hash of the serializer is folded into 64 bits, see
+     * {@link TxResolutionInfo#foldHash(byte[])}.</p>
+     */
+    public static long generateHashFromObject(ICorfuSMRProxyInternal p, Object o) {
+        return TxResolutionInfo.foldHash(p.getSerializer().hash(o));
     }
 
     /** Get the hashed conflict set.
-     * @return              The hashed conflict set.
+     * @return              The hashed conflict set, as distinct 64-bit hashes per stream.
      */
-    public Map<UUID, Set<byte[]>> getHashedConflictSet() {
-        return conflicts.entrySet().stream()
-                .collect(Collectors.toMap(
-                        // Key = UUID
-                        e -> e.getKey().getStreamID(),
-                        // Value = Generated hash.
-                        e -> e.getValue().stream()
-                                .map(o -> ConflictSetInfo.generateHashFromObject(e.getKey(), o))
-                                .collect(Collectors.toSet()),
-                        // Merge function, in case key was already mapped
-                        // (If two proxies have the same stream).
-                        (v1,v2) -> {
-                            // Combine the two sets.
-                            v1.addAll(v2);
-                            return v1;
-                        }));
+    public Map<UUID, long[]> getHashedConflictSet() {
+        Map<UUID, long[]> hashedConflictSet = new HashMap<>();
+        conflicts.forEach((proxy, conflictObjects) -> {
+            long[] hashes = conflictObjects.stream()
+                    .mapToLong(o -> ConflictSetInfo.generateHashFromObject(proxy, o))
+                    .distinct()
+                    .toArray();
+            // Merge function, in case key was already mapped
+            // (If two proxies have the same stream).
+            hashedConflictSet.merge(proxy.getStreamID(), hashes, (v1, v2) ->
+                    LongStream.concat(Arrays.stream(v1), Arrays.stream(v2))
+                            .distinct()
+                            .toArray());
+        });
+        return hashedConflictSet;
     }
 
     /** Merge a conflict set into this conflict set.
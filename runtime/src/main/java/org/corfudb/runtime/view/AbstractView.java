@@ -8,8 +8,10 @@ import javax.annotation.Nonnull;
 import lombok.extern.slf4j.Slf4j;
 
 import org.corfudb.runtime.CorfuRuntime;
+import org.corfudb.runtime.exceptions.ServerBusyException;
 import org.corfudb.runtime.exceptions.ServerNotReadyException;
 import org.corfudb.runtime.exceptions.WrongEpochException;
+import org.corfudb.util.retry.JitteredBackoff;
 
 /**
  * All views inherit from AbstractView.
@@ -21,6 +23,9 @@ import org.corfudb.runtime.exceptions.WrongEpochException;
  * or an incorrect epoch, it asks the runtime to invalidate that layout
  * by reporting it to a layout server, and retries the function.</p>
  *
+ * <p>A server which is too busy to admit a request does not invalidate the layout: the
+ * layoutHelper retries the function after a jittered backoff.</p>
+ *
  * <p>Created by mwei on 12/10/15.</p>
  */
 @Slf4j
@@ -71,11 +76,22 @@ public abstract class AbstractView {
             D extends RuntimeException> T layoutHelper(LayoutFunction<Layout, T, A, B, C, D>
                                                                           function)
             throws A, B, C, D {
+        final JitteredBackoff busyBackoff = new JitteredBackoff();
         while (true) {
             try {
                 return function.apply(runtime.layout.get());
             } catch (RuntimeException re) {
-                if (re.getCause() instanceof TimeoutException) {
+                if (re instanceof ServerBusyException
+                        || re.getCause() instanceof ServerBusyException) {
+                    // The layout is fine, the server is overloaded: back off, and retry.
+                    final long delay = busyBackoff.nextDelayMillis();
+                    log.debug("Server busy, retrying in {} ms", delay);
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException ie) {
+                        log.warn("Interrupted Exception in layout helper.", ie);
+                    }
+                } else if (re.getCause() instanceof TimeoutException) {
                     log.warn("Timeout executing remote call, invalidating view and retrying in {}s",
                             runtime.retryRate);
                     runtime.invalidateLayout();
@@ -101,11 +117,16 @@ public abstract class AbstractView {
                     throw re;
                 }
             } catch (InterruptedException | ExecutionException ex) {
-                log.warn("Error executing remote call, invalidating view and retrying in {}s",
-                        runtime.retryRate, ex);
-                runtime.invalidateLayout();
+                final boolean busy = ex.getCause() instanceof ServerBusyException;
+                if (busy) {
+                    log.debug("Server busy, backing off and retrying");
+                } else {
+                    log.warn("Error executing remote call, invalidating view and retrying in {}s",
+                            runtime.retryRate, ex);
+                    runtime.invalidateLayout();
+                }
                 try {
-                    Thread.sleep(runtime.retryRate * 1000);
+                    Thread.sleep(busy ? busyBackoff.nextDelayMillis() : runtime.retryRate * 1000);
                 } catch (InterruptedException ie) {
                     log.warn("Interrupted Exception in layout helper.", ie);
                 }
@@ -2,16 +2,19 @@ package org.corfudb.runtime.view;
 
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
-import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
-import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.google.common.collect.Iterables;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -43,24 +46,33 @@ import java.util.Comparator;
 public class AddressSpaceView extends AbstractView {
 
     /**
-     * A cache for read results.
+     * The weight of an entry in the read cache besides its payload, in bytes.
      */
-    final LoadingCache<Long, ILogData> readCache = Caffeine.<Long, ILogData>newBuilder()
-            .maximumSize(runtime.getNumCacheEntries())
+    static final int ENTRY_OVERHEAD = 64;
+
+    /**
+     * A cache for read results, bounded by the estimated size of its entries. A miss on a
+     * single address is loaded once however many reads wait for it. The entries which are not
+     * admitted are read and written without being cached.
+     */
+    final Cache<Long, ILogData> readCache = Caffeine.<Long, ILogData>newBuilder()
+            .maximumWeight(getMaxCacheBytes())
+            .weigher((Long address, ILogData data) -> weigh(data))
             .expireAfterAccess(runtime.getCacheExpiryTime(), TimeUnit.SECONDS)
             .expireAfterWrite(runtime.getCacheExpiryTime(), TimeUnit.SECONDS)
             .recordStats()
-            .build(new CacheLoader<Long, ILogData>() {
-                @Override
-                public ILogData load(Long value) throws Exception {
-                    return cacheFetch(value);
-                }
+            .build();
 
-                @Override
-                public Map<Long, ILogData> loadAll(Iterable<? extends Long> keys) throws Exception {
-                    return cacheFetch((Iterable<Long>) keys);
-                }
-            });
+    /**
+     * The bytes read from the cache, and from the log units on a cache miss.
+     */
+    final LongAdder hitBytes = new LongAdder();
+    final LongAdder missBytes = new LongAdder();
+
+    /**
+     * The number of entries which were not admitted to the cache.
+     */
+    final LongAdder rejections = new LongAdder();
 
     /**
      * Constructor for the Address Space View.
@@ -77,6 +89,21 @@ public class AddressSpaceView extends AbstractView {
         metrics.register(pfx + "hit-rate", (Gauge<Double>) () -> readCache.stats().hitRate());
         metrics.register(pfx + "hits", (Gauge<Long>) () -> readCache.stats().hitCount());
         metrics.register(pfx + "misses", (Gauge<Long>) () -> readCache.stats().missCount());
+        metrics.register(pfx + "weighted-size", (Gauge<Long>) () -> readCache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L));
+        metrics.register(pfx + "hit-bytes", (Gauge<Long>) hitBytes::sum);
+        metrics.register(pfx + "miss-bytes", (Gauge<Long>) missBytes::sum);
+        metrics.register(pfx + "byte-hit-rate", (Gauge<Double>) this::getByteHitRate);
+        metrics.register(pfx + "rejections", (Gauge<Long>) rejections::sum);
+    }
+
+    /**
+     * Get the ratio of the bytes read which were read from the cache, or 1 if none were read.
+     */
+    public double getByteHitRate() {
+        final long hits = hitBytes.sum();
+        final long total = hits + missBytes.sum();
+        return total == 0 ? 1.0 : (double) hits / total;
     }
 
     /**
@@ -86,6 +113,51 @@ public class AddressSpaceView extends AbstractView {
         readCache.invalidateAll();
     }
 
+    /**
+     * Bound the cache to the maximum size set on the runtime, evicting entries if it shrinks.
+     */
+    public void resizeCache() {
+        readCache.policy().eviction().ifPresent(eviction -> eviction.setMaximum(
+                getMaxCacheBytes()));
+    }
+
+    /**
+     * Get the maximum size of the cache, in bytes.
+     */
+    private long getMaxCacheBytes() {
+        return runtime.getMaxCacheBytes() > 0 ? runtime.getMaxCacheBytes()
+                : (long) (Runtime.getRuntime().maxMemory() * runtime.getCacheHeapRatio());
+    }
+
+    /**
+     * Get the weight of an entry in the cache, which is an estimate of its size in bytes.
+     */
+    static int weigh(ILogData data) {
+        return data.getType() == DataType.DATA
+                ? ENTRY_OVERHEAD + data.getSizeEstimate() : ENTRY_OVERHEAD;
+    }
+
+    /**
+     * Whether the admission policy lets an entry into the cache: entries larger than the
+     * maximum entry size are not cached, nor, if scans are not cached, the entries read by
+     * a scan.
+     *
+     * @param address the address of the entry
+     * @param data    the entry
+     * @param scan    whether the entry was read by a scan
+     * @return true if the entry may be cached
+     */
+    private boolean admit(long address, ILogData data, boolean scan) {
+        final long maxEntryBytes = runtime.getMaxCacheEntryBytes() > 0
+                ? runtime.getMaxCacheEntryBytes() : getMaxCacheBytes() / 16;
+        if ((scan && !runtime.isCacheScans()) || weigh(data) > maxEntryBytes) {
+            log.trace("CacheReject[{}]", address);
+            rejections.increment();
+            return false;
+        }
+        return true;
+    }
+
     /** Write the given log data using a token, returning
      * either when the write has been completed successfully,
      * or throwing an OverwriteException if another value
@@ -121,7 +193,7 @@ public class AddressSpaceView extends AbstractView {
         });
 
         // Cache the successful write
-        if (!runtime.isCacheDisabled()) {
+        if (!runtime.isCacheDisabled() && admit(token.getTokenValue(), ld, false)) {
             readCache.put(token.getTokenValue(), ld);
         }
     }
@@ -149,8 +221,20 @@ public class AddressSpaceView extends AbstractView {
      */
     public @Nonnull ILogData read(long address) {
         if (!runtime.isCacheDisabled()) {
-            ILogData data = readCache.get(address);
-            if (data == null || data.getType() == DataType.EMPTY) {
+            // Concurrent misses on the address are fetched once. An entry which the admission
+            // policy rejects is not mapped, and is handed back to this read only.
+            final ILogData[] fetched = new ILogData[1];
+            ILogData data = readCache.get(address, a -> {
+                fetched[0] = cacheFetch(a);
+                missBytes.add(weigh(fetched[0]));
+                return admit(a, fetched[0], false) ? fetched[0] : null;
+            });
+            if (fetched[0] != null) {
+                data = fetched[0];
+            } else {
+                hitBytes.add(weigh(data));
+            }
+            if (data.getType() == DataType.EMPTY) {
                 throw new RuntimeException("Unexpected return of empty data at address "
                         + address + " on read");
             } else if (data.isTrimmed()) {
@@ -170,7 +254,39 @@ public class AddressSpaceView extends AbstractView {
     public Map<Long, ILogData> read(Iterable<Long> addresses) {
         Map<Long, ILogData> addressesMap;
         if (!runtime.isCacheDisabled()) {
-            addressesMap = readCache.getAll(addresses);
+            final Map<Long, ILogData> cached = readCache.getAllPresent(addresses);
+            final List<Long> missing = new ArrayList<>();
+            for (Long address : addresses) {
+                if (!cached.containsKey(address)) {
+                    missing.add(address);
+                }
+            }
+            final Map<Long, ILogData> fetched = missing.isEmpty()
+                    ? Collections.emptyMap() : this.cacheFetch(missing);
+            final boolean scan = missing.size() > runtime.getBulkReadSize();
+
+            // Return the entries in the order of the addresses, as the cache did.
+            addressesMap = new LinkedHashMap<>();
+            for (Long address : addresses) {
+                ILogData data = cached.get(address);
+                if (data != null) {
+                    hitBytes.add(weigh(data));
+                } else {
+                    data = fetched.get(address);
+                    if (data == null) {
+                        continue;
+                    }
+                    missBytes.add(weigh(data));
+                    if (admit(address, data, scan)) {
+                        // Keep the entry which a concurrent read may have cached meanwhile.
+                        final ILogData present = readCache.asMap().putIfAbsent(address, data);
+                        if (present != null) {
+                            data = present;
+                        }
+                    }
+                }
+                addressesMap.put(address, data);
+            }
         } else {
             addressesMap = this.cacheFetch(addresses);
         }
@@ -6,6 +6,7 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -81,6 +82,14 @@ public class Layout implements Cloneable {
     @Setter
     long epoch;
 
+    /**
+     * The number of partitions of the sequencer, or 0 if the sequencer is not partitioned.
+     * Streams are hashed into the partitions, and partition i is served by the i-th
+     * sequencer. The first partition also hands out the global address space to the others.
+     */
+    @Getter
+    int sequencerPartitions;
+
     /**
      * The org.corfudb.runtime this layout is associated with.
      */
@@ -217,6 +226,95 @@ public class Layout implements Cloneable {
         }
     }
 
+    /**
+     * Set the number of partitions of the sequencer.
+     *
+     * @param sequencerPartitions The number of partitions, 0 or 1 if the sequencer is not
+     *                            partitioned.
+     */
+    public void setSequencerPartitions(int sequencerPartitions) {
+        if (sequencerPartitions < 0 || sequencerPartitions > sequencers.size()) {
+            throw new IllegalArgumentException("Invalid number of sequencer partitions "
+                    + sequencerPartitions + " for " + sequencers.size() + " sequencers");
+        }
+        this.sequencerPartitions = sequencerPartitions;
+    }
+
+    /**
+     * Get the number of partitions of the sequencer, which is 1 if it is not partitioned.
+     */
+    public int getSequencerPartitionCount() {
+        return Math.max(1, sequencerPartitions);
+    }
+
+    /**
+     * Get the partition of the sequencer which serves a stream.
+     *
+     * @param streamId The stream.
+     * @return The index of the partition, which is also the index of its sequencer.
+     */
+    public int getSequencerPartition(UUID streamId) {
+        return getSequencerPartition(streamId, getSequencerPartitionCount());
+    }
+
+    /**
+     * Get the partition of the sequencer which serves a stream.
+     *
+     * @param streamId   The stream.
+     * @param partitions The number of partitions.
+     * @return The index of the partition.
+     */
+    public static int getSequencerPartition(UUID streamId, int partitions) {
+        if (partitions <= 1) {
+            return 0;
+        }
+        return (int) Math.floorMod(streamId.getMostSignificantBits()
+                ^ streamId.getLeastSignificantBits(), (long) partitions);
+    }
+
+    /**
+     * Get the endpoints of the sequencers of the partitions, in order.
+     */
+    public List<String> getSequencerPartitionEndpoints() {
+        return sequencers.subList(0, getSequencerPartitionCount());
+    }
+
+    /**
+     * Bootstrap the sequencer of every partition at the epoch of this layout.
+     *
+     * <p>Every partition is given the tails of its own streams. The first partition starts
+     * handing out addresses at the initial token, and the others lease blocks of addresses
+     * from it.
+     *
+     * @param initialToken The first address to hand out.
+     * @param streamTails  The tails of the streams.
+     * @return A future which completes with true if every sequencer was bootstrapped, or with
+     *         false if one of them was already bootstrapped at this epoch.
+     */
+    public CompletableFuture<Boolean> bootstrapSequencers(long initialToken,
+                                                          Map<UUID, Long> streamTails) {
+        final int partitions = getSequencerPartitionCount();
+        if (sequencerPartitions == 0) {
+            return getSequencer(0).bootstrap(initialToken, streamTails, epoch);
+        }
+
+        final List<Map<UUID, Long>> partitionTails = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            partitionTails.add(new HashMap<>());
+        }
+        streamTails.forEach((streamId, tail) ->
+                partitionTails.get(getSequencerPartition(streamId)).put(streamId, tail));
+
+        final List<String> endpoints = new ArrayList<>(getSequencerPartitionEndpoints());
+        CompletableFuture<Boolean> result = CompletableFuture.completedFuture(true);
+        for (int i = 0; i < partitions; i++) {
+            CompletableFuture<Boolean> bootstrap = getSequencer(i).bootstrap(initialToken,
+                    partitionTails.get(i), epoch, i, endpoints);
+            result = result.thenCombine(bootstrap, Boolean::logicalAnd);
+        }
+        return result;
+    }
+
     /**
      * Given the log's global address, return equivalent local address for a striped log segment.
      *
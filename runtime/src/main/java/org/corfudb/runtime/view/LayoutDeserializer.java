@@ -33,6 +33,7 @@ public class LayoutDeserializer implements JsonDeserializer {
         constructing a layout. */
         Layout safeLayout = new Layout(unsafeLayout.layoutServers, unsafeLayout.sequencers,
                 unsafeLayout.segments, unsafeLayout.unresponsiveServers, unsafeLayout.epoch);
+        safeLayout.setSequencerPartitions(unsafeLayout.sequencerPartitions);
 
         return safeLayout;
 
@@ -3,9 +3,12 @@ package org.corfudb.runtime.view;
 import com.sun.xml.internal.bind.v2.TODO;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 import javax.annotation.Nonnull;
 
@@ -22,6 +25,7 @@ import org.corfudb.runtime.exceptions.NetworkException;
 import org.corfudb.runtime.exceptions.TransactionAbortedException;
 import org.corfudb.runtime.object.CorfuCompileWrapperBuilder;
 import org.corfudb.runtime.object.ICorfuSMR;
+import org.corfudb.runtime.object.ICorfuSMRProxy;
 import org.corfudb.runtime.object.transactions.AbstractTransactionalContext;
 import org.corfudb.runtime.object.transactions.TransactionBuilder;
 import org.corfudb.runtime.object.transactions.TransactionType;
@@ -227,15 +231,26 @@ public class ObjectsView extends AbstractView {
     }
 
     /** Given a list of Corfu objects, syncs the objects to the most up to date
-     * version, possibly in parallel.
+     * version, possibly in parallel. The tails of all the objects are fetched
+     * from the sequencer in a single request.
      * @param objects   A list of Corfu objects to sync.
      */
     public void syncObject(Object... objects) {
-        Arrays.stream(objects)
-                .parallel()
+        List<ICorfuSMRProxy<?>> proxies = Arrays.stream(objects)
                 .filter(x -> x instanceof ICorfuSMR<?>)
-                .map(x -> (ICorfuSMR<?>) x)
-                .forEach(x -> x.getCorfuSMRProxy().sync());
+                .map(x -> ((ICorfuSMR<?>) x).getCorfuSMRProxy())
+                .collect(Collectors.toList());
+        if (proxies.isEmpty()) {
+            return;
+        }
+
+        Set<UUID> streams = proxies.stream()
+                .map(ICorfuSMRProxy::getStreamID)
+                .collect(Collectors.toSet());
+        Map<UUID, Long> tails = runtime.getSequencerView().getStreamTails(streams)
+                .getStreamTails();
+        proxies.parallelStream()
+                .forEach(x -> x.sync(tails.get(x.getStreamID())));
     }
 
     @Data
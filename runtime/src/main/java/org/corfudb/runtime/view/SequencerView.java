@@ -1,20 +1,111 @@
 package org.corfudb.runtime.view;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.LongStream;
 
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.corfudb.protocols.wireprotocol.StreamTailsResponse;
+import org.corfudb.protocols.wireprotocol.TokenRequest;
 import org.corfudb.protocols.wireprotocol.TokenResponse;
 import org.corfudb.protocols.wireprotocol.TxResolutionInfo;
 import org.corfudb.runtime.CorfuRuntime;
+import org.corfudb.runtime.clients.SequencerClient;
 import org.corfudb.util.CFUtils;
 
 
 /**
- * Created by mwei on 12/10/15.
+ * A view of the sequencer.
+ *
+ * <p>Queries and allocations issued concurrently by the threads of a runtime are coalesced
+ * into a single batched message to the sequencer. The first thread to find no batch in
+ * flight sends the pending requests, until its own request is answered, and then hands the
+ * sending over to the thread of the oldest pending request; the other threads wait for their
+ * response, or their turn to send. A thread thus sends at most the batches queued before its
+ * own request. Queries on the same streams within a batch share a single response.
+ * Transaction tokens are not batched.</p>
+ *
+ * <p>If the sequencer is partitioned, a request is sent to the sequencer of the partition of
+ * its streams, see {@link Layout#getSequencerPartition}, and the requests of a batch are sent
+ * to every partition in parallel. Raw tokens, queries of the global tail, and requests on
+ * the streams of several partitions are sent to the first partition.</p>
+ *
+ * <p>Raw tokens can be leased from the sequencer in blocks and handed out locally, see
+ * {@link #nextRawToken()}.</p>
+ *
+ * <p>Created by mwei on 12/10/15.</p>
  */
-
+@Slf4j
 public class SequencerView extends AbstractView {
 
+    /**
+     * The maximum number of requests sent in a single batch.
+     */
+    public static final int MAX_BATCH_SIZE = 256;
+
+    /**
+     * A request waiting to be sent in a batch.
+     */
+    @RequiredArgsConstructor
+    private static class PendingRequest {
+        final Set<UUID> streamIDs;
+        final int numTokens;
+        final CompletableFuture<TokenResponse> response = new CompletableFuture<>();
+
+        /**
+         * Completed when the thread of this request is handed the sending of batches.
+         */
+        volatile CompletableFuture<Void> flushTurn = new CompletableFuture<>();
+    }
+
+    private final Queue<PendingRequest> pendingRequests = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Set while a thread is sending batches.
+     */
+    private final AtomicBoolean flushing = new AtomicBoolean(false);
+
+    /**
+     * A block of raw tokens leased from the sequencer.
+     */
+    private static class RawTokenBlock {
+        final long epoch;
+        final long end;
+        final long expiryNanos;
+        long next;
+
+        RawTokenBlock(TokenResponse lease, long numTokens, long expiryNanos) {
+            this.epoch = lease.getEpoch();
+            this.next = lease.getTokenValue();
+            this.end = next + numTokens;
+            this.expiryNanos = expiryNanos;
+        }
+    }
+
+    /**
+     * The block raw tokens are handed out from, or null. Only accessed while holding
+     * {@link #rawTokenLock}.
+     */
+    private RawTokenBlock rawTokens;
+
+    private final Object rawTokenLock = new Object();
+
     public SequencerView(CorfuRuntime runtime) {
         super(runtime);
     }
@@ -31,18 +122,305 @@ public class SequencerView extends AbstractView {
      * @return The first token retrieved.
      */
     public TokenResponse nextToken(Set<UUID> streamIDs, int numTokens) {
-        return layoutHelper(l -> CFUtils.getUninterruptibly(l.getSequencer(0)
-                .nextToken(streamIDs, numTokens)));
+        if (runtime.isSequencerBatchingDisabled()) {
+            return layoutHelper(l -> {
+                int partition = new TokenRequest((long) numTokens, streamIDs)
+                        .getSequencerPartition(l.getSequencerPartitionCount());
+                if (partition == TokenRequest.CROSS_PARTITION) {
+                    partition = 0;
+                }
+                return CFUtils.getUninterruptibly(l.getSequencer(partition)
+                        .nextToken(streamIDs, numTokens));
+            });
+        }
+
+        PendingRequest request = new PendingRequest(streamIDs, numTokens);
+        pendingRequests.add(request);
+        while (!request.response.isDone()) {
+            // Wait for a new turn, which the flushing thread hands over once it is done, so
+            // the request cannot be left behind.
+            final CompletableFuture<Void> turn = new CompletableFuture<>();
+            request.flushTurn = turn;
+            if (flushing.compareAndSet(false, true)) {
+                try {
+                    // The request is either pending or answered, so this sends at most the
+                    // batches queued before it.
+                    while (!request.response.isDone() && !pendingRequests.isEmpty()) {
+                        flushBatch();
+                    }
+                } finally {
+                    flushing.set(false);
+                    handOffFlush();
+                }
+            } else {
+                CFUtils.getUninterruptibly(CompletableFuture.anyOf(request.response, turn));
+            }
+        }
+        return CFUtils.getUninterruptibly(request.response);
+    }
+
+    /**
+     * Hand the sending of batches over to the thread of the oldest pending request, if any.
+     */
+    private void handOffFlush() {
+        final PendingRequest next = pendingRequests.peek();
+        if (next != null) {
+            next.flushTurn.complete(null);
+        }
     }
 
 
+    /**
+     * Return a raw token, for an entry which belongs to no stream.
+     *
+     * <p>If {@link CorfuRuntime#getRawTokenLeaseSize()} is above 1, raw tokens are leased
+     * from the sequencer in blocks of that size and handed out locally, so that raw appends
+     * do not wait for the sequencer. The tokens left in a block are hole filled when its
+     * lease is over, when the epoch changes, or when the runtime shuts down, so that readers
+     * need not wait for them. A lease is only checked when a token is requested: the tokens
+     * left by an idle writer are hole filled by readers until then.</p>
+     *
+     * @return The raw token.
+     */
+    public TokenResponse nextRawToken() {
+        final int leaseSize = runtime.getRawTokenLeaseSize();
+        if (leaseSize <= 1) {
+            return nextToken(Collections.emptySet(), 1);
+        }
+
+        final long epoch = getCurrentLayout().getEpoch();
+        final RawTokenBlock released;
+        final TokenResponse token;
+        synchronized (rawTokenLock) {
+            RawTokenBlock block = rawTokens;
+            if (block != null && block.next < block.end && block.epoch == epoch
+                    && System.nanoTime() - block.expiryNanos < 0) {
+                released = null;
+            } else {
+                released = block;
+                final long leaseTime = System.nanoTime();
+                block = new RawTokenBlock(nextToken(Collections.emptySet(), leaseSize),
+                        leaseSize, leaseTime
+                        + TimeUnit.MILLISECONDS.toNanos(runtime.getRawTokenLeaseMillis()));
+                rawTokens = block;
+            }
+            token = new TokenResponse(block.next++, block.epoch, Collections.emptyMap());
+        }
+
+        if (released != null) {
+            fillHoles(released);
+        }
+        return token;
+    }
+
+    /**
+     * Hole fill the raw tokens left in the current block. The next raw token leases a new
+     * block. Called when the runtime shuts down.
+     */
+    public void releaseRawTokens() {
+        final RawTokenBlock released;
+        synchronized (rawTokenLock) {
+            released = rawTokens;
+            rawTokens = null;
+        }
+        if (released != null) {
+            fillHoles(released);
+        }
+    }
+
+    /**
+     * Hole fill the tokens left in a block of raw tokens which is no longer used.
+     *
+     * <p>If the epoch changed, the sequencer of the new epoch may hand out the tokens above
+     * the tail it recovered from the log again, so only the tokens below the current tail are
+     * hole filled.</p>
+     */
+    private void fillHoles(RawTokenBlock block) {
+        if (block.next >= block.end) {
+            return;
+        }
+        final Layout layout = getCurrentLayout();
+        long end = block.end;
+        if (layout.getEpoch() != block.epoch) {
+            end = Math.min(end, nextToken(Collections.emptySet(), 0).getTokenValue() + 1);
+        }
+        log.debug("fillHoles: Hole filling unused raw tokens [{}, {})", block.next, end);
+        LongStream.range(block.next, end).parallel().forEach(address -> {
+            try {
+                layout.getReplicationMode(address)
+                        .getReplicationProtocol(runtime)
+                        .holeFill(layout, address);
+            } catch (RuntimeException e) {
+                log.warn("fillHoles: Failed to hole fill unused raw token {} : {}", address,
+                        e.toString());
+            }
+        });
+    }
+
     public TokenResponse nextToken(Set<UUID> streamIDs, int numTokens,
                                    TxResolutionInfo conflictInfo) {
-        return layoutHelper(l -> CFUtils.getUninterruptibly(l.getSequencer(0).nextToken(
-                streamIDs, numTokens, conflictInfo)));
+        return layoutHelper(l -> {
+            int partition = new TokenRequest((long) numTokens, streamIDs, conflictInfo)
+                    .getSequencerPartition(l.getSequencerPartitionCount());
+            if (partition == TokenRequest.CROSS_PARTITION) {
+                partition = 0;
+            }
+            return CFUtils.getUninterruptibly(l.getSequencer(partition).nextToken(
+                    streamIDs, numTokens, conflictInfo));
+        });
+    }
+
+    /**
+     * Return the tails of several streams, along with the tail of the global log, in a
+     * single round trip to the sequencer.
+     *
+     * @param streamIDs The stream IDs to query.
+     * @return The tail of every stream, {@link Address#NON_EXIST} for streams with no
+     *         entries, and the global tail.
+     */
+    public StreamTailsResponse getStreamTails(Set<UUID> streamIDs) {
+        return layoutHelper(l -> {
+            if (l.getSequencerPartitionCount() == 1) {
+                return CFUtils.getUninterruptibly(l.getSequencer(0).getStreamTails(streamIDs));
+            }
+
+            // The global tail comes from the first partition, the tail of a stream from the
+            // partition of the stream.
+            final Map<Integer, Set<UUID>> partitionStreams = new TreeMap<>();
+            partitionStreams.put(0, new HashSet<>());
+            streamIDs.forEach(streamId -> partitionStreams.computeIfAbsent(
+                    l.getSequencerPartition(streamId), p -> new HashSet<>()).add(streamId));
+            final Map<Integer, CompletableFuture<StreamTailsResponse>> responses =
+                    new HashMap<>();
+            partitionStreams.forEach((partition, streams) ->
+                    responses.put(partition, l.getSequencer(partition).getStreamTails(streams)));
+
+            final Map<UUID, Long> streamTails = new HashMap<>(streamIDs.size());
+            for (CompletableFuture<StreamTailsResponse> response : responses.values()) {
+                streamTails.putAll(CFUtils.getUninterruptibly(response).getStreamTails());
+            }
+            return new StreamTailsResponse(
+                    CFUtils.getUninterruptibly(responses.get(0)).getGlobalTail(), streamTails);
+        });
     }
 
+    /**
+     * Trim the conflict table of the sequencer of every partition.
+     *
+     * @param address the trim mark
+     */
     public void trimCache(long address) {
-        getCurrentLayout().getSequencer(0).trimCache(address);
+        Layout layout = getCurrentLayout();
+        for (int i = 0; i < layout.getSequencerPartitionCount(); i++) {
+            layout.getSequencer(i).trimCache(address);
+        }
+    }
+
+    /**
+     * Send up to {@link #MAX_BATCH_SIZE} pending requests in a single message, and complete
+     * their responses. Must be called by the flushing thread only.
+     */
+    private void flushBatch() {
+        final long interval = runtime.getSequencerBatchIntervalMicros();
+        if (interval > 0) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(interval));
+        }
+
+        List<PendingRequest> batch = new ArrayList<>();
+        PendingRequest pending;
+        while (batch.size() < MAX_BATCH_SIZE && (pending = pendingRequests.poll()) != null) {
+            batch.add(pending);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        // Map every pending request to the request sent on its behalf.
+        final List<TokenRequest> requests = new ArrayList<>(batch.size());
+        final Map<Set<UUID>, Integer> queries = new HashMap<>();
+        final int[] requestIndex = new int[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            PendingRequest request = batch.get(i);
+            Integer index = request.numTokens == 0 ? queries.get(request.streamIDs) : null;
+            if (index == null) {
+                index = requests.size();
+                requests.add(new TokenRequest((long) request.numTokens, request.streamIDs));
+                if (request.numTokens == 0) {
+                    queries.put(request.streamIDs, index);
+                }
+            }
+            requestIndex[i] = index;
+        }
+
+        try {
+            final List<TokenResponse> responses = layoutHelper(l -> sendBatch(l, requests));
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).response.complete(responses.get(requestIndex[i]));
+            }
+        } catch (RuntimeException e) {
+            batch.forEach(request -> request.response.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Send the requests of a batch to the sequencer of their partition, and wait for the
+     * responses. A request on the streams of several partitions is sent on its own.
+     *
+     * @param layout   the layout
+     * @param requests the requests
+     * @return the responses, in the order of the requests
+     */
+    private List<TokenResponse> sendBatch(Layout layout, List<TokenRequest> requests) {
+        final int partitions = layout.getSequencerPartitionCount();
+        final Map<Integer, List<Integer>> groups = new TreeMap<>();
+        final List<Integer> spanning = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            int partition = requests.get(i).getSequencerPartition(partitions);
+            if (partition != TokenRequest.CROSS_PARTITION) {
+                groups.computeIfAbsent(partition, p -> new ArrayList<>()).add(i);
+            } else if (requests.get(i).getReqType() == TokenRequest.TK_QUERY) {
+                groups.computeIfAbsent(0, p -> new ArrayList<>()).add(i);
+            } else {
+                spanning.add(i);
+            }
+        }
+
+        final TokenResponse[] responses = new TokenResponse[requests.size()];
+        final List<CompletableFuture<Void>> sent = new ArrayList<>();
+        groups.forEach((partition, indexes) ->
+                sent.add(send(layout.getSequencer(partition), requests, indexes, responses)));
+        spanning.forEach(index -> sent.add(send(layout.getSequencer(0), requests,
+                Collections.singletonList(index), responses)));
+        CFUtils.getUninterruptibly(CompletableFuture.allOf(
+                sent.toArray(new CompletableFuture[sent.size()])));
+        return Arrays.asList(responses);
+    }
+
+    /**
+     * Send some of the requests of a batch to a sequencer, a single request on its own.
+     *
+     * @param sequencer the sequencer
+     * @param requests  the requests of the batch
+     * @param indexes   the indexes of the requests to send
+     * @param responses filled with the responses, at the index of their request
+     * @return a future which completes once the responses are received
+     */
+    private static CompletableFuture<Void> send(SequencerClient sequencer,
+                                                List<TokenRequest> requests,
+                                                List<Integer> indexes,
+                                                TokenResponse[] responses) {
+        if (indexes.size() == 1) {
+            final int index = indexes.get(0);
+            final TokenRequest request = requests.get(index);
+            return sequencer.nextToken(request.getStreams(), request.getNumTokens())
+                    .thenAccept(response -> responses[index] = response);
+        }
+        final List<TokenRequest> group = new ArrayList<>(indexes.size());
+        indexes.forEach(index -> group.add(requests.get(index)));
+        return sequencer.nextTokens(group).thenAccept(groupResponses -> {
+            for (int i = 0; i < indexes.size(); i++) {
+                responses[indexes.get(i)] = groupResponses.get(i);
+            }
+        });
     }
-}
\ No newline at end of file
+}
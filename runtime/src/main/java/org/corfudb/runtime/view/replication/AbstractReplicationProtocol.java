@@ -57,5 +57,6 @@ public abstract class AbstractReplicationProtocol implements IReplicationProtoco
      *
      * @param globalAddress  The address to hole fill.
      */
-    protected abstract void holeFill(Layout layout, long globalAddress);
+    @Override
+    public abstract void holeFill(Layout layout, long globalAddress);
 }
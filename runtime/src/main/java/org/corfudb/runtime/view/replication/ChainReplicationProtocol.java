@@ -2,6 +2,9 @@ package org.corfudb.runtime.view.replication;
 
 import com.google.common.collect.Range;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -10,6 +13,7 @@ import javax.annotation.Nullable;
 import lombok.extern.slf4j.Slf4j;
 import org.corfudb.protocols.wireprotocol.ILogData;
 import org.corfudb.protocols.wireprotocol.LogData;
+import org.corfudb.protocols.wireprotocol.MultipleWriteResponse;
 import org.corfudb.runtime.exceptions.OverwriteException;
 import org.corfudb.runtime.exceptions.RecoveryException;
 import org.corfudb.runtime.view.Layout;
@@ -57,6 +61,97 @@ public class ChainReplicationProtocol extends AbstractReplicationProtocol {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The entries of a stripe share a chain, and are written down it together, in one
+     * request to each unit.
+     */
+    @Override
+    public Set<Long> writeAll(Layout layout, List<ILogData> data) {
+        final Map<Layout.LayoutStripe, List<ILogData>> stripes = new LinkedHashMap<>();
+        for (ILogData entry : data) {
+            stripes.computeIfAbsent(layout.getStripe(entry.getGlobalAddress()),
+                    s -> new ArrayList<>()).add(entry);
+        }
+        final Set<Long> overwritten = new HashSet<>();
+        for (List<ILogData> entries : stripes.values()) {
+            overwritten.addAll(writeStripe(layout, entries));
+        }
+        return overwritten;
+    }
+
+    /** Write the entries of a stripe down its chain.
+     *
+     * @param layout    The layout to use for the write.
+     * @param data      The entries to write, which all map to the same stripe.
+     * @return          The addresses which were overwritten.
+     */
+    private Set<Long> writeStripe(Layout layout, List<ILogData> data) {
+        final long firstAddress = data.get(0).getGlobalAddress();
+        final int numUnits = layout.getSegmentLength(firstAddress);
+        final Set<Long> overwritten = new HashSet<>();
+
+        // As for a single write, each entry is serialized once for the whole chain.
+        final List<ILogData.SerializationHandle> handles = new ArrayList<>(data.size());
+        try {
+            final List<ILogData> serialized = new ArrayList<>(data.size());
+            for (ILogData entry : data) {
+                ILogData.SerializationHandle sh = entry.getSerializedForm();
+                handles.add(sh);
+                serialized.add(sh.getSerialized());
+            }
+
+            log.trace("WriteAll[{}]: chain head {}/{}", firstAddress, 1, numUnits);
+            final Map<Long, MultipleWriteResponse.Status> results = CFUtils.getUninterruptibly(
+                    layout.getLogUnitClient(firstAddress, 0).write(serialized)).getResults();
+            final List<ILogData> written = new ArrayList<>(serialized.size());
+            for (ILogData entry : serialized) {
+                final long globalAddress = entry.getGlobalAddress();
+                final MultipleWriteResponse.Status status = results.get(globalAddress);
+                if (status == MultipleWriteResponse.Status.OK) {
+                    written.add(entry);
+                } else if (status == MultipleWriteResponse.Status.OVERWRITE) {
+                    // As for a single write, drive the other write to completion.
+                    recover(layout, globalAddress);
+                    overwritten.add(globalAddress);
+                } else {
+                    // Retry the entry on its own, which raises its error, if any.
+                    try {
+                        write(layout, entry);
+                    } catch (OverwriteException oe) {
+                        overwritten.add(globalAddress);
+                    }
+                }
+            }
+
+            for (int i = 1; i < numUnits && !written.isEmpty(); i++) {
+                log.trace("PropagateAll[{}]: chain {}/{}", firstAddress, i + 1, numUnits);
+                final Map<Long, MultipleWriteResponse.Status> propagated =
+                        CFUtils.getUninterruptibly(layout.getLogUnitClient(firstAddress, i)
+                                .write(written)).getResults();
+                for (ILogData entry : written) {
+                    final MultipleWriteResponse.Status status =
+                            propagated.get(entry.getGlobalAddress());
+                    if (status != MultipleWriteResponse.Status.OK
+                            && status != MultipleWriteResponse.Status.OVERWRITE) {
+                        // Retry the entry on its own, which raises its error, if any.
+                        try {
+                            CFUtils.getUninterruptibly(layout.getLogUnitClient(firstAddress, i)
+                                    .write(entry), OverwriteException.class);
+                        } catch (OverwriteException oe) {
+                            log.trace("PropagateAll[{}]: Completed by other writer",
+                                    entry.getGlobalAddress());
+                        }
+                    }
+                }
+            }
+        } finally {
+            handles.forEach(ILogData.SerializationHandle::close);
+        }
+        return overwritten;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -221,7 +316,7 @@ public class ChainReplicationProtocol extends AbstractReplicationProtocol {
      * {@inheritDoc}
      */
     @Override
-    protected void holeFill(Layout layout, long globalAddress) {
+    public void holeFill(Layout layout, long globalAddress) {
         int numUnits = layout.getSegmentLength(globalAddress);
         log.trace("fillHole[{}]: chain head {}/{}", globalAddress, 1, numUnits);
         // In chain replication, we write synchronously to every unit in
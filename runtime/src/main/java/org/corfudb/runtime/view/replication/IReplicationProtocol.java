@@ -1,6 +1,7 @@
 package org.corfudb.runtime.view.replication;
 
 import java.util.AbstractMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -39,6 +40,34 @@ public interface IReplicationProtocol {
      */
     void write(Layout layout, ILogData data) throws OverwriteException;
 
+    /** Write data to the log at several addresses.
+     *
+     * <p>This method functions exactly like a write of each entry,
+     * except that an entry which was overwritten does not stop the
+     * others: its address is returned instead.
+     *
+     * <p>An implementation may optimize for this type of
+     * bulk request, but the default implementation
+     * just performs multiple writes.
+     *
+     * @param layout                The layout to use for the writeAll.
+     * @param data                  The ILogData to write to the log, each
+     *                              at its global address.
+     * @return                      The addresses at which a write was committed
+     *                              which was not the result of this call.
+     */
+    default @Nonnull Set<Long> writeAll(Layout layout, List<ILogData> data) {
+        final Set<Long> overwritten = new HashSet<>();
+        for (ILogData entry : data) {
+            try {
+                write(layout, entry);
+            } catch (OverwriteException oe) {
+                overwritten.add(entry.getGlobalAddress());
+            }
+        }
+        return overwritten;
+    }
+
     /** Read data from a given address.
      *
      * <p>This function only returns committed data. If the
@@ -111,6 +140,16 @@ public interface IReplicationProtocol {
      */
     ILogData peek(Layout layout, long globalAddress);
 
+    /** Commit a hole filling entry at the given address.
+     *
+     * <p>When this call returns, either the hole filling entry or
+     * another write has been committed at the given address.
+     *
+     * @param layout               The layout to use for the hole fill.
+     * @param globalAddress        The global address to hole fill.
+     */
+    void holeFill(Layout layout, long globalAddress);
+
     /** Peek data from all the given addresses.
      *
      * <p>This method functions exactly like a peek, except
@@ -1,5 +1,7 @@
 package org.corfudb.runtime.view.stream;
 
+import com.google.common.collect.ImmutableSet;
+
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -357,6 +359,9 @@ public class BackpointerStreamView extends AbstractQueuedStreamView {
         log.trace("Read_Fill_Queue[{}] Max: {}, Current: {}, Resolved: {} - {}", this,
                 maxGlobal, context.globalPointer, context.maxResolution, context.minResolution);
 
+        // The tail of the stream, if it was fetched along with the tail of its checkpoint.
+        Long streamTail = null;
+
         // If the stream has just been reset and we don't have
         // any checkpoint entries, we should consult
         // a checkpoint first.
@@ -365,12 +370,15 @@ public class BackpointerStreamView extends AbstractQueuedStreamView {
             // The checkpoint stream ID is the UUID appended with CP
             final UUID checkpointId = CorfuRuntime
                     .getCheckpointStreamIdFromId(context.id);
+            // Fetch the tails of the stream and of its checkpoint together
+            Map<UUID, Long> tails = runtime.getSequencerView()
+                    .getStreamTails(ImmutableSet.of(context.id, checkpointId))
+                    .getStreamTails();
+            streamTail = tails.get(context.id);
             // Find the checkpoint, if present
             try {
                 if (followBackpointers(checkpointId, context.readCpQueue,
-                        runtime.getSequencerView()
-                                .nextToken(Collections.singleton(checkpointId), 0)
-                                .getToken().getTokenValue(),
+                        tails.get(checkpointId),
                         Address.NEVER_READ, d -> resolveCheckpoint(context, d, maxGlobal))) {
                     log.trace("Read_Fill_Queue[{}] Using checkpoint with {} entries",
                             this, context.readCpQueue.size());
@@ -410,7 +418,7 @@ public class BackpointerStreamView extends AbstractQueuedStreamView {
         // If we don't have a larger token in resolved, or the request was for
         // a linearized read, fetch the token from the sequencer.
         if (latestTokenValue == null || maxGlobal == Address.MAX) {
-            latestTokenValue = runtime.getSequencerView()
+            latestTokenValue = streamTail != null ? streamTail : runtime.getSequencerView()
                     .nextToken(Collections.singleton(context.id), 0)
                     .getToken().getTokenValue();
             log.trace("Read_Fill_Queue[{}] Fetched tail {} from sequencer", this, latestTokenValue);
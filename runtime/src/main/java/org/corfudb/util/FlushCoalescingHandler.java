@@ -0,0 +1,169 @@
+package org.corfudb.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * Coalesces the flushes of a channel, so that the messages written within one tick of its
+ * event loop go out in a single flush, and usually a single syscall and TCP segment.
+ *
+ * <p>A flush requested while the channel is reading is deferred until the read completes,
+ * so that the replies to a batch of requests are flushed together. Any other flush is
+ * deferred to a task of the event loop, which runs after the writes already queued, such as
+ * those of the other threads writing to the channel. At low load, a flush is therefore
+ * delayed by no more than one task. A flush is never deferred once the messages or bytes
+ * written since the last one reach a threshold.
+ *
+ * <p>The handler counts the messages it sees, so it belongs after the frame encoder of the
+ * pipeline, where every outbound message is still a single buffer.
+ */
+public class FlushCoalescingHandler extends ChannelDuplexHandler {
+
+    /**
+     * The default number of messages written after which a flush is no longer deferred.
+     */
+    public static final int DEFAULT_MAX_MESSAGES = 256;
+
+    /**
+     * The default number of bytes written after which a flush is no longer deferred.
+     */
+    public static final int DEFAULT_MAX_BYTES = 64 * 1024;
+
+    private final int maxMessages;
+
+    private final int maxBytes;
+
+    private final Runnable flushTask = () -> {
+        flushScheduled = false;
+        flushIfPending();
+    };
+
+    private ChannelHandlerContext ctx;
+
+    /**
+     * The number of messages and bytes written since the last flush.
+     */
+    private int pendingMessages;
+
+    private long pendingBytes;
+
+    /**
+     * Whether a flush was requested and deferred.
+     */
+    private boolean flushPending;
+
+    private boolean flushScheduled;
+
+    private boolean readInProgress;
+
+    /**
+     * Returns a new FlushCoalescingHandler, with the default thresholds.
+     */
+    public FlushCoalescingHandler() {
+        this(DEFAULT_MAX_MESSAGES, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Returns a new FlushCoalescingHandler.
+     *
+     * @param maxMessages the number of messages written after which a flush is no longer
+     *                    deferred
+     * @param maxBytes    the number of bytes written after which a flush is no longer
+     *                    deferred
+     */
+    public FlushCoalescingHandler(int maxMessages, int maxBytes) {
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        flushIfPending();
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+            throws Exception {
+        pendingMessages++;
+        if (msg instanceof ByteBuf) {
+            pendingBytes += ((ByteBuf) msg).readableBytes();
+        } else if (msg instanceof ByteBufHolder) {
+            pendingBytes += ((ByteBufHolder) msg).content().readableBytes();
+        }
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        if (pendingMessages >= maxMessages || pendingBytes >= maxBytes) {
+            flushNow();
+            return;
+        }
+        flushPending = true;
+        if (!readInProgress && !flushScheduled) {
+            flushScheduled = true;
+            ctx.channel().eventLoop().execute(flushTask);
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        readInProgress = true;
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        readInProgress = false;
+        flushIfPending();
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (!ctx.channel().isWritable()) {
+            // Flush what is pending, so that the channel can become writable again.
+            flushIfPending();
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        flushIfPending();
+        ctx.fireExceptionCaught(cause);
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        flushIfPending();
+        ctx.disconnect(promise);
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        flushIfPending();
+        ctx.close(promise);
+    }
+
+    private void flushIfPending() {
+        if (flushPending) {
+            flushNow();
+        }
+    }
+
+    private void flushNow() {
+        flushPending = false;
+        pendingMessages = 0;
+        pendingBytes = 0;
+        ctx.flush();
+    }
+}
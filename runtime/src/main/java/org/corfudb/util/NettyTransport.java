@@ -0,0 +1,139 @@
+package org.corfudb.util;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The Netty transport of the clients and servers: Java NIO, or the native epoll transport
+ * of Linux, which has a lower latency, produces less garbage, and supports more socket
+ * options.
+ *
+ * <p>{@link #AUTO} selects epoll where it is available. {@link #EPOLL} falls back to NIO,
+ * with a warning, where it is not. The epoll only socket options are ignored with NIO.
+ */
+@Slf4j
+public enum NettyTransport {
+    NIO,
+    EPOLL,
+    AUTO;
+
+    /**
+     * Set once the fall back of {@link #EPOLL} to NIO is logged.
+     */
+    private static final AtomicBoolean fallbackLogged = new AtomicBoolean(false);
+
+    /**
+     * Get a transport by name, ignoring the case.
+     *
+     * @param name the name of the transport
+     * @return the transport
+     * @throws IllegalArgumentException if there is no such transport
+     */
+    public static NettyTransport fromString(String name) {
+        return valueOf(name.toUpperCase());
+    }
+
+    /**
+     * Get the transport of an event loop group created by {@link #newEventLoopGroup}.
+     */
+    public static NettyTransport of(EventLoopGroup group) {
+        return group instanceof EpollEventLoopGroup ? EPOLL : NIO;
+    }
+
+    /**
+     * Get the transport actually used: NIO or epoll.
+     */
+    public NettyTransport resolve() {
+        if (this == NIO || Epoll.isAvailable()) {
+            return this == AUTO ? EPOLL : this;
+        }
+        if (this == EPOLL && fallbackLogged.compareAndSet(false, true)) {
+            log.warn("resolve: Epoll transport unavailable, falling back to NIO : {}",
+                    Epoll.unavailabilityCause().toString());
+        }
+        return NIO;
+    }
+
+    /**
+     * Create an event loop group of this transport.
+     *
+     * @param threads       the number of threads
+     * @param threadFactory the factory of the threads
+     * @return the event loop group
+     */
+    public EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+        return resolve() == EPOLL ? new EpollEventLoopGroup(threads, threadFactory)
+                : new NioEventLoopGroup(threads, threadFactory);
+    }
+
+    /**
+     * Get the class of the client channels of this transport.
+     */
+    public Class<? extends SocketChannel> getChannelClass() {
+        return resolve() == EPOLL ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+    /**
+     * Get the class of the server channels of this transport.
+     */
+    public Class<? extends ServerChannel> getServerChannelClass() {
+        return resolve() == EPOLL ? EpollServerSocketChannel.class
+                : NioServerSocketChannel.class;
+    }
+
+    /**
+     * Set the epoll only options of client channels.
+     *
+     * @param b              the bootstrap of the channels
+     * @param tcpQuickAck    whether to send TCP acknowledgements immediately (TCP_QUICKACK)
+     * @param busyPollMicros how long to busy poll the socket for data, in microseconds
+     *                       (SO_BUSY_POLL), or 0 not to
+     */
+    public void setClientOptions(Bootstrap b, boolean tcpQuickAck, int busyPollMicros) {
+        if (resolve() != EPOLL) {
+            return;
+        }
+        if (tcpQuickAck) {
+            b.option(EpollChannelOption.TCP_QUICKACK, true);
+        }
+        if (busyPollMicros > 0) {
+            b.option(EpollChannelOption.SO_BUSY_POLL, busyPollMicros);
+        }
+    }
+
+    /**
+     * Set the epoll only options of the channels accepted by a server.
+     *
+     * @param b              the bootstrap of the server
+     * @param tcpQuickAck    whether to send TCP acknowledgements immediately (TCP_QUICKACK)
+     * @param busyPollMicros how long to busy poll the socket for data, in microseconds
+     *                       (SO_BUSY_POLL), or 0 not to
+     */
+    public void setServerOptions(ServerBootstrap b, boolean tcpQuickAck, int busyPollMicros) {
+        if (resolve() != EPOLL) {
+            return;
+        }
+        if (tcpQuickAck) {
+            b.childOption(EpollChannelOption.TCP_QUICKACK, true);
+        }
+        if (busyPollMicros > 0) {
+            b.childOption(EpollChannelOption.SO_BUSY_POLL, busyPollMicros);
+        }
+    }
+}
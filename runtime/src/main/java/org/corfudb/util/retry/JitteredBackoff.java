@@ -0,0 +1,74 @@
+package org.corfudb.util.retry;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import lombok.Getter;
+
+/**
+ * An exponential backoff with full jitter: the n-th wait is a random duration between zero
+ * and the base doubled n - 1 times, capped. The jitter spreads out the retries of the
+ * clients which were rejected at the same time, so that they do not all come back at once.
+ */
+public class JitteredBackoff {
+
+    /**
+     * The default cap of the first wait, in milliseconds.
+     */
+    public static final long DEFAULT_BASE_MILLIS = 10;
+
+    /**
+     * The default cap of every wait, in milliseconds.
+     */
+    public static final long DEFAULT_MAX_MILLIS = 1000;
+
+    private final long baseMillis;
+
+    private final long maxMillis;
+
+    /**
+     * The number of waits since the last reset.
+     */
+    @Getter
+    private int attempts;
+
+    /**
+     * Returns a new JitteredBackoff, with the default base and cap.
+     */
+    public JitteredBackoff() {
+        this(DEFAULT_BASE_MILLIS, DEFAULT_MAX_MILLIS);
+    }
+
+    /**
+     * Returns a new JitteredBackoff.
+     *
+     * @param baseMillis the cap of the first wait, in milliseconds
+     * @param maxMillis  the cap of every wait, in milliseconds
+     */
+    public JitteredBackoff(long baseMillis, long maxMillis) {
+        this.baseMillis = baseMillis;
+        this.maxMillis = maxMillis;
+    }
+
+    /**
+     * Get the duration of the next wait, in milliseconds.
+     */
+    public long nextDelayMillis() {
+        final long cap = Math.min(maxMillis, baseMillis << Math.min(attempts, Long.SIZE - 2));
+        attempts++;
+        return ThreadLocalRandom.current().nextLong(Math.max(cap, 1) + 1);
+    }
+
+    /**
+     * Wait for the duration of the next wait.
+     */
+    public void sleep() throws InterruptedException {
+        Thread.sleep(nextDelayMillis());
+    }
+
+    /**
+     * Start again from the first wait.
+     */
+    public void reset() {
+        attempts = 0;
+    }
+}
@@ -36,4 +36,23 @@ public class BaseServerTest extends AbstractServerTest {
         Assertions.assertThat(getLastMessage())
                 .isNull();
     }
+
+    @Test
+    public void handlersDeclareTheirExecution() {
+        CorfuMsgHandler handler = getDefaultServer().getHandler();
+        Assertions.assertThat(handler.getExecution(CorfuMsgType.PING))
+                .isEqualTo(HandlerExecution.INLINE);
+        Assertions.assertThat(handler.getExecution(CorfuMsgType.RESET))
+                .isEqualTo(HandlerExecution.MANAGEMENT);
+
+        CorfuMsgHandler logUnitHandler =
+                new LogUnitServer(new ServerContextBuilder().build()).getHandler();
+        Assertions.assertThat(logUnitHandler.getExecution(CorfuMsgType.WRITE))
+                .isEqualTo(HandlerExecution.STORAGE);
+
+        CorfuMsgHandler sequencerHandler =
+                new SequencerServer(new ServerContextBuilder().build()).getHandler();
+        Assertions.assertThat(sequencerHandler.getExecution(CorfuMsgType.TOKEN_REQ))
+                .isEqualTo(HandlerExecution.DEFAULT);
+    }
 }
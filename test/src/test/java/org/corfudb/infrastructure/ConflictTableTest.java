@@ -0,0 +1,113 @@
+package org.corfudb.infrastructure;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.corfudb.AbstractCorfuTest;
+import org.corfudb.runtime.view.Address;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConflictTableTest extends AbstractCorfuTest {
+
+    private static final long BUDGET = 1024;
+
+    @Test
+    public void putKeepsLatestAddress() {
+        ConflictTable table = new ConflictTable(BUDGET, (s, h, a) -> { });
+        final long streamKey = ConflictTable.getStreamKey(UUID.randomUUID());
+        final long hash = 42L;
+
+        assertThat(table.get(streamKey, hash)).isEqualTo(Address.NOT_FOUND);
+        table.put(streamKey, hash, 2L);
+        table.put(streamKey, hash, 1L);
+        assertThat(table.get(streamKey, hash)).isEqualTo(2L);
+        assertThat(table.get(streamKey, hash + 1)).isEqualTo(Address.NOT_FOUND);
+        assertThat(table.getSize()).isEqualTo(1);
+    }
+
+    @Test
+    public void evictionReportsEvictedAddress() {
+        AtomicLong maxEvicted = new AtomicLong(Address.NOT_FOUND);
+        ConflictTable table = new ConflictTable(BUDGET, (s, h, a) ->
+                maxEvicted.accumulateAndGet(a, Math::max));
+        final long streamKey = ConflictTable.getStreamKey(UUID.randomUUID());
+        final int inserts = table.getMaxSize() * 2;
+
+        for (int i = 0; i < inserts; i++) {
+            table.put(streamKey, i, i);
+        }
+
+        assertThat(table.getSize()).isEqualTo(table.getMaxSize());
+        assertThat(maxEvicted.get()).isGreaterThanOrEqualTo(table.getMaxSize() - 1);
+        // Every entry still in the table must be found, despite the evictions.
+        int found = 0;
+        for (int i = 0; i < inserts; i++) {
+            long address = table.get(streamKey, i);
+            if (address != Address.NOT_FOUND) {
+                assertThat(address).isEqualTo(i);
+                found++;
+            }
+        }
+        assertThat(found).isEqualTo(table.getMaxSize());
+    }
+
+    @Test
+    public void removeBelowKeepsNewerEntries() {
+        ConflictTable table = new ConflictTable(BUDGET, (s, h, a) -> { });
+        final long streamKey = ConflictTable.getStreamKey(UUID.randomUUID());
+        final int entries = table.getMaxSize();
+        final int trimMark = entries / 2;
+
+        for (int i = 0; i < entries; i++) {
+            table.put(streamKey, i, i);
+        }
+
+        assertThat(table.removeBelow(trimMark)).isEqualTo(trimMark);
+        assertThat(table.getSize()).isEqualTo(entries - trimMark);
+        for (int i = 0; i < entries; i++) {
+            assertThat(table.get(streamKey, i))
+                    .isEqualTo(i < trimMark ? Address.NOT_FOUND : i);
+        }
+    }
+
+    @Test
+    public void evictionPicksOldestBucket() {
+        AtomicLong evicted = new AtomicLong(Address.NOT_FOUND);
+        ConflictTable table = new ConflictTable(BUDGET, (s, h, a) -> evicted.set(a));
+        final long streamKey = ConflictTable.getStreamKey(UUID.randomUUID());
+
+        // Insert newest first, so that the oldest entry is not the first inserted.
+        for (int i = table.getMaxSize() - 1; i >= 0; i--) {
+            table.put(streamKey, i, i * ConflictTable.BUCKET_SPAN);
+        }
+        table.put(streamKey, -1L, table.getMaxSize() * ConflictTable.BUCKET_SPAN);
+
+        assertThat(evicted.get()).isEqualTo(0L);
+        assertThat(table.get(streamKey, 0L)).isEqualTo(Address.NOT_FOUND);
+    }
+
+    @Test
+    public void removeBelowStopsAtLimit() {
+        ConflictTable table = new ConflictTable(BUDGET, (s, h, a) -> { });
+        final long streamKey = ConflictTable.getStreamKey(UUID.randomUUID());
+        final int entries = table.getMaxSize();
+        final int limit = 5;
+
+        for (int i = 0; i < entries; i++) {
+            table.put(streamKey, i, i);
+        }
+
+        int removed = 0;
+        int batch;
+        do {
+            batch = table.removeBelow(entries, limit);
+            assertThat(batch).isLessThanOrEqualTo(limit);
+            removed += batch;
+        } while (batch == limit);
+
+        assertThat(removed).isEqualTo(entries);
+        assertThat(table.getSize()).isZero();
+    }
+}
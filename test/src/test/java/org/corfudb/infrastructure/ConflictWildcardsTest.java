@@ -0,0 +1,29 @@
+package org.corfudb.infrastructure;
+
+import org.corfudb.AbstractCorfuTest;
+import org.corfudb.runtime.view.Address;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConflictWildcardsTest extends AbstractCorfuTest {
+
+    @Test
+    public void raiseOnlyAffectsItsStream() {
+        ConflictWildcards wildcards = new ConflictWildcards();
+        final long busyStream = 0L;
+        final long quietStream = 1L;
+        final long address = 100L;
+
+        wildcards.raise(busyStream, 0L, address);
+        wildcards.raise(busyStream, 0L, address - 1);
+
+        assertThat(wildcards.get(busyStream, 0L)).isEqualTo(address);
+        assertThat(wildcards.get(busyStream, 1L)).isEqualTo(Address.NOT_FOUND);
+        assertThat(wildcards.get(quietStream, 0L)).isEqualTo(Address.NOT_FOUND);
+        assertThat(wildcards.getMax()).isEqualTo(address);
+
+        wildcards.reset(address + 1);
+        assertThat(wildcards.get(quietStream, 0L)).isEqualTo(address + 1);
+    }
+}
@@ -1,12 +1,18 @@
 package org.corfudb.infrastructure;
 
+import org.corfudb.protocols.wireprotocol.DataType;
 import org.corfudb.runtime.CorfuRuntime;
+import org.corfudb.runtime.clients.BaseClient;
+import org.corfudb.runtime.clients.LogUnitClient;
 import org.corfudb.runtime.view.AbstractViewTest;
 import org.corfudb.runtime.view.Layout;
 import org.junit.Test;
 
+import java.io.File;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -76,4 +82,82 @@ public class FailureHandlerDispatcherTest extends AbstractViewTest {
                 .isEqualTo(getLayoutServer(SERVERS.PORT_1).getCurrentLayout())
                 .isEqualTo(expectedLayout);
     }
+
+    /**
+     * A log unit which was down while the layout was sealed heals at the previous epoch. It is
+     * sealed to the epoch of the layout, then rebuilt from its replica.
+     */
+    @Test
+    public void healedLogUnitBehindTheLayoutIsRebuilt() throws Exception {
+
+        for (int port : new int[] {SERVERS.PORT_0, SERVERS.PORT_1}) {
+            addServer(port, new ServerContextBuilder()
+                    .setSingle(false)
+                    .setMemory(false)
+                    .setLogPath(PARAMETERS.TEST_TEMP_DIR + File.separator + port)
+                    .setServerRouter(new TestServerRouter(port))
+                    .setPort(port)
+                    .build());
+        }
+
+        Layout originalLayout = new TestLayoutBuilder()
+                .setEpoch(1L)
+                .addLayoutServer(SERVERS.PORT_0)
+                .addSequencer(SERVERS.PORT_0)
+                .buildSegment()
+                .buildStripe()
+                .addLogUnit(SERVERS.PORT_0)
+                .addLogUnit(SERVERS.PORT_1)
+                .addToSegment()
+                .addToLayout()
+                .build();
+        bootstrapAllServers(originalLayout);
+        // Only the dispatcher under test handles the healed log unit.
+        getManagementServer(SERVERS.PORT_0).shutdown();
+        getManagementServer(SERVERS.PORT_1).shutdown();
+
+        CorfuRuntime corfuRuntime = new CorfuRuntime();
+        corfuRuntime.addLayoutServer(getEndpoint(SERVERS.PORT_0));
+        corfuRuntime.connect();
+
+        // The layout is sealed while the second log unit is down: it stays at epoch 1.
+        Layout healedLayout = new TestLayoutBuilder()
+                .setEpoch(2L)
+                .addLayoutServer(SERVERS.PORT_0)
+                .addSequencer(SERVERS.PORT_0)
+                .buildSegment()
+                .buildStripe()
+                .addLogUnit(SERVERS.PORT_0)
+                .addLogUnit(SERVERS.PORT_1)
+                .addToSegment()
+                .addToLayout()
+                .addUnresponsiveServer(SERVERS.PORT_1)
+                .build();
+        corfuRuntime.getRouter(getEndpoint(SERVERS.PORT_0)).getClient(BaseClient.class)
+                .setRemoteEpoch(2L).get();
+        corfuRuntime.getLayoutView().updateLayout(healedLayout, 1L);
+        corfuRuntime.invalidateLayout();
+        assertThat(corfuRuntime.getLayoutView().getLayout().getEpoch()).isEqualTo(2L);
+
+        final String data = "hello world";
+        corfuRuntime.getRouter(getEndpoint(SERVERS.PORT_0)).getClient(LogUnitClient.class)
+                .write(0, Collections.<UUID>emptySet(), null, data, Collections.emptyMap())
+                .get();
+        assertThat(getServerRouter(SERVERS.PORT_1).getServerEpoch()).isEqualTo(1L);
+
+        FailureHandlerDispatcher failureHandlerDispatcher = new FailureHandlerDispatcher();
+        failureHandlerDispatcher.dispatchHandler(new ConservativeFailureHandlerPolicy(),
+                healedLayout, corfuRuntime, Collections.emptySet());
+
+        LogUnitClient healed = corfuRuntime.getRouter(getEndpoint(SERVERS.PORT_1))
+                .getClient(LogUnitClient.class);
+        boolean rebuilt = false;
+        for (int i = 0; i < PARAMETERS.NUM_ITERATIONS_LOW && !rebuilt; i++) {
+            Thread.sleep(PARAMETERS.TIMEOUT_VERY_SHORT.toMillis());
+            rebuilt = getServerRouter(SERVERS.PORT_1).getServerEpoch() == 2L
+                    && healed.read(0).get().getAddresses().get(0L).getType() == DataType.DATA;
+        }
+        assertThat(rebuilt).isTrue();
+        failureHandlerDispatcher.shutdown();
+    }
 }
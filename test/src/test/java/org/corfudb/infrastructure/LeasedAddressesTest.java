@@ -0,0 +1,52 @@
+package org.corfudb.infrastructure;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.corfudb.AbstractCorfuTest;
+import org.corfudb.protocols.wireprotocol.AddressLease;
+import org.corfudb.runtime.view.Address;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LeasedAddressesTest extends AbstractCorfuTest {
+
+    private static final long LEASE_SIZE = 4;
+    private static final long TERM_MILLIS = 60_000;
+
+    @Test
+    public void allocationsNeverWaitForALease() {
+        final List<CompletableFuture<AddressLease>> requests = new ArrayList<>();
+        LeasedAddresses leased = new LeasedAddresses(1, numTokens -> {
+            CompletableFuture<AddressLease> request = new CompletableFuture<>();
+            requests.add(request);
+            return request;
+        }, LEASE_SIZE);
+
+        // No block yet: the allocation fails, and a single lease is requested.
+        assertThatThrownBy(() -> leased.allocate(1, Address.NON_ADDRESS))
+                .isInstanceOf(LeasedAddresses.UnavailableException.class);
+        assertThatThrownBy(() -> leased.allocate(1, Address.NON_ADDRESS))
+                .isInstanceOf(LeasedAddresses.UnavailableException.class);
+        assertThat(requests).hasSize(1);
+
+        requests.get(0).complete(new AddressLease(0L, LEASE_SIZE, TERM_MILLIS));
+        assertThat(leased.allocate(1, Address.NON_ADDRESS)).isEqualTo(0L);
+        assertThat(requests).hasSize(1);
+
+        // Once half of the block is used, the next block is leased ahead.
+        assertThat(leased.allocate(2, Address.NON_ADDRESS)).isEqualTo(1L);
+        assertThat(requests).hasSize(2);
+        requests.get(1).complete(new AddressLease(LEASE_SIZE * 2, LEASE_SIZE, TERM_MILLIS));
+
+        // The current block is used up: the block leased ahead takes over.
+        assertThat(leased.allocate(2, Address.NON_ADDRESS)).isEqualTo(LEASE_SIZE * 2);
+
+        // A stream written beyond the block: the block is given up.
+        assertThatThrownBy(() -> leased.allocate(1, LEASE_SIZE * 3))
+                .isInstanceOf(LeasedAddresses.UnavailableException.class);
+    }
+}
@@ -129,6 +129,54 @@ public class LogUnitServerTest extends AbstractServerTest {
                 .matchesDataAtAddress(HIGH_ADDRESS, high_payload.getBytes());
     }
 
+    @Test
+    public void checkCacheIsWarmedAfterRestart() throws Exception {
+        String serviceDir = PARAMETERS.TEST_TEMP_DIR;
+
+        LogUnitServer s1 = new LogUnitServer(new ServerContextBuilder()
+                .setLogPath(serviceDir)
+                .setMemory(false)
+                .build());
+
+        this.router.reset();
+        this.router.addServer(s1);
+
+        final int numAddresses = PARAMETERS.NUM_ITERATIONS_VERY_LOW;
+        final String streamName = "a";
+
+        for (int i = 0; i < numAddresses; i++) {
+            rawWrite(i, "payload" + i, streamName);
+        }
+        for (int i = 0; i < numAddresses; i++) {
+            sendMessage(CorfuMsgType.READ_REQUEST.payloadMsg(new ReadRequest((long) i)));
+        }
+
+        // All the reads fall within the first range
+        assertThat(s1.getAccessSketch().getHottestRanges(1)).containsExactly(0L);
+
+        // Shutting down persists the hot ranges
+        s1.shutdown();
+
+        LogUnitServer s2 = new LogUnitServer(new ServerContextBuilder()
+                .setLogPath(serviceDir)
+                .setMemory(false)
+                .build());
+        this.router.reset();
+        this.router.addServer(s2);
+
+        // The hot range is prefetched in the background, without any reads.
+        for (int i = 0; i < PARAMETERS.NUM_ITERATIONS_LOW; i++) {
+            if (s2.getDataCache().estimatedSize() == numAddresses) {
+                break;
+            }
+            Thread.sleep(PARAMETERS.TIMEOUT_VERY_SHORT.toMillis());
+        }
+
+        for (int i = 0; i < numAddresses; i++) {
+            assertThat(s2.getDataCache().getIfPresent((long) i)).isNotNull();
+        }
+    }
+
     protected void rawWrite(long addr, String s, String streamName) {
         ByteBuf b = Unpooled.buffer();
         Serializers.CORFU.serialize(s.getBytes(), b);
@@ -0,0 +1,163 @@
+package org.corfudb.infrastructure;
+
+import com.google.common.collect.ImmutableMap;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ResourceLeakDetector;
+
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+
+import org.corfudb.AbstractCorfuTest;
+import org.corfudb.protocols.wireprotocol.CorfuMsg;
+import org.corfudb.protocols.wireprotocol.CorfuMsgType;
+import org.corfudb.protocols.wireprotocol.CorfuPayloadMsg;
+import org.corfudb.protocols.wireprotocol.DataType;
+import org.corfudb.protocols.wireprotocol.LogData;
+import org.corfudb.protocols.wireprotocol.WriteRequest;
+import org.corfudb.util.serializer.Serializers;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NettyServerRouterTest extends AbstractCorfuTest {
+
+    @Test
+    public void boundedPoolsRejectBeyondTheirLimit() {
+        NettyServerRouter router = new NettyServerRouter(
+                ImmutableMap.<String, Object>of("--queue-limit", "2"));
+
+        assertThat(router.admit(HandlerExecution.STORAGE)).isTrue();
+        assertThat(router.admit(HandlerExecution.STORAGE)).isTrue();
+        assertThat(router.admit(HandlerExecution.STORAGE)).isFalse();
+        assertThat(router.getQueueDepth(HandlerExecution.STORAGE)).isEqualTo(2);
+
+        // Each pool has its own limit, and the management pool has none.
+        assertThat(router.admit(HandlerExecution.DEFAULT)).isTrue();
+        for (int i = 0; i < 3; i++) {
+            assertThat(router.admit(HandlerExecution.MANAGEMENT)).isTrue();
+        }
+
+        // A finished handler makes room for another.
+        router.release(HandlerExecution.STORAGE);
+        assertThat(router.getQueueDepth(HandlerExecution.STORAGE)).isEqualTo(1);
+        assertThat(router.admit(HandlerExecution.STORAGE)).isTrue();
+    }
+
+    /**
+     * Handles pings on the storage pool, until it is released.
+     */
+    public static class BlockingStorageServer extends AbstractServer {
+
+        final Thread caller = Thread.currentThread();
+
+        final CountDownLatch released = new CountDownLatch(1);
+
+        volatile boolean ranOnCaller = false;
+
+        @Getter
+        private final CorfuMsgHandler handler = new CorfuMsgHandler()
+                .generateHandlers(MethodHandles.lookup(), this);
+
+        @ServerHandler(type = CorfuMsgType.PING, execution = HandlerExecution.STORAGE)
+        public void handlePing(CorfuMsg msg, ChannelHandlerContext ctx, IServerRouter r,
+                               boolean isMetricsEnabled) {
+            if (Thread.currentThread() == caller) {
+                ranOnCaller = true;
+                return;
+            }
+            try {
+                released.await(PARAMETERS.TIMEOUT_LONG.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Test
+    public void overloadedStoragePoolAnswersBusy() {
+        NettyServerRouter router = new NettyServerRouter(ImmutableMap.<String, Object>of());
+        BlockingStorageServer server = new BlockingStorageServer();
+        router.addServer(server);
+        EmbeddedChannel channel = new EmbeddedChannel(router);
+        try {
+            // Every admitted handler is queued, none is run by the thread of the channel.
+            for (int i = 0; i < NettyServerRouter.DEFAULT_QUEUE_LIMIT; i++) {
+                channel.writeInbound(new CorfuMsg(CorfuMsgType.PING));
+            }
+            assertThat((Object) channel.readOutbound()).isNull();
+            assertThat(server.ranOnCaller).isFalse();
+
+            channel.writeInbound(new CorfuMsg(CorfuMsgType.PING));
+            assertThat(((CorfuMsg) channel.readOutbound()).getMsgType())
+                    .isEqualTo(CorfuMsgType.ERROR_SERVER_BUSY);
+        } finally {
+            server.released.countDown();
+            channel.finish();
+        }
+    }
+
+    @Test
+    public void unboundedPoolsAdmitEverything() {
+        NettyServerRouter router = new NettyServerRouter(
+                ImmutableMap.<String, Object>of("--queue-limit", "0"));
+        for (int i = 0; i < NettyServerRouter.DEFAULT_QUEUE_LIMIT + 1; i++) {
+            assertThat(router.admit(HandlerExecution.STORAGE)).isTrue();
+        }
+    }
+
+    /**
+     * Decode a write into a pooled direct buffer, and release the buffer as the decoder does
+     * once the message is decoded: the payload of the write still holds a slice of it.
+     */
+    private CorfuMsg decodePooledWrite(ByteBuf message) {
+        ByteBuf payload = Unpooled.buffer();
+        Serializers.CORFU.serialize("payload".getBytes(), payload);
+        new CorfuPayloadMsg<>(CorfuMsgType.WRITE,
+                new WriteRequest(new LogData(DataType.DATA, payload))).serialize(message);
+        CorfuMsg write = CorfuMsg.deserialize(message);
+        message.release();
+        assertThat(message.refCnt()).isEqualTo(1);
+        return write;
+    }
+
+    @Test
+    public void rejectedWritesReleaseTheirPayload() {
+        final ResourceLeakDetector.Level level = ResourceLeakDetector.getLevel();
+        ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.PARANOID);
+        try {
+            NettyServerRouter router = new NettyServerRouter(
+                    ImmutableMap.<String, Object>of("--queue-limit", "1"));
+            router.addServer(new LogUnitServer(new ServerContextBuilder().build()));
+            EmbeddedChannel channel = new EmbeddedChannel(router);
+
+            // The storage pool is full: the write is rejected as busy.
+            assertThat(router.admit(HandlerExecution.STORAGE)).isTrue();
+            ByteBuf busyMessage = PooledByteBufAllocator.DEFAULT.directBuffer();
+            channel.writeInbound(decodePooledWrite(busyMessage));
+            assertThat(((CorfuMsg) channel.readOutbound()).getMsgType())
+                    .isEqualTo(CorfuMsgType.ERROR_SERVER_BUSY);
+            assertThat(busyMessage.refCnt()).isZero();
+            router.release(HandlerExecution.STORAGE);
+
+            // The write is in the wrong epoch.
+            router.setServerEpoch(1L);
+            ByteBuf epochMessage = PooledByteBufAllocator.DEFAULT.directBuffer();
+            channel.writeInbound(decodePooledWrite(epochMessage));
+            assertThat(((CorfuMsg) channel.readOutbound()).getMsgType())
+                    .isEqualTo(CorfuMsgType.WRONG_EPOCH);
+            assertThat(epochMessage.refCnt()).isZero();
+
+            channel.finish();
+        } finally {
+            ResourceLeakDetector.setLevel(level);
+        }
+    }
+}
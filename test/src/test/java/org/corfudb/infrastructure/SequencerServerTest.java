@@ -1,13 +1,24 @@
 package org.corfudb.infrastructure;
 
+import io.netty.channel.ChannelHandlerContext;
 import org.corfudb.protocols.wireprotocol.*;
+import org.corfudb.runtime.view.Address;
+import org.corfudb.runtime.view.Layout;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -165,6 +176,57 @@ public class SequencerServerTest extends AbstractServerTest {
         }
     }
 
+    @Test
+    public void concurrentAllocationsKeepBackpointersExact() throws Exception {
+        UUID streamA = UUID.nameUUIDFromBytes("streamA".getBytes());
+        UUID streamB = UUID.nameUUIDFromBytes("streamB".getBytes());
+        Queue<TokenResponse> responses = new ConcurrentLinkedQueue<>();
+
+        IServerRouter capturingRouter = new IServerRouter() {
+            @Override
+            public void sendResponse(ChannelHandlerContext ctx, CorfuMsg inMsg, CorfuMsg outMsg) {
+                responses.add(((CorfuPayloadMsg<TokenResponse>) outMsg).getPayload());
+            }
+
+            @Override
+            public long getServerEpoch() {
+                return 0L;
+            }
+
+            @Override
+            public void setServerEpoch(long newEpoch) {
+            }
+
+            @Override
+            public void addServer(AbstractServer server) {
+            }
+        };
+
+        // Interleave single stream, multi stream and raw allocations
+        scheduleConcurrently(PARAMETERS.NUM_ITERATIONS_LOW, t -> {
+            Set<UUID> streams = t % 2 == 0 ? Collections.singleton(streamA)
+                    : new HashSet<>(Arrays.asList(streamA, streamB));
+            server.tokenRequest(new CorfuPayloadMsg<>(CorfuMsgType.TOKEN_REQ,
+                    new TokenRequest(1L, streams)), null, capturingRouter, false);
+            server.tokenRequest(new CorfuPayloadMsg<>(CorfuMsgType.TOKEN_REQ,
+                    new TokenRequest(1L, Collections.emptySet())), null, capturingRouter, false);
+        });
+        executeScheduled(PARAMETERS.CONCURRENCY_SOME, PARAMETERS.TIMEOUT_NORMAL);
+
+        // Every allocation on streamA must point back at the previous allocation on streamA
+        List<TokenResponse> streamAResponses = responses.stream()
+                .filter(tr -> tr.getBackpointerMap().containsKey(streamA))
+                .sorted(Comparator.comparingLong(TokenResponse::getTokenValue))
+                .collect(Collectors.toList());
+        assertThat(streamAResponses).hasSize(PARAMETERS.NUM_ITERATIONS_LOW);
+
+        long previous = Address.NON_EXIST;
+        for (TokenResponse tr : streamAResponses) {
+            assertThat(tr.getBackpointerMap().get(streamA)).isEqualTo(previous);
+            previous = tr.getTokenValue();
+        }
+    }
+
     @Test
     public void SequencerWillResetTails() throws Exception {
         UUID streamA = UUID.nameUUIDFromBytes("streamA".getBytes());
@@ -219,4 +281,214 @@ public class SequencerServerTest extends AbstractServerTest {
                 new TokenRequest(0L, Collections.singleton(streamC))));
         assertThat(getLastPayloadMessageAs(TokenResponse.class).getToken().getTokenValue()).isEqualTo(newTailC);
     }
+
+    @Test
+    public void standbyKeepsConflictsOnPromotion() {
+        UUID streamA = UUID.nameUUIDFromBytes("streamA".getBytes());
+        UUID streamB = UUID.nameUUIDFromBytes("streamB".getBytes());
+        final long conflictHash = 1L;
+        final long otherHash = 2L;
+        final long writeA = 5L;
+        final long writeB = 8L;
+        final long globalTail = 10L;
+        final long snapshot = 3L;
+
+        // This server is a standby, which is not ready to serve tokens.
+        server.setReadyStateEpoch(-1L);
+        long[] conflictEntries = {ConflictTable.getStreamKey(streamA), conflictHash, writeA};
+        sendMessage(new CorfuPayloadMsg<>(CorfuMsgType.SEQUENCER_STATE_SYNC,
+                new SequencerStateSync(0L, 0L, true, globalTail, Address.NON_ADDRESS,
+                        Collections.singletonMap(streamA, writeA), conflictEntries,
+                        new ConflictWildcards().toArray())));
+        assertThat(getLastMessage().getMsgType()).isEqualTo(CorfuMsgType.ACK);
+
+        // An incremental update which does not follow the last one is rejected.
+        sendMessage(new CorfuPayloadMsg<>(CorfuMsgType.SEQUENCER_STATE_SYNC,
+                new SequencerStateSync(0L, 2L, false, globalTail, Address.NON_ADDRESS,
+                        Collections.emptyMap(), new long[0], new long[0])));
+        assertThat(getLastMessage().getMsgType()).isEqualTo(CorfuMsgType.NACK);
+
+        // Stream B was written after the last update.
+        Map<UUID, Long> recoveredTails = new HashMap<>();
+        recoveredTails.put(streamA, writeA);
+        recoveredTails.put(streamB, writeB);
+        sendMessage(new CorfuPayloadMsg<>(CorfuMsgType.BOOTSTRAP_SEQUENCER,
+                new SequencerTailsRecoveryMsg(writeB + 1, recoveredTails, 0L)));
+
+        // The replicated conflict parameters are still known after the promotion.
+        assertThat(commitTx(streamA, conflictHash, snapshot)).isEqualTo(TokenType.TX_ABORT_CONFLICT);
+        assertThat(commitTx(streamA, otherHash, snapshot)).isEqualTo(TokenType.NORMAL);
+        // The conflict parameters of the unreplicated write are not.
+        assertThat(commitTx(streamB, otherHash, snapshot)).isEqualTo(TokenType.TX_ABORT_SEQ_OVERFLOW);
+    }
+
+    @Test
+    public void leasesHoldBackTheGlobalTail() {
+        final long initialToken = 10L;
+        final long leaseSize = 100L;
+        bootstrapPartition(initialToken);
+
+        sendMessage(new CorfuPayloadMsg<>(CorfuMsgType.SEQUENCER_LEASE_REQ,
+                new AddressLeaseRequest(1, leaseSize)));
+        AddressLease lease = getLastPayloadMessageAs(AddressLease.class);
+        assertThat(lease.getStart()).isEqualTo(initialToken);
+        assertThat(lease.getNumTokens()).isEqualTo(leaseSize);
+
+        // Raw tokens are taken after the leased block...
+        sendMessage(new CorfuPayloadMsg<>(CorfuMsgType.TOKEN_REQ,
+                new TokenRequest(1L, Collections.emptySet())));
+        long rawToken = getLastPayloadMessageAs(TokenResponse.class).getToken().getTokenValue();
+        assertThat(rawToken).isEqualTo(initialToken + leaseSize);
+
+        // ...but the global tail stays below the block while it is leased.
+        assertThat(queryGlobalTail()).isEqualTo(initialToken - 1);
+
+        // A new lease replaces the previous one.
+        sendMessage(new CorfuPayloadMsg<>(CorfuMsgType.SEQUENCER_LEASE_REQ,
+                new AddressLeaseRequest(1, leaseSize)));
+        lease = getLastPayloadMessageAs(AddressLease.class);
+        assertThat(lease.getStart()).isEqualTo(rawToken + 1);
+        assertThat(queryGlobalTail()).isEqualTo(rawToken);
+    }
+
+    @Test
+    public void preparedStreamsAreHeldUntilCommit() {
+        UUID streamA = UUID.nameUUIDFromBytes("streamA".getBytes());
+        final long id = 1L;
+        bootstrapPartition(0L);
+
+        sendMessage(new CorfuPayloadMsg<>(CorfuMsgType.SEQUENCER_PREPARE_REQ,
+                new PartitionPrepareRequest(id, new TokenRequest(1L,
+                        Collections.singleton(streamA)))));
+        TokenResponse prepared = getLastPayloadMessageAs(TokenResponse.class);
+        assertThat(prepared.getRespType()).isEqualTo(TokenType.NORMAL);
+        assertThat(prepared.getBackpointerMap()).containsEntry(streamA, Address.NON_EXIST);
+
+        // An allocation on a held stream waits for the commit...
+        final int responses = getResponseMessages().size();
+        sendMessage(new CorfuPayloadMsg<>(CorfuMsgType.TOKEN_REQ,
+                new TokenRequest(1L, Collections.singleton(streamA))));
+        assertThat(getResponseMessages()).hasSize(responses);
+
+        // ...and a transaction on it aborts.
+        assertThat(commitTx(streamA, 1L, 0L)).isEqualTo(TokenType.TX_ABORT_CONFLICT);
+
+        sendMessage(new CorfuPayloadMsg<>(CorfuMsgType.TOKEN_REQ,
+                new TokenRequest(1L, Collections.emptySet())));
+        final long address = getLastPayloadMessageAs(TokenResponse.class).getToken()
+                .getTokenValue();
+        sendMessage(new CorfuPayloadMsg<>(CorfuMsgType.SEQUENCER_COMMIT_REQ,
+                new PartitionCommitRequest(id, address)));
+        assertThat(getLastMessage().getMsgType()).isEqualTo(CorfuMsgType.ACK);
+
+        // The deferred allocation is served once the commit is applied.
+        List<CorfuMsg> messages = getResponseMessages();
+        TokenResponse deferred = ((CorfuPayloadMsg<TokenResponse>) messages
+                .get(messages.size() - 2)).getPayload();
+        assertThat(deferred.getToken().getTokenValue()).isEqualTo(address + 1);
+        assertThat(deferred.getBackpointerMap()).containsEntry(streamA, address);
+
+        // A commit received again is acknowledged, but not applied again.
+        sendMessage(new CorfuPayloadMsg<>(CorfuMsgType.SEQUENCER_COMMIT_REQ,
+                new PartitionCommitRequest(id, address)));
+        assertThat(getLastMessage().getMsgType()).isEqualTo(CorfuMsgType.ACK);
+        sendMessage(new CorfuPayloadMsg<>(CorfuMsgType.TOKEN_REQ,
+                new TokenRequest(0L, Collections.singleton(streamA))));
+        assertThat(getLastPayloadMessageAs(TokenResponse.class).getToken().getTokenValue())
+                .isEqualTo(address + 1);
+    }
+
+    @Test
+    public void prepareAfterAbortIsRefused() {
+        UUID streamA = UUID.nameUUIDFromBytes("streamA".getBytes());
+        final long id = 1L;
+        bootstrapPartition(0L);
+
+        // The coordinator gave up on the request before its prepare arrived.
+        sendMessage(new CorfuPayloadMsg<>(CorfuMsgType.SEQUENCER_COMMIT_REQ,
+                new PartitionCommitRequest(id, Address.ABORTED)));
+        assertThat(getLastMessage().getMsgType()).isEqualTo(CorfuMsgType.NACK);
+
+        sendMessage(new CorfuPayloadMsg<>(CorfuMsgType.SEQUENCER_PREPARE_REQ,
+                new PartitionPrepareRequest(id, new TokenRequest(1L,
+                        Collections.singleton(streamA)))));
+        assertThat(getLastPayloadMessageAs(TokenResponse.class).getRespType())
+                .isNotEqualTo(TokenType.NORMAL);
+
+        // The stream is not held.
+        final int responses = getResponseMessages().size();
+        sendMessage(new CorfuPayloadMsg<>(CorfuMsgType.TOKEN_REQ,
+                new TokenRequest(1L, Collections.singleton(streamA))));
+        assertThat(getResponseMessages()).hasSize(responses + 1);
+        assertThat(getLastPayloadMessageAs(TokenResponse.class).getRespType())
+                .isEqualTo(TokenType.NORMAL);
+    }
+
+    @Test
+    public void deferredRequestsAreAnsweredOnReset() {
+        UUID streamA = UUID.nameUUIDFromBytes("streamA".getBytes());
+        bootstrapPartition(0L);
+
+        sendMessage(new CorfuPayloadMsg<>(CorfuMsgType.SEQUENCER_PREPARE_REQ,
+                new PartitionPrepareRequest(1L, new TokenRequest(1L,
+                        Collections.singleton(streamA)))));
+        final int responses = getResponseMessages().size();
+        sendMessage(new CorfuPayloadMsg<>(CorfuMsgType.TOKEN_REQ,
+                new TokenRequest(1L, Collections.singleton(streamA))));
+        assertThat(getResponseMessages()).hasSize(responses);
+
+        // The reset drops the prepared request, and answers the deferred one.
+        bootstrapPartition(0L);
+        List<CorfuMsg> messages = getResponseMessages();
+        assertThat(messages).hasSize(responses + 2);
+        assertThat(messages.get(responses).getMsgType())
+                .isEqualTo(CorfuMsgType.ERROR_SERVER_BUSY);
+    }
+
+    @Test
+    public void streamsOfAnotherPartitionAreRejected() {
+        UUID streamD = UUID.nameUUIDFromBytes("streamD".getBytes());
+        assertThat(Layout.getSequencerPartition(streamD, 2)).isEqualTo(1);
+        bootstrapPartition(0L);
+
+        sendMessage(new CorfuPayloadMsg<>(CorfuMsgType.TOKEN_REQ,
+                new TokenRequest(1L, Collections.singleton(streamD))));
+        assertThat(getLastMessage().getMsgType()).isEqualTo(CorfuMsgType.WRONG_EPOCH);
+
+        sendMessage(new CorfuPayloadMsg<>(CorfuMsgType.TOKEN_BATCH_REQ, new TokenBatchRequest(
+                Arrays.asList(new TokenRequest(1L, Collections.emptySet()),
+                        new TokenRequest(1L, Collections.singleton(streamD))))));
+        assertThat(getLastMessage().getMsgType()).isEqualTo(CorfuMsgType.WRONG_EPOCH);
+
+        // Nothing was allocated for the stream.
+        sendMessage(new CorfuPayloadMsg<>(CorfuMsgType.STREAM_TAILS_REQ,
+                new StreamTailsRequest(Collections.singleton(streamD))));
+        assertThat(getLastPayloadMessageAs(StreamTailsResponse.class).getStreamTails())
+                .containsEntry(streamD, Address.NON_EXIST);
+    }
+
+    /**
+     * Bootstrap the server as the first of two partitions of the sequencer.
+     */
+    private void bootstrapPartition(long initialToken) {
+        sendMessage(new CorfuPayloadMsg<>(CorfuMsgType.BOOTSTRAP_SEQUENCER,
+                new SequencerTailsRecoveryMsg(initialToken, Collections.emptyMap(), 0L, 0,
+                        Arrays.asList("test:9000", "test:9001"))));
+        assertThat(getLastMessage().getMsgType()).isEqualTo(CorfuMsgType.ACK);
+    }
+
+    private long queryGlobalTail() {
+        sendMessage(new CorfuPayloadMsg<>(CorfuMsgType.TOKEN_REQ,
+                new TokenRequest(0L, Collections.emptySet())));
+        return getLastPayloadMessageAs(TokenResponse.class).getToken().getTokenValue();
+    }
+
+    private TokenType commitTx(UUID streamId, long conflictHash, long snapshot) {
+        Map<UUID, long[]> conflictMap = Collections.singletonMap(streamId, new long[]{conflictHash});
+        sendMessage(new CorfuPayloadMsg<>(CorfuMsgType.TOKEN_REQ,
+                new TokenRequest(1L, Collections.singleton(streamId),
+                        new TxResolutionInfo(UUID.randomUUID(), snapshot, conflictMap,
+                                conflictMap))));
+        return getLastPayloadMessageAs(TokenResponse.class).getRespType();
+    }
 }
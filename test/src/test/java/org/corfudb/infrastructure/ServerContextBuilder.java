@@ -24,6 +24,7 @@ public class ServerContextBuilder {
     String address = "test";
     int port = 9000;
     String seqCache = "1000";
+    String seqLeaseTerm = "60000";
     String managementBootstrapEndpoint = null;
     IServerRouter serverRouter;
 
@@ -37,7 +38,8 @@ public class ServerContextBuilder {
                 .put("--initial-token", initialToken)
                 .put("--single", single)
                 .put("--memory", memory)
-                .put("--sequencer-cache-size", seqCache);
+                .put("--sequencer-cache-size", seqCache)
+                .put("--sequencer-lease-term", seqLeaseTerm);
         if (logPath != null) {
          builder.put("--log-path", logPath);
         }
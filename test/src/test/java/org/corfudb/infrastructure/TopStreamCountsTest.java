@@ -0,0 +1,33 @@
+package org.corfudb.infrastructure;
+
+import java.util.Map;
+import java.util.UUID;
+
+import org.corfudb.AbstractCorfuTest;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TopStreamCountsTest extends AbstractCorfuTest {
+
+    @Test
+    public void hotStreamsAreKeptInBoundedMemory() {
+        final int capacity = 4;
+        TopStreamCounts counts = new TopStreamCounts(capacity);
+        UUID hot = UUID.randomUUID();
+
+        // Many streams abort once, the hot stream on every other abort.
+        for (int i = 0; i < PARAMETERS.NUM_ITERATIONS_LOW; i++) {
+            counts.increment(hot);
+            counts.increment(UUID.randomUUID());
+        }
+
+        Map<UUID, Long> top = counts.getTop();
+        assertThat(top).hasSize(capacity);
+        assertThat(top.keySet().iterator().next()).isEqualTo(hot);
+        assertThat(top.get(hot)).isGreaterThanOrEqualTo((long) PARAMETERS.NUM_ITERATIONS_LOW);
+
+        counts.clear();
+        assertThat(counts.getTop()).isEmpty();
+    }
+}
@@ -11,8 +11,10 @@ import java.io.File;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.UUID;
 
 import io.netty.buffer.Unpooled;
 import org.corfudb.AbstractCorfuTest;
@@ -22,6 +24,9 @@ import org.corfudb.infrastructure.ServerContextBuilder;
 import org.corfudb.protocols.wireprotocol.DataType;
 import org.corfudb.protocols.wireprotocol.ILogData;
 import org.corfudb.protocols.wireprotocol.LogData;
+import org.corfudb.protocols.wireprotocol.SegmentChunk;
+import org.corfudb.protocols.wireprotocol.SegmentFileInfo;
+import org.corfudb.protocols.wireprotocol.SegmentListResponse;
 import org.corfudb.runtime.exceptions.DataCorruptionException;
 import org.corfudb.runtime.exceptions.OverwriteException;
 import org.corfudb.util.serializer.Serializers;
@@ -268,6 +273,44 @@ public class StreamLogFilesTest extends AbstractCorfuTest {
         log.append(address, new LogData(DataType.DATA, b));
     }
 
+    private void writeToStream(StreamLog log, long address, UUID streamId) {
+        ByteBuf b = Unpooled.buffer();
+        Serializers.CORFU.serialize("Payload".getBytes(), b);
+        LogData data = new LogData(DataType.DATA, b);
+        data.setBackpointerMap(Collections.singletonMap(streamId, address - 1));
+        log.append(address, data);
+    }
+
+    @Test
+    public void testStreamTailsAfterRestart() {
+        StreamLogFiles log = new StreamLogFiles(getContext(), false);
+        final UUID streamA = UUID.nameUUIDFromBytes("streamA".getBytes());
+        final UUID streamB = UUID.nameUUIDFromBytes("streamB".getBytes());
+        final UUID streamC = UUID.nameUUIDFromBytes("streamC".getBytes());
+        final long lastAddress = 2 * RECORDS_PER_LOG_FILE;
+        final long lateAddress = 1;
+
+        for (long x = 0; x <= lastAddress; x++) {
+            if (x != lateAddress) {
+                writeToStream(log, x, x % 2 == 0 ? streamA : streamB);
+            }
+        }
+        // A write to the first segment, after the stream tails were checkpointed.
+        writeToStream(log, lateAddress, streamC);
+
+        assertThat(log.getStreamTails())
+                .containsEntry(streamA, lastAddress)
+                .containsEntry(streamB, lastAddress - 1)
+                .containsEntry(streamC, lateAddress);
+
+        // The stream tails are rebuilt from the checkpoint and the segments written since.
+        log = new StreamLogFiles(getContext(), false);
+        assertThat(log.getStreamTails())
+                .containsEntry(streamA, lastAddress)
+                .containsEntry(streamB, lastAddress - 1)
+                .containsEntry(streamC, lateAddress);
+    }
+
     @Test
     public void testTrim() throws Exception {
         StreamLogFiles log = new StreamLogFiles(getContext(), false);
@@ -474,4 +517,52 @@ public class StreamLogFilesTest extends AbstractCorfuTest {
         final int lastTwoSegmentsFiles = 3 * 2;
         assertThat(logs.list()).hasSize(lastTwoSegmentsFiles);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSegmentTransfer() {
+        StreamLogFiles source = new StreamLogFiles(getContext(), false);
+        for (long x = 0; x < RECORDS_PER_LOG_FILE + 1; x++) {
+            writeToLog(source, x);
+        }
+
+        // Only the first segment is sealed, the second one holds the tail
+        SegmentListResponse segments = source.listSealedSegments();
+        assertThat(segments.getTailSegmentStart()).isEqualTo(RECORDS_PER_LOG_FILE);
+        assertThat(segments.getFiles()).extracting(SegmentFileInfo::getFileName)
+                .containsExactlyInAnyOrder("0.log", "0.log.trimmed", "0.log.pending");
+
+        ServerContext targetContext = new ServerContextBuilder()
+                .setLogPath(getDirPath() + File.separator + "target")
+                .setMemory(false)
+                .build();
+        StreamLogFiles target = new StreamLogFiles(targetContext, false);
+
+        // A corrupted chunk is rejected
+        final int chunkSize = 4096;
+        ByteBuf corrupted = source.readSegmentChunk("0.log", 0, chunkSize);
+        assertThatThrownBy(() -> target.writeSegmentChunk(new SegmentChunk("0.log", 0,
+                SegmentChunk.getChecksum(corrupted) + 1, corrupted)))
+                .isInstanceOf(DataCorruptionException.class);
+
+        // Stream the files in small chunks
+        for (SegmentFileInfo file : segments.getFiles()) {
+            for (long offset = 0; offset < file.getLength(); offset += chunkSize) {
+                ByteBuf data = source.readSegmentChunk(file.getFileName(), offset, chunkSize);
+                target.writeSegmentChunk(new SegmentChunk(file.getFileName(), offset,
+                        SegmentChunk.getChecksum(data), data));
+            }
+        }
+
+        // A segment in use is not replaced
+        StreamLogFiles.SegmentHandle inUse = target.getSegmentHandleForAddress(0);
+        assertThatThrownBy(() -> target.installSegments(segments.getFiles()))
+                .isInstanceOf(IllegalStateException.class);
+        inUse.release();
+
+        assertThat(target.installSegments(segments.getFiles())).containsExactly(0L);
+        assertThat(target.getGlobalTail()).isEqualTo(RECORDS_PER_LOG_FILE - 1);
+        for (long x = 0; x < RECORDS_PER_LOG_FILE; x++) {
+            assertThat(target.read(x)).isNotNull();
+        }
+    }
+}
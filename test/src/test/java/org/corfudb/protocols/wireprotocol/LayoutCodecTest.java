@@ -0,0 +1,129 @@
+package org.corfudb.protocols.wireprotocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import lombok.extern.slf4j.Slf4j;
+import org.corfudb.AbstractCorfuTest;
+import org.corfudb.infrastructure.TestLayoutBuilder;
+import org.corfudb.runtime.view.Layout;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+public class LayoutCodecTest extends AbstractCorfuTest {
+
+    private static final int SERVERS = 3;
+    private static final int SEGMENTS = 100;
+
+    @After
+    public void resetWireFormat() {
+        LayoutCodec.setWireFormat(LayoutCodec.WireFormat.NEGOTIATED);
+    }
+
+    /**
+     * A layout of three servers, with as many segments as a long running cluster.
+     */
+    private Layout newLayout() {
+        TestLayoutBuilder builder = new TestLayoutBuilder();
+        for (int port = 0; port < SERVERS; port++) {
+            builder.addLayoutServer(port).addSequencer(port);
+        }
+        for (int segment = 0; segment < SEGMENTS; segment++) {
+            TestLayoutBuilder.TestSegmentBuilder segmentBuilder = builder.buildSegment()
+                    .setStart(segment * PARAMETERS.NUM_ITERATIONS_LOW)
+                    .setEnd((segment + 1) * PARAMETERS.NUM_ITERATIONS_LOW);
+            for (int port = 0; port < SERVERS; port++) {
+                segmentBuilder = segmentBuilder.buildStripe().addLogUnit(port).addToSegment();
+            }
+            segmentBuilder.addToLayout();
+        }
+        builder.setEpoch(SEGMENTS);
+        Layout layout = builder.build();
+        layout.setSequencerPartitions(SERVERS);
+        return layout;
+    }
+
+    private ByteBuf encode(Layout layout, boolean binary) {
+        ByteBuf buf = Unpooled.buffer();
+        LayoutCodec.serialize(buf, layout, binary);
+        return buf;
+    }
+
+    @Test
+    public void bothFormatsRoundTrip() {
+        Layout layout = newLayout();
+        for (boolean binary : new boolean[] {false, true}) {
+            ByteBuf buf = encode(layout, binary);
+            assertThat(ICorfuPayload.fromBuffer(buf, Layout.class)).isEqualTo(layout);
+            assertThat(buf.readableBytes()).isZero();
+        }
+    }
+
+    @Test
+    public void binaryOnlyToPeersWhichDecodeIt() {
+        Layout layout = newLayout();
+
+        // Outside of a connection, and to a peer which did not advertise version 2: JSON.
+        ByteBuf buf = Unpooled.buffer();
+        ICorfuPayload.serialize(buf, layout);
+        assertThat(buf.getInt(0)).isNotEqualTo(LayoutCodec.BINARY_MARKER);
+
+        ProtocolSession sender = new ProtocolSession();
+        ProtocolSession receiver = new ProtocolSession();
+        LayoutMsg msg = new LayoutMsg(layout, CorfuMsgType.LAYOUT_RESPONSE);
+        buf = Unpooled.buffer();
+        sender.encode(msg, buf);
+        int jsonBytes = buf.readableBytes();
+        assertThat(((LayoutMsg) receiver.decode(buf)).getLayout()).isEqualTo(layout);
+
+        sender.enableV2();
+        buf = Unpooled.buffer();
+        sender.encode(msg, buf);
+        int binaryBytes = buf.readableBytes();
+        assertThat(binaryBytes).isLessThan(jsonBytes - ProtocolSession.V1_HEADER_SIZE);
+        assertThat(((LayoutMsg) receiver.decode(buf)).getLayout()).isEqualTo(layout);
+
+        // Unless the JVM only sends JSON.
+        LayoutCodec.setWireFormat(LayoutCodec.WireFormat.JSON);
+        buf = Unpooled.buffer();
+        sender.encode(msg, buf);
+        assertThat(buf.readableBytes()).isGreaterThan(binaryBytes);
+        assertThat(((LayoutMsg) receiver.decode(buf)).getLayout()).isEqualTo(layout);
+    }
+
+    @Test
+    public void layoutMessagesUseTheCodec() {
+        Layout layout = newLayout();
+        ByteBuf buf = Unpooled.buffer();
+        new LayoutMsg(layout, CorfuMsgType.LAYOUT_RESPONSE).serialize(buf);
+        assertThat(((LayoutMsg) CorfuMsg.deserialize(buf)).getLayout()).isEqualTo(layout);
+    }
+
+    /**
+     * A/B encode and decode time, and size, of the binary and JSON formats. The times are
+     * logged rather than asserted on, since they depend on the machine.
+     */
+    @Test
+    public void binaryIsSmallerThanJson() {
+        Layout layout = newLayout();
+        int jsonBytes = encode(layout, false).readableBytes();
+        int binaryBytes = encode(layout, true).readableBytes();
+        assertThat(binaryBytes).isLessThan(jsonBytes);
+
+        for (boolean binary : new boolean[] {false, true}) {
+            ByteBuf buf = Unpooled.buffer();
+            long start = System.nanoTime();
+            for (int i = 0; i < PARAMETERS.NUM_ITERATIONS_LOW; i++) {
+                buf.clear();
+                LayoutCodec.serialize(buf, layout, binary);
+                ICorfuPayload.fromBuffer(buf, Layout.class);
+            }
+            long elapsed = System.nanoTime() - start;
+            log.info("binaryIsSmallerThanJson: {} encode and decode {} us, {} bytes",
+                    binary ? "binary" : "json", elapsed / PARAMETERS.NUM_ITERATIONS_LOW / 1000,
+                    binary ? binaryBytes : jsonBytes);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.corfudb.protocols.wireprotocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.corfudb.AbstractCorfuTest;
+import org.corfudb.util.serializer.Serializers;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LogDataTest extends AbstractCorfuTest {
+
+    private ByteBuf serializeToPooledBuffer(LogData logData) {
+        ByteBuf message = PooledByteBufAllocator.DEFAULT.directBuffer();
+        logData.doSerialize(message);
+        return message;
+    }
+
+    private LogData newLogData() {
+        ByteBuf payload = Unpooled.buffer();
+        Serializers.CORFU.serialize("payload".getBytes(), payload);
+        return new LogData(DataType.DATA, payload);
+    }
+
+    @Test
+    public void decodedPayloadIsDetachedFromMessage() {
+        LogData original = newLogData();
+        ByteBuf message = serializeToPooledBuffer(original);
+
+        LogData decoded = new LogData(message);
+        // The decoder releases the message, but the payload still holds a slice of it.
+        message.release();
+        assertThat(message.refCnt()).isEqualTo(1);
+        assertThat(decoded.getData()).isEqualTo(original.getData());
+
+        decoded.detach();
+        assertThat(message.refCnt()).isZero();
+        assertThat(decoded.getData()).isEqualTo(original.getData());
+        assertThat(decoded.getSizeEstimate()).isEqualTo(original.getSizeEstimate());
+    }
+
+    @Test
+    public void releasedPayloadReleasesMessage() {
+        LogData original = newLogData();
+        ByteBuf message = serializeToPooledBuffer(original);
+
+        LogData decoded = new LogData(message);
+        message.release();
+        decoded.releaseData();
+        assertThat(message.refCnt()).isZero();
+        assertThat(decoded.getData()).isNull();
+        // The size of the payload is still known once it is released.
+        assertThat(decoded.getSizeEstimate()).isEqualTo(original.getSizeEstimate());
+    }
+}
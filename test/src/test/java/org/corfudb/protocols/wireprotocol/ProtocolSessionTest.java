@@ -0,0 +1,188 @@
+package org.corfudb.protocols.wireprotocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import lombok.extern.slf4j.Slf4j;
+import org.corfudb.AbstractCorfuTest;
+import org.junit.After;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.function.LongFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+public class ProtocolSessionTest extends AbstractCorfuTest {
+
+    private static final UUID CLIENT_ID = UUID.randomUUID();
+
+    @After
+    public void resetMaxVersion() {
+        ProtocolSession.setMaxVersion(ProtocolSession.V2);
+    }
+
+    private static CorfuMsg tokenQuery(long requestId) {
+        CorfuMsg msg = CorfuMsgType.TOKEN_REQ.payloadMsg(
+                new TokenRequest(0L, Collections.emptySet()));
+        msg.setClientID(CLIENT_ID);
+        msg.setRequestID(requestId);
+        msg.setEpoch(1L);
+        return msg;
+    }
+
+    private static CorfuMsg tailQuery(long requestId) {
+        CorfuMsg msg = CorfuMsgType.TAIL_REQUEST.msg();
+        msg.setClientID(CLIENT_ID);
+        msg.setRequestID(requestId);
+        msg.setEpoch(1L);
+        return msg;
+    }
+
+    /**
+     * Send a message from one session to the other, and check that it is received as sent.
+     *
+     * @return the size of the message on the wire
+     */
+    private static int send(ProtocolSession sender, ProtocolSession receiver, CorfuMsg msg) {
+        ByteBuf buf = Unpooled.buffer();
+        sender.encode(msg, buf);
+        int size = buf.readableBytes();
+        CorfuMsg received = receiver.decode(buf);
+        assertThat(received.getMsgType()).isEqualTo(msg.getMsgType());
+        assertThat(received.getClientID()).isEqualTo(msg.getClientID());
+        assertThat(received.getRequestID()).isEqualTo(msg.getRequestID());
+        assertThat(received.getEpoch()).isEqualTo(msg.getEpoch());
+        assertThat(buf.readableBytes()).isZero();
+        return size;
+    }
+
+    @Test
+    public void compactHeadersOnceEnabled() {
+        ProtocolSession client = new ProtocolSession();
+        ProtocolSession server = new ProtocolSession();
+        int v1Size = send(client, server, tailQuery(0));
+        assertThat(v1Size).isEqualTo(ProtocolSession.V1_HEADER_SIZE);
+
+        // Until the server answers, the client sends version 1.
+        assertThat(send(client, server, tailQuery(1))).isEqualTo(v1Size);
+        assertThat(server.isSendingV2()).isFalse();
+
+        client.enableV2();
+        for (long id = 2; id < PARAMETERS.NUM_ITERATIONS_LOW; id++) {
+            assertThat(send(client, server, tailQuery(id))).isEqualTo(4);
+        }
+        // The server answers in version 2 once it received it.
+        assertThat(server.isSendingV2()).isTrue();
+        send(server, client, tailQuery(1));
+        assertThat(send(server, client, tailQuery(0))).isEqualTo(4);
+
+        // A request ID which jumps, or goes back, takes more bytes.
+        assertThat(send(client, server, tailQuery(Long.MAX_VALUE)))
+                .isGreaterThan(4).isLessThan(v1Size);
+        assertThat(send(client, server, tailQuery(-1L)))
+                .isGreaterThan(4).isLessThan(v1Size);
+    }
+
+    @Test
+    public void otherClientIdsUseVersion1() {
+        ProtocolSession client = new ProtocolSession();
+        ProtocolSession server = new ProtocolSession();
+        send(client, server, tailQuery(0));
+        client.enableV2();
+
+        CorfuMsg other = tailQuery(1);
+        other.setClientID(UUID.randomUUID());
+        assertThat(send(client, server, other)).isEqualTo(ProtocolSession.V1_HEADER_SIZE);
+        assertThat(send(client, server, tailQuery(2))).isEqualTo(4);
+    }
+
+    @Test
+    public void version1OnlyNeverSendsVersion2() {
+        ProtocolSession.setMaxVersion(ProtocolSession.V1);
+        ProtocolSession client = new ProtocolSession();
+        ProtocolSession server = new ProtocolSession();
+        send(client, server, tailQuery(0));
+        client.enableV2();
+        assertThat(client.isSendingV2()).isFalse();
+        assertThat(send(client, server, tailQuery(1)))
+                .isEqualTo(ProtocolSession.V1_HEADER_SIZE);
+        assertThat(new VersionInfo(Collections.emptyMap()).getWireProtocolVersion())
+                .isEqualTo(ProtocolSession.V1);
+    }
+
+    /**
+     * Encode and decode queries between two sessions, the client speaking the given version.
+     *
+     * @return the bytes on the wire of each query
+     */
+    private static int[] sendQueries(LongFunction<CorfuMsg> query, int version, int count) {
+        ProtocolSession client = new ProtocolSession();
+        ProtocolSession server = new ProtocolSession();
+        send(client, server, query.apply(0));
+        if (version == ProtocolSession.V2) {
+            client.enableV2();
+        }
+        int[] sizes = new int[count];
+        for (int i = 0; i < count; i++) {
+            sizes[i] = send(client, server, query.apply(i + 1));
+        }
+        return sizes;
+    }
+
+    /**
+     * Bandwidth of token and tail queries with each version: every query in sequence saves
+     * all but 4 bytes of the 37 byte header, whatever its payload.
+     */
+    @Test
+    public void smallMessagesShrink() {
+        final int saved = ProtocolSession.V1_HEADER_SIZE - 4;
+        final int tokenQueryPayload = 5;
+        for (LongFunction<CorfuMsg> query : Arrays.<LongFunction<CorfuMsg>>asList(
+                ProtocolSessionTest::tokenQuery, ProtocolSessionTest::tailQuery)) {
+            int[] v1 = sendQueries(query, ProtocolSession.V1, PARAMETERS.NUM_ITERATIONS_LOW);
+            int[] v2 = sendQueries(query, ProtocolSession.V2, PARAMETERS.NUM_ITERATIONS_LOW);
+            for (int i = 0; i < PARAMETERS.NUM_ITERATIONS_LOW; i++) {
+                assertThat(v1[i] - v2[i]).isEqualTo(saved);
+            }
+        }
+        assertThat(sendQueries(ProtocolSessionTest::tokenQuery, ProtocolSession.V2, 1)[0])
+                .isEqualTo(4 + tokenQueryPayload);
+        assertThat(sendQueries(ProtocolSessionTest::tailQuery, ProtocolSession.V2, 1)[0])
+                .isEqualTo(4);
+    }
+
+    /**
+     * Rate of token and tail queries, encoded and decoded with each version.
+     */
+    @Test
+    @Ignore // Manual benchmark: the rates depend on the machine, run it on demand.
+    public void smallMessageRate() {
+        for (String name : new String[] {"token", "tail"}) {
+            LongFunction<CorfuMsg> query = name.equals("token")
+                    ? ProtocolSessionTest::tokenQuery : ProtocolSessionTest::tailQuery;
+            for (int version = ProtocolSession.V1; version <= ProtocolSession.V2; version++) {
+                ProtocolSession client = new ProtocolSession();
+                ProtocolSession server = new ProtocolSession();
+                send(client, server, query.apply(0));
+                if (version == ProtocolSession.V2) {
+                    client.enableV2();
+                }
+                ByteBuf buf = Unpooled.buffer();
+                final int total = PARAMETERS.NUM_ITERATIONS_LARGE;
+                long start = System.nanoTime();
+                for (int i = 0; i < total; i++) {
+                    buf.clear();
+                    client.encode(query.apply(i + 1), buf);
+                    server.decode(buf);
+                }
+                long elapsed = System.nanoTime() - start;
+                log.info("smallMessageRate: {} query, version {}, {} msg/s", name, version,
+                        total * 1_000_000_000L / elapsed);
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.corfudb.protocols.wireprotocol;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.corfudb.AbstractCorfuTest;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TxResolutionInfoTest extends AbstractCorfuTest {
+
+    private static final UUID TX_ID = UUID.randomUUID();
+    private static final UUID STREAM_ID = UUID.randomUUID();
+    private static final long SNAPSHOT = 5L;
+
+    @Test
+    public void hashedFormatRoundTrips() {
+        TxResolutionInfo info = new TxResolutionInfo(TX_ID, SNAPSHOT,
+                ImmutableMap.of(STREAM_ID, new long[] {1L, 2L}),
+                ImmutableMap.of(STREAM_ID, new long[0]));
+        ByteBuf buf = Unpooled.buffer();
+        info.doSerialize(buf);
+        assertThat(buf.getLong(0)).isEqualTo(TxResolutionInfo.HASHED_MARKER);
+
+        TxResolutionInfo decoded = new TxResolutionInfo(buf);
+        assertThat(decoded.getTXid()).isEqualTo(TX_ID);
+        assertThat(decoded.getSnapshotTimestamp()).isEqualTo(SNAPSHOT);
+        assertThat(decoded.getConflictSet().get(STREAM_ID)).containsExactly(1L, 2L);
+        assertThat(decoded.getWriteConflictParams().get(STREAM_ID)).isEmpty();
+        assertThat(buf.readableBytes()).isZero();
+    }
+
+    @Test
+    public void legacyFormatIsFoldedAsClientsFoldIt() {
+        final byte[] shortHash = {1, 2, 3};
+        final byte[] longHash = {0, 0, 0, 0, 0, 0, 0, 7};
+        Set<byte[]> hashes = ImmutableSet.of(shortHash, longHash);
+
+        // The format of TxResolutionInfo before the conflict parameters were hashed.
+        ByteBuf buf = Unpooled.buffer();
+        ICorfuPayload.serialize(buf, TX_ID);
+        buf.writeLong(SNAPSHOT);
+        buf.writeInt(1);
+        ICorfuPayload.serialize(buf, STREAM_ID);
+        ICorfuPayload.serialize(buf, hashes);
+        buf.writeInt(0);
+
+        TxResolutionInfo decoded = new TxResolutionInfo(buf);
+        assertThat(decoded.getTXid()).isEqualTo(TX_ID);
+        assertThat(decoded.getSnapshotTimestamp()).isEqualTo(SNAPSHOT);
+        Map<UUID, long[]> conflictSet = decoded.getConflictSet();
+        assertThat(conflictSet.get(STREAM_ID)).containsExactlyInAnyOrder(
+                TxResolutionInfo.foldHash(shortHash), 7L);
+        assertThat(decoded.getWriteConflictParams()).isEqualTo(Collections.emptyMap());
+        assertThat(buf.readableBytes()).isZero();
+    }
+}
@@ -13,6 +13,7 @@ import org.corfudb.protocols.wireprotocol.ILogData;
 import org.corfudb.protocols.wireprotocol.IMetadata;
 import org.corfudb.protocols.wireprotocol.IToken;
 import org.corfudb.protocols.wireprotocol.LogData;
+import org.corfudb.protocols.wireprotocol.MultipleWriteResponse;
 import org.corfudb.protocols.wireprotocol.ReadResponse;
 import org.corfudb.runtime.CorfuRuntime;
 import org.corfudb.runtime.exceptions.DataCorruptionException;
@@ -26,14 +27,17 @@ import java.io.File;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
 import static org.corfudb.infrastructure.log.StreamLogFiles.METADATA_SIZE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
@@ -86,6 +90,34 @@ public class LogUnitClientTest extends AbstractClientTest {
                 .isEqualTo(testString);
     }
 
+    @Test
+    public void canWriteMultiple()
+            throws Exception {
+        List<ILogData> entries = new ArrayList<>();
+        for (long address = 0; address < 2; address++) {
+            LogData ld = new LogData(DataType.DATA, ("entry " + address).getBytes());
+            ld.setGlobalAddress(address);
+            entries.add(ld);
+        }
+        assertThat(client.write(entries).get().getResults())
+                .containsOnly(entry(0L, MultipleWriteResponse.Status.OK),
+                        entry(1L, MultipleWriteResponse.Status.OK));
+
+        // Each address is acknowledged on its own.
+        LogData ld = new LogData(DataType.DATA, "entry 2".getBytes());
+        ld.setGlobalAddress(2L);
+        entries.set(0, ld);
+        assertThat(client.write(entries).get().getResults())
+                .containsOnly(entry(2L, MultipleWriteResponse.Status.OK),
+                        entry(1L, MultipleWriteResponse.Status.OVERWRITE));
+
+        Map<Long, LogData> read = client.read(Arrays.asList(0L, 1L, 2L)).get().getAddresses();
+        for (long address = 0; address < entries.size() + 1; address++) {
+            assertThat(read.get(address).getPayload(new CorfuRuntime()))
+                    .isEqualTo(("entry " + address).getBytes());
+        }
+    }
+
     @Test
     public void readingTrimmedAddress() throws Exception {
         byte[] testString = "hello world".getBytes();
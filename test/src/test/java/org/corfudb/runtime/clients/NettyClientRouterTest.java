@@ -1,12 +1,31 @@
 package org.corfudb.runtime.clients;
 
+import io.netty.channel.Channel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.corfudb.protocols.wireprotocol.ProtocolSession;
+import org.corfudb.util.FlushCoalescingHandler;
+import org.corfudb.util.NettyTransport;
+import org.junit.Ignore;
 import org.junit.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 /**
  * Created by rmichoud on 7/15/17.
  */
+@Slf4j
 public class NettyClientRouterTest extends NettyCommTest {
     @Test
     public void doesNotUpdateEpochBackward() throws Exception{
@@ -29,4 +48,273 @@ public class NettyClientRouterTest extends NettyCommTest {
                     assertThat(r.getEpoch()).isNotEqualTo(currentEpoch-1).isEqualTo(currentEpoch);
                 });
     }
+
+    @Test
+    public void sharedEventLoopsOutliveRouters() throws Exception {
+        ClientEventLoops eventLoops = new ClientEventLoops("test", 1, 1);
+        try {
+            runWithBaseServer(
+                    (port) -> {
+                        return new NettyServerData(port);
+                    },
+                    (port) -> {
+                        return new NettyClientRouter("localhost", port, false, null, null,
+                                null, null, false, null, null, null, eventLoops);
+                    },
+                    (r, d) -> {
+                        assertThat(r.getClient(BaseClient.class).pingSync()).isTrue();
+                        assertThat(r.workerGroup).isSameAs(eventLoops.getWorkerGroup());
+
+                        // Shutting down the router leaves the shared threads running.
+                        r.stop(true);
+                        assertThat(eventLoops.getWorkerGroup().isShuttingDown()).isFalse();
+                        assertThat(eventLoops.getHandlerGroup().isShuttingDown()).isFalse();
+                    });
+        } finally {
+            eventLoops.shutdown();
+        }
+    }
+
+    @Test
+    public void pendingRequestsTimeOut() throws Exception {
+        final AtomicInteger timeouts = new AtomicInteger();
+        final PendingRequests pendingRequests = new PendingRequests(timeouts::incrementAndGet);
+        final CompletableFuture<Boolean> answered = new CompletableFuture<>();
+        final CompletableFuture<Boolean> unanswered = new CompletableFuture<>();
+        pendingRequests.add(0L, answered, PendingRequests.TICK_MILLIS);
+        pendingRequests.add(1L, unanswered, PendingRequests.TICK_MILLIS);
+        assertThat(pendingRequests.size()).isEqualTo(2);
+
+        assertThat(pendingRequests.remove(0L)).isSameAs(answered);
+        answered.complete(true);
+        assertThatThrownBy(unanswered::get)
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(TimeoutException.class);
+
+        // Only the unanswered request times out, and it is no longer pending.
+        assertThat(answered.get()).isTrue();
+        assertThat(timeouts.get()).isEqualTo(1);
+        assertThat(pendingRequests.remove(1L)).isNull();
+        assertThat(pendingRequests.size()).isZero();
+    }
+
+    @Test
+    public void inFlightRequestsDrainOnResponse() throws Exception {
+        runWithBaseServer(
+                (port) -> {
+                    return new NettyServerData(port);
+                },
+                (port) -> {
+                    return new NettyClientRouter("localhost", port);
+                },
+                (r, d) -> {
+                    assertThat(r.getClient(BaseClient.class).pingSync()).isTrue();
+                    assertThat(r.getOutstandingRequestCount()).isZero();
+                });
+    }
+
+    @Test
+    public void connectionsReconnectIndependently() throws Exception {
+        runWithBaseServer(
+                (port) -> {
+                    return new NettyServerData(port);
+                },
+                (port) -> {
+                    return new NettyClientRouter("localhost", port, false, null, null,
+                            null, null, false, null, null, null, null, 3);
+                },
+                (r, d) -> {
+                    List<Channel> channels = r.getChannels();
+                    assertThat(channels).hasSize(3).doesNotHaveDuplicates();
+                    assertThat(r.channel).isSameAs(channels.get(0));
+
+                    // Closing the first connection leaves the others serving requests.
+                    r.setTimeoutRetry(PARAMETERS.TIMEOUT_VERY_SHORT.toMillis());
+                    channels.get(0).close().syncUninterruptibly();
+                    assertThat(r.getConnected()).isTrue();
+                    assertThat(r.getClient(BaseClient.class).pingSync()).isTrue();
+
+                    // Until it is reconnected, on its own.
+                    while (r.getChannels().get(0) == channels.get(0)
+                            || !r.getChannels().get(0).isActive()) {
+                        Thread.sleep(PARAMETERS.TIMEOUT_VERY_SHORT.toMillis());
+                    }
+                    assertThat(r.getChannels().subList(1, 3))
+                            .isEqualTo(channels.subList(1, 3));
+                    assertThat(r.getClient(BaseClient.class).pingSync()).isTrue();
+                });
+    }
+
+    @Test
+    public void connectionsNegotiateCompactHeaders() throws Exception {
+        runWithBaseServer(
+                (port) -> {
+                    return new NettyServerData(port);
+                },
+                (port) -> {
+                    return new NettyClientRouter("localhost", port);
+                },
+                (r, d) -> {
+                    // The version response is answered before the ping, on the same connection.
+                    assertThat(r.getClient(BaseClient.class).pingSync()).isTrue();
+                    assertThat(ProtocolSession.of(r.channel).isSendingV2()).isTrue();
+                    for (int i = 0; i < PARAMETERS.NUM_ITERATIONS_LOW; i++) {
+                        assertThat(r.getClient(BaseClient.class).pingSync()).isTrue();
+                    }
+                });
+    }
+
+    @Test
+    public void limiterHandsPermitsOver() {
+        final InFlightLimiter limiter = new InFlightLimiter();
+        limiter.setLimit(1);
+        final List<Integer> sent = new ArrayList<>();
+
+        limiter.acquire(() -> sent.add(0));
+        limiter.acquire(() -> sent.add(1));
+        // A request which fails to be sent does not keep its permit.
+        limiter.acquire(() -> false);
+        assertThat(sent).containsExactly(0);
+        assertThat(limiter.getWaiting()).isEqualTo(2);
+
+        limiter.release();
+        assertThat(sent).containsExactly(0, 1);
+        assertThat(limiter.getInFlight()).isEqualTo(1);
+
+        limiter.release();
+        assertThat(limiter.getInFlight()).isZero();
+        assertThat(limiter.getWaiting()).isZero();
+    }
+
+    @Test
+    public void limitedRequestsWaitForPermits() throws Exception {
+        runWithBaseServer(
+                (port) -> {
+                    return new NettyServerData(port);
+                },
+                (port) -> {
+                    return new NettyClientRouter("localhost", port);
+                },
+                (r, d) -> {
+                    r.getControlLimiter().setLimit(1);
+                    List<CompletableFuture<Boolean>> pings = new ArrayList<>();
+                    for (int i = 0; i < PARAMETERS.NUM_ITERATIONS_LOW; i++) {
+                        pings.add(r.getClient(BaseClient.class).ping());
+                    }
+                    for (CompletableFuture<Boolean> ping : pings) {
+                        assertThat(ping.get()).isTrue();
+                    }
+                    assertThat(r.getControlLimiter().getInFlight()).isZero();
+                    assertThat(r.getControlLimiter().getWaiting()).isZero();
+                });
+    }
+
+    @Test
+    public void autoTransportSelectsEpollWhereAvailable() throws Exception {
+        ClientEventLoops eventLoops = new ClientEventLoops("test", NettyTransport.AUTO, 1, 1,
+                true, 0);
+        try {
+            runWithBaseServer(
+                    (port) -> {
+                        NettyServerData d = new NettyServerData(port);
+                        d.setTransport(eventLoops.getTransport());
+                        return d;
+                    },
+                    (port) -> {
+                        return new NettyClientRouter("localhost", port, false, null, null,
+                                null, null, false, null, null, null, eventLoops);
+                    },
+                    (r, d) -> {
+                        assertThat(eventLoops.getTransport())
+                                .isEqualTo(Epoll.isAvailable() ? NettyTransport.EPOLL
+                                        : NettyTransport.NIO);
+                        assertThat(r.channel).isInstanceOf(Epoll.isAvailable()
+                                ? EpollSocketChannel.class : NioSocketChannel.class);
+                        assertThat(r.getClient(BaseClient.class).pingSync()).isTrue();
+                    });
+        } finally {
+            eventLoops.shutdown();
+        }
+    }
+
+    /**
+     * A/B latency of the NIO transport, and of epoll where it is available, on loopback.
+     */
+    @Test
+    @Ignore // Manual benchmark: the latencies depend on the machine, run it on demand.
+    public void transportLatencyOnLoopback() throws Exception {
+        for (NettyTransport transport : new NettyTransport[] {NettyTransport.NIO,
+                NettyTransport.AUTO}) {
+            ClientEventLoops eventLoops = new ClientEventLoops("test", transport, 1, 1, true, 0);
+            try {
+                runWithBaseServer(
+                        (port) -> {
+                            NettyServerData d = new NettyServerData(port);
+                            d.setTransport(eventLoops.getTransport());
+                            return d;
+                        },
+                        (port) -> {
+                            return new NettyClientRouter("localhost", port, false, null, null,
+                                    null, null, false, null, null, null, eventLoops);
+                        },
+                        (r, d) -> {
+                            BaseClient client = r.getClient(BaseClient.class);
+                            for (int i = 0; i < PARAMETERS.NUM_ITERATIONS_LOW; i++) {
+                                assertThat(client.pingSync()).isTrue();
+                            }
+                            long start = System.nanoTime();
+                            for (int i = 0; i < PARAMETERS.NUM_ITERATIONS_MODERATE; i++) {
+                                assertThat(client.pingSync()).isTrue();
+                            }
+                            long elapsed = System.nanoTime() - start;
+                            log.info("transportLatencyOnLoopback: {} mean ping latency {} us",
+                                    eventLoops.getTransport(),
+                                    elapsed / PARAMETERS.NUM_ITERATIONS_MODERATE / 1000);
+                        });
+            } finally {
+                eventLoops.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Messages per second on one loopback connection, with and without flush coalescing on
+     * both ends. The coalescing itself is tested by FlushCoalescingHandlerTest.
+     */
+    @Test
+    @Ignore // Manual benchmark: the rates depend on the machine, run it on demand.
+    public void flushCoalescingThroughputOnLoopback() throws Exception {
+        for (boolean coalescing : new boolean[] {false, true}) {
+            runWithBaseServer(
+                    (port) -> {
+                        NettyServerData d = new NettyServerData(port);
+                        d.setFlushCoalescing(coalescing);
+                        return d;
+                    },
+                    (port) -> {
+                        return new NettyClientRouter("localhost", port);
+                    },
+                    (r, d) -> {
+                        if (!coalescing) {
+                            r.channel.pipeline().remove(FlushCoalescingHandler.class);
+                        }
+                        BaseClient client = r.getClient(BaseClient.class);
+                        final int window = PARAMETERS.NUM_ITERATIONS_LOW;
+                        final int total = PARAMETERS.NUM_ITERATIONS_LARGE;
+                        long start = System.nanoTime();
+                        for (int sent = 0; sent < total; sent += window) {
+                            List<CompletableFuture<Boolean>> pings = new ArrayList<>();
+                            for (int i = 0; i < window; i++) {
+                                pings.add(client.ping());
+                            }
+                            for (CompletableFuture<Boolean> ping : pings) {
+                                assertThat(ping.join()).isTrue();
+                            }
+                        }
+                        long elapsed = System.nanoTime() - start;
+                        log.info("flushCoalescingThroughputOnLoopback: coalescing {}, {} msg/s",
+                                coalescing, total * 1_000_000_000L / elapsed);
+                    });
+        }
+    }
 }
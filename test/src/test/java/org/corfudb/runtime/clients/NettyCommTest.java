@@ -7,9 +7,7 @@ import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.handler.codec.LengthFieldPrepender;
 import io.netty.handler.logging.LogLevel;
@@ -27,6 +25,8 @@ import org.corfudb.protocols.wireprotocol.NettyCorfuMessageDecoder;
 import org.corfudb.protocols.wireprotocol.NettyCorfuMessageEncoder;
 import org.corfudb.security.sasl.plaintext.PlainTextSaslNettyServer;
 import org.corfudb.security.tls.TlsUtils;
+import org.corfudb.util.FlushCoalescingHandler;
+import org.corfudb.util.NettyTransport;
 import org.junit.Test;
 
 import java.io.IOException;
@@ -383,6 +383,10 @@ public class NettyCommTest extends AbstractCorfuTest {
 
         boolean saslPlainTextAuthEnabled = false;
 
+        NettyTransport transport = NettyTransport.NIO;
+
+        boolean flushCoalescing = true;
+
         public NettyServerData(int port) {
             this.port = port;
         }
@@ -419,7 +423,7 @@ public class NettyCommTest extends AbstractCorfuTest {
 
         void bootstrapServer() throws Exception {
             NettyServerRouter nsr = new NettyServerRouter(new ImmutableMap.Builder<String, Object>().build());
-            bossGroup = new NioEventLoopGroup(1, new ThreadFactory() {
+            bossGroup = transport.newEventLoopGroup(1, new ThreadFactory() {
                 final AtomicInteger threadNum = new AtomicInteger(0);
 
                 @Override
@@ -430,7 +434,7 @@ public class NettyCommTest extends AbstractCorfuTest {
                 }
             });
 
-            workerGroup = new NioEventLoopGroup(Runtime.getRuntime().availableProcessors() * 2, new ThreadFactory() {
+            workerGroup = transport.newEventLoopGroup(Runtime.getRuntime().availableProcessors() * 2, new ThreadFactory() {
                 final AtomicInteger threadNum = new AtomicInteger(0);
 
                 @Override
@@ -457,7 +461,7 @@ public class NettyCommTest extends AbstractCorfuTest {
             final int FRAME_SIZE = 4;
             b = new ServerBootstrap();
             b.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
+                    .channel(transport.getServerChannelClass())
                     .option(ChannelOption.SO_BACKLOG, SO_BACKLOG)
                     .childOption(ChannelOption.SO_KEEPALIVE, true)
                     .childOption(ChannelOption.SO_REUSEADDR, true)
@@ -478,6 +482,9 @@ public class NettyCommTest extends AbstractCorfuTest {
                             }
                             ch.pipeline().addLast(new LengthFieldPrepender(FRAME_SIZE));
                             ch.pipeline().addLast(new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, FRAME_SIZE, 0, FRAME_SIZE));
+                            if (flushCoalescing) {
+                                ch.pipeline().addLast(new FlushCoalescingHandler());
+                            }
                             if (saslPlainTextAuthEnabled) {
                                 ch.pipeline().addLast("sasl/plain-text", new PlainTextSaslNettyServer());
                             }
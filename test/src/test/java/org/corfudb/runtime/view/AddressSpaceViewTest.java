@@ -162,4 +162,101 @@ public class AddressSpaceViewTest extends AbstractViewTest {
         assertThat(m.get(ADDRESS_1).isHole());
         assertThat(m.get(ADDRESS_2).isHole());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void largeEntriesAreNotCached() {
+        CorfuRuntime r = getRuntime().connect();
+        final int largeSize = 4096;
+        r.setMaxCacheEntryBytes(largeSize / 2);
+        final long epoch = r.getLayoutView().getLayout().getEpoch();
+        final AddressSpaceView asv = r.getAddressSpaceView();
+
+        asv.write(new Token(0L, epoch), "hello world".getBytes());
+        asv.write(new Token(1L, epoch), new byte[largeSize]);
+        assertThat(asv.readCache.getIfPresent(0L)).isNotNull();
+        assertThat(asv.readCache.getIfPresent(1L)).isNull();
+
+        // The large entry is read from the log units every time.
+        assertThat((byte[]) asv.read(1L).getPayload(r)).hasSize(largeSize);
+        assertThat(asv.readCache.getIfPresent(1L)).isNull();
+        assertThat(asv.rejections.sum()).isEqualTo(2L);
+        assertThat(asv.missBytes.sum()).isGreaterThan(largeSize);
+
+        asv.read(0L);
+        assertThat(asv.hitBytes.sum()).isGreaterThan(0L);
+        assertThat(asv.getByteHitRate()).isGreaterThan(0.0).isLessThan(1.0);
+    }
+
+    @Test
+    public void concurrentMissesAreFetchedOnce() throws Exception {
+        CorfuRuntime r = getRuntime().connect();
+        final long epoch = r.getLayoutView().getLayout().getEpoch();
+        final AddressSpaceView asv = r.getAddressSpaceView();
+
+        asv.write(new Token(0L, epoch), "hello world".getBytes());
+        asv.invalidateClientCache();
+        final long weight = AddressSpaceView.weigh(asv.fetch(0L));
+
+        scheduleConcurrently(PARAMETERS.CONCURRENCY_SOME, t -> asv.read(0L));
+        executeScheduled(PARAMETERS.CONCURRENCY_SOME, PARAMETERS.TIMEOUT_NORMAL);
+        assertThat(asv.missBytes.sum()).isEqualTo(weight);
+        assertThat(asv.hitBytes.sum()).isEqualTo(weight * (PARAMETERS.CONCURRENCY_SOME - 1));
+    }
+
+    @Test
+    public void cacheIsBoundedInBytes() {
+        CorfuRuntime r = getRuntime().connect();
+        final int entrySize = 1024;
+        final long maxBytes = (AddressSpaceView.ENTRY_OVERHEAD + entrySize)
+                * PARAMETERS.NUM_ITERATIONS_LOW / 10;
+        r.setMaxCacheBytes(maxBytes);
+        r.setMaxCacheEntryBytes(entrySize * 2);
+        final long epoch = r.getLayoutView().getLayout().getEpoch();
+        final AddressSpaceView asv = r.getAddressSpaceView();
+
+        for (long address = 0; address < PARAMETERS.NUM_ITERATIONS_LOW; address++) {
+            asv.write(new Token(address, epoch), new byte[entrySize]);
+        }
+        asv.readCache.cleanUp();
+        assertThat(asv.readCache.policy().eviction().get().weightedSize().getAsLong())
+                .isGreaterThan(0L)
+                .isLessThanOrEqualTo(maxBytes);
+        assertThat(asv.readCache.estimatedSize())
+                .isLessThan(PARAMETERS.NUM_ITERATIONS_LOW);
+
+        // Shrinking the cache evicts entries.
+        r.setMaxCacheBytes(maxBytes / 2);
+        asv.readCache.cleanUp();
+        assertThat(asv.readCache.policy().eviction().get().weightedSize().getAsLong())
+                .isLessThanOrEqualTo(maxBytes / 2);
+    }
+
+    @Test
+    public void scansAreNotCachedIfDisabled() {
+        CorfuRuntime r = getRuntime().connect();
+        final int scanSize = PARAMETERS.NUM_ITERATIONS_LOW;
+        r.setCacheScans(false);
+        r.setBulkReadSize(scanSize / 2);
+        final long epoch = r.getLayoutView().getLayout().getEpoch();
+        final AddressSpaceView asv = r.getAddressSpaceView();
+
+        for (long address = 0; address < scanSize; address++) {
+            asv.write(new Token(address, epoch), "hello world".getBytes());
+        }
+        asv.invalidateClientCache();
+
+        // A read of no more than the bulk read size is cached.
+        asv.read(ContiguousSet.create(Range.closedOpen(0L, (long) scanSize / 2),
+                DiscreteDomain.longs()));
+        assertThat(asv.readCache.getIfPresent(0L)).isNotNull();
+
+        // A scan is not, but is served from the cache where it can be.
+        asv.invalidateClientCache();
+        asv.read(0L);
+        Map<Long, ILogData> scan = asv.read(ContiguousSet.create(
+                Range.closedOpen(0L, (long) scanSize), DiscreteDomain.longs()));
+        assertThat(scan).hasSize(scanSize);
+        assertThat(scan.keySet()).startsWith(0L, 1L);
+        assertThat(asv.readCache.estimatedSize()).isEqualTo(1L);
+    }
+}
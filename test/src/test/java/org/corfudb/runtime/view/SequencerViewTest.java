@@ -1,12 +1,22 @@
 package org.corfudb.runtime.view;
 
+import com.google.common.collect.ImmutableSet;
 import lombok.Getter;
+import org.corfudb.protocols.wireprotocol.StreamTailsResponse;
 import org.corfudb.protocols.wireprotocol.Token;
+import org.corfudb.protocols.wireprotocol.TokenResponse;
 import org.corfudb.runtime.CorfuRuntime;
 import org.junit.Test;
 
 import java.util.Collections;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -80,4 +90,109 @@ public class SequencerViewTest extends AbstractViewTest {
         assertThat(r.getSequencerView().nextToken(Collections.singleton(streamB), 1).getBackpointerMap())
                 .containsEntry(streamB, 1L);
     }
+
+    @Test
+    public void streamTailsAreFetchedTogether() {
+        CorfuRuntime r = getDefaultRuntime();
+        UUID streamA = UUID.nameUUIDFromBytes("stream A".getBytes());
+        UUID streamB = UUID.nameUUIDFromBytes("stream B".getBytes());
+        UUID streamC = UUID.nameUUIDFromBytes("stream C".getBytes());
+
+        r.getSequencerView().nextToken(Collections.singleton(streamA), 1);
+        r.getSequencerView().nextToken(Collections.singleton(streamB), 1);
+        r.getSequencerView().nextToken(Collections.emptySet(), 1);
+
+        StreamTailsResponse tails = r.getSequencerView()
+                .getStreamTails(ImmutableSet.of(streamA, streamB, streamC));
+        assertThat(tails.getGlobalTail()).isEqualTo(2L);
+        assertThat(tails.getStreamTails())
+                .containsEntry(streamA, 0L)
+                .containsEntry(streamB, 1L)
+                .containsEntry(streamC, Address.NON_EXIST);
+    }
+
+    @Test
+    public void rawTokensAreLeasedInBlocks() {
+        CorfuRuntime r = getDefaultRuntime();
+        final int leaseSize = 10;
+        final int used = 3;
+        r.setRawTokenLeaseSize(leaseSize);
+
+        for (long i = 0; i < used; i++) {
+            assertThat(r.getSequencerView().nextRawToken().getTokenValue()).isEqualTo(i);
+        }
+        // The whole block was taken from the sequencer at once.
+        assertThat(r.getSequencerView().nextToken(Collections.emptySet(), 0).getTokenValue())
+                .isEqualTo(leaseSize - 1);
+
+        // The tokens left in the block are hole filled once it is released.
+        r.getSequencerView().releaseRawTokens();
+        for (long address = used; address < leaseSize; address++) {
+            assertThat(r.getAddressSpaceView().peek(address).isHole()).isTrue();
+        }
+        assertThat(r.getSequencerView().nextRawToken().getTokenValue()).isEqualTo(leaseSize);
+    }
+
+    @Test
+    public void concurrentRequestsAreBatched() throws Exception {
+        CorfuRuntime r = getDefaultRuntime();
+        final long batchIntervalMicros = 100;
+        r.setSequencerBatchIntervalMicros(batchIntervalMicros);
+        UUID streamA = UUID.nameUUIDFromBytes("stream A".getBytes());
+        final int numThreads = PARAMETERS.CONCURRENCY_SOME;
+        final int numTokens = PARAMETERS.NUM_ITERATIONS_LOW;
+        Set<Long> tokens = ConcurrentHashMap.newKeySet();
+
+        scheduleConcurrently(numThreads, t -> {
+            for (int i = 0; i < numTokens; i++) {
+                TokenResponse allocation = r.getSequencerView()
+                        .nextToken(Collections.singleton(streamA), 1);
+                assertThat(tokens.add(allocation.getTokenValue())).isTrue();
+                assertThat(allocation.getBackpointerMap().get(streamA))
+                        .isLessThan(allocation.getTokenValue());
+                assertThat(r.getSequencerView().nextToken(Collections.singleton(streamA), 0)
+                        .getTokenValue()).isGreaterThanOrEqualTo(allocation.getTokenValue());
+            }
+        });
+        executeScheduled(numThreads, PARAMETERS.TIMEOUT_LONG);
+
+        final long total = numThreads * numTokens;
+        assertThat(tokens).hasSize((int) total);
+        assertThat(r.getSequencerView().nextToken(Collections.emptySet(), 0).getTokenValue())
+                .isEqualTo(total - 1);
+    }
+
+    /**
+     * Check that a thread which sends batches returns once its own request is answered,
+     * although other threads keep the queue from draining.
+     */
+    @Test
+    public void flushingThreadReturnsUnderLoad() throws Exception {
+        CorfuRuntime r = getDefaultRuntime();
+        final long batchIntervalMicros = 100;
+        r.setSequencerBatchIntervalMicros(batchIntervalMicros);
+        final int numThreads = PARAMETERS.CONCURRENCY_SOME;
+        final AtomicBoolean done = new AtomicBoolean();
+        final ExecutorService load = Executors.newFixedThreadPool(numThreads);
+        for (int t = 0; t < numThreads; t++) {
+            load.submit(() -> {
+                while (!done.get()) {
+                    r.getSequencerView().nextToken(Collections.emptySet(), 1);
+                }
+            });
+        }
+
+        try {
+            for (int i = 0; i < PARAMETERS.NUM_ITERATIONS_LOW; i++) {
+                CompletableFuture.supplyAsync(() -> r.getSequencerView()
+                        .nextToken(Collections.emptySet(), 1))
+                        .get(PARAMETERS.TIMEOUT_NORMAL.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            done.set(true);
+            load.shutdown();
+            assertThat(load.awaitTermination(PARAMETERS.TIMEOUT_NORMAL.toMillis(),
+                    TimeUnit.MILLISECONDS)).isTrue();
+        }
+    }
 }
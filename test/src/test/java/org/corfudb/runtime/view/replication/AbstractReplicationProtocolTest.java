@@ -12,6 +12,8 @@ import org.corfudb.runtime.view.Layout;
 import org.corfudb.util.serializer.Serializers;
 import org.junit.Test;
 
+import java.util.Arrays;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
@@ -109,4 +111,34 @@ public abstract class AbstractReplicationProtocolTest extends AbstractViewTest {
         assertThatThrownBy(() -> rp.write(layout, d2))
                 .isInstanceOf(OverwriteException.class);
     }
+
+    /** Check that a batched write writes every entry, and
+     * returns the addresses which were overwritten rather
+     * than failing the others.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void canWriteAll()
+            throws Exception {
+        setupNodes();
+
+        //begin tests
+        final CorfuRuntime r = getDefaultRuntime();
+        final IReplicationProtocol rp = getProtocol();
+        final Layout layout = r.getLayoutView().getLayout();
+
+        rp.write(layout, getLogData(0, "0".getBytes()));
+        assertThat(rp.writeAll(layout, Arrays.asList(
+                getLogData(0, "overwrite".getBytes()),
+                getLogData(1, "1".getBytes()),
+                getLogData(2, "2".getBytes()))))
+                .containsExactly(0L);
+
+        assertThat(rp.read(layout, 0).getPayload(r))
+                .isEqualTo("0".getBytes());
+        assertThat(rp.read(layout, 1).getPayload(r))
+                .isEqualTo("1".getBytes());
+        assertThat(rp.read(layout, 2).getPayload(r))
+                .isEqualTo("2".getBytes());
+    }
 }
@@ -9,6 +9,8 @@ import org.corfudb.runtime.exceptions.OverwriteException;
 import org.corfudb.runtime.view.Layout;
 import org.junit.Test;
 
+import java.util.Arrays;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
@@ -106,4 +108,34 @@ public class ChainReplicationProtocolTest extends AbstractReplicationProtocolTes
         assertThat(readResult.getPayload(r))
                 .isEqualTo("incomplete".getBytes());
     }
+
+    /** Check that a batched write reaches the tail of
+     * the chain, and completes an entry that another
+     * client left at the head.
+     */
+    @Test
+    public void writeAllIsPropagated()
+            throws Exception {
+        setupNodes();
+        //begin tests
+        final CorfuRuntime r = getDefaultRuntime();
+        final IReplicationProtocol rp = getProtocol();
+        final Layout layout = r.getLayoutView().getLayout();
+
+        // Write an incomplete write to the head of the chain
+        r.getRouter(SERVERS.ENDPOINT_0).getClient(LogUnitClient.class)
+                .write(getLogData(1, "incomplete".getBytes())).get();
+
+        assertThat(rp.writeAll(layout, Arrays.asList(
+                getLogData(0, "0".getBytes()),
+                getLogData(1, "1".getBytes()))))
+                .containsExactly(1L);
+
+        // Both entries are at the tail, the other client's value at 1
+        LogUnitClient tail = r.getRouter(SERVERS.ENDPOINT_2).getClient(LogUnitClient.class);
+        assertThat(tail.read(0).get().getAddresses().get(0L).getPayload(r))
+                .isEqualTo("0".getBytes());
+        assertThat(tail.read(1).get().getAddresses().get(1L).getPayload(r))
+                .isEqualTo("incomplete".getBytes());
+    }
 }
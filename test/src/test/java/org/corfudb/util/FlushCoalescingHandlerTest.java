@@ -0,0 +1,88 @@
+package org.corfudb.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import org.corfudb.AbstractCorfuTest;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FlushCoalescingHandlerTest extends AbstractCorfuTest {
+
+    private static final int MESSAGES = 10;
+
+    /**
+     * Counts the flushes which reach the socket.
+     */
+    private static class FlushCounter extends ChannelOutboundHandlerAdapter {
+        int flushes;
+
+        @Override
+        public void flush(ChannelHandlerContext ctx) throws Exception {
+            flushes++;
+            ctx.flush();
+        }
+    }
+
+    private static ByteBuf message() {
+        return Unpooled.wrappedBuffer(new byte[] {1});
+    }
+
+    @Test
+    public void writesOfOneTickAreFlushedOnce() {
+        FlushCounter counter = new FlushCounter();
+        EmbeddedChannel channel = new EmbeddedChannel(counter, new FlushCoalescingHandler());
+        for (int i = 0; i < MESSAGES; i++) {
+            channel.writeAndFlush(message());
+        }
+        assertThat(counter.flushes).isZero();
+
+        // The flush runs once the event loop is done with the writes.
+        channel.runPendingTasks();
+        assertThat(counter.flushes).isEqualTo(1);
+        assertThat(channel.outboundMessages()).hasSize(MESSAGES);
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void repliesToOneReadAreFlushedOnce() {
+        FlushCounter counter = new FlushCounter();
+        EmbeddedChannel channel = new EmbeddedChannel(counter, new FlushCoalescingHandler(),
+                new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        ctx.writeAndFlush(msg);
+                    }
+                });
+        Object[] requests = new Object[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            requests[i] = message();
+        }
+        channel.writeInbound(requests);
+        assertThat(counter.flushes).isEqualTo(1);
+        assertThat(channel.outboundMessages()).hasSize(MESSAGES);
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void flushIsNotDeferredBeyondTheThreshold() {
+        FlushCounter counter = new FlushCounter();
+        EmbeddedChannel channel = new EmbeddedChannel(counter,
+                new FlushCoalescingHandler(2, Integer.MAX_VALUE));
+        channel.writeAndFlush(message());
+        assertThat(counter.flushes).isZero();
+        channel.writeAndFlush(message());
+        assertThat(counter.flushes).isEqualTo(1);
+
+        // Nothing is left to flush.
+        channel.runPendingTasks();
+        assertThat(counter.flushes).isEqualTo(1);
+        assertThat(channel.outboundMessages()).hasSize(2);
+        channel.finishAndReleaseAll();
+    }
+}